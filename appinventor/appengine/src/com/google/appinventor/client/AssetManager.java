@@ -223,10 +223,15 @@ public final class AssetManager implements ProjectChangeListener {
 
   private void refreshAssets1() {
     boolean loadInProgress = false;
+    // With webrtc the Companion fetches the assets from the server itself, so we send it the
+    // whole list at once and let it skip the ones it already has.
+    List<AssetInfo> toSync = new ArrayList<AssetInfo>();
     for (AssetInfo a : assets.values()) {
       if (!a.loaded) {
         loadInProgress = true;
-        if (a.fileContent == null && !useWebRTC()) { // Need to fetch it from the server
+        if (useWebRTC()) {
+          toSync.add(a);
+        } else if (a.fileContent == null) { // Need to fetch it from the server
           retryCount = 3;
           ConnectProgressBar.setProgress(100 * assetTransferProgress / (2 * assets.size()),
             MESSAGES.loadingAsset(a.fileId));
@@ -244,6 +249,26 @@ public final class AssetManager implements ProjectChangeListener {
         }
       }
     }
+    if (!toSync.isEmpty()) {
+      JsArrayString fileIds = JsArrayString.createArray().cast();
+      for (AssetInfo a : toSync) {
+        fileIds.push(a.fileId);
+      }
+      ConnectProgressBar.setProgress(0, MESSAGES.sendingAssetToCompanion(toSync.get(0).fileId));
+      if (doPutAssets(Long.toString(projectId), fileIds)) {
+        for (AssetInfo a : toSync) {
+          a.loaded = true;
+        }
+      } else {
+        // Older Companions fetch the assets one at a time.
+        for (AssetInfo a : toSync) {
+          if (doPutAsset(Long.toString(projectId), a.fileId, null)) {
+            assetTransferProgress++;
+            a.loaded = true;
+          }
+        }
+      }
+    }
     // If no assets are in the project, close the Progress Bar and
     // perform the callback immediately.
     if (assets.values().size() == 0 || !loadInProgress) {
@@ -288,10 +313,18 @@ public final class AssetManager implements ProjectChangeListener {
     assetInfo.transferred = true;
     // Let's see if all assets are transferred. If so, fire the
     // assetsTransferredCallback
+    int transferred = 0;
     for (AssetInfo a : assets.values()) {
-      if (!a.transferred) {     // Something didn't get transferred
-        return true;
+      if (a.transferred) {
+        transferred++;
+      }
+    }
+    if (transferred < assets.size()) { // Something didn't get transferred yet
+      if (useWebRTC()) {
+        ConnectProgressBar.setProgress(100 * transferred / assets.size(),
+          MESSAGES.sendingAssetToCompanion(transferredAsset));
       }
+      return true;
     }
     // Dismiss the progress bar if showing
     ConnectProgressBar.hide();
@@ -353,6 +386,10 @@ public final class AssetManager implements ProjectChangeListener {
     return Blockly.ReplMgr.putAsset(projectId, filename, content, function() { window.parent.AssetManager_markAssetTransferred(filename) });
   }-*/;
 
+  private static native boolean doPutAssets(String projectId, JsArrayString fileIds) /*-{
+    return Blockly.ReplMgr.putAssets(projectId, fileIds);
+  }-*/;
+
   private static native void doCallBack(JavaScriptObject callback) /*-{
     if (typeof callback === 'function') callback.call(null);
   }-*/;
@@ -67,12 +67,14 @@ import com.google.appinventor.shared.rpc.RpcResult;
 import com.google.appinventor.shared.rpc.ServerLayout;
 import com.google.appinventor.shared.rpc.admin.AdminInfoService;
 import com.google.appinventor.shared.rpc.admin.AdminInfoServiceAsync;
+import com.google.appinventor.shared.rpc.project.ChecksumedLoadFile;
 import com.google.appinventor.shared.rpc.project.FileNode;
 import com.google.appinventor.shared.rpc.project.ProjectRootNode;
 import com.google.appinventor.shared.rpc.project.ProjectService;
 import com.google.appinventor.shared.rpc.project.ProjectServiceAsync;
 import com.google.appinventor.shared.rpc.project.youngandroid.YoungAndroidSourceNode;
 
+import com.google.appinventor.shared.rpc.user.BootstrapInfo;
 import com.google.appinventor.shared.rpc.user.Config;
 import com.google.appinventor.shared.rpc.user.SplashConfig;
 import com.google.appinventor.shared.rpc.user.User;
@@ -130,6 +132,7 @@ import com.google.gwt.user.client.ui.RootPanel;
 import com.google.gwt.user.client.ui.VerticalPanel;
 import com.google.gwt.user.client.ui.Widget;
 
+import java.util.Map;
 import java.util.Random;
 
 /**
@@ -188,6 +191,10 @@ public class Ode implements EntryPoint {
   // Collection of projects
   private ProjectManager projectManager;
 
+  // What the server sent at startup. The current project's source files are
+  // released once its editors take them.
+  private BootstrapInfo bootstrapInfo;
+
   // Collection of editors
   private EditorManager editorManager;
 
@@ -396,6 +403,15 @@ public class Ode implements EntryPoint {
         @Override
         public void run() {
           ProjectListBox.getProjectListBox().loadProjectList();
+          // Projects may have been changed from another browser
+          projectManager.syncProjects(new Command() {
+            @Override
+            public void execute() {
+              if (currentView == PROJECTS) {
+                ProjectListBox.getProjectListBox().getProjectList().refreshTable(true);
+              }
+            }
+          });
           currentView = PROJECTS;
           getTopToolbar().updateFileMenuButtons(currentView);
           deckPanel.showWidget(projectsTabIndex);
@@ -514,6 +530,23 @@ public class Ode implements EntryPoint {
     return false;
   }
 
+  /**
+   * Returns the form and blocks files of a project that were sent with the
+   * startup data, or null if there are none. They are only returned once.
+   *
+   * @param projectId  project ID
+   * @return  the files by file ID, or null
+   */
+  public Map<String, ChecksumedLoadFile> takePreloadedFiles(long projectId) {
+    if (bootstrapInfo == null || bootstrapInfo.getCurrentProjectId() != projectId
+        || bootstrapInfo.getCurrentProjectFiles() == null) {
+      return null;
+    }
+    Map<String, ChecksumedLoadFile> files = bootstrapInfo.getCurrentProjectFiles();
+    bootstrapInfo.setCurrentProject(0, null, null, null);
+    return files;
+  }
+
   /**
    * Opens the user's last project, if the information is known.
    */
@@ -667,14 +700,15 @@ public class Ode implements EntryPoint {
     ConnectProgressBar.getInstance();
 
     // Get user information.
-    OdeAsyncCallback<Config> callback = new OdeAsyncCallback<Config>(
+    OdeAsyncCallback<BootstrapInfo> callback = new OdeAsyncCallback<BootstrapInfo>(
         // failure message
         MESSAGES.serverUnavailable()) {
 
       @Override
-      public void onSuccess(Config result) {
-        config = result;
-        user = result.getUser();
+      public void onSuccess(final BootstrapInfo result) {
+        bootstrapInfo = result;
+        config = result.getConfig();
+        user = config.getUser();
         isReadOnly = user.isReadOnly();
 
         // Arrange to redirect to the new gallery, which is run as a
@@ -737,8 +771,8 @@ public class Ode implements EntryPoint {
           return;
         }
 
-        splashConfig = result.getSplashConfig();
-        secondBuildserver = result.getSecondBuildserver();
+        splashConfig = config.getSplashConfig();
+        secondBuildserver = config.getSecondBuildserver();
         // The code below is invoked if we do not have a second buildserver
         // configured. It sets the warnedBuild1 flag to true which inhibits
         // the display of the dialog box used when building. This means that
@@ -748,24 +782,29 @@ public class Ode implements EntryPoint {
           warnedBuild1 = true;
         }
 
-        if (result.getRendezvousServer() != null) {
-          setRendezvousServer(result.getRendezvousServer(), true);
+        if (config.getRendezvousServer() != null) {
+          setRendezvousServer(config.getRendezvousServer(), true);
         } else {
           setRendezvousServer(YaVersion.RENDEZVOUS_SERVER, false);
         }
 
         userSettings = new UserSettings(user);
-        userSettings.loadSettings(new Command() {
+        userSettings.loadSettings(result.getUserSettings(), new Command() {
           @Override
           public void execute() {
 
             // Initialize project and editor managers
-            // The project manager loads the user's projects asynchronously
-            projectManager = new ProjectManager();
+            // The project manager adds the user's projects asynchronously
+            projectManager = new ProjectManager(result.getProjects());
             projectManager.addProjectManagerEventListener(new ProjectManagerEventAdapter() {
               @Override
               public void onProjectsLoaded() {
                 projectManager.removeProjectManagerEventListener(this);
+                Project currentProject = projectManager.getProject(result.getCurrentProjectId());
+                if (currentProject != null) {
+                  currentProject.setPreloadedNodes(result.getCurrentProjectRoot(),
+                      result.getCurrentProjectSettings());
+                }
                 // This handles any built-in templates stored in /war
                 // Retrieve template data stored in war/templates folder and
                 // and save it for later use in TemplateUploadWizard
@@ -850,15 +889,15 @@ public class Ode implements EntryPoint {
     // previous project ID is stored in the settings) as well as the splash
     // screen displaying functions below.
     //
-    // TODO(user): ODE makes too many RPC requests at startup time. Currently
-    // we do 3 RPCs + 1 per project + 1 per open file. We should bundle some of
-    // those with each other or with the initial HTML transfer.
+    // The same request returns the user's projects and the nodes and source
+    // files of the project to open, which would otherwise each take a round
+    // trip before the designer can be shown.
     //
     // This call also stores our sessionId in the backend. This will be checked
     // when we go to save a file and if different file saving will be disabled
     // Newer sessions invalidate older sessions.
 
-    userInfoService.getSystemConfig(sessionId, callback);
+    userInfoService.getBootstrapInfo(sessionId, callback);
 
     History.addValueChangeHandler(new ValueChangeHandler<String>() {
       @Override
@@ -17,14 +17,18 @@ import com.google.appinventor.client.explorer.project.Project;
 import com.google.appinventor.client.settings.project.ProjectSettings;
 import com.google.appinventor.shared.rpc.BlocksTruncatedException;
 import com.google.appinventor.shared.rpc.project.FileDescriptorWithContent;
+import com.google.appinventor.shared.rpc.project.FileVersionMismatchException;
 import com.google.appinventor.shared.rpc.project.ProjectRootNode;
+import com.google.appinventor.shared.rpc.project.TextDelta;
 import com.google.common.collect.Maps;
 import com.google.gwt.user.client.Command;
 import com.google.gwt.user.client.Timer;
+import com.google.gwt.user.client.rpc.AsyncCallback;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -51,6 +55,10 @@ public final class EditorManager {
   // TODO(user): Make this configurable.
   private static final int AUTO_SAVE_FORCED_TIMEOUT = 30000;
 
+  // Files at least this long are saved as a delta from the content the server
+  // last acknowledged, unless the delta is more than half the size of the file.
+  private static final int MIN_DELTA_SAVE_LENGTH = 8192;
+
   // Fields used for saving and auto-saving.
   private final Set<ProjectSettings> dirtyProjectSettings;
   private final Set<FileEditor> dirtyFileEditors;
@@ -59,6 +67,27 @@ public final class EditorManager {
   private boolean autoSaveIsScheduled;
   private long autoSaveRequestTime;
 
+  // The content each file had when it was last loaded from or saved to the
+  // server, keyed by project ID and file ID, to compute deltas from.
+  private final Map<String, SavedContent> savedContents;
+
+  private static class SavedContent {
+    final String content;
+    String version;  // computed when first needed
+
+    SavedContent(String content, String version) {
+      this.content = content;
+      this.version = version;
+    }
+
+    String getVersion() {
+      if (version == null) {
+        version = TextDelta.version(content);
+      }
+      return version;
+    }
+  }
+
   private class DateHolder {
     long date;
     long projectId;
@@ -73,6 +102,7 @@ public final class EditorManager {
     dirtyProjectSettings = new HashSet<ProjectSettings>();
     dirtyFileEditors = new HashSet<FileEditor>();
     pendingFileEditors = new HashMap<String,FileEditor>();
+    savedContents = new HashMap<String, SavedContent>();
 
     autoSaveTimer = new Timer() {
       @Override
@@ -150,6 +180,7 @@ public final class EditorManager {
         if (fileEditor != null) {
           dirtyFileEditors.remove(fileEditor);
         }
+        savedContents.remove(savedContentKey(projectId, fileId));
       }
       projectEditor.closeFileEditors(fileIds);
     }
@@ -169,6 +200,28 @@ public final class EditorManager {
     ProjectSettings projectSettings = project.getSettings();
     dirtyProjectSettings.remove(projectSettings);
     openProjectEditors.remove(projectId);
+    String prefix = savedContentKey(projectId, "");
+    for (Iterator<String> it = savedContents.keySet().iterator(); it.hasNext(); ) {
+      if (it.next().startsWith(prefix)) {
+        it.remove();
+      }
+    }
+  }
+
+  /**
+   * Records the content of a file as loaded from the server. The next save
+   * of the file may then send only the changes to that content.
+   *
+   * @param projectId  project ID
+   * @param fileId  file ID
+   * @param content  the file's content on the server
+   */
+  public void setSavedContent(long projectId, String fileId, String content) {
+    savedContents.put(savedContentKey(projectId, fileId), new SavedContent(content, null));
+  }
+
+  private static String savedContentKey(long projectId, String fileId) {
+    return projectId + "/" + fileId;
   }
 
   /**
@@ -392,11 +445,12 @@ public final class EditorManager {
         final long projectId = fileDescriptor.getProjectId();
         final String fileId = fileDescriptor.getFileId();
         final String content = fileDescriptor.getContent();
+        final String savedContentKey = savedContentKey(projectId, fileId);
         Ode.CLog("Saving fileId " + fileId + " for projectId " + projectId);
-        Ode.getInstance().getProjectService().save2(Ode.getInstance().getSessionId(),
-          projectId, fileId, false, content, new OdeAsyncCallback<Long>(MESSAGES.saveErrorMultipleFiles()) {
+        final OdeAsyncCallback<Long> callback = new OdeAsyncCallback<Long>(MESSAGES.saveErrorMultipleFiles()) {
             @Override
             public void onSuccess(Long date) {
+              savedContents.put(savedContentKey, new SavedContent(content, null));
               if (dateHolder.date != 0) {
                 // This sets the project modification time to that of one of
                 // the successful file saves. It doesn't really matter which
@@ -435,7 +489,36 @@ public final class EditorManager {
                 afterSavingFiles.execute();   // of files saved (or not in this case)
               }
             }
-          });
+          };
+
+        final SavedContent saved = savedContents.get(savedContentKey);
+        final TextDelta delta = saved == null || content.length() < MIN_DELTA_SAVE_LENGTH
+            ? null : TextDelta.compute(saved.content, content);
+        if (delta == null || delta.getReplacement().length() > content.length() / 2) {
+          Ode.getInstance().getProjectService().save2(Ode.getInstance().getSessionId(),
+              projectId, fileId, false, content, callback);
+          continue;
+        }
+        Ode.getInstance().getProjectService().saveDelta(Ode.getInstance().getSessionId(),
+            projectId, fileId, false, saved.getVersion(), delta, new AsyncCallback<Long>() {
+              @Override
+              public void onSuccess(Long date) {
+                callback.onSuccess(date);
+                savedContents.get(savedContentKey).version = delta.getVersion();
+              }
+              @Override
+              public void onFailure(Throwable caught) {
+                if (caught instanceof FileVersionMismatchException) {
+                  // The server does not have the content the delta was computed
+                  // from (for instance it was saved from another window), so
+                  // send all of it.
+                  Ode.getInstance().getProjectService().save2(Ode.getInstance().getSessionId(),
+                      projectId, fileId, false, content, callback);
+                } else {
+                  callback.onFailure(caught);
+                }
+              }
+            });
       }
     }
   }
@@ -7,9 +7,9 @@
 package com.google.appinventor.client.editor.simple;
 
 import com.google.appinventor.client.explorer.project.ComponentDatabaseChangeListener;
-import com.google.appinventor.client.properties.json.ClientJsonParser;
 import com.google.appinventor.shared.properties.json.JSONArray;
 import com.google.appinventor.shared.properties.json.JSONObject;
+import com.google.appinventor.shared.properties.json.JSONParser;
 import com.google.appinventor.shared.properties.json.JSONValue;
 import com.google.appinventor.shared.simple.ComponentDatabaseInterface;
 
@@ -32,11 +32,17 @@ class ComponentDatabase implements ComponentDatabaseInterface {
   // Maps component names to component descriptors
   private final Map<String, ComponentDefinition> components;
 
-  // Components in JSON String generated from internal components
-  private final String internalComponentsJSONString;
+  // The internal components, which the database is reset to
+  private final Map<String, ComponentDefinition> internalComponents;
   // Components in JSON String generated from components
   private String componentsJSONString;
 
+  // The descriptors of components loaded from an index whose properties,
+  // events and methods have not been read yet. See getLoadedDefinition.
+  private final Map<ComponentDefinition, String> unreadDescriptors =
+      new HashMap<ComponentDefinition, String>();
+  private final JSONParser parser;
+
   private final List<ComponentDatabaseChangeListener> componentDatabaseChangeListeners =
       new ArrayList<ComponentDatabaseChangeListener>();
 
@@ -47,18 +53,36 @@ class ComponentDatabase implements ComponentDatabaseInterface {
    *          a JSONArray of components
    */
   ComponentDatabase(JSONArray array) {
+    this(array, null);
+  }
+
+  /**
+   * Creates a new component database from the index written along with the
+   * component descriptors by ComponentDescriptorGenerator. The properties,
+   * events and methods of a component are only read from its descriptor
+   * when they are first asked for.
+   *
+   * @param index
+   *          a JSONArray of index entries, or of components if parser is null
+   * @param parser
+   *          the parser for the descriptors in the index
+   */
+  ComponentDatabase(JSONArray index, JSONParser parser) {
+    this.parser = parser;
     components = new HashMap<String, ComponentDefinition>();
     List<String> newComponents = new ArrayList<String>();
-    for (JSONValue component : array.getElements()) {
+    for (JSONValue component : index.getElements()) {
       if (component.asObject().get("external").asString().getString().equals("true")) {
         continue;
       }
-      if (initComponent(component.asObject())) {
+      boolean added = parser == null ? initComponent(component.asObject())
+          : initComponentFromIndex(component.asObject());
+      if (added) {
         newComponents.add(component.asObject().get("name").asString().getString());
       }
     }
-    internalComponentsJSONString = generateComponentsJSON();
-    componentsJSONString = internalComponentsJSONString;
+    internalComponents = new HashMap<String, ComponentDefinition>(components);
+    componentsJSONString = generateComponentsJSON();
     fireComponentsAdded(newComponents);
   }
 
@@ -107,8 +131,9 @@ class ComponentDatabase implements ComponentDatabaseInterface {
    */
   public void resetDatabase() {
     components.clear();
-    componentsJSONString = "";
-    addComponents(new ClientJsonParser().parse(internalComponentsJSONString).asArray());
+    components.putAll(internalComponents);
+    componentsJSONString = generateComponentsJSON();
+    fireComponentsAdded(new ArrayList<String>(internalComponents.keySet()));
     fireResetDatabase();
   }
 
@@ -118,11 +143,23 @@ class ComponentDatabase implements ComponentDatabaseInterface {
   }
 
   public ComponentDefinition getComponentDefinition(String componentName) {
+    return getLoadedDefinition(componentName);
+  }
+
+  /*
+   * Returns the definition of a component, after reading its properties,
+   * events and methods from its descriptor if that has not been done yet.
+   */
+  private ComponentDefinition getLoadedDefinition(String componentName) {
     ComponentDefinition component = components.get(componentName);
     if (component == null) {
       throw new ComponentNotFoundException(componentName);
     }
 
+    String descriptor = unreadDescriptors.remove(component);
+    if (descriptor != null) {
+      findComponentMembers(component, parser.parse(descriptor).asObject().getProperties());
+    }
     return component;
   }
 
@@ -266,51 +303,31 @@ class ComponentDatabase implements ComponentDatabaseInterface {
 
   @Override
   public List<PropertyDefinition> getPropertyDefinitions(String componentName) {
-    ComponentDefinition component = components.get(componentName);
-    if (component == null) {
-      throw new ComponentNotFoundException(componentName);
-    }
-
+    ComponentDefinition component = getLoadedDefinition(componentName);
     return component.getProperties();
   }
 
   @Override
   public List<BlockPropertyDefinition> getBlockPropertyDefinitions(String componentName) {
-    ComponentDefinition component = components.get(componentName);
-    if (component == null) {
-      throw new ComponentNotFoundException(componentName);
-    }
-
+    ComponentDefinition component = getLoadedDefinition(componentName);
     return component.getBlockProperties();
   }
 
   @Override
   public List<EventDefinition> getEventDefinitions(String componentName) {
-    ComponentDefinition component = components.get(componentName);
-    if (component == null) {
-      throw new ComponentNotFoundException(componentName);
-    }
-
+    ComponentDefinition component = getLoadedDefinition(componentName);
     return component.getEvents();
   }
 
   @Override
   public List<MethodDefinition> getMethodDefinitions(String componentName) {
-    ComponentDefinition component = components.get(componentName);
-    if (component == null) {
-      throw new ComponentNotFoundException(componentName);
-    }
-
+    ComponentDefinition component = getLoadedDefinition(componentName);
     return component.getMethods();
   }
 
   @Override
   public Map<String, String> getPropertyTypesByName(String componentName) {
-    ComponentDefinition component = components.get(componentName);
-    if (component == null) {
-      throw new ComponentNotFoundException(componentName);
-    }
-
+    ComponentDefinition component = getLoadedDefinition(componentName);
     return component.getPropertiesTypesByName();
   }
 
@@ -334,12 +351,34 @@ class ComponentDatabase implements ComponentDatabaseInterface {
    */
   private boolean initComponent(JSONObject componentNode) {
     Map<String, JSONValue> properties = componentNode.getProperties();
+    ComponentDefinition component = createComponentDefinition(properties,
+        componentNode.toJson());
+    findComponentMembers(component, properties);
+    components.put(component.getName(), component);
+    return true;
+  }
+
+  /*
+   * Creates a component descriptor from an entry of the index, leaving its
+   * properties, events and methods to be read when they are needed.
+   */
+  private boolean initComponentFromIndex(JSONObject indexEntry) {
+    Map<String, JSONValue> properties = indexEntry.getProperties();
+    String descriptor = properties.get("descriptor").asString().getString();
+    ComponentDefinition component = createComponentDefinition(properties, descriptor);
+    unreadDescriptors.put(component, descriptor);
+    components.put(component.getName(), component);
+    return true;
+  }
+
+  private ComponentDefinition createComponentDefinition(Map<String, JSONValue> properties,
+      String typeDescription) {
     String name = properties.get("name").asString().getString();
     if(components.containsKey(name)) {
       // This must be a component upgrade! We remove existing entry
       components.remove(name);
     }
-    ComponentDefinition component = new ComponentDefinition(name,
+    return new ComponentDefinition(name,
         Integer.parseInt(properties.get("version").asString().getString()),
         optString(properties.get("versionName"), ""),
         optString(properties.get("dateBuilt"), ""),
@@ -352,13 +391,15 @@ class ComponentDatabase implements ComponentDatabaseInterface {
         Boolean.valueOf(properties.get("nonVisible").asString().getString()),
         properties.get("iconName").asString().getString(),
         properties.containsKey("licenseName") ? properties.get("licenseName").asString().getString() : "",
-        componentNode.toJson());
+        typeDescription);
+  }
+
+  private void findComponentMembers(ComponentDefinition component,
+      Map<String, JSONValue> properties) {
     findComponentProperties(component, properties.get("properties").asArray());
     findComponentBlockProperties(component, properties.get("blockProperties").asArray());
     findComponentEvents(component, properties.get("events").asArray());
     findComponentMethods(component, properties.get("methods").asArray());
-    components.put(component.getName(), component);
-    return true;
   }
 
   /**
@@ -1093,6 +1093,7 @@ public abstract class MockComponent extends Composite implements PropertyChangeL
    *
    */
   final void refreshForm(boolean force) {
+    invalidateLayout();
     if (isAttached()) {
       if (getContainer() != null || isForm()) {
         if (force) {
@@ -1114,6 +1115,8 @@ public abstract class MockComponent extends Composite implements PropertyChangeL
 
   @Override
   public void onPropertyChange(String propertyName, String newValue) {
+    // Most properties change how the component looks, and so its size
+    invalidateLayout();
     if (propertyName.equals(PROPERTY_NAME_NAME)) {
       setTitle(newValue);
     } else if (getContainer() != null || isForm()) {
@@ -1147,16 +1150,82 @@ public abstract class MockComponent extends Composite implements PropertyChangeL
 
   // Layout
 
+  private static final int UNMEASURED = Integer.MIN_VALUE;
+
+  // The number of components measured since the count was last reset, see
+  // MockForm.doRefresh
+  static int measurementCount;
+
+  // True if this component, or a component inside it, has to be measured in
+  // the next layout pass. See invalidateLayout.
+  boolean layoutDirty = true;
+
+  // The preferred size measured in an earlier layout pass. Measuring asks
+  // the browser for the size, which makes it lay out the page, so it is only
+  // done again after something changes the size.
+  private int measuredWidth = UNMEASURED;
+  private int measuredHeight = UNMEASURED;
+
+  // The size and position that the container last gave this component, or
+  // null if they have to be set again
+  private int[] layoutGeometry;
+
+  /**
+   * Marks this component to be measured again in the next layout pass, and
+   * the containers around it as containing a component that is. Marking
+   * stops at the first container that is already marked.
+   */
+  final void invalidateLayout() {
+    measuredWidth = UNMEASURED;
+    measuredHeight = UNMEASURED;
+    layoutDirty = true;
+    for (MockContainer container = getContainer();
+         container != null && !container.layoutDirty;
+         container = container.getContainer()) {
+      container.layoutDirty = true;
+    }
+  }
+
+  /**
+   * Records the size and position the container gives this component.
+   *
+   * @return false if the component already has that size and position
+   */
+  final boolean setLayoutGeometry(int x, int y, int width, int height) {
+    if (layoutGeometry != null && layoutGeometry[0] == x && layoutGeometry[1] == y
+        && layoutGeometry[2] == width && layoutGeometry[3] == height) {
+      return false;
+    }
+    layoutGeometry = new int[] { x, y, width, height };
+    return true;
+  }
+
+  /**
+   * Forgets the size and position given to this component, after it has been
+   * changed other than by its container.
+   */
+  final void forgetLayoutGeometry() {
+    layoutGeometry = null;
+  }
+
   LayoutInfo createLayoutInfo(Map<MockComponent, LayoutInfo> layoutInfoMap) {
     return new LayoutInfo(layoutInfoMap, this) {
       @Override
       int calculateAutomaticWidth() {
-        return getPreferredWidth();
+        if (measuredWidth == UNMEASURED) {
+          measuredWidth = getPreferredWidth();
+          measurementCount++;
+        }
+        return measuredWidth;
       }
 
       @Override
       int calculateAutomaticHeight() {
-        return getPreferredHeight();
+        if (measuredHeight == UNMEASURED) {
+          measuredHeight = getPreferredHeight();
+          measurementCount++;
+        }
+        return measuredHeight;
       }
     };
   }
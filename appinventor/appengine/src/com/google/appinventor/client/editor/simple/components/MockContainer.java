@@ -156,6 +156,8 @@ public abstract class MockContainer extends MockVisibleComponent implements Drop
   private void addComponent(MockComponent component, int beforeIndex) {
     // Set the container to be the parent of the component
     component.setContainer(this);
+    component.forgetLayoutGeometry();
+    component.invalidateLayout();
 
     // Add the component as a child component of the container
     if (beforeIndex == -1) {
@@ -226,6 +228,9 @@ public abstract class MockContainer extends MockVisibleComponent implements Drop
    */
   final void setChildSizeAndPosition(MockComponent child, LayoutInfo childLayoutInfo,
       int x, int y) {
+    if (!child.setLayoutGeometry(x, y, childLayoutInfo.width, childLayoutInfo.height)) {
+      return;  // Unchanged since the last layout pass
+    }
     child.setPixelSize(childLayoutInfo.width, childLayoutInfo.height);
     // Note that the actual size of the child will be larger than childLayoutInfo.width X
     // childLayoutInfo.height because the actual size will include the CSS border.
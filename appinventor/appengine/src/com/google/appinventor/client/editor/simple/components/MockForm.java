@@ -19,12 +19,14 @@ import com.google.appinventor.client.widgets.properties.EditableProperties;
 import com.google.appinventor.components.common.ComponentConstants;
 import com.google.appinventor.components.common.PropertyTypeConstants;
 import com.google.appinventor.shared.settings.SettingsConstants;
+import com.google.gwt.core.client.Duration;
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.ScheduledCommand;
 import com.google.gwt.dom.client.DivElement;
 import com.google.gwt.dom.client.Document;
 import com.google.gwt.dom.client.Element;
 import com.google.gwt.dom.client.NativeEvent;
 import com.google.gwt.dom.client.Style;
-import com.google.gwt.user.client.Timer;
 import com.google.gwt.user.client.Window;
 import com.google.gwt.user.client.ui.AbsolutePanel;
 import com.google.gwt.user.client.ui.Button;
@@ -1039,7 +1041,7 @@ public final class MockForm extends MockContainer {
       phoneBar.setIconColor(blackIcons, idxPhoneSize);
       titleBar.changeBookmarkIcon(blackIcons);
     }
-
+    invalidateAllLayout(this);
   }
 
   /**
@@ -1071,21 +1073,28 @@ public final class MockForm extends MockContainer {
    * one project that was this big and reasonable!).  -Jeff Schiller
    * (jis@mit.edu).
    *
+   * The refresh is now done at the end of the browser event in which it
+   * was asked for, so that all of the changes made in handling the event
+   * are laid out together, before the browser draws the page again.
+   *
    */
 
-  private Timer refreshTimer = null;
+  private boolean refreshScheduled = false;
   public final void refresh() {
-    if (refreshTimer != null) return;
-    refreshTimer = new Timer() {
+    if (refreshScheduled) return;
+    refreshScheduled = true;
+    Scheduler.get().scheduleFinally(new ScheduledCommand() {
       @Override
-      public void run() {
+      public void execute() {
+        refreshScheduled = false;
         doRefresh();
-        refreshTimer = null;
       }
-    };
-    refreshTimer.schedule(0);
+    });
   }
 
+  // The number of layout passes done, reported in the debug log
+  private int layoutPassCount = 0;
+
   /*
    * Do the actual refresh.
    *
@@ -1095,6 +1104,14 @@ public final class MockForm extends MockContainer {
    */
 
   public final void doRefresh() {
+    if (!isDisplayed()) {
+      // The screen is attached but not shown, as the screens other than the
+      // current one are, and everything in it would measure as 0. Everything
+      // is left to be measured when it is shown and refreshed again.
+      return;
+    }
+    double start = Duration.currentTimeMillis();
+    MockComponent.measurementCount = 0;
     Map<MockComponent, LayoutInfo> layoutInfoMap = new HashMap<MockComponent, LayoutInfo>();
 
     collectLayoutInfos(layoutInfoMap, this);
@@ -1104,10 +1121,39 @@ public final class MockForm extends MockContainer {
     rootPanel.setPixelSize(formLayoutInfo.width,
         Math.max(formLayoutInfo.height, usableScreenHeight));
 
+    int componentCount = layoutInfoMap.size();
     for (LayoutInfo layoutInfo : layoutInfoMap.values()) {
       layoutInfo.cleanUp();
     }
     layoutInfoMap.clear();
+
+    layoutPassCount++;
+    if (OdeLog.isLogAvailable()) {
+      OdeLog.log("Layout pass " + layoutPassCount + " of " + getName() + ": "
+          + componentCount + " components, " + MockComponent.measurementCount + " measured, "
+          + (int) (Duration.currentTimeMillis() - start) + " ms");
+    }
+  }
+
+  /*
+   * Whether the form is on the page and shown, so that its components can be
+   * measured. A hidden element has no offset width.
+   */
+  private boolean isDisplayed() {
+    return isAttached() && getElement().getOffsetWidth() > 0;
+  }
+
+  /*
+   * Marks every component to be measured again, after a change to the form
+   * that can change how all of them look.
+   */
+  private void invalidateAllLayout(MockComponent component) {
+    component.invalidateLayout();
+    if (component instanceof MockContainer) {
+      for (MockComponent child : ((MockContainer) component).getChildren()) {
+        invalidateAllLayout(child);
+      }
+    }
   }
 
   /*
@@ -1127,18 +1173,27 @@ public final class MockForm extends MockContainer {
 
     // If this component is a container, collect the LayoutInfos of its children.
     if (component instanceof MockContainer) {
-      if (!layoutInfo.visibleChildren.isEmpty()) {
+      // Children that were hidden have to be measured once they are shown
+      for (MockComponent child : layoutInfo.visibleChildren) {
+        if (!child.isVisible()) {
+          child.invalidateLayout();
+        }
+      }
+      if (!layoutInfo.visibleChildren.isEmpty() && component.layoutDirty) {
         // We resize the container to be very large so that we get accurate
         // results when we ask for a child's size using getOffsetWidth/getOffsetHeight.
         // If the container is its normal size (or perhaps the default empty
         // size), then the browser won't give us anything bigger than that
-        // when we ask for a child's size.
+        // when we ask for a child's size. This is only needed if something
+        // in the container has to be measured.
         if (component.isForm()) {
           ((MockForm) component).rootPanel.setPixelSize(1000, 1000);
         } else {
           component.setPixelSize(1000, 1000);
+          component.forgetLayoutGeometry();
         }
-
+      }
+      if (!layoutInfo.visibleChildren.isEmpty()) {
         // Show children that should be shown and collect their layoutInfos.
         // Note that some MockLayout implementations may hide children that are in the
         // visibleChildren list. For example, in MockTableLayout, if two or more children occupy
@@ -1156,6 +1211,7 @@ public final class MockForm extends MockContainer {
     }
 
     layoutInfo.gatherDimensions();
+    component.layoutDirty = false;
   }
 
   /**
@@ -1246,6 +1302,7 @@ public final class MockForm extends MockContainer {
    * Triggers the DesignChangePreviewChange listeners
    */
   protected void fireDesignPreviewChange() {
+    invalidateAllLayout(this);
     for (DesignPreviewChangeListener listener : designPreviewChangeListeners) {
       listener.onDesignPreviewChanged();
     }
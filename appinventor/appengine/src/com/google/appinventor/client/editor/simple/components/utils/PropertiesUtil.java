@@ -63,7 +63,9 @@ import com.google.appinventor.client.widgets.properties.TextPropertyEditor;
 import com.google.appinventor.components.common.PropertyTypeConstants;
 import com.google.appinventor.shared.simple.ComponentDatabaseInterface;
 
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 
 /**
@@ -241,6 +243,12 @@ public class PropertiesUtil {
       return new NonNegativeIntegerPropertyEditor();
     } else if (editorType.equals(PropertyTypeConstants.PROPERTY_TYPE_SCREEN_ORIENTATION)) {
       return new YoungAndroidScreenOrientationChoicePropertyEditor();
+    } else if (editorType.equals(PropertyTypeConstants.PROPERTY_TYPE_SAMPLED_SENSOR)) {
+      // The components that implement SampledSensor.
+      return new YoungAndroidComponentSelectorPropertyEditor(editor,
+          new HashSet<String>(Arrays.asList("AccelerometerSensor", "Barometer",
+              "GyroscopeSensor", "Hygrometer", "LightSensor", "MagneticFieldSensor",
+              "OrientationSensor", "Thermometer")));
     } else if (editorType.equals(PropertyTypeConstants.PROPERTY_TYPE_SCREEN_ANIMATION)) {
       return new YoungAndroidScreenAnimationChoicePropertyEditor();
     } else if (editorType.equals(PropertyTypeConstants.PROPERTY_TYPE_SENSOR_DIST_INTERVAL)) {
@@ -177,6 +177,7 @@ public final class YaBlocksEditor extends FileEditor
           this.onFailure(e);
           return;
         }
+        Ode.getInstance().getEditorManager().setSavedContent(projectId, fileId, blkFileContent);
         String formJson = myFormEditor.preUpgradeJsonString(); // [lyn, 2014/10/27] added formJson for upgrading
         try {
           blocksArea.loadBlocksContent(formJson, blkFileContent);
@@ -199,7 +200,7 @@ public final class YaBlocksEditor extends FileEditor
         super.onFailure(caught);
       }
     };
-    Ode.getInstance().getProjectService().load2(projectId, fileId, callback);
+    ((YaProjectEditor) projectEditor).loadSourceFile(projectId, fileId, callback);
   }
 
   @Override
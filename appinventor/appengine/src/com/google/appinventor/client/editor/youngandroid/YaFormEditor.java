@@ -88,6 +88,7 @@ public final class YaFormEditor extends SimpleEditor implements FormChangeListen
 
   private static class FileContentHolder {
     private String content;
+    private JSONObject properties;
 
     FileContentHolder(String content) {
       this.content = content;
@@ -100,6 +101,14 @@ public final class YaFormEditor extends SimpleEditor implements FormChangeListen
     String getFileContent() {
       return content;
     }
+
+    void setProperties(JSONObject properties) {
+      this.properties = properties;
+    }
+
+    JSONObject getProperties() {
+      return properties;
+    }
   }
 
   private static final String ERROR_EXISTING_UUID = "Component with UUID \"%1$s\" already exists.";
@@ -222,12 +231,13 @@ public final class YaFormEditor extends SimpleEditor implements FormChangeListen
           this.onFailure(e);
           return;
         }
+        Ode.getInstance().getEditorManager().setSavedContent(projectId, fileId, contents);
         final FileContentHolder fileContentHolder = new FileContentHolder(contents);
         upgradeFile(fileContentHolder, new Command() {
           @Override
           public void execute() {
             try {
-              onFileLoaded(fileContentHolder.getFileContent());
+              onFileLoaded(fileContentHolder.getProperties());
             } catch(IllegalArgumentException e) {
               return;
             }
@@ -245,7 +255,7 @@ public final class YaFormEditor extends SimpleEditor implements FormChangeListen
         super.onFailure(caught);
       }
     };
-    Ode.getInstance().getProjectService().load2(projectId, fileId, callback);
+    ((YaProjectEditor) projectEditor).loadSourceFile(projectId, fileId, callback);
   }
 
   @Override
@@ -427,6 +437,9 @@ public final class YaFormEditor extends SimpleEditor implements FormChangeListen
    * If no upgrade is necessary, the afterSavingFiles command is called
    * immediately.
    *
+   * The parsed properties are left in the fileContentHolder, so that they
+   * need not be parsed again to create the form.
+   *
    * @param fileContentHolder  holds the file content
    * @param afterUpgradeComplete  optional command to be executed after the
    *                              file has upgraded and saved back to the ODE
@@ -434,8 +447,12 @@ public final class YaFormEditor extends SimpleEditor implements FormChangeListen
    */
   private void upgradeFile(FileContentHolder fileContentHolder,
       final Command afterUpgradeComplete) {
-    JSONObject propertiesObject = YoungAndroidSourceAnalyzer.parseSourceFile(
-        fileContentHolder.getFileContent(), JSON_PARSER);
+    // Remember the pre-upgrade component versions for the blocks editor, as the text that was
+    // read rather than generated again from the parsed properties.
+    preUpgradeJsonString = YoungAndroidSourceAnalyzer.getJsonSection(
+        fileContentHolder.getFileContent());
+    JSONObject propertiesObject = JSON_PARSER.parse(preUpgradeJsonString).asObject();
+    fileContentHolder.setProperties(propertiesObject);
 
     // BEGIN PROJECT TAGGING CODE
 
@@ -497,7 +514,6 @@ public final class YaFormEditor extends SimpleEditor implements FormChangeListen
 
     // END OF PROJECT TAGGING CODE
 
-    preUpgradeJsonString =  propertiesObject.toJson(); // [lyn, [2014/10/13] remember pre-upgrade component versions.
     if (YoungAndroidFormUpgrader.upgradeSourceProperties(propertiesObject.getProperties())) {
       String upgradedContent = YoungAndroidSourceAnalyzer.generateSourceFile(propertiesObject);
       fileContentHolder.setFileContent(upgradedContent);
@@ -528,9 +544,7 @@ public final class YaFormEditor extends SimpleEditor implements FormChangeListen
     }
   }
 
-  private void onFileLoaded(String content) {
-    JSONObject propertiesObject = YoungAndroidSourceAnalyzer.parseSourceFile(
-        content, JSON_PARSER);
+  private void onFileLoaded(JSONObject propertiesObject) {
     try {
       form = createMockForm(propertiesObject.getProperties().get("Properties").asObject());
     } catch(ComponentNotFoundException e) {
@@ -90,6 +90,16 @@ public final class YaProjectEditor extends ProjectEditor implements ProjectChang
   private final Map<String, String> extensionToNodeName = new HashMap<>();
   private final Map<String, Set<String>> extensionsInNode = new HashMap<>();
 
+  // Contents of the form and blocks files, keyed by file id, fetched in a
+  // single request when the project is loaded. Each entry is handed out once
+  // by loadSourceFile.
+  private final Map<String, ChecksumedLoadFile> preloadedFiles = new HashMap<>();
+
+  // Extension descriptors parsed in this session, keyed by the checksum of
+  // their content, so that opening another project with the same extension
+  // does not parse it again
+  private static final Map<String, JSONValue> parsedExtensionDescriptors = new HashMap<>();
+
   // Number of external component descriptors loaded since there is no longer a 1-1 correspondence
   private volatile int numExternalComponentsLoaded = 0;
 
@@ -546,9 +556,12 @@ public final class YaProjectEditor extends ProjectEditor implements ProjectChang
           this.onFailure(e);
           return;
         }
-        JSONValue value = null;
+        JSONValue value = parsedExtensionDescriptors.get(result.getChecksum());
         try {
-          value = new ClientJsonParser().parse(jsonFileContent);
+          if (value == null) {
+            value = new ClientJsonParser().parse(jsonFileContent);
+            parsedExtensionDescriptors.put(result.getChecksum(), value);
+          }
         } catch(JSONException e) {
           // thrown if jsonFileContent is not valid JSON
           String[] parts = fileId.split("/");
@@ -673,12 +686,83 @@ public final class YaProjectEditor extends ProjectEditor implements ProjectChang
         if (!readyToLoadProject()) { // wait till project is processed
           Scheduler.get().scheduleDeferred(this);
         } else {
-          loadProject();
+          preloadSourceFiles(new Command() {
+            @Override
+            public void execute() {
+              loadProject();
+            }
+          });
         }
       }
     });
   }
 
+  /*
+   * Fetches the form and blocks files of every screen in one request rather
+   * than having each editor request its own file. If the request fails the
+   * editors fall back to loading their files individually.
+   */
+  private void preloadSourceFiles(final Command afterPreload) {
+    Map<String, ChecksumedLoadFile> startupFiles = Ode.getInstance().takePreloadedFiles(projectId);
+    if (startupFiles != null) {
+      // Sent by the server with the rest of the startup data
+      preloadedFiles.putAll(startupFiles);
+      afterPreload.execute();
+      return;
+    }
+    final List<String> fileIds = new ArrayList<String>();
+    for (ProjectNode source : projectRootNode.getAllSourceNodes()) {
+      if (source instanceof YoungAndroidFormNode || source instanceof YoungAndroidBlocksNode) {
+        fileIds.add(source.getFileId());
+      }
+    }
+    if (fileIds.isEmpty()) {
+      afterPreload.execute();
+      return;
+    }
+    Ode.getInstance().getProjectService().load2(projectId, fileIds,
+        new AsyncCallback<List<ChecksumedLoadFile>>() {
+          @Override
+          public void onSuccess(List<ChecksumedLoadFile> result) {
+            for (int i = 0; i < fileIds.size(); i++) {
+              preloadedFiles.put(fileIds.get(i), result.get(i));
+            }
+            afterPreload.execute();
+          }
+
+          @Override
+          public void onFailure(Throwable caught) {
+            OdeLog.wlog("Unable to preload source files for project " + projectId + ": "
+                + caught.getMessage());
+            afterPreload.execute();
+          }
+        });
+  }
+
+  /**
+   * Loads the content of a form or blocks file, using the copy fetched when
+   * the project was loaded if there is one. The callback is always invoked
+   * asynchronously.
+   *
+   * @param projectId  project ID
+   * @param fileId  file ID
+   * @param callback  callback to receive the file
+   */
+  void loadSourceFile(long projectId, String fileId,
+      final AsyncCallback<ChecksumedLoadFile> callback) {
+    final ChecksumedLoadFile preloaded = preloadedFiles.remove(fileId);
+    if (preloaded == null) {
+      Ode.getInstance().getProjectService().load2(projectId, fileId, callback);
+    } else {
+      Scheduler.get().scheduleDeferred(new Scheduler.ScheduledCommand() {
+        @Override
+        public void execute() {
+          callback.onSuccess(preloaded);
+        }
+      });
+    }
+  }
+
   private void loadExternalComponents() {
     //Get the list of all ComponentNodes to be Added
     List<ProjectNode> componentNodes = new ArrayList<ProjectNode>();
@@ -82,6 +82,21 @@ public final class Project {
     }
   }
 
+  /**
+   * Uses nodes and settings that were loaded with the rest of the startup
+   * data instead of loading them from the backend.
+   *
+   * @param rootNode  the project's root node
+   * @param encodedSettings  the project's settings
+   */
+  public void setPreloadedNodes(ProjectRootNode rootNode, String encodedSettings) {
+    if (projectRoot == null && !loadingInProgress) {
+      settings = new ProjectSettings(this);
+      settings.loadSettings(encodedSettings);
+      projectRoot = rootNode;
+    }
+  }
+
   /**
    * Returns the id of this project.
    *
@@ -249,6 +264,17 @@ public final class Project {
     return projectInfo.isInTrash();
   }
 
+  /*
+   * Records a change made elsewhere, see ProjectManager.syncProjects.
+   */
+  void setInTrash(boolean inTrash) {
+    if (inTrash) {
+      projectInfo.moveToTrash();
+    } else {
+      projectInfo.restoreFromTrash();
+    }
+  }
+
   /**
    * Adds a {@link ProjectChangeListener} to the listener list.
    *
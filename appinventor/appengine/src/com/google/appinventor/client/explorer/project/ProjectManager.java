@@ -9,13 +9,18 @@ package com.google.appinventor.client.explorer.project;
 import com.google.appinventor.client.Ode;
 import static com.google.appinventor.client.Ode.MESSAGES;
 import com.google.appinventor.client.OdeAsyncCallback;
+import com.google.appinventor.shared.rpc.project.ProjectListPage;
 import com.google.appinventor.shared.rpc.project.ProjectNode;
 import com.google.appinventor.shared.rpc.project.UserProject;
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.user.client.Command;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * This class manages projects.
@@ -23,6 +28,9 @@ import java.util.Map;
  * @author lizlooney@google.com (Liz Looney)
  */
 public final class ProjectManager {
+  // The number of projects fetched at a time after the first page
+  private static final int PAGE_SIZE = 500;
+
   // Map to find the project from a project ID.
   private final Map<Long, Project> projectsMap;
 
@@ -35,22 +43,138 @@ public final class ProjectManager {
   private volatile boolean projectsLoaded = false;
 
   /**
-   * Creates a new projects manager.
+   * The server's time when the project list was last read, to fetch the
+   * changes since.
+   */
+  private long listTimestamp;
+
+  /**
+   * Creates a new projects manager, starting from the first page of projects
+   * that the server has already sent. The rest are fetched a page at a time.
+   * As when loading them, the projects are added after the caller returns,
+   * so that listeners can be registered first.
+   *
+   * @param firstPage  the user's most recently modified projects
    */
-  public ProjectManager() {
+  public ProjectManager(final ProjectListPage firstPage) {
     projectsMap = new HashMap<Long, Project>();
     projectManagerEventListeners = new ArrayList<ProjectManagerEventListener>();
-    Ode.getInstance().getProjectService().getProjectInfos(
-      new OdeAsyncCallback<List<UserProject>>(
-        MESSAGES.projectInformationRetrievalError()) {
+    listTimestamp = firstPage.getTimestamp();
+    Scheduler.get().scheduleDeferred(new Scheduler.ScheduledCommand() {
+      @Override
+      public void execute() {
+        addPage(firstPage.getProjects());
+        if (firstPage.getProjects().size() >= firstPage.getTotalCount()) {
+          fireProjectsLoaded();
+        } else {
+          loadPages(firstPage.getProjects().size(), firstPage.getTotalCount());
+        }
+      }
+    });
+  }
+
+  private void addPage(List<UserProject> projectInfos) {
+    for (UserProject projectInfo : projectInfos) {
+      // A project modified while the pages are fetched moves to an earlier
+      // page, pushing the others back, so some come twice
+      if (!projectsMap.containsKey(projectInfo.getProjectId())) {
+        addProject(projectInfo);
+      }
+    }
+  }
+
+  private void loadPages(final int start, int totalCount) {
+    if (start >= totalCount) {
+      // Pick up whatever changed while the pages were fetched
+      fetchChanges(new Command() {
         @Override
-        public void onSuccess(List<UserProject> projectInfos) {
-          for (UserProject projectInfo : projectInfos) {
-            addProject(projectInfo);
-          }
+        public void execute() {
           fireProjectsLoaded();
         }
       });
+      return;
+    }
+    Ode.getInstance().getProjectService().getProjectListPage(
+        ProjectListPage.SORT_BY_DATE_MODIFIED, false, start, PAGE_SIZE,
+        new OdeAsyncCallback<ProjectListPage>(MESSAGES.projectInformationRetrievalError()) {
+          @Override
+          public void onSuccess(ProjectListPage page) {
+            addPage(page.getProjects());
+            loadPages(start + PAGE_SIZE, page.getTotalCount());
+          }
+        });
+  }
+
+  /**
+   * Fetches the changes to the user's projects since the list was last read,
+   * for instance from another browser, and applies them.
+   *
+   * @param afterSync  command to run once the changes have been applied, or
+   *                   null
+   */
+  public void syncProjects(Command afterSync) {
+    if (!projectsLoaded) {
+      // The list is still being fetched, and will be synced when it is done
+      if (afterSync != null) {
+        afterSync.execute();
+      }
+      return;
+    }
+    fetchChanges(afterSync);
+  }
+
+  private void fetchChanges(final Command afterSync) {
+    Ode.getInstance().getProjectService().getProjectListChanges(listTimestamp,
+        new OdeAsyncCallback<ProjectListPage>(MESSAGES.projectInformationRetrievalError()) {
+          @Override
+          public void onSuccess(ProjectListPage changes) {
+            listTimestamp = changes.getTimestamp();
+            for (UserProject projectInfo : changes.getProjects()) {
+              Project project = projectsMap.get(projectInfo.getProjectId());
+              if (project == null) {
+                addProject(projectInfo);
+              } else {
+                project.setDateModified(projectInfo.getDateModified());
+                if (projectInfo.isInTrash() && !project.isInTrash()) {
+                  project.setInTrash(true);
+                  fireProjectTrashed(project);
+                } else if (!projectInfo.isInTrash() && project.isInTrash()) {
+                  project.setInTrash(false);
+                  fireTrashProjectRestored(project);
+                }
+              }
+            }
+            Set<Long> projectIds = new HashSet<Long>(changes.getProjectIds());
+            for (Project project : new ArrayList<Project>(projectsMap.values())) {
+              // A project created after the changes were read is not listed
+              if (!projectIds.contains(project.getProjectId())
+                  && project.getDateCreated() < changes.getTimestamp()) {
+                removeDeletedProject(project.getProjectId());
+              }
+            }
+            projectIds.removeAll(projectsMap.keySet());
+            if (!projectIds.isEmpty()) {
+              // A project was deleted while the pages were fetched, so a page
+              // started later than it should have. Read the whole list.
+              loadMissingProjects(afterSync);
+            } else if (afterSync != null) {
+              afterSync.execute();
+            }
+          }
+        });
+  }
+
+  private void loadMissingProjects(final Command afterSync) {
+    Ode.getInstance().getProjectService().getProjectInfos(
+        new OdeAsyncCallback<List<UserProject>>(MESSAGES.projectInformationRetrievalError()) {
+          @Override
+          public void onSuccess(List<UserProject> projectInfos) {
+            addPage(projectInfos);
+            if (afterSync != null) {
+              afterSync.execute();
+            }
+          }
+        });
   }
 
   /**
@@ -27,6 +27,7 @@ import com.google.gwt.event.logical.shared.ValueChangeHandler;
 
 import com.google.gwt.i18n.client.DateTimeFormat;
 
+import com.google.gwt.user.client.Window;
 import com.google.gwt.user.client.ui.CheckBox;
 import com.google.gwt.user.client.ui.Composite;
 import com.google.gwt.user.client.ui.Grid;
@@ -49,6 +50,10 @@ import static com.google.appinventor.client.Ode.MESSAGES;
  *
  * <p> The project name, date created, and date modified will be shown in the table.
  *
+ * <p> Only the rows near the top are built at first, and more are added as the
+ * page is scrolled towards the end of the table, so that long lists do not
+ * have to be built all at once.
+ *
  * @author lizlooney@google.com (Liz Looney)
  */
 public class ProjectList extends Composite implements ProjectManagerEventListener {
@@ -61,12 +66,27 @@ public class ProjectList extends Composite implements ProjectManagerEventListene
     ASCENDING,
     DESCENDING,
   }
+  // The number of rows added to the table at a time
+  private static final int ROWS_PER_RENDER = 100;
+  // How close to the end of the table, in pixels, the page may be scrolled
+  // before more rows are added
+  private static final int RENDER_AHEAD_PIXELS = 800;
+
+  private static final DateTimeFormat DATE_TIME_FORMAT =
+      DateTimeFormat.getMediumDateTimeFormat();
+
   private final List<Project> projects;
   private final List<Project> selectedProjects;
+  // The widgets of the rows that have been shown
   private final Map<Project, ProjectWidgets> projectWidgets;
   private SortField sortField;
   private SortOrder sortOrder;
 
+  // The projects of the current view, in the order shown, and how many of
+  // them are in the table
+  private final List<Project> viewProjects;
+  private int renderedRows;
+
   private boolean projectListLoading = true;
 
   // UI elements
@@ -83,6 +103,7 @@ public class ProjectList extends Composite implements ProjectManagerEventListene
     projects = new ArrayList<Project>();
     selectedProjects = new ArrayList<Project>();
     projectWidgets = new HashMap<Project, ProjectWidgets>();
+    viewProjects = new ArrayList<Project>();
 
     sortField = SortField.DATE_MODIFIED;
     sortOrder = SortOrder.DESCENDING;
@@ -105,6 +126,13 @@ public class ProjectList extends Composite implements ProjectManagerEventListene
     panel.add(table);
     initWidget(panel);
 
+    Window.addWindowScrollHandler(new Window.ScrollHandler() {
+      @Override
+      public void onWindowScroll(Window.ScrollEvent event) {
+        renderMoreRowsIfNeeded();
+      }
+    });
+
     // It is important to listen to project manager events as soon as possible.
     Ode.getInstance().getProjectManager().addProjectManagerEventListener(this);
   }
@@ -120,23 +148,15 @@ public class ProjectList extends Composite implements ProjectManagerEventListene
       @Override
       public void onValueChange(ValueChangeEvent<Boolean> event) {
         boolean isChecked = event.getValue(); // auto-unbox from Boolean to boolean
-        for (Map.Entry<Project, ProjectWidgets> projectWidget : projectWidgets.entrySet()) {
-          if (getProjectCurrentView(projectWidget.getKey()) != Ode.getInstance().getCurrentView()) {
-            continue;
-          }
-          int row = Integer.valueOf(projectWidget.getValue().checkBox.getName());
-          if (isChecked) {
-            if (selectedProjects.contains(projectWidget.getKey())) {
-              continue;
-            }
-            table.getRowFormatter().setStyleName(row, "ode-ProjectRowHighlighted");
-            selectedProjects.add(projectWidget.getKey());
-            projectWidget.getValue().checkBox.setValue(true);
-          } else {
-            table.getRowFormatter().setStyleName(row, "ode-ProjectRowUnHighlighted");
-            selectedProjects.remove(projectWidget.getKey());
-            projectWidget.getValue().checkBox.setValue(false);
-          }
+        // Only projects of the current view can be selected
+        selectedProjects.clear();
+        if (isChecked) {
+          selectedProjects.addAll(viewProjects);
+        }
+        for (int i = 0; i < renderedRows; i++) {
+          table.getRowFormatter().setStyleName(i + 1,
+              isChecked ? "ode-ProjectRowHighlighted" : "ode-ProjectRowUnHighlighted");
+          projectWidgets.get(viewProjects.get(i)).checkBox.setValue(isChecked);
         }
         Ode.getInstance().getProjectToolbar().updateButtons();
       }
@@ -271,13 +291,10 @@ public class ProjectList extends Composite implements ProjectManagerEventListene
       });
       nameLabel.addStyleName("ode-ProjectNameLabel");
 
-      DateTimeFormat dateTimeFormat = DateTimeFormat.getMediumDateTimeFormat();
-
       Date dateCreated = new Date(project.getDateCreated());
-      dateCreatedLabel = new Label(dateTimeFormat.format(dateCreated));
+      dateCreatedLabel = new Label(DATE_TIME_FORMAT.format(dateCreated));
 
-      Date dateModified = new Date(project.getDateModified());
-      dateModifiedLabel = new Label(dateTimeFormat.format(dateModified));
+      dateModifiedLabel = new Label();
     }
   }
 
@@ -323,38 +340,19 @@ public class ProjectList extends Composite implements ProjectManagerEventListene
 
     refreshSortIndicators();
 
-    // Refill the table.
-    int previous_rowmax = table.getRowCount() - 1;
-    table.resizeRows(Integer.max(3, previous_rowmax + 1));
-    int row = 0;
+    // Refill the table, keeping as many rows as were shown before.
+    viewProjects.clear();
     for (Project project : projects) {
       if (project.isInTrash() == isInTrash) {
-        row++;
-        ProjectWidgets pw = projectWidgets.get(project);
-        if (selectedProjects.contains(project)) {
-          table.getRowFormatter().setStyleName(row, "ode-ProjectRowHighlighted");
-          pw.checkBox.setValue(true);
-        } else {
-          table.getRowFormatter().setStyleName(row, "ode-ProjectRowUnHighlighted");
-          pw.checkBox.setValue(false);
-          table.getRowFormatter().getElement(row).setAttribute("data-exporturl",
-              "application/octet-stream:" + project.getProjectName() + ".aia:"
-                  + GWT.getModuleBaseURL() + ServerLayout.DOWNLOAD_SERVLET_BASE
-                  + ServerLayout.DOWNLOAD_PROJECT_SOURCE + "/" + project.getProjectId());
-          configureDraggable(table.getRowFormatter().getElement(row));
-        }
-        pw.checkBox.setName(String.valueOf(row));
-        if (row >= previous_rowmax) {
-          table.insertRow(row + 1);
-        }
-        table.setWidget(row, 0, pw.checkBox);
-        table.setWidget(row, 1, pw.nameLabel);
-        table.setWidget(row, 2, pw.dateCreatedLabel);
-        table.setWidget(row, 3, pw.dateModifiedLabel);
+        viewProjects.add(project);
       }
     }
+    renderedRows = Math.min(viewProjects.size(), Math.max(renderedRows, ROWS_PER_RENDER));
+    table.resizeRows(renderedRows + 1);
+    for (int i = 0; i < renderedRows; i++) {
+      renderRow(i + 1, viewProjects.get(i));
+    }
     selectAllCheckBox.setValue(false);
-    table.resizeRows( row + 1);
 
     if (isInTrash && table.getRowCount() == 1) {
       Ode.getInstance().createEmptyTrashDialog(true);
@@ -362,6 +360,56 @@ public class ProjectList extends Composite implements ProjectManagerEventListene
     Ode.getInstance().getProjectToolbar().updateButtons();
   }
 
+  /*
+   * Adds more rows to the table if the page has been scrolled close to its
+   * end.
+   */
+  private void renderMoreRowsIfNeeded() {
+    if (renderedRows >= viewProjects.size() || !table.isVisible()
+        || table.getAbsoluteTop() + table.getOffsetHeight()
+            > Window.getScrollTop() + Window.getClientHeight() + RENDER_AHEAD_PIXELS) {
+      return;
+    }
+    int firstRow = renderedRows;
+    renderedRows = Math.min(viewProjects.size(), renderedRows + ROWS_PER_RENDER);
+    table.resizeRows(renderedRows + 1);
+    for (int i = firstRow; i < renderedRows; i++) {
+      renderRow(i + 1, viewProjects.get(i));
+    }
+    if (selectAllCheckBox.getValue()) {
+      for (int i = firstRow; i < renderedRows; i++) {
+        table.getRowFormatter().setStyleName(i + 1, "ode-ProjectRowHighlighted");
+        projectWidgets.get(viewProjects.get(i)).checkBox.setValue(true);
+      }
+    }
+  }
+
+  private void renderRow(int row, Project project) {
+    ProjectWidgets pw = projectWidgets.get(project);
+    if (pw == null) {
+      pw = new ProjectWidgets(project);
+      projectWidgets.put(project, pw);
+    }
+    pw.dateModifiedLabel.setText(DATE_TIME_FORMAT.format(new Date(project.getDateModified())));
+    if (selectedProjects.contains(project)) {
+      table.getRowFormatter().setStyleName(row, "ode-ProjectRowHighlighted");
+      pw.checkBox.setValue(true);
+    } else {
+      table.getRowFormatter().setStyleName(row, "ode-ProjectRowUnHighlighted");
+      pw.checkBox.setValue(false);
+      table.getRowFormatter().getElement(row).setAttribute("data-exporturl",
+          "application/octet-stream:" + project.getProjectName() + ".aia:"
+              + GWT.getModuleBaseURL() + ServerLayout.DOWNLOAD_SERVLET_BASE
+              + ServerLayout.DOWNLOAD_PROJECT_SOURCE + "/" + project.getProjectId());
+      configureDraggable(table.getRowFormatter().getElement(row));
+    }
+    pw.checkBox.setName(String.valueOf(row));
+    table.setWidget(row, 0, pw.checkBox);
+    table.setWidget(row, 1, pw.nameLabel);
+    table.setWidget(row, 2, pw.dateCreatedLabel);
+    table.setWidget(row, 3, pw.dateModifiedLabel);
+  }
+
   /**
    * Gets the number of selected projects
    *
@@ -420,7 +468,6 @@ public class ProjectList extends Composite implements ProjectManagerEventListene
   @Override
   public void onProjectAdded(Project project) {
     projects.add(project);
-    projectWidgets.put(project, new ProjectWidgets(project));
     if (!projectListLoading) {
       refreshTable(true);
     }
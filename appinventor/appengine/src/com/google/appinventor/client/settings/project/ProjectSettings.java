@@ -61,6 +61,17 @@ public final class ProjectSettings extends CommonSettings implements SettingsAcc
         });
   }
 
+  /**
+   * Decodes settings that were loaded with the rest of the startup data.
+   *
+   * @param encodedSettings  settings as returned by loadProjectSettings
+   */
+  public void loadSettings(String encodedSettings) {
+    OdeLog.log("Loaded project settings: " + encodedSettings);
+    decodeSettings(encodedSettings);
+    changed = false;
+  }
+
   @Override
   public void saveSettings(final Command command) {
     if (Ode.getInstance().isReadOnly()) {
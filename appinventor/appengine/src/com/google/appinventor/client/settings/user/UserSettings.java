@@ -48,16 +48,7 @@ public final class UserSettings extends CommonSettings implements SettingsAccess
         new OdeAsyncCallback<String>(MESSAGES.settingsLoadError()) {
           @Override
           public void onSuccess(String result) {
-            OdeLog.log("Loaded global settings: " + result);
-            decodeSettings(result);
-
-            changed = false;
-            loaded = true;
-            loading = false;
-
-            if (Ode.handleUserLocale() && next != null) {
-              next.execute();
-            }
+            loadSettings(result, next);
           }
 
           @Override
@@ -68,6 +59,26 @@ public final class UserSettings extends CommonSettings implements SettingsAccess
         });
   }
 
+  /**
+   * Decodes settings that were loaded with the rest of the startup data.
+   *
+   * @param encodedSettings  settings as returned by loadUserSettings
+   * @param next  command to run once the settings are in place, unless the
+   *              page is being reloaded for the user's locale
+   */
+  public void loadSettings(String encodedSettings, Command next) {
+    OdeLog.log("Loaded global settings: " + encodedSettings);
+    decodeSettings(encodedSettings);
+
+    changed = false;
+    loaded = true;
+    loading = false;
+
+    if (Ode.handleUserLocale() && next != null) {
+      next.execute();
+    }
+  }
+
   @Override
   public void saveSettings(final Command command) {
     if (Ode.getInstance().isReadOnly()) {
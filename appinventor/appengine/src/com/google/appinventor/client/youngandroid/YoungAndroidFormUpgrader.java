@@ -164,8 +164,12 @@ public final class YoungAndroidFormUpgrader {
                                 // nested children
     }
 
-    // Upgrade if necessary.
-    upgradeComponentProperties(componentProperties, componentType, srcCompVersion, sysCompVersion);
+    // Upgrade if necessary. Components that are already at the system's version are left alone,
+    // although those nested inside them may still need upgrading.
+    if (srcCompVersion != sysCompVersion) {
+      upgradeComponentProperties(componentProperties, componentType, srcCompVersion,
+          sysCompVersion);
+    }
 
     if (srcYaVersion < 26) {
       // Beginning with YOUNG_ANDROID_VERSION 26:
@@ -221,6 +225,24 @@ public final class YoungAndroidFormUpgrader {
       } else if (componentType.equals("ActivityStarter")) {
         srcCompVersion = upgradeActivityStarterProperties(componentProperties, srcCompVersion);
 
+      } else if (componentType.equals("Barometer")) {
+        srcCompVersion = upgradeBarometerProperties(componentProperties, srcCompVersion);
+
+      } else if (componentType.equals("GyroscopeSensor")) {
+        srcCompVersion = upgradeGyroscopeSensorProperties(componentProperties, srcCompVersion);
+
+      } else if (componentType.equals("Hygrometer")) {
+        srcCompVersion = upgradeHygrometerProperties(componentProperties, srcCompVersion);
+
+      } else if (componentType.equals("LightSensor")) {
+        srcCompVersion = upgradeLightSensorProperties(componentProperties, srcCompVersion);
+
+      } else if (componentType.equals("MagneticFieldSensor")) {
+        srcCompVersion = upgradeMagneticFieldSensorProperties(componentProperties, srcCompVersion);
+
+      } else if (componentType.equals("Thermometer")) {
+        srcCompVersion = upgradeThermometerProperties(componentProperties, srcCompVersion);
+
       } else if (componentType.equals("Ball")) {
         srcCompVersion = upgradeBallProperties(componentProperties, srcCompVersion);
 
@@ -372,6 +394,8 @@ public final class YoungAndroidFormUpgrader {
         srcCompVersion = upgradeFeatureCollection(componentProperties, srcCompVersion);
       } else if (componentType.equals("YandexTranslate")) {
         srcCompVersion = upgradeYandexTranslateProperties(componentProperties, srcCompVersion);
+      } else if (componentType.equals("Serial")) {
+        srcCompVersion = upgradeSerialProperties(componentProperties, srcCompVersion);
       }
 
       if (srcCompVersion < sysCompVersion) {
@@ -439,6 +463,13 @@ public final class YoungAndroidFormUpgrader {
       // No properties need to be modified to upgrade to version 4.
       srcCompVersion = 4;
     }
+    if (srcCompVersion < 5) {
+      // The EventInterval, BatchSize, WindowSize and LowPassFactor properties, the
+      // WindowMean, WindowMinimum, WindowMaximum, WindowRMS and LowPass methods and the
+      // SamplesReceived event were added.
+      // No properties need to be modified to upgrade to version 5.
+      srcCompVersion = 5;
+    }
     return srcCompVersion;
   }
 
@@ -497,6 +528,78 @@ public final class YoungAndroidFormUpgrader {
     return srcCompVersion;
   }
 
+  private static int upgradeBarometerProperties(Map<String, JSONValue> componentProperties,
+      int srcCompVersion) {
+    if (srcCompVersion < 2) {
+      // The EventInterval, BatchSize, WindowSize and LowPassFactor properties, the
+      // WindowMean, WindowMinimum, WindowMaximum, WindowRMS and LowPass methods and the
+      // SamplesReceived event were added.
+      // No properties need to be modified to upgrade to version 2.
+      srcCompVersion = 2;
+    }
+    return srcCompVersion;
+  }
+
+  private static int upgradeGyroscopeSensorProperties(Map<String, JSONValue> componentProperties,
+      int srcCompVersion) {
+    if (srcCompVersion < 2) {
+      // The EventInterval, BatchSize, WindowSize and LowPassFactor properties, the
+      // WindowMean, WindowMinimum, WindowMaximum, WindowRMS and LowPass methods and the
+      // SamplesReceived event were added.
+      // No properties need to be modified to upgrade to version 2.
+      srcCompVersion = 2;
+    }
+    return srcCompVersion;
+  }
+
+  private static int upgradeHygrometerProperties(Map<String, JSONValue> componentProperties,
+      int srcCompVersion) {
+    if (srcCompVersion < 2) {
+      // The EventInterval, BatchSize, WindowSize and LowPassFactor properties, the
+      // WindowMean, WindowMinimum, WindowMaximum, WindowRMS and LowPass methods and the
+      // SamplesReceived event were added.
+      // No properties need to be modified to upgrade to version 2.
+      srcCompVersion = 2;
+    }
+    return srcCompVersion;
+  }
+
+  private static int upgradeLightSensorProperties(Map<String, JSONValue> componentProperties,
+      int srcCompVersion) {
+    if (srcCompVersion < 2) {
+      // The EventInterval, BatchSize, WindowSize and LowPassFactor properties, the
+      // WindowMean, WindowMinimum, WindowMaximum, WindowRMS and LowPass methods and the
+      // SamplesReceived event were added.
+      // No properties need to be modified to upgrade to version 2.
+      srcCompVersion = 2;
+    }
+    return srcCompVersion;
+  }
+
+  private static int upgradeMagneticFieldSensorProperties(Map<String, JSONValue> componentProperties,
+      int srcCompVersion) {
+    if (srcCompVersion < 2) {
+      // The EventInterval, BatchSize, WindowSize and LowPassFactor properties, the
+      // WindowMean, WindowMinimum, WindowMaximum, WindowRMS and LowPass methods and the
+      // SamplesReceived event were added.
+      // No properties need to be modified to upgrade to version 2.
+      srcCompVersion = 2;
+    }
+    return srcCompVersion;
+  }
+
+  private static int upgradeThermometerProperties(Map<String, JSONValue> componentProperties,
+      int srcCompVersion) {
+    if (srcCompVersion < 2) {
+      // The EventInterval, BatchSize, WindowSize and LowPassFactor properties, the
+      // WindowMean, WindowMinimum, WindowMaximum, WindowRMS and LowPass methods and the
+      // SamplesReceived event were added.
+      // No properties need to be modified to upgrade to version 2.
+      srcCompVersion = 2;
+    }
+    return srcCompVersion;
+  }
+
   private static int upgradeBallProperties(Map<String, JSONValue> componentProperties,
       int srcCompVersion) {
     if (srcCompVersion < 2) {
@@ -559,6 +662,12 @@ public final class YoungAndroidFormUpgrader {
       // No properties need to be modified to upgrade to version 6.
       srcCompVersion = 6;
     }
+    if (srcCompVersion < 7) {
+      // The BluetoothClient.StartReceiving, StopReceiving and DecodeFrame methods and
+      // DataReceived event were added.
+      // No properties need to be modified to upgrade to version 7.
+      srcCompVersion = 7;
+    }
     return srcCompVersion;
   }
 
@@ -585,6 +694,12 @@ public final class YoungAndroidFormUpgrader {
       // No properties need to be modified to upgrade to version 5.
       srcCompVersion = 5;
     }
+    if (srcCompVersion < 6) {
+      // The BluetoothServer.StartReceiving, StopReceiving and DecodeFrame methods and
+      // DataReceived event were added.
+      // No properties need to be modified to upgrade to version 6.
+      srcCompVersion = 6;
+    }
     return srcCompVersion;
   }
   private static int upgradeSliderProperties(Map<String, JSONValue> componentProperties,
@@ -740,6 +855,15 @@ public final class YoungAndroidFormUpgrader {
       // The BackgroundImageinBase64 property was added in version 13.
       srcCompVersion = 13;
     }
+    if (srcCompVersion < 14) {
+      // The FrameTime property was added in version 14.
+      srcCompVersion = 14;
+    }
+    if (srcCompVersion < 15) {
+      // No properties need to be modified to upgrade to version 15.
+      // DrawPoints, DrawLines, GetBackgroundPixels and SetBackgroundPixels were added.
+      srcCompVersion = 15;
+    }
     return srcCompVersion;
   }
 
@@ -1239,6 +1363,10 @@ public final class YoungAndroidFormUpgrader {
       // Added the SelectionColor property
       srcCompVersion = 5;
     }
+    if (srcCompVersion < 6) {
+      // Added the AddItem, AddItemAtIndex, RemoveItemAtIndex and UpdateItemAtIndex methods
+      srcCompVersion = 6;
+    }
     return srcCompVersion;
   }
 
@@ -1263,6 +1391,13 @@ public final class YoungAndroidFormUpgrader {
       // Properties related to this component have now been upgraded to version 2.
       srcCompVersion = 2;
     }
+    if (srcCompVersion < 3) {
+      // The EventInterval, BatchSize, WindowSize and LowPassFactor properties, the
+      // WindowMean, WindowMinimum, WindowMaximum, WindowRMS and LowPass methods and the
+      // SamplesReceived event were added.
+      // No properties need to be modified to upgrade to version 3.
+      srcCompVersion = 3;
+    }
     return srcCompVersion;
   }
 
@@ -1366,6 +1501,11 @@ public final class YoungAndroidFormUpgrader {
       // No properties need to be modified to upgrade to version 3.
       srcCompVersion = 3;
     }
+    if (srcCompVersion < 4) {
+      // The Sound.PlayLatency property was added.
+      // No properties need to be modified to upgrade to version 4.
+      srcCompVersion = 4;
+    }
     return srcCompVersion;
   }
 
@@ -1757,6 +1897,17 @@ public final class YoungAndroidFormUpgrader {
     return srcCompVersion;
   }
 
+  private static int upgradeSerialProperties(Map<String, JSONValue> componentProperties,
+      int srcCompVersion) {
+    if (srcCompVersion < 2) {
+      // The StartReceiving, StopReceiving and DecodeFrame methods and DataReceived event were
+      // added.
+      // No properties need to be modified to upgrade to version 2.
+      srcCompVersion = 2;
+    }
+    return srcCompVersion;
+  }
+
   private static void handlePropertyRename(Map<String, JSONValue> componentProperties,
       String oldPropName, String newPropName) {
     if (componentProperties.containsKey(oldPropName)) {
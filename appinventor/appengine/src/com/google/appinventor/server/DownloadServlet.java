@@ -39,12 +39,14 @@ public class DownloadServlet extends OdeServlet {
    *    /<baseurl>/download/all-projects-source
    *    /<baseurl>/download/file/<projectId>/<file-path>
    *    /<baseurl>/download/userfile/<file-path>
+   *    /<baseurl>/download/asset-manifest/<projectId>
    */
 
   // Constants for accessing split URI
   /*
    * Download kind can be: "project-output", "project-source",
-   * "selected-projects-source", "all-projects-source", "file", or "userfile".
+   * "selected-projects-source", "all-projects-source", "file", "userfile", or
+   * "asset-manifest".
    * Constants for these are defined in ServerLayout.
    */
   private static final int DOWNLOAD_KIND_INDEX = 3;
@@ -221,6 +223,11 @@ public class DownloadServlet extends OdeServlet {
           throw new IllegalArgumentException("Missing user file path.");
         }
 
+      } else if (downloadKind.equals(ServerLayout.DOWNLOAD_ASSET_MANIFEST)) {
+        // Download the content hashes of the project's assets.
+        long projectId = Long.parseLong(uriComponents[PROJECT_ID_INDEX]);
+        downloadableFile = fileExporter.exportAssetManifest(userId, projectId);
+
       } else {
         throw new IllegalArgumentException("Unknown download kind: " + downloadKind);
       }
@@ -105,4 +105,15 @@ public interface FileExporter {
    *         (file is not known)
    */
   RawFile exportUserFile(String userId, String filePath) throws IOException;
+
+  /**
+   * Exports a manifest of a project's assets, a JSON object mapping the path
+   * of each file in the assets folder to the SHA-1 hash of its content. The
+   * companion uses it to fetch only the assets it does not already have.
+   *
+   * @param userId the userId
+   * @param projectId the project id belonging to the userId
+   * @return RawFile with the name and content of the manifest
+   */
+  RawFile exportAssetManifest(String userId, long projectId) throws IOException;
 }
@@ -12,16 +12,22 @@ import com.google.appinventor.shared.rpc.project.ProjectSourceZip;
 import com.google.appinventor.shared.rpc.project.RawFile;
 import com.google.appinventor.shared.storage.StorageUtil;
 
+import com.google.common.hash.Hashing;
+
 import java.io.ByteArrayOutputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
 import javax.annotation.Nullable;
 
+import org.json.JSONException;
+import org.json.JSONObject;
+
 /**
  * Implementation of {@link FileExporter} based on {@link StorageIo}
  *
@@ -234,6 +240,26 @@ public final class FileExporterImpl implements FileExporter {
     }
   }
 
+  @Override
+  public RawFile exportAssetManifest(String userId, long projectId) throws IOException {
+    JSONObject manifest = new JSONObject();
+    try {
+      for (Map.Entry<String, String> entry
+          : storageIo.getProjectSourceFileHashes(userId, projectId, "assets/").entrySet()) {
+        String hash = entry.getValue();
+        if (hash == null) {
+          // Only files saved before hashes were recorded are read
+          byte[] content = storageIo.downloadRawFile(userId, projectId, entry.getKey());
+          hash = Hashing.sha256().hashBytes(content).toString();
+        }
+        manifest.put(entry.getKey(), hash);
+      }
+    } catch (JSONException e) {
+      throw new IOException("Unable to build asset manifest", e);
+    }
+    return new RawFile("manifest.json", manifest.toString().getBytes(StorageUtil.DEFAULT_CHARSET));
+  }
+
   /*
    * Filters a list of file names, removing those that don't start with the given prefix.
    */
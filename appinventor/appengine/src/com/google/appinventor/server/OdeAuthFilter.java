@@ -57,6 +57,7 @@ public class OdeAuthFilter implements Filter {
   private static final Object crypterSync = new Object();
 
   private final StorageIo storageIo = StorageIoInstanceHolder.getInstance();
+  private static final SessionCache sessionCache = SessionCache.getInstance();
 
   // Whether this server should use a whitelist to determine who can
   // access it. Value is specified in the <system-properties> section
@@ -194,7 +195,13 @@ public class OdeAuthFilter implements Filter {
   @VisibleForTesting
   boolean isUserWhitelisted() {
     //return whitelist.isInWhitelist(localUser);
-    return storageIo.checkWhiteList(localUser.getUserEmail());
+    String userId = localUser.getUserId();
+    Boolean whitelisted = sessionCache.getWhitelisted(userId);
+    if (whitelisted == null) {
+      whitelisted = storageIo.checkWhiteList(localUser.getUserEmail());
+      sessionCache.putWhitelisted(userId, whitelisted);
+    }
+    return whitelisted;
   }
 
   @VisibleForTesting
@@ -214,7 +221,16 @@ public class OdeAuthFilter implements Filter {
    * that was encrypted in the URL.
    */
   void setUserFromUserId(String userId, boolean isAdmin, boolean isReadOnly) {
-    User user = storageIo.getUser(userId);
+    // The cache hands out copies, so the changes below do not leak into it.
+    // Like the memcache copy in storage, we only keep users who have accepted
+    // the terms of service so that acceptance is seen on the next request.
+    User user = sessionCache.getUser(userId);
+    if (user == null) {
+      user = storageIo.getUser(userId);
+      if (user.getUserTosAccepted()) {
+        sessionCache.putUser(userId, user);
+      }
+    }
     if (!user.getIsAdmin() && isAdmin) {
       user.setIsAdmin(true);    // If session says they are an admin (which is the case
                                 // if they are a Google Account with Developer access
@@ -349,6 +365,14 @@ public class OdeAuthFilter implements Filter {
             if (DEBUG) {
               LOG.info("getUserInfo: rawCookie = " + rawData);
             }
+            // A cookie value always decodes to the same identity, so skip the
+            // decryption if we have seen it recently. Validity depends on the
+            // current time and is checked on every request.
+            SessionCache.Identity identity = sessionCache.getIdentity(rawData);
+            if (identity != null) {
+              UserInfo uInfo = identity.toUserInfo();
+              return uInfo.isValid() ? uInfo : null;
+            }
             Crypter crypter = getCrypter();
             CookieAuth.cookie cookieToken = CookieAuth.cookie.parseFrom(
               crypter.decrypt(Base64Coder.decode(rawData)));
@@ -358,6 +382,7 @@ public class OdeAuthFilter implements Filter {
             uInfo.isAdmin = cookieToken.getIsAdmin();
             uInfo.isReadOnly = cookieToken.getIsReadOnly();
             if (uInfo.isValid()) {
+              sessionCache.putIdentity(rawData, uInfo);
               return uInfo;
             } else {
               return null;
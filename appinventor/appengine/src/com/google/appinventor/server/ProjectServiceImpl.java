@@ -19,14 +19,18 @@ import com.google.appinventor.shared.rpc.project.ChecksumedFileException;
 import com.google.appinventor.shared.rpc.project.ChecksumedLoadFile;
 import com.google.appinventor.shared.rpc.project.FileDescriptor;
 import com.google.appinventor.shared.rpc.project.FileDescriptorWithContent;
+import com.google.appinventor.shared.rpc.project.FileVersionMismatchException;
 import com.google.appinventor.shared.rpc.project.NewProjectParameters;
+import com.google.appinventor.shared.rpc.project.ProjectListPage;
 import com.google.appinventor.shared.rpc.project.ProjectRootNode;
 import com.google.appinventor.shared.rpc.project.ProjectService;
+import com.google.appinventor.shared.rpc.project.TextDelta;
 import com.google.appinventor.shared.rpc.project.TextFile;
 import com.google.appinventor.shared.rpc.project.UserProject;
 import com.google.appinventor.shared.rpc.project.youngandroid.YoungAndroidProjectNode;
 import com.google.appinventor.shared.util.Base64Util;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
@@ -36,6 +40,7 @@ import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -61,6 +66,9 @@ public class ProjectServiceImpl extends OdeRemoteServiceServlet implements Proje
 
   private static final boolean DEBUG = Flag.createFlag("appinventor.debugging", false).get();
 
+  // How far apart the clocks of the servers may be, for project list changes
+  private static final long CLOCK_SKEW_MILLIS = 10000;
+
   /**
    * Creates a new project.
    * @param projectType  type of new project
@@ -292,9 +300,21 @@ public class ProjectServiceImpl extends OdeRemoteServiceServlet implements Proje
    */
   @Override
   public List<UserProject> getProjectInfos() {
-    String userId = userInfoProvider.getUserId();
-    List<Long> projectIds = storageIo.getProjects(userId);
-    return makeUserProjects(userId, projectIds);
+    return storageIo.getProjectList(userInfoProvider.getUserId(), 0);
+  }
+
+  @Override
+  public ProjectListPage getProjectListPage(int sortField, boolean ascending, int start,
+      int count) {
+    return storageIo.getProjectListPage(userInfoProvider.getUserId(), sortField, ascending,
+        start, count);
+  }
+
+  @Override
+  public ProjectListPage getProjectListChanges(long since) {
+    // Allow for the clocks of different servers being a little apart
+    return storageIo.getProjectListChanges(userInfoProvider.getUserId(),
+        since - CLOCK_SKEW_MILLIS);
   }
 
   /**
@@ -468,18 +488,52 @@ public class ProjectServiceImpl extends OdeRemoteServiceServlet implements Proje
    */
   @Override
   public List<FileDescriptorWithContent> load(List<FileDescriptor> files) {
-    List<FileDescriptorWithContent> result = Lists.newArrayList();
     final String userId = userInfoProvider.getUserId();
+    // Fetch the files of each project in one batch
+    Map<Long, List<String>> fileIdsByProject = Maps.newLinkedHashMap();
+    for (FileDescriptor file : files) {
+      List<String> fileIds = fileIdsByProject.get(file.getProjectId());
+      if (fileIds == null) {
+        fileIds = Lists.newArrayList();
+        fileIdsByProject.put(file.getProjectId(), fileIds);
+      }
+      fileIds.add(file.getFileId());
+    }
+    Map<Long, List<String>> contentsByProject = Maps.newHashMap();
+    for (Map.Entry<Long, List<String>> entry : fileIdsByProject.entrySet()) {
+      long projectId = entry.getKey();
+      contentsByProject.put(projectId,
+          getProjectRpcImpl(userId, projectId).load(userId, projectId, entry.getValue()));
+    }
+    List<FileDescriptorWithContent> result = Lists.newArrayList();
+    Map<Long, Integer> nextIndex = Maps.newHashMap();
     for (FileDescriptor file : files) {
       long projectId = file.getProjectId();
-      String fileId = file.getFileId();
-      result.add(new FileDescriptorWithContent(
-          projectId, fileId,
-          getProjectRpcImpl(userId, projectId).load(userId, projectId, fileId)));
+      Integer index = nextIndex.get(projectId);
+      index = index == null ? 0 : index;
+      nextIndex.put(projectId, index + 1);
+      result.add(new FileDescriptorWithContent(projectId, file.getFileId(),
+          contentsByProject.get(projectId).get(index)));
     }
     return result;
   }
 
+  /**
+   * Loads the contents of several files of one project, for instance all of
+   * the form and blocks files when a project is opened.
+   *
+   * @param projectId  project ID
+   * @param fileIds  project nodes whose sources should be loaded
+   *
+   * @return  ChecksumedLoadFile objects, in the same order as {@code fileIds}
+   */
+  @Override
+  public List<ChecksumedLoadFile> load2(long projectId, List<String> fileIds)
+      throws ChecksumedFileException {
+    final String userId = userInfoProvider.getUserId();
+    return getProjectRpcImpl(userId, projectId).load2(userId, projectId, fileIds);
+  }
+
   /**
    * Saves the content of the file associated with a node in the project tree.
    *
@@ -524,6 +578,28 @@ public class ProjectServiceImpl extends OdeRemoteServiceServlet implements Proje
         content);
   }
 
+  /**
+   * Saves a change to the content of a file, given as a delta from the
+   * content the client last loaded or saved.
+   *
+   * @param sessionId session id
+   * @param projectId  project ID
+   * @param fileId  project node whose source should be saved
+   * @param force whether to write an empty blocks workspace
+   * @param baseVersion  version of the content the delta applies to
+   * @param delta  the change
+   * @return modification date for project
+   */
+  @Override
+  public long saveDelta(String sessionId, long projectId, String fileId, boolean force,
+      String baseVersion, TextDelta delta) throws InvalidSessionException,
+      BlocksTruncatedException, FileVersionMismatchException {
+    validateSessionId(sessionId);
+    final String userId = userInfoProvider.getUserId();
+    return getProjectRpcImpl(userId, projectId).saveDelta(userId, projectId, fileId, force,
+        baseVersion, delta);
+  }
+
   /**
    * Saves the contents of multiple files.
    *
@@ -537,11 +613,26 @@ public class ProjectServiceImpl extends OdeRemoteServiceServlet implements Proje
       BlocksTruncatedException {
     validateSessionId(sessionId);
     final String userId = userInfoProvider.getUserId();
-    long date = 0;
+    // Save the files of each project in one batch
+    Map<Long, Map<String, String>> contentsByProject = Maps.newLinkedHashMap();
+    long lastProjectId = 0;
     for (FileDescriptorWithContent fileAndContent : filesAndContent) {
-     long projectId = fileAndContent.getProjectId();
-     date = getProjectRpcImpl(userId, projectId).
-         save(userId, projectId, fileAndContent.getFileId(), fileAndContent.getContent());
+      lastProjectId = fileAndContent.getProjectId();
+      Map<String, String> contents = contentsByProject.get(lastProjectId);
+      if (contents == null) {
+        contents = Maps.newLinkedHashMap();
+        contentsByProject.put(lastProjectId, contents);
+      }
+      contents.put(fileAndContent.getFileId(), fileAndContent.getContent());
+    }
+    long date = 0;
+    for (Map.Entry<Long, Map<String, String>> entry : contentsByProject.entrySet()) {
+      long projectId = entry.getKey();
+      long projectDate = getProjectRpcImpl(userId, projectId).save(userId, projectId,
+          entry.getValue());
+      if (projectId == lastProjectId) {
+        date = projectDate;
+      }
     }
     return date;
   }
@@ -606,12 +697,6 @@ public class ProjectServiceImpl extends OdeRemoteServiceServlet implements Proje
     return storageIo.getUserProject(userId, projectId);
   }
 
-  // Bulk fetch UserProjects -- efficiently get all project infos asked for
-  // using a minimum number of datastore API calls
-  private List<UserProject> makeUserProjects(String userId, List<Long> projectIds) {
-    return storageIo.getUserProjects(userId, projectIds);
-  }
-
   /*
    * Returns the RPC implementation for the given project type.
    */
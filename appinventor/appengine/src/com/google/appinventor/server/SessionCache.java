@@ -0,0 +1,153 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.server;
+
+import com.google.appinventor.server.flags.Flag;
+import com.google.appinventor.shared.rpc.user.User;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An in-process cache of verified sessions used by {@link OdeAuthFilter}.
+ *
+ * <p>Every authenticated RPC presents the AppInventor cookie, which must be Base64 decoded,
+ * decrypted and parsed, after which the user is fetched from storage and checked against the
+ * whitelist. This cache remembers, for a short time, the identity decoded from each raw cookie
+ * value and, per user, the {@link User} record and whitelist outcome, so that the steady stream
+ * of autosave and polling requests from an active editor skips that work.
+ *
+ * <p>Cookie identities never change for a given cookie value, so they are only subject to
+ * expiration. User records are invalidated by {@link #invalidateUser(String)}, which the storage
+ * layer calls whenever a user's session id or other stored attributes change. Because the cache
+ * is per instance, changes made on another instance are seen once the entry expires, which is
+ * why the lifetime ({@code session.cache.ttl}, in seconds) is kept short.
+ */
+public final class SessionCache {
+
+  private static final Flag<Integer> cacheTtl = Flag.createFlag("session.cache.ttl", 15);
+  private static final Flag<Integer> cacheSize = Flag.createFlag("session.cache.size", 10000);
+
+  private static final SessionCache INSTANCE =
+      new SessionCache(cacheSize.get(), cacheTtl.get(), TimeUnit.SECONDS);
+
+  /**
+   * The identity carried by a verified cookie.
+   */
+  static final class Identity {
+    final String userId;
+    final long ts;
+    final boolean isAdmin;
+    final boolean isReadOnly;
+
+    Identity(OdeAuthFilter.UserInfo userInfo) {
+      this.userId = userInfo.userId;
+      this.ts = userInfo.ts;
+      this.isAdmin = userInfo.isAdmin;
+      this.isReadOnly = userInfo.isReadOnly;
+    }
+
+    /**
+     * Returns a new {@link OdeAuthFilter.UserInfo} equivalent to the one the cookie decodes to.
+     * A fresh object is returned each time because the filter may modify it when renewing the
+     * cookie.
+     */
+    OdeAuthFilter.UserInfo toUserInfo() {
+      OdeAuthFilter.UserInfo userInfo = new OdeAuthFilter.UserInfo(userId, isAdmin);
+      userInfo.ts = ts;
+      userInfo.isReadOnly = isReadOnly;
+      return userInfo;
+    }
+  }
+
+  /**
+   * The stored user record and the authorization outcome for that user.
+   */
+  private static final class UserEntry {
+    final User user;
+    volatile Boolean whitelisted;
+
+    UserEntry(User user) {
+      this.user = user;
+    }
+  }
+
+  private final Cache<String, Identity> identities;
+  private final Cache<String, UserEntry> users;
+
+  @VisibleForTesting
+  SessionCache(int maximumSize, long ttl, TimeUnit unit) {
+    identities = CacheBuilder.newBuilder()
+        .maximumSize(maximumSize)
+        .expireAfterWrite(ttl, unit)
+        .build();
+    users = CacheBuilder.newBuilder()
+        .maximumSize(maximumSize)
+        .expireAfterWrite(ttl, unit)
+        .build();
+  }
+
+  public static SessionCache getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Returns the identity previously decoded from the given raw cookie value, or null.
+   */
+  Identity getIdentity(String rawCookie) {
+    return identities.getIfPresent(rawCookie);
+  }
+
+  void putIdentity(String rawCookie, OdeAuthFilter.UserInfo userInfo) {
+    identities.put(rawCookie, new Identity(userInfo));
+  }
+
+  /**
+   * Returns a copy of the cached user record for the given user id, or null.
+   */
+  User getUser(String userId) {
+    UserEntry entry = users.getIfPresent(userId);
+    return entry == null ? null : entry.user.copy();
+  }
+
+  void putUser(String userId, User user) {
+    users.put(userId, new UserEntry(user.copy()));
+  }
+
+  /**
+   * Returns the cached whitelist outcome for the given user id, or null if it is unknown.
+   */
+  Boolean getWhitelisted(String userId) {
+    UserEntry entry = users.getIfPresent(userId);
+    return entry == null ? null : entry.whitelisted;
+  }
+
+  void putWhitelisted(String userId, boolean whitelisted) {
+    UserEntry entry = users.getIfPresent(userId);
+    if (entry != null) {
+      entry.whitelisted = whitelisted;
+    }
+  }
+
+  /**
+   * Discards the cached user record and authorization outcome for the given user. Call this
+   * whenever the user's stored data changes.
+   *
+   * @param userId the user id
+   */
+  public void invalidateUser(String userId) {
+    users.invalidate(userId);
+  }
+
+  @VisibleForTesting
+  void invalidateAll() {
+    identities.invalidateAll();
+    users.invalidateAll();
+  }
+}
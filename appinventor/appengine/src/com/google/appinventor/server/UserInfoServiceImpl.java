@@ -6,13 +6,41 @@
 
 package com.google.appinventor.server;
 
+import com.google.appengine.api.ThreadManager;
 import com.google.appinventor.server.flags.Flag;
+import com.google.appinventor.server.project.youngandroid.YoungAndroidProjectService;
+import com.google.appinventor.server.storage.ProjectLists;
 import com.google.appinventor.server.storage.StorageIo;
 import com.google.appinventor.server.storage.StorageIoInstanceHolder;
+import com.google.appinventor.shared.rpc.project.ChecksumedLoadFile;
+import com.google.appinventor.shared.rpc.project.ProjectListPage;
+import com.google.appinventor.shared.rpc.project.ProjectNode;
+import com.google.appinventor.shared.rpc.project.ProjectRootNode;
+import com.google.appinventor.shared.rpc.project.UserProject;
+import com.google.appinventor.shared.rpc.project.youngandroid.YoungAndroidBlocksNode;
+import com.google.appinventor.shared.rpc.project.youngandroid.YoungAndroidFormNode;
+import com.google.appinventor.shared.rpc.user.BootstrapInfo;
 import com.google.appinventor.shared.rpc.user.Config;
 import com.google.appinventor.shared.rpc.user.User;
 import com.google.appinventor.shared.rpc.user.UserInfoService;
+import com.google.appinventor.shared.settings.SettingsConstants;
 import com.google.appinventor.shared.storage.StorageUtil;
+import com.google.common.base.Throwables;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.json.JSONException;
+import org.json.JSONObject;
 
 /**
  * Implementation of the user information service.
@@ -26,6 +54,15 @@ public class UserInfoServiceImpl extends OdeRemoteServiceServlet implements User
   // Storage of user settings
   private final transient StorageIo storageIo = StorageIoInstanceHolder.getInstance();
 
+  // Used to load the current project for getBootstrapInfo
+  private final transient YoungAndroidProjectService youngAndroidProject =
+      new YoungAndroidProjectService(storageIo);
+
+  private static final Logger LOG = Logger.getLogger(UserInfoServiceImpl.class.getName());
+
+  // The number of projects sent by getBootstrapInfo, the rest are fetched in pages
+  private static final int BOOTSTRAP_PROJECT_COUNT = 250;
+
   private static final long serialVersionUID = -7316312435338169166L;
 
   /**
@@ -76,6 +113,119 @@ public class UserInfoServiceImpl extends OdeRemoteServiceServlet implements User
     return config;
   }
 
+  /**
+   * Returns everything the client needs at startup. The user's projects and
+   * the project they last had open are read on request threads while the
+   * system configuration is put together on this one.
+   *
+   */
+  @Override
+  public BootstrapInfo getBootstrapInfo(String sessionId) {
+    final String userId = userInfoProvider.getUserId();
+    final BootstrapInfo info = new BootstrapInfo();
+    info.setUserSettings(storageIo.loadSettings(userId));
+    final long projectId = getCurrentProjectId(info.getUserSettings());
+    long timestamp = System.currentTimeMillis();
+
+    ExecutorService executor = Executors.newFixedThreadPool(2,
+        ThreadManager.currentRequestThreadFactory());
+    try {
+      Future<List<UserProject>> projects = executor.submit(new Callable<List<UserProject>>() {
+        @Override
+        public List<UserProject> call() {
+          return storageIo.getProjectList(userId, 0);
+        }
+      });
+      Future<Void> currentProject = null;
+      if (projectId != 0) {
+        currentProject = executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            ProjectRootNode root = youngAndroidProject.getRootNode(userId, projectId);
+            List<String> fileIds = new ArrayList<String>();
+            for (ProjectNode node : root.getAllSourceNodes()) {
+              if (node instanceof YoungAndroidFormNode || node instanceof YoungAndroidBlocksNode) {
+                fileIds.add(node.getFileId());
+              }
+            }
+            List<ChecksumedLoadFile> contents = youngAndroidProject.load2(userId, projectId,
+                fileIds);
+            Map<String, ChecksumedLoadFile> files = new HashMap<String, ChecksumedLoadFile>();
+            for (int i = 0; i < fileIds.size(); i++) {
+              files.put(fileIds.get(i), contents.get(i));
+            }
+            info.setCurrentProject(projectId, root,
+                storageIo.loadProjectSettings(userId, projectId), files);
+            return null;
+          }
+        });
+      }
+
+      // This stores the session id, and needs the request's user
+      info.setConfig(getSystemConfig(sessionId));
+
+      List<UserProject> allProjects;
+      try {
+        allProjects = projects.get();
+      } catch (ExecutionException e) {
+        throw Throwables.propagate(e.getCause());
+      }
+      info.setProjects(ProjectLists.makePage(allProjects,
+          ProjectListPage.SORT_BY_DATE_MODIFIED, false, 0, BOOTSTRAP_PROJECT_COUNT, timestamp));
+      if (currentProject != null) {
+        try {
+          currentProject.get();
+        } catch (ExecutionException e) {
+          // The client will load the project itself
+          LOG.log(Level.WARNING, "Unable to load project " + projectId + " for user " + userId,
+              e.getCause());
+        }
+        if (!isActiveProject(allProjects, projectId)) {
+          info.setCurrentProject(0, null, null, null);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } finally {
+      executor.shutdownNow();
+    }
+    return info;
+  }
+
+  /*
+   * Returns the id of the project the user last had open, or 0 if there is
+   * none or the user does not want it opened at startup.
+   */
+  private static long getCurrentProjectId(String settings) {
+    if (settings == null || settings.isEmpty()) {
+      return 0;
+    }
+    try {
+      JSONObject general = new JSONObject(settings)
+          .optJSONObject(SettingsConstants.USER_GENERAL_SETTINGS);
+      if (general == null || "false".equalsIgnoreCase(
+          general.optString(SettingsConstants.USER_AUTOLOAD_PROJECT))) {
+        return 0;
+      }
+      return Long.parseLong(general.optString(
+          SettingsConstants.GENERAL_SETTINGS_CURRENT_PROJECT_ID, "0"));
+    } catch (JSONException e) {
+      return 0;
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  private static boolean isActiveProject(List<UserProject> projects, long projectId) {
+    for (UserProject project : projects) {
+      if (project.getProjectId() == projectId) {
+        return !project.isInTrash();
+      }
+    }
+    return false;
+  }
+
   /**
    * Returns the user's backpack as an XML string.
    *
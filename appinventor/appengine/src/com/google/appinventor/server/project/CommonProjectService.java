@@ -11,8 +11,10 @@ import com.google.appinventor.shared.rpc.BlocksTruncatedException;
 import com.google.appinventor.shared.rpc.RpcResult;
 import com.google.appinventor.shared.rpc.project.ChecksumedLoadFile;
 import com.google.appinventor.shared.rpc.project.ChecksumedFileException;
+import com.google.appinventor.shared.rpc.project.FileVersionMismatchException;
 import com.google.appinventor.shared.rpc.project.NewProjectParameters;
 import com.google.appinventor.shared.rpc.project.ProjectRootNode;
+import com.google.appinventor.shared.rpc.project.TextDelta;
 import com.google.appinventor.shared.rpc.project.TextFile;
 import com.google.appinventor.shared.rpc.project.UserProject;
 import com.google.appinventor.shared.rpc.user.User;
@@ -24,7 +26,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * The base class for classes that provide project services for a specific
@@ -213,6 +217,40 @@ public abstract class CommonProjectService {
     return retval;
   }
 
+  /**
+   * Loads the contents of several files of a project at once.
+   *
+   * @param userId the user id
+   * @param projectId  project root node ID
+   * @param fileIds  project nodes whose sources should be loaded
+   *
+   * @return  file contents, in the same order as {@code fileIds}
+   */
+  public List<String> load(String userId, long projectId, List<String> fileIds) {
+    return storageIo.downloadFiles(userId, projectId, fileIds, StorageUtil.DEFAULT_CHARSET);
+  }
+
+  /**
+   * Loads the contents of several files of a project at once, each with a
+   * checksum as in {@link #load2(String, long, String)}.
+   *
+   * @param userId the user id
+   * @param projectId  project root node ID
+   * @param fileIds  project nodes whose sources should be loaded
+   *
+   * @return  ChecksumedLoadFile objects, in the same order as {@code fileIds}
+   */
+  public List<ChecksumedLoadFile> load2(String userId, long projectId, List<String> fileIds)
+      throws ChecksumedFileException {
+    List<ChecksumedLoadFile> retval = new ArrayList<ChecksumedLoadFile>();
+    for (String content : load(userId, projectId, fileIds)) {
+      ChecksumedLoadFile file = new ChecksumedLoadFile();
+      file.setContent(content);
+      retval.add(file);
+    }
+    return retval;
+  }
+
   /**
    * Attempt to record the project Id and error message when we detect a corruption
    * while loading a project.
@@ -302,6 +340,46 @@ public abstract class CommonProjectService {
     }
   }
 
+  /**
+   * Saves a change to the content of a text file, given as a delta from the
+   * content the client last loaded or saved.
+   *
+   * @param userId the user id
+   * @param projectId  project root node ID
+   * @param fileId  project node whose source should be saved
+   * @param force  whether to write a trivial (empty) blocks workspace
+   * @param baseVersion  version of the content the delta applies to
+   * @param delta  the change
+   * @return modification date for project
+   * @throws FileVersionMismatchException if the file has other content than
+   *         the delta applies to
+   *
+   * @see com.google.appinventor.shared.rpc.project.ProjectService#saveDelta(String, long, String, boolean, String, TextDelta)
+   */
+  public long saveDelta(String userId, long projectId, String fileId, boolean force,
+      String baseVersion, TextDelta delta)
+      throws BlocksTruncatedException, FileVersionMismatchException {
+    return storageIo.uploadFileDelta(projectId, fileId, userId, force, baseVersion, delta);
+  }
+
+  /**
+   * Saves the contents of several files of a project at once. Like
+   * {@link #save(String, long, String, String)} this always sets force to true.
+   *
+   * @param userId the user id
+   * @param projectId  project root node ID
+   * @param contents  map from project node to the content to be saved
+   * @return modification date for project
+   */
+  public long save(String userId, long projectId, Map<String, String> contents) {
+    try {
+      return storageIo.uploadFiles(projectId, userId, contents, StorageUtil.DEFAULT_CHARSET, true);
+    } catch (BlocksTruncatedException e) {
+      // Won't happen because it isn't thrown when the force argument is true
+      return 0;
+    }
+  }
+
   /**
    * Saves a screenshot of a current blocks editor. This is called from the client side
    * whenever the user leaves a blocks editor. The data is shipped to us in base64 encoding
@@ -0,0 +1,338 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.server.project.youngandroid;
+
+import com.google.appinventor.components.common.YaVersion;
+import com.google.appinventor.server.flags.Flag;
+import com.google.appinventor.server.properties.json.ServerJsonParser;
+import com.google.appinventor.shared.properties.json.JSONArray;
+import com.google.appinventor.shared.properties.json.JSONObject;
+import com.google.appinventor.shared.properties.json.JSONParser;
+import com.google.appinventor.shared.properties.json.JSONValue;
+import com.google.appinventor.shared.youngandroid.YoungAndroidSourceAnalyzer;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.json.JSONException;
+
+/**
+ * Generates the YAIL for a screen on the server, from its .scm and .bky
+ * files, so that a build does not depend on the editor having saved an up to
+ * date .yail file.
+ *
+ * <p>The YAIL is generated by the blocks editor's own code generator, run in
+ * PhantomJS as the generator tests in blocklyeditor/tests do. A small pool of
+ * PhantomJS processes is kept running, each with the blocks editor loaded, so
+ * that a request costs only the generation itself. Generation is disabled
+ * unless {@code yail.generator.command} names the PhantomJS executable and
+ * {@code yail.generator.script} the blocklyeditor's
+ * src/demos/yail/yail_generator.js.
+ *
+ * <p>Generated YAIL starts with a comment holding a hash of the sources it
+ * was generated from, so that it can be told apart from YAIL saved by the
+ * editor and regenerated once the sources change. Results are also cached in
+ * memory by that hash.
+ *
+ */
+public final class YailGenerator {
+
+  private static final Logger LOG = Logger.getLogger(YailGenerator.class.getName());
+
+  private static final Flag<String> command = Flag.createFlag("yail.generator.command", "");
+  private static final Flag<String> script = Flag.createFlag("yail.generator.script", "");
+  private static final Flag<Integer> poolSize = Flag.createFlag("yail.generator.pool.size", 2);
+  private static final Flag<Integer> cacheSize = Flag.createFlag("yail.generator.cache.size", 200);
+  private static final Flag<Integer> timeout = Flag.createFlag("yail.generator.timeout", 60);
+
+  private static final String SOURCE_HASH_PREFIX = "; Generated by the server from sources ";
+
+  // Components whose YAIL includes properties that are computed by the
+  // designer and not stored in the .scm file
+  private static final String[] DESIGNER_COMPUTED_TYPES = { "CloudDB", "FirebaseDB" };
+
+  private static YailGenerator instance;
+
+  /**
+   * Generates the YAIL for a screen.
+   */
+  interface Engine {
+    /**
+     * @param formJson the $JSON section of the screen's .scm file
+     * @param blocks the content of the screen's .bky file
+     * @param packageName the screen's qualified name
+     * @return the generated YAIL
+     * @throws IOException if the YAIL could not be generated
+     */
+    String generateYail(String formJson, String blocks, String packageName) throws IOException;
+  }
+
+  private final Engine engine;
+  private final Cache<String, String> cache;
+  private final JSONParser jsonParser = new ServerJsonParser();
+
+  @VisibleForTesting
+  YailGenerator(Engine engine, int cacheSize) {
+    this.engine = engine;
+    this.cache = CacheBuilder.newBuilder().maximumSize(cacheSize).build();
+  }
+
+  /**
+   * Returns the generator, or null if generating YAIL on the server is not
+   * configured.
+   */
+  public static synchronized YailGenerator getInstance() {
+    if (instance == null && !command.get().isEmpty() && !script.get().isEmpty()) {
+      instance = new YailGenerator(new PhantomEngine(command.get(), script.get(),
+          poolSize.get(), timeout.get()), cacheSize.get());
+    }
+    return instance;
+  }
+
+  /**
+   * Returns whether the given YAIL is up to date with the screen's sources.
+   * YAIL saved by the editor is taken to be up to date, since it is saved
+   * along with the sources.
+   *
+   * @param yail the content of the screen's .yail file
+   * @param packageName the screen's qualified name
+   * @param scm the content of the screen's .scm file
+   * @param bky the content of the screen's .bky file
+   */
+  public boolean isCurrent(String yail, String packageName, String scm, String bky) {
+    int start = yail.indexOf(SOURCE_HASH_PREFIX);
+    if (start == -1) {
+      return true;
+    }
+    start += SOURCE_HASH_PREFIX.length();
+    int end = yail.indexOf('\n', start);
+    return end != -1 && yail.substring(start, end).equals(sourceHash(packageName, scm, bky));
+  }
+
+  /**
+   * Generates the YAIL for a screen.
+   *
+   * @param packageName the screen's qualified name
+   * @param scm the content of the screen's .scm file
+   * @param bky the content of the screen's .bky file
+   * @return the YAIL, or null if this screen's YAIL can only be generated by
+   *         the editor
+   * @throws IOException if generating the YAIL failed
+   */
+  public String generateYail(String packageName, String scm, String bky) throws IOException {
+    String formJson;
+    try {
+      formJson = YoungAndroidSourceAnalyzer.getJsonSection(scm);
+      if (!canGenerate(jsonParser.parse(formJson).asObject())) {
+        return null;
+      }
+    } catch (RuntimeException e) {
+      throw new IOException("Unable to parse the form of " + packageName, e);
+    }
+    String hash = sourceHash(packageName, scm, bky);
+    String yail = cache.getIfPresent(hash);
+    if (yail == null) {
+      yail = stampYail(engine.generateYail(formJson, bky, packageName), hash);
+      cache.put(hash, yail);
+    }
+    return yail;
+  }
+
+  /*
+   * Forms that need upgrading can only be upgraded by the designer, and
+   * some components have properties that only the designer can compute.
+   */
+  private static boolean canGenerate(JSONObject form) {
+    JSONValue version = form.get("YaVersion");
+    if (version == null || !version.asString().getString().equals(
+        Integer.toString(YaVersion.YOUNG_ANDROID_VERSION))) {
+      return false;
+    }
+    return canGenerateComponent(form.get("Properties").asObject());
+  }
+
+  private static boolean canGenerateComponent(JSONObject component) {
+    String type = component.get("$Type").asString().getString();
+    for (String computedType : DESIGNER_COMPUTED_TYPES) {
+      if (type.equals(computedType)) {
+        return false;
+      }
+    }
+    JSONValue children = component.get("$Components");
+    if (children != null) {
+      JSONArray array = children.asArray();
+      for (JSONValue child : array.getElements()) {
+        if (!canGenerateComponent(child.asObject())) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  private static String sourceHash(String packageName, String scm, String bky) {
+    Hasher hasher = Hashing.sha256().newHasher();
+    hasher.putInt(YaVersion.YOUNG_ANDROID_VERSION);
+    hasher.putInt(YaVersion.BLOCKS_LANGUAGE_VERSION);
+    for (String part : new String[] { packageName, scm, bky }) {
+      hasher.putInt(part.length());
+      hasher.putString(part, Charsets.UTF_8);
+    }
+    return hasher.hash().toString();
+  }
+
+  /*
+   * Adds the source hash after the "#|\n$Source $Yail\n|#" header that
+   * starts all YAIL.
+   */
+  private static String stampYail(String yail, String hash) {
+    String stamp = SOURCE_HASH_PREFIX + hash + "\n";
+    int headerEnd = yail.indexOf("|#\n");
+    if (headerEnd == -1) {
+      return stamp + yail;
+    }
+    headerEnd += 3;
+    return yail.substring(0, headerEnd) + stamp + yail.substring(headerEnd);
+  }
+
+  /**
+   * Generates YAIL in a pool of PhantomJS processes running
+   * yail_generator.js.
+   */
+  private static final class PhantomEngine implements Engine {
+    private final String command;
+    private final String script;
+    private final int timeoutSeconds;
+    private final Semaphore permits;
+    private final BlockingQueue<Worker> idleWorkers = new LinkedBlockingQueue<Worker>();
+    private final ScheduledExecutorService watchdog =
+        Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+          @Override
+          public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "YailGenerator watchdog");
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+
+    PhantomEngine(String command, String script, int poolSize, int timeoutSeconds) {
+      this.command = command;
+      this.script = script;
+      this.timeoutSeconds = timeoutSeconds;
+      this.permits = new Semaphore(poolSize);
+    }
+
+    @Override
+    public String generateYail(String formJson, String blocks, String packageName)
+        throws IOException {
+      try {
+        permits.acquire();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted waiting for a YAIL generator", e);
+      }
+      try {
+        Worker worker = idleWorkers.poll();
+        if (worker == null) {
+          worker = new Worker();
+        }
+        boolean healthy = false;
+        try {
+          String yail = worker.generateYail(formJson, blocks, packageName);
+          healthy = true;
+          return yail;
+        } finally {
+          if (healthy) {
+            idleWorkers.add(worker);
+          } else {
+            worker.process.destroy();
+          }
+        }
+      } finally {
+        permits.release();
+      }
+    }
+
+    private final class Worker {
+      final Process process;
+      final Writer requests;
+      final BufferedReader responses;
+
+      Worker() throws IOException {
+        File scriptFile = new File(script);
+        ProcessBuilder builder = new ProcessBuilder(command, scriptFile.getName(),
+            Integer.toString(YaVersion.BLOCKS_LANGUAGE_VERSION),
+            Integer.toString(YaVersion.YOUNG_ANDROID_VERSION));
+        builder.directory(scriptFile.getAbsoluteFile().getParentFile());
+        builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+        process = builder.start();
+        requests = new OutputStreamWriter(process.getOutputStream(), Charsets.UTF_8);
+        responses = new BufferedReader(
+            new InputStreamReader(process.getInputStream(), Charsets.UTF_8));
+      }
+
+      String generateYail(String formJson, String blocks, String packageName)
+          throws IOException {
+        String response;
+        ScheduledFuture<?> kill = watchdog.schedule(new Runnable() {
+          @Override
+          public void run() {
+            LOG.log(Level.WARNING, "YAIL generation timed out");
+            process.destroy();
+          }
+        }, timeoutSeconds, TimeUnit.SECONDS);
+        try {
+          org.json.JSONObject request = new org.json.JSONObject();
+          request.put("form", formJson);
+          request.put("blocks", blocks);
+          request.put("packageName", packageName);
+          requests.write(request.toString());
+          requests.write('\n');
+          requests.flush();
+          response = responses.readLine();
+        } catch (JSONException e) {
+          throw new IOException(e);
+        } finally {
+          kill.cancel(false);
+        }
+        if (response == null) {
+          throw new IOException("The YAIL generator exited");
+        }
+        try {
+          org.json.JSONObject result = new org.json.JSONObject(response);
+          if (result.has("error")) {
+            throw new IOException("Unable to generate YAIL for " + packageName + ": "
+                + result.getString("error"));
+          }
+          return result.getString("yail");
+        } catch (JSONException e) {
+          throw new IOException("Unexpected response from the YAIL generator: " + response, e);
+        }
+      }
+    }
+  }
+}
@@ -33,7 +33,6 @@ import com.google.appinventor.shared.rpc.project.Project;
 import com.google.appinventor.shared.rpc.project.ProjectNode;
 import com.google.appinventor.shared.rpc.project.ProjectRootNode;
 import com.google.appinventor.shared.rpc.project.ProjectSourceZip;
-import com.google.appinventor.shared.rpc.project.RawFile;
 import com.google.appinventor.shared.rpc.project.TextFile;
 import com.google.appinventor.shared.rpc.project.UserProject;
 import com.google.appinventor.shared.rpc.project.youngandroid.NewYoungAndroidProjectParameters;
@@ -79,6 +78,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.TreeSet;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -474,6 +474,7 @@ public final class YoungAndroidProjectService extends CommonProjectService {
     newProject.setProjectHistory(oldProjectHistory);
 
     // Get the old project's source files and add them to new project, modifying where necessary.
+    Map<String, String> copiedFiles = Maps.newLinkedHashMap();
     for (String oldSourceFileName : storageIo.getProjectSourceFiles(userId, oldProjectId)) {
       String newSourceFileName;
 
@@ -503,17 +504,28 @@ public final class YoungAndroidProjectService extends CommonProjectService {
         newProject.addTextFile(new TextFile(newSourceFileName, newContents));
       } else {
         // If we get here, we know that the contents of the file can just be copied from the old
-        // project. Since it might be a binary file, we copy it as a raw file (that works for both
-        // text and binary files).
-        byte[] contents = storageIo.downloadRawFile(userId, oldProjectId, oldSourceFileName);
-        newProject.addRawFile(new RawFile(newSourceFileName, contents));
+        // project. They are copied by the storage once the new project exists, which avoids
+        // reading them here and can share them with the old project.
+        copiedFiles.put(oldSourceFileName, newSourceFileName);
       }
     }
 
-    // Create the new project and return the new project's id.
-    return storageIo.createProject(userId, newProject, getProjectSettings(icon, vcode, vname,
-        useslocation, aname, sizing, showListsAsJson, tutorialURL, subsetJSON, actionBar, theme, primaryColor,
-        primaryColorDark, accentColor));
+    // Create the new project, copy the unchanged files and return the new project's id.
+    long newProjectId = storageIo.createProject(userId, newProject, getProjectSettings(icon, vcode,
+        vname, useslocation, aname, sizing, showListsAsJson, tutorialURL, subsetJSON, actionBar,
+        theme, primaryColor, primaryColorDark, accentColor));
+    try {
+      storageIo.copySourceFiles(userId, oldProjectId, newProjectId, copiedFiles);
+    } catch (RuntimeException e) {
+      // Don't leave behind a copy that is missing its files
+      try {
+        storageIo.deleteProject(userId, newProjectId);
+      } catch (RuntimeException deleteError) {
+        LOG.log(Level.WARNING, "Unable to delete incomplete copy " + newProjectId, deleteError);
+      }
+      throw e;
+    }
+    return newProjectId;
   }
 
   @Override
@@ -670,6 +682,62 @@ public final class YoungAndroidProjectService extends CommonProjectService {
         "{\"maxSize\":%d,\"aiaSize\":%f}", MAX_PROJECT_SIZE.get(), size / MB));
   }
 
+  /**
+   * Generates the YAIL of each screen whose .yail file is missing, or was
+   * generated here from sources that have since changed, so that the screen
+   * is not left out of the build. Screens are left as they are if their YAIL
+   * cannot be generated on the server, as are all the screens of a project
+   * that uses extensions. Does nothing unless a {@link YailGenerator} is
+   * configured.
+   *
+   * @param userId the user id
+   * @param projectId the project id
+   */
+  private void updateYailFiles(String userId, long projectId) {
+    YailGenerator generator = YailGenerator.getInstance();
+    if (generator == null) {
+      return;
+    }
+    List<String> sourceFiles = storageIo.getProjectSourceFiles(userId, projectId);
+    for (String fileId : sourceFiles) {
+      if (fileId.startsWith(EXTERNAL_COMPS_FOLDER + '/')) {
+        // The generator only knows about the built in components
+        return;
+      }
+    }
+    for (String formFileId : sourceFiles) {
+      if (!formFileId.endsWith(YoungAndroidSourceAnalyzer.FORM_PROPERTIES_EXTENSION)) {
+        continue;
+      }
+      String qualifiedName = YoungAndroidSourceNode.getQualifiedName(formFileId);
+      String blocksFileId = YoungAndroidBlocksNode.getBlocklyFileId(qualifiedName);
+      String yailFileId = YoungAndroidYailNode.getYailFileId(qualifiedName);
+      if (!sourceFiles.contains(blocksFileId)) {
+        continue;
+      }
+      String scm = storageIo.downloadFile(userId, projectId, formFileId,
+          StorageUtil.DEFAULT_CHARSET);
+      String bky = storageIo.downloadFile(userId, projectId, blocksFileId,
+          StorageUtil.DEFAULT_CHARSET);
+      if (sourceFiles.contains(yailFileId) && generator.isCurrent(storageIo.downloadFile(userId,
+          projectId, yailFileId, StorageUtil.DEFAULT_CHARSET), qualifiedName, scm, bky)) {
+        continue;
+      }
+      try {
+        String yail = generator.generateYail(qualifiedName, scm, bky);
+        if (yail != null) {
+          if (!sourceFiles.contains(yailFileId)) {
+            storageIo.addSourceFilesToProject(userId, projectId, false, yailFileId);
+          }
+          storageIo.uploadFileForce(projectId, yailFileId, userId, yail,
+              StorageUtil.DEFAULT_CHARSET);
+        }
+      } catch (IOException e) {
+        LOG.log(Level.WARNING, "Unable to generate " + yailFileId, e);
+      }
+    }
+  }
+
   /**
    * Make a request to the Build Server to build a project.  The Build Server will asynchronously
    * post the results of the build via the {@link com.google.appinventor.server.ReceiveBuildServlet}
@@ -699,6 +767,7 @@ public final class YoungAndroidProjectService extends CommonProjectService {
     for (String buildOutputFile : buildOutputFiles) {
       storageIo.deleteFile(userId, projectId, buildOutputFile);
     }
+    updateYailFiles(userId, projectId);
     URL buildServerUrl = null;
     ProjectSourceZip zipFile = null;
     try {
@@ -0,0 +1,164 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.server.storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+
+/**
+ * A directory of files named by the hashes of their contents, used by
+ * {@link LocalStorageIo} for the contents of project and user files.
+ *
+ * <p>A blob with hash {@code abcdef...} is kept in {@code ab/cd/abcdef...},
+ * so that no directory holds too many files. Blobs are written to a
+ * temporary file, synced and then renamed into place, so a blob either has
+ * its whole content or does not exist. Large blobs are read by mapping them
+ * into memory.
+ *
+ */
+final class LocalBlobStore {
+  // Blobs at least this large are memory mapped when read
+  private static final int MAP_THRESHOLD = 256 * 1024;
+
+  private final File root;
+  private final File tempDir;
+
+  LocalBlobStore(File root) throws IOException {
+    this.root = root;
+    this.tempDir = new File(root, "tmp");
+    if (!tempDir.isDirectory() && !tempDir.mkdirs()) {
+      throw new IOException("Unable to create " + tempDir);
+    }
+  }
+
+  boolean exists(String hash) {
+    return file(hash).isFile();
+  }
+
+  /**
+   * Stores a blob, unless one with the same hash is already stored.
+   */
+  void put(String hash, byte[] content) throws IOException {
+    File file = file(hash);
+    if (file.isFile()) {
+      return;
+    }
+    File dir = file.getParentFile();
+    if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+      throw new IOException("Unable to create " + dir);
+    }
+    File temp = new File(tempDir, UUID.randomUUID().toString());
+    RandomAccessFile out = new RandomAccessFile(temp, "rw");
+    try {
+      out.write(content);
+      out.getChannel().force(false);
+    } finally {
+      out.close();
+    }
+    Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  byte[] get(String hash) throws IOException {
+    RandomAccessFile in = open(hash);
+    try {
+      long length = in.length();
+      if (length > Integer.MAX_VALUE) {
+        throw new IOException("Blob " + hash + " is too large");
+      }
+      byte[] content = new byte[(int) length];
+      if (length >= MAP_THRESHOLD) {
+        in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length).get(content);
+      } else {
+        in.readFully(content);
+      }
+      return content;
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Opens a blob for reading. A large blob is read from a mapping of the file
+   * rather than copied into memory first.
+   */
+  InputStream openStream(String hash) throws IOException {
+    RandomAccessFile in = open(hash);
+    try {
+      long length = in.length();
+      if (length < MAP_THRESHOLD) {
+        byte[] content = new byte[(int) length];
+        in.readFully(content);
+        return new ByteArrayInputStream(content);
+      }
+      // The mapping stays valid after the file is closed
+      return new ByteBufferInputStream(in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0,
+          length));
+    } finally {
+      in.close();
+    }
+  }
+
+  void delete(String hash) {
+    File file = file(hash);
+    if (!file.delete() && file.exists()) {
+      throw new IllegalStateException("Unable to delete " + file);
+    }
+  }
+
+  private RandomAccessFile open(String hash) throws IOException {
+    File file = file(hash);
+    if (!file.isFile()) {
+      throw new FileNotFoundException("Missing blob " + hash);
+    }
+    return new RandomAccessFile(file, "r");
+  }
+
+  private File file(String hash) {
+    return new File(new File(new File(root, hash.substring(0, 2)), hash.substring(2, 4)), hash);
+  }
+
+  private static final class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer buffer;
+
+    ByteBufferInputStream(MappedByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if (len == 0) {
+        return 0;
+      }
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      int n = Math.min(len, buffer.remaining());
+      buffer.get(b, off, n);
+      return n;
+    }
+
+    @Override
+    public int available() {
+      return buffer.remaining();
+    }
+  }
+}
@@ -0,0 +1,1712 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.server.storage;
+
+import com.google.appinventor.server.CrashReport;
+import com.google.appinventor.server.FileExporter;
+import com.google.appinventor.server.SessionCache;
+import com.google.appinventor.server.flags.Flag;
+import com.google.appinventor.server.storage.StoredData.PWData;
+import com.google.appinventor.shared.rpc.AdminInterfaceException;
+import com.google.appinventor.shared.rpc.BlocksTruncatedException;
+import com.google.appinventor.shared.rpc.Motd;
+import com.google.appinventor.shared.rpc.Nonce;
+import com.google.appinventor.shared.rpc.admin.AdminUser;
+import com.google.appinventor.shared.rpc.project.FileVersionMismatchException;
+import com.google.appinventor.shared.rpc.project.Project;
+import com.google.appinventor.shared.rpc.project.ProjectListPage;
+import com.google.appinventor.shared.rpc.project.ProjectSourceZip;
+import com.google.appinventor.shared.rpc.project.RawFile;
+import com.google.appinventor.shared.rpc.project.TextDelta;
+import com.google.appinventor.shared.rpc.project.TextFile;
+import com.google.appinventor.shared.rpc.project.UserProject;
+import com.google.appinventor.shared.rpc.project.youngandroid.YoungAndroidProjectNode;
+import com.google.appinventor.shared.rpc.user.SplashConfig;
+import com.google.appinventor.shared.rpc.user.User;
+import com.google.appinventor.shared.storage.StorageUtil;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import javax.annotation.Nullable;
+
+import org.json.JSONObject;
+
+/**
+ * Implements the StorageIo interface on the local disk, for servers that do
+ * not run on App Engine.
+ *
+ * <p>Users, projects and the lists of their files are kept in a
+ * {@link LocalStore}, and the contents of the files in a
+ * {@link LocalBlobStore}, both under the directory named by the
+ * {@code storage.local.dir} flag. File contents are named by their hashes,
+ * so files with the same content share it, copies of a project copy only
+ * references, and saving unchanged content writes nothing.
+ *
+ * <p>Each change is a single transaction of the store, even where the
+ * Datastore version needs several, and it returns once it is on disk.
+ *
+ */
+public class LocalStorageIo implements StorageIo {
+  static final Flag<String> storageDir = Flag.createFlag("storage.local.dir", "appinventor-data");
+  static final Flag<Boolean> requireTos = Flag.createFlag("require.tos", false);
+  // Content no file refers to any more is kept this long before it is
+  // deleted, so that a read that found a file's record just before the file
+  // changed can still read the content that record refers to.
+  static final Flag<Integer> freedContentSeconds =
+      Flag.createFlag("storage.local.freed.content.seconds", 600);
+
+  private static final Logger LOG = Logger.getLogger(LocalStorageIo.class.getName());
+
+  private static final String DEFAULT_ENCODING = "UTF-8";
+
+  private static final String TEMP_PREFIX = "__TEMP__/";
+
+  // Keys of the records in the store. Records are JSON objects, except where
+  // noted.
+  private static final String USER = "user/";              // user id
+  private static final String EMAIL = "email/";            // lower case email, user id as text
+  private static final String PROJECT = "project/";        // project id
+  private static final String USER_PROJECT = "userproject/"; // user id / project id
+  private static final String FILE = "file/";              // project id / file name
+  private static final String USER_FILE = "userfile/";     // user id / file name
+  private static final String BLOB_REFS = "blobrefs/";     // hash, reference count as text
+  private static final String FREED = "freed/";            // hash, time last freed as text
+  private static final String NEXT_PROJECT_ID = "nextprojectid"; // as text
+  private static final String NONCE = "nonce/";
+  private static final String PWDATA = "pwdata/";
+  private static final String BACKPACK = "backpack/";      // content as text
+  private static final String RENDEZVOUS = "rendezvous/";
+  private static final String FEEDBACK = "feedback/";
+  private static final String CORRUPTION = "corruption/";
+  private static final String MOTD = "motd";
+  private static final String SPLASH = "splash";
+
+  private static final String ROLE_SOURCE = "source";
+  private static final String ROLE_TARGET = "target";
+
+  private static final long NONCE_LIFETIME = 3 * 3600 * 1000L;
+  private static final long PWDATA_LIFETIME = 24 * 3600 * 1000L;
+
+  private final LocalStore store;
+  private final LocalBlobStore blobs;
+  private final LocalBlobStore tempFiles;
+  private final Set<String> whitelist;
+
+  // Kept only in memory, like the memcache entries of ObjectifyStorageIo
+  private final Map<String, Integer> buildStatus = new ConcurrentHashMap<String, Integer>();
+
+  // Create a final object of this class to hold a modifiable result value that
+  // can be used in a method of an inner class.
+  private static class Result<T> {
+    T t;
+  }
+
+  LocalStorageIo() throws IOException {
+    this(new File(storageDir.get()));
+  }
+
+  @VisibleForTesting
+  LocalStorageIo(File dir) throws IOException {
+    if (!dir.isDirectory() && !dir.mkdirs()) {
+      throw new IOException("Unable to create " + dir);
+    }
+    store = new LocalStore(new File(dir, "store.log"));
+    blobs = new LocalBlobStore(new File(dir, "blobs"));
+    tempFiles = new LocalBlobStore(new File(dir, "temp"));
+    whitelist = readWhitelist(new File(dir, "whitelist"));
+    initMotd();
+  }
+
+  @Override
+  public User getUser(String userId) {
+    return getUser(userId, null);
+  }
+
+  @Override
+  public User getUser(final String userId, final String email) {
+    JSONObject userData = read(USER + userId);
+    final User user = new User(userId, email, false, false, null);
+    if (userData == null || (email != null && !email.equals(userData.optString("email")))) {
+      userData = update(collectUserErrorInfo(userId), new LocalStore.Update<JSONObject>() {
+        @Override
+        public JSONObject run(LocalStore.Transaction txn) {
+          JSONObject userData = read(txn, USER + userId);
+          if (userData == null && email != null) {
+            byte[] id = txn.get(EMAIL + email.toLowerCase());
+            if (id != null) {
+              userData = read(txn, USER + utf8(id));
+              user.setUserId(utf8(id));
+            }
+          }
+          if (userData == null) {
+            userData = createUser(txn, userId, email);
+          } else if (email != null && !email.equals(userData.optString("email"))) {
+            setEmail(txn, user.getUserId(), userData, email);
+            write(txn, USER + user.getUserId(), userData);
+          }
+          return userData;
+        }
+      });
+    }
+    user.setUserEmail(userData.optString("email"));
+    user.setUserTosAccepted(userData.optBoolean("tosAccepted") || !requireTos.get());
+    user.setIsAdmin(userData.optBoolean("isAdmin"));
+    user.setSessionId(optString(userData, "sessionid"));
+    user.setPassword(optString(userData, "password"));
+    return user;
+  }
+
+  @Override
+  public User getUserFromEmail(final String email) {
+    final Result<String> userId = new Result<String>();
+    JSONObject userData = update(collectUserErrorInfo(email),
+        new LocalStore.Update<JSONObject>() {
+          @Override
+          public JSONObject run(LocalStore.Transaction txn) {
+            byte[] id = txn.get(EMAIL + email.toLowerCase());
+            if (id != null) {
+              userId.t = utf8(id);
+              return read(txn, USER + userId.t);
+            }
+            userId.t = UUID.randomUUID().toString();
+            return createUser(txn, userId.t, email);
+          }
+        });
+    User user = new User(userId.t, email, userData.optBoolean("tosAccepted"), false,
+        optString(userData, "sessionid"));
+    user.setPassword(optString(userData, "password"));
+    return user;
+  }
+
+  private JSONObject createUser(LocalStore.Transaction txn, String userId, String email) {
+    JSONObject userData = new JSONObject();
+    userData.put("tosAccepted", false);
+    userData.put("settings", "");
+    setEmail(txn, userId, userData, email == null ? "" : email);
+    write(txn, USER + userId, userData);
+    return userData;
+  }
+
+  // Changes a user's email and the index from emails to user ids
+  private void setEmail(LocalStore.Transaction txn, String userId, JSONObject userData,
+      String email) {
+    String oldEmail = userData.optString("email");
+    byte[] oldId = txn.get(EMAIL + oldEmail.toLowerCase());
+    if (!oldEmail.equals("") && oldId != null && utf8(oldId).equals(userId)) {
+      txn.delete(EMAIL + oldEmail.toLowerCase());
+    }
+    userData.put("email", email);
+    if (!email.equals("")) {
+      txn.put(EMAIL + email.toLowerCase(), bytes(userId));
+    }
+  }
+
+  @Override
+  public void setUserEmail(final String userId, String inputemail) {
+    final String email = inputemail.toLowerCase();
+    updateUser(userId, new UserChange() {
+      @Override
+      void change(LocalStore.Transaction txn, JSONObject userData) {
+        setEmail(txn, userId, userData, email);
+      }
+    });
+  }
+
+  @Override
+  public void setTosAccepted(final String userId) {
+    updateUser(userId, new UserChange() {
+      @Override
+      void change(LocalStore.Transaction txn, JSONObject userData) {
+        userData.put("tosAccepted", true);
+      }
+    });
+  }
+
+  @Override
+  public void setUserSessionId(final String userId, final String sessionId) {
+    updateUser(userId, new UserChange() {
+      @Override
+      void change(LocalStore.Transaction txn, JSONObject userData) {
+        userData.put("sessionid", sessionId);
+      }
+    });
+  }
+
+  @Override
+  public void setUserPassword(final String userId, final String password) {
+    updateUser(userId, new UserChange() {
+      @Override
+      void change(LocalStore.Transaction txn, JSONObject userData) {
+        userData.put("password", password);
+      }
+    });
+  }
+
+  @Override
+  public String loadSettings(String userId) {
+    JSONObject userData = read(USER + userId);
+    return userData == null ? "" : userData.optString("settings");
+  }
+
+  @Override
+  public void storeSettings(final String userId, final String settings) {
+    updateUser(userId, new UserChange() {
+      @Override
+      void change(LocalStore.Transaction txn, JSONObject userData) {
+        userData.put("settings", settings);
+        userData.put("visited", System.currentTimeMillis());
+      }
+    });
+  }
+
+  private abstract static class UserChange {
+    abstract void change(LocalStore.Transaction txn, JSONObject userData);
+  }
+
+  // Changes an existing user, doing nothing if there is no such user
+  private void updateUser(final String userId, final UserChange change) {
+    update(collectUserErrorInfo(userId), new LocalStore.Update<Void>() {
+      @Override
+      public Void run(LocalStore.Transaction txn) {
+        JSONObject userData = read(txn, USER + userId);
+        if (userData != null) {
+          change.change(txn, userData);
+          write(txn, USER + userId, userData);
+        }
+        return null;
+      }
+    });
+    SessionCache.getInstance().invalidateUser(userId);
+  }
+
+  @Override
+  public long createProject(final String userId, final Project project,
+      final String projectSettings) {
+    final Map<String, byte[]> contents = new LinkedHashMap<String, byte[]>();
+    for (TextFile file : project.getSourceFiles()) {
+      contents.put(file.getFileName(), encode(file.getContent(), DEFAULT_ENCODING,
+          collectUserErrorInfo(userId, file.getFileName())));
+    }
+    for (RawFile file : project.getRawSourceFiles()) {
+      contents.put(file.getFileName(), file.getContent());
+    }
+    final Map<String, String> hashes = storeContents(userId, contents);
+    boolean committed = false;
+    try {
+      long projectId = update(collectUserErrorInfo(userId), new LocalStore.Update<Long>() {
+        @Override
+        public Long run(LocalStore.Transaction txn) throws IOException {
+          byte[] next = txn.get(NEXT_PROJECT_ID);
+          long projectId = next == null ? 1 : Long.parseLong(utf8(next));
+          txn.put(NEXT_PROJECT_ID, bytes(Long.toString(projectId + 1)));
+
+          long date = System.currentTimeMillis();
+          JSONObject projectData = new JSONObject();
+          projectData.put("name", project.getProjectName());
+          projectData.put("type", project.getProjectType());
+          projectData.put("settings", projectSettings);
+          projectData.put("history", project.getProjectHistory());
+          projectData.put("dateCreated", date);
+          projectData.put("dateModified", date);
+          projectData.put("listModified", date);
+          projectData.put("inTrash", false);
+          write(txn, PROJECT + projectId, projectData);
+          txn.put(USER_PROJECT + userId + "/" + projectId, bytes("{}"));
+
+          for (Map.Entry<String, byte[]> entry : contents.entrySet()) {
+            JSONObject fileData = newFileData(ROLE_SOURCE, userId);
+            setContent(txn, fileData, hashes.get(entry.getKey()), entry.getValue(), null);
+            write(txn, fileKey(projectId, entry.getKey()), fileData);
+          }
+          return projectId;
+        }
+      });
+      committed = true;
+      return projectId;
+    } finally {
+      if (!committed) {
+        deleteUnreferenced(hashes.values());
+      }
+    }
+  }
+
+  @Override
+  public long copySourceFiles(final String userId, final long fromProjectId,
+      final long toProjectId, final Map<String, String> fileNames) {
+    final List<String> freed = new ArrayList<String>();
+    long modDate = update(collectUserProjectErrorInfo(userId, toProjectId),
+        new LocalStore.Update<Long>() {
+          @Override
+          public Long run(LocalStore.Transaction txn) throws IOException {
+            if (txn.get(USER_PROJECT + userId + "/" + toProjectId) == null) {
+              throw CrashReport.createAndLogError(LOG, null,
+                  collectUserProjectErrorInfo(userId, toProjectId),
+                  new UnauthorizedAccessException(userId, toProjectId, null));
+            }
+            for (Map.Entry<String, String> entry : fileNames.entrySet()) {
+              JSONObject from = read(txn, fileKey(fromProjectId, entry.getKey()));
+              Preconditions.checkState(from != null);
+              checkOwner(from, userId, fromProjectId);
+              String toKey = fileKey(toProjectId, entry.getValue());
+              JSONObject to = read(txn, toKey);
+              if (to != null) {
+                release(txn, optString(to, "hash"), freed);
+              }
+              to = newFileData(from.optString("role"), userId);
+              String hash = optString(from, "hash");
+              if (hash != null) {
+                setContent(txn, to, hash, null, null);
+                to.put("length", from.optLong("length"));
+              }
+              write(txn, toKey, to);
+            }
+            return updateProjectModDate(txn, toProjectId);
+          }
+        });
+    deleteUnreferenced(freed);
+    return modDate;
+  }
+
+  @Override
+  public void deleteProject(final String userId, final long projectId) {
+    final List<String> freed = new ArrayList<String>();
+    update(collectUserProjectErrorInfo(userId, projectId), new LocalStore.Update<Void>() {
+      @Override
+      public Void run(LocalStore.Transaction txn) {
+        txn.delete(USER_PROJECT + userId + "/" + projectId);
+        for (Map.Entry<String, byte[]> entry : txn.scan(fileKey(projectId, "")).entrySet()) {
+          release(txn, optString(json(entry.getValue()), "hash"), freed);
+          txn.delete(entry.getKey());
+        }
+        txn.delete(PROJECT + projectId);
+        return null;
+      }
+    });
+    deleteUnreferenced(freed);
+  }
+
+  @Override
+  public void setMoveToTrashFlag(final String userId, final long projectId, final boolean flag) {
+    update(collectUserProjectErrorInfo(userId, projectId), new LocalStore.Update<Void>() {
+      @Override
+      public Void run(LocalStore.Transaction txn) {
+        JSONObject projectData = read(txn, PROJECT + projectId);
+        if (projectData != null && projectData.optBoolean("inTrash") != flag) {
+          projectData.put("inTrash", flag);
+          projectData.put("listModified", System.currentTimeMillis());
+          write(txn, PROJECT + projectId, projectData);
+        }
+        return null;
+      }
+    });
+  }
+
+  @Override
+  public List<Long> getProjects(String userId) {
+    String prefix = USER_PROJECT + userId + "/";
+    List<Long> projects = new ArrayList<Long>();
+    for (String key : store.scan(prefix).keySet()) {
+      projects.add(Long.parseLong(key.substring(prefix.length())));
+    }
+    return projects;
+  }
+
+  @Override
+  public List<UserProject> getProjectList(String userId, long changedSince) {
+    List<UserProject> projects = new ArrayList<UserProject>();
+    for (long projectId : getProjects(userId)) {
+      JSONObject projectData = read(PROJECT + projectId);
+      if (projectData != null && projectData.optLong("listModified") > changedSince) {
+        projects.add(makeUserProject(projectId, projectData));
+      }
+    }
+    return projects;
+  }
+
+  @Override
+  public ProjectListPage getProjectListPage(String userId, int sortField, boolean ascending,
+      int start, int count) {
+    // The store has no sorted indexes, so the list is sorted here
+    long timestamp = System.currentTimeMillis();
+    return ProjectLists.makePage(getProjectList(userId, 0), sortField, ascending, start,
+        count, timestamp);
+  }
+
+  @Override
+  public ProjectListPage getProjectListChanges(String userId, long changedSince) {
+    long timestamp = System.currentTimeMillis();
+    List<UserProject> changed = new ArrayList<UserProject>();
+    List<Long> projectIds = new ArrayList<Long>();
+    for (long projectId : getProjects(userId)) {
+      JSONObject projectData = read(PROJECT + projectId);
+      if (projectData != null) {
+        projectIds.add(projectId);
+        if (projectData.optLong("listModified") > changedSince) {
+          changed.add(makeUserProject(projectId, projectData));
+        }
+      }
+    }
+    return new ProjectListPage(changed, projectIds.size(), projectIds, timestamp);
+  }
+
+  @Override
+  public String loadProjectSettings(String userId, long projectId) {
+    JSONObject projectData = read(PROJECT + projectId);
+    return projectData == null ? "" : projectData.optString("settings");
+  }
+
+  @Override
+  public void storeProjectSettings(final String userId, final long projectId,
+      final String settings) {
+    update(collectUserProjectErrorInfo(userId, projectId), new LocalStore.Update<Void>() {
+      @Override
+      public Void run(LocalStore.Transaction txn) {
+        JSONObject projectData = read(txn, PROJECT + projectId);
+        if (projectData != null) {
+          projectData.put("settings", settings);
+          write(txn, PROJECT + projectId, projectData);
+        }
+        return null;
+      }
+    });
+  }
+
+  @Override
+  public String getProjectType(String userId, long projectId) {
+    // We only have one project type, no need to ask about it
+    return YoungAndroidProjectNode.YOUNG_ANDROID_PROJECT_TYPE;
+  }
+
+  @Override
+  public UserProject getUserProject(String userId, long projectId) {
+    JSONObject projectData = read(PROJECT + projectId);
+    return projectData == null ? null : makeUserProject(projectId, projectData);
+  }
+
+  @Override
+  public List<UserProject> getUserProjects(String userId, List<Long> projectIds) {
+    List<UserProject> projects = new ArrayList<UserProject>(projectIds.size());
+    for (long projectId : projectIds) {
+      JSONObject projectData = read(PROJECT + projectId);
+      if (projectData != null) {
+        projects.add(makeUserProject(projectId, projectData));
+      }
+    }
+    return projects;
+  }
+
+  private static UserProject makeUserProject(long projectId, JSONObject projectData) {
+    return new UserProject(projectId, projectData.optString("name"),
+        projectData.optString("type"), projectData.optLong("dateCreated"),
+        projectData.optLong("dateModified"), projectData.optBoolean("inTrash"));
+  }
+
+  @Override
+  public String getProjectName(String userId, long projectId) {
+    JSONObject projectData = read(PROJECT + projectId);
+    return projectData == null ? "" : projectData.optString("name");
+  }
+
+  @Override
+  public long getProjectDateModified(String userId, long projectId) {
+    JSONObject projectData = read(PROJECT + projectId);
+    return projectData == null ? 0 : projectData.optLong("dateModified");
+  }
+
+  @Override
+  public String getProjectHistory(String userId, long projectId) {
+    JSONObject projectData = read(PROJECT + projectId);
+    return projectData == null ? "" : projectData.optString("history");
+  }
+
+  @Override
+  public long getProjectDateCreated(String userId, long projectId) {
+    JSONObject projectData = read(PROJECT + projectId);
+    return projectData == null ? 0 : projectData.optLong("dateCreated");
+  }
+
+  @Override
+  public void addFilesToUser(final String userId, final String... fileNames) {
+    update(collectUserErrorInfo(userId, fileNames[0]), new LocalStore.Update<Void>() {
+      @Override
+      public Void run(LocalStore.Transaction txn) {
+        for (String fileName : fileNames) {
+          if (txn.get(USER_FILE + userId + "/" + fileName) == null) {
+            write(txn, USER_FILE + userId + "/" + fileName, new JSONObject());
+          }
+        }
+        return null;
+      }
+    });
+  }
+
+  @Override
+  public List<String> getUserFiles(String userId) {
+    String prefix = USER_FILE + userId + "/";
+    List<String> fileNames = new ArrayList<String>();
+    for (String key : store.scan(prefix).keySet()) {
+      fileNames.add(key.substring(prefix.length()));
+    }
+    return fileNames;
+  }
+
+  @Override
+  public void uploadUserFile(String userId, String fileName, String content, String encoding) {
+    uploadRawUserFile(userId, fileName, encode(content, encoding,
+        collectUserErrorInfo(userId, fileName)));
+  }
+
+  /*
+   * SPECIAL CASE: An empty backpack ("[]") is not stored, and replaces a
+   * stored one by deleting it, as in ObjectifyStorageIo.
+   */
+  @Override
+  public void uploadRawUserFile(final String userId, final String fileName,
+      final byte[] content) {
+    final String key = USER_FILE + userId + "/" + fileName;
+    if (fileName.equals(StorageUtil.USER_BACKPACK_FILENAME)
+        && Arrays.equals(content, new byte[] { '[', ']' })) {
+      deleteUserFile(userId, fileName);
+      return;
+    }
+    final String hash = storeContent(collectUserErrorInfo(userId, fileName), content);
+    final List<String> freed = new ArrayList<String>();
+    boolean committed = false;
+    try {
+      update(collectUserErrorInfo(userId, fileName), new LocalStore.Update<Void>() {
+        @Override
+        public Void run(LocalStore.Transaction txn) throws IOException {
+          JSONObject fileData = read(txn, key);
+          if (fileData == null) {
+            fileData = new JSONObject();
+          }
+          setContent(txn, fileData, hash, content, freed);
+          write(txn, key, fileData);
+          return null;
+        }
+      });
+      committed = true;
+    } finally {
+      deleteUnreferenced(committed ? freed : Collections.singletonList(hash));
+    }
+  }
+
+  @Override
+  public String downloadUserFile(String userId, String fileName, String encoding) {
+    try {
+      return new String(downloadRawUserFile(userId, fileName), encoding);
+    } catch (UnsupportedEncodingException e) {
+      throw CrashReport.createAndLogError(LOG, null, "Unsupported file content encoding, "
+          + collectUserErrorInfo(userId, fileName), e);
+    }
+  }
+
+  @Override
+  public byte[] downloadRawUserFile(String userId, String fileName) {
+    JSONObject fileData = read(USER_FILE + userId + "/" + fileName);
+    if (fileData == null) {
+      throw CrashReport.createAndLogError(LOG, null, collectUserErrorInfo(userId, fileName),
+          new FileNotFoundException(fileName));
+    }
+    return readContent(fileData, collectUserErrorInfo(userId, fileName));
+  }
+
+  @Override
+  public void deleteUserFile(final String userId, final String fileName) {
+    final List<String> freed = new ArrayList<String>();
+    update(collectUserErrorInfo(userId, fileName), new LocalStore.Update<Void>() {
+      @Override
+      public Void run(LocalStore.Transaction txn) {
+        String key = USER_FILE + userId + "/" + fileName;
+        JSONObject fileData = read(txn, key);
+        if (fileData != null) {
+          release(txn, optString(fileData, "hash"), freed);
+          txn.delete(key);
+        }
+        return null;
+      }
+    });
+    deleteUnreferenced(freed);
+  }
+
+  @Override
+  public int getMaxJobSizeBytes() {
+    return 5 * 1024 * 1024;
+  }
+
+  @Override
+  public void addSourceFilesToProject(String userId, long projectId, boolean changeModDate,
+      String... fileNames) {
+    addFilesToProject(userId, projectId, ROLE_SOURCE, changeModDate, fileNames);
+  }
+
+  @Override
+  public void addOutputFilesToProject(String userId, long projectId, String... fileNames) {
+    addFilesToProject(userId, projectId, ROLE_TARGET, false, fileNames);
+  }
+
+  private void addFilesToProject(final String userId, final long projectId, final String role,
+      final boolean changeModDate, final String... fileNames) {
+    update(collectProjectErrorInfo(userId, projectId, fileNames[0]),
+        new LocalStore.Update<Void>() {
+          @Override
+          public Void run(LocalStore.Transaction txn) {
+            for (String fileName : fileNames) {
+              JSONObject fileData = read(txn, fileKey(projectId, fileName));
+              if (fileData == null) {
+                write(txn, fileKey(projectId, fileName), newFileData(role, userId));
+              } else if (!fileData.optString("role").equals(role)) {
+                throw CrashReport.createAndLogError(LOG, null,
+                    collectProjectErrorInfo(null, projectId, fileName),
+                    new IllegalStateException("File role change is not supported"));
+              }
+            }
+            if (changeModDate) {
+              updateProjectModDate(txn, projectId);
+            }
+            return null;
+          }
+        });
+  }
+
+  @Override
+  public void removeSourceFilesFromProject(String userId, long projectId, boolean changeModDate,
+      String... fileNames) {
+    removeFilesFromProject(userId, projectId, ROLE_SOURCE, changeModDate, fileNames);
+  }
+
+  @Override
+  public void removeOutputFilesFromProject(String userId, long projectId, String... fileNames) {
+    removeFilesFromProject(userId, projectId, ROLE_TARGET, false, fileNames);
+  }
+
+  private void removeFilesFromProject(final String userId, final long projectId,
+      final String role, final boolean changeModDate, final String... fileNames) {
+    final List<String> freed = new ArrayList<String>();
+    update(collectProjectErrorInfo(userId, projectId, fileNames[0]),
+        new LocalStore.Update<Void>() {
+          @Override
+          public Void run(LocalStore.Transaction txn) {
+            for (String fileName : fileNames) {
+              JSONObject fileData = read(txn, fileKey(projectId, fileName));
+              if (fileData == null) {
+                continue;
+              }
+              if (!fileData.optString("role").equals(role)) {
+                throw CrashReport.createAndLogError(LOG, null,
+                    collectProjectErrorInfo(null, projectId, fileName),
+                    new IllegalStateException("File role change is not supported"));
+              }
+              release(txn, optString(fileData, "hash"), freed);
+              txn.delete(fileKey(projectId, fileName));
+            }
+            if (changeModDate) {
+              updateProjectModDate(txn, projectId);
+            }
+            return null;
+          }
+        });
+    deleteUnreferenced(freed);
+  }
+
+  @Override
+  public List<String> getProjectSourceFiles(String userId, long projectId) {
+    return getProjectFiles(projectId, ROLE_SOURCE);
+  }
+
+  @Override
+  public List<String> getProjectOutputFiles(String userId, long projectId) {
+    return getProjectFiles(projectId, ROLE_TARGET);
+  }
+
+  @Override
+  public Map<String, String> getProjectSourceFileHashes(String userId, long projectId,
+      String prefix) {
+    String filePrefix = fileKey(projectId, "");
+    Map<String, String> hashes = new LinkedHashMap<String, String>();
+    for (Map.Entry<String, byte[]> entry : store.scan(filePrefix + prefix).entrySet()) {
+      JSONObject fileData = json(entry.getValue());
+      if (fileData.optString("role").equals(ROLE_SOURCE)) {
+        checkOwner(fileData, userId, projectId);
+        hashes.put(entry.getKey().substring(filePrefix.length()), optString(fileData, "hash"));
+      }
+    }
+    return hashes;
+  }
+
+  private List<String> getProjectFiles(long projectId, String role) {
+    String prefix = fileKey(projectId, "");
+    List<String> fileNames = new ArrayList<String>();
+    for (Map.Entry<String, byte[]> entry : store.scan(prefix).entrySet()) {
+      if (json(entry.getValue()).optString("role").equals(role)) {
+        fileNames.add(entry.getKey().substring(prefix.length()));
+      }
+    }
+    return fileNames;
+  }
+
+  @Override
+  public long uploadFile(long projectId, String fileName, String userId, String content,
+      String encoding) throws BlocksTruncatedException {
+    return uploadRawFile(projectId, fileName, userId, false,
+        encode(content, encoding, collectProjectErrorInfo(null, projectId, fileName)));
+  }
+
+  @Override
+  public long uploadFileForce(long projectId, String fileName, String userId, String content,
+      String encoding) {
+    return uploadRawFileForce(projectId, fileName, userId,
+        encode(content, encoding, collectProjectErrorInfo(null, projectId, fileName)));
+  }
+
+  @Override
+  public long uploadRawFileForce(long projectId, String fileName, String userId,
+      byte[] content) {
+    try {
+      return uploadRawFile(projectId, fileName, userId, true, content);
+    } catch (BlocksTruncatedException e) {
+      // Won't get here, exception isn't thrown when force is true
+      return 0;
+    }
+  }
+
+  @Override
+  public long uploadRawFile(long projectId, String fileName, String userId, boolean force,
+      byte[] content) throws BlocksTruncatedException {
+    Map<String, byte[]> contents = new HashMap<String, byte[]>();
+    contents.put(fileName, content);
+    try {
+      return uploadRawFiles(projectId, userId, contents, force, null);
+    } catch (FileVersionMismatchException e) {
+      throw new IllegalStateException(e);  // Cannot happen without a base hash
+    }
+  }
+
+  /*
+   * The local store writes whole contents, since they are on the local disk
+   * and content that has not changed is not written again. The delta is
+   * applied here, and the file saved only if it still has the content the
+   * delta was made from.
+   */
+  @Override
+  public long uploadFileDelta(long projectId, String fileName, String userId, boolean force,
+      String baseVersion, TextDelta delta)
+      throws BlocksTruncatedException, FileVersionMismatchException {
+    JSONObject fileData = read(fileKey(projectId, fileName));
+    if (fileData == null) {
+      throw new FileVersionMismatchException("There is no saved content for " + fileName);
+    }
+    checkOwner(fileData, userId, projectId);
+    String errorInfo = collectProjectErrorInfo(userId, projectId, fileName);
+    Map<String, byte[]> contents = new HashMap<String, byte[]>();
+    try {
+      String base = new String(readContent(fileData, errorInfo), DEFAULT_ENCODING);
+      if (!TextDelta.version(base).equals(baseVersion)) {
+        throw new FileVersionMismatchException("The content of " + fileName + " has changed");
+      }
+      String text = delta.apply(base);
+      if (delta.getVersion() != null && !TextDelta.version(text).equals(delta.getVersion())) {
+        throw new FileVersionMismatchException("The delta for " + fileName
+            + " does not give the expected content");
+      }
+      contents.put(fileName, text.getBytes(DEFAULT_ENCODING));
+    } catch (IllegalArgumentException e) {
+      throw new FileVersionMismatchException(e.getMessage());
+    } catch (UnsupportedEncodingException e) {
+      throw CrashReport.createAndLogError(LOG, null, errorInfo, e);
+    }
+    String baseHash = optString(fileData, "hash");
+    return uploadRawFiles(projectId, userId, contents, force, baseHash == null ? "" : baseHash);
+  }
+
+  @Override
+  public long uploadFiles(long projectId, String userId, Map<String, String> contents,
+      String encoding, boolean force) throws BlocksTruncatedException {
+    Map<String, byte[]> rawContents = new LinkedHashMap<String, byte[]>();
+    for (Map.Entry<String, String> entry : contents.entrySet()) {
+      rawContents.put(entry.getKey(), encode(entry.getValue(), encoding,
+          collectProjectErrorInfo(null, projectId, entry.getKey())));
+    }
+    try {
+      return uploadRawFiles(projectId, userId, rawContents, force, null);
+    } catch (FileVersionMismatchException e) {
+      throw new IllegalStateException(e);  // Cannot happen without a base hash
+    }
+  }
+
+  /*
+   * Saves files of a project in one transaction. All of the files are checked
+   * before any is changed. Contents are written to the blob store first, and
+   * removed again if the transaction does not use them.
+   *
+   * If baseHash is not null there must be a single file, and it is saved only
+   * if its content still has that hash ("" for no content).
+   */
+  private long uploadRawFiles(final long projectId, final String userId,
+      final Map<String, byte[]> contents, final boolean force, @Nullable final String baseHash)
+      throws BlocksTruncatedException, FileVersionMismatchException {
+    final String errorInfo = collectProjectErrorInfo(userId, projectId,
+        contents.keySet().iterator().next());
+    final Map<String, String> hashes = new HashMap<String, String>();
+    Map<String, byte[]> changed = new HashMap<String, byte[]>();
+    for (Map.Entry<String, byte[]> entry : contents.entrySet()) {
+      String hash = contentHash(entry.getValue());
+      hashes.put(entry.getKey(), hash);
+      JSONObject fileData = read(fileKey(projectId, entry.getKey()));
+      if (fileData == null || !hash.equals(optString(fileData, "hash"))) {
+        changed.put(entry.getKey(), entry.getValue());
+      }
+    }
+    // Content that is already saved is only referenced again
+    storeContents(userId, changed);
+
+    final Result<Boolean> truncated = new Result<Boolean>();
+    final Result<Boolean> mismatch = new Result<Boolean>();
+    final List<String> freed = new ArrayList<String>();
+    boolean committed = false;
+    Long modDate;  // null if the files were refused
+    try {
+      modDate = update(errorInfo, new LocalStore.Update<Long>() {
+        @Override
+        public Long run(LocalStore.Transaction txn) throws IOException {
+          Map<String, JSONObject> files = new HashMap<String, JSONObject>();
+          for (Map.Entry<String, byte[]> entry : contents.entrySet()) {
+            String fileName = entry.getKey();
+            byte[] content = entry.getValue();
+            JSONObject fileData = read(txn, fileKey(projectId, fileName));
+            // <Screen>.yail files are missing when user converts AI1 project to AI2
+            // instead of blowing up, just create a <Screen>.yail file
+            if (fileData == null && (fileName.endsWith(".yail") || fileName.endsWith(".png"))) {
+              fileData = newFileData(ROLE_SOURCE, userId);
+            }
+            Preconditions.checkState(fileData != null);
+            checkOwner(fileData, userId, projectId);
+            if (baseHash != null && !baseHash.equals(fileData.optString("hash"))) {
+              mismatch.t = true;
+              return null;
+            }
+            // An almost empty blocks workspace replacing a larger one is
+            // likely a truncated save, see ObjectifyStorageIo
+            if (content.length < 125 && fileName.endsWith(".bky") && !force
+                && fileData.optLong("length") > 120) {
+              truncated.t = true;
+              return null;
+            }
+            files.put(fileName, fileData);
+          }
+          boolean anyChanged = false;
+          for (Map.Entry<String, JSONObject> entry : files.entrySet()) {
+            String fileName = entry.getKey();
+            JSONObject fileData = entry.getValue();
+            String hash = hashes.get(fileName);
+            if (hash.equals(optString(fileData, "hash"))) {
+              continue;  // Unchanged
+            }
+            setContent(txn, fileData, hash, contents.get(fileName), freed);
+            if (Strings.isNullOrEmpty(fileData.optString("userId"))) {
+              fileData.put("userId", userId);
+            }
+            write(txn, fileKey(projectId, fileName), fileData);
+            anyChanged = true;
+          }
+          if (!anyChanged) {
+            JSONObject projectData = read(txn, PROJECT + projectId);
+            return projectData == null ? 0 : projectData.optLong("dateModified");
+          }
+          return updateProjectModDate(txn, projectId);
+        }
+      });
+      committed = true;
+    } finally {
+      deleteUnreferenced(committed ? freed : hashes.values());
+    }
+    if (truncated.t != null) {
+      deleteUnreferenced(hashes.values());
+      throw new BlocksTruncatedException();
+    }
+    if (mismatch.t != null) {
+      deleteUnreferenced(hashes.values());
+      throw new FileVersionMismatchException("The content of "
+          + contents.keySet().iterator().next() + " has changed");
+    }
+    return modDate;
+  }
+
+  @Override
+  public long deleteFile(final String userId, final long projectId, final String fileName) {
+    final List<String> freed = new ArrayList<String>();
+    long modDate = update(collectProjectErrorInfo(userId, projectId, fileName),
+        new LocalStore.Update<Long>() {
+          @Override
+          public Long run(LocalStore.Transaction txn) {
+            JSONObject fileData = read(txn, fileKey(projectId, fileName));
+            if (fileData != null) {
+              checkOwner(fileData, userId, projectId);
+              release(txn, optString(fileData, "hash"), freed);
+              txn.delete(fileKey(projectId, fileName));
+            }
+            return updateProjectModDate(txn, projectId);
+          }
+        });
+    deleteUnreferenced(freed);
+    return modDate;
+  }
+
+  @Override
+  public String downloadFile(String userId, long projectId, String fileName, String encoding) {
+    try {
+      return new String(downloadRawFile(userId, projectId, fileName), encoding);
+    } catch (UnsupportedEncodingException e) {
+      throw CrashReport.createAndLogError(LOG, null, "Unsupported file content encoding, "
+          + collectProjectErrorInfo(userId, projectId, fileName), e);
+    }
+  }
+
+  @Override
+  public void recordCorruption(String userId, long projectId, String fileId, String message) {
+    final JSONObject record = new JSONObject();
+    record.put("timestamp", System.currentTimeMillis());
+    record.put("userId", userId);
+    record.put("projectId", projectId);
+    record.put("fileId", fileId);
+    record.put("message", message);
+    insert(CORRUPTION + UUID.randomUUID().toString(), record);
+  }
+
+  @Override
+  public byte[] downloadRawFile(String userId, long projectId, String fileName) {
+    JSONObject fileData = read(fileKey(projectId, fileName));
+    if (fileData == null) {
+      return new byte[0];
+    }
+    checkOwner(fileData, userId, projectId);
+    return readContent(fileData, collectProjectErrorInfo(userId, projectId, fileName));
+  }
+
+  @Override
+  public List<String> downloadFiles(String userId, long projectId, List<String> fileNames,
+      String encoding) {
+    List<String> contents = new ArrayList<String>(fileNames.size());
+    for (String fileName : fileNames) {
+      contents.add(downloadFile(userId, projectId, fileName, encoding));
+    }
+    return contents;
+  }
+
+  @Override
+  public String uploadTempFile(byte[] content) throws IOException {
+    String uuid = UUID.randomUUID().toString();
+    tempFiles.put(uuid, content);
+    return TEMP_PREFIX + uuid;
+  }
+
+  @Override
+  public InputStream openTempFile(String fileName) throws IOException {
+    if (!fileName.startsWith(TEMP_PREFIX)) {
+      throw new RuntimeException("openTempFile (" + fileName + ") Invalid File Name");
+    }
+    return tempFiles.openStream(fileName.substring(TEMP_PREFIX.length()));
+  }
+
+  @Override
+  public void deleteTempFile(String fileName) throws IOException {
+    if (!fileName.startsWith(TEMP_PREFIX)) {
+      throw new RuntimeException("deleteTempFile (" + fileName + ") Invalid File Name");
+    }
+    tempFiles.delete(fileName.substring(TEMP_PREFIX.length()));
+  }
+
+  @Override
+  public Motd getCurrentMotd() {
+    JSONObject motd = read(MOTD);
+    return new Motd(1, motd.optString("caption"), optString(motd, "content"));
+  }
+
+  private void initMotd() {
+    if (read(MOTD) == null) {
+      JSONObject motd = new JSONObject();
+      motd.put("caption", "Hello!");
+      motd.put("content", "Welcome to the experimental App Inventor system from MIT. "
+          + "This is still a prototype.  It would be a good idea to frequently back up "
+          + "your projects to local storage.");
+      insert(MOTD, motd);
+    }
+  }
+
+  @Override
+  public ProjectSourceZip exportProjectSourceZip(final String userId, final long projectId,
+      final boolean includeProjectHistory, final boolean includeAndroidKeystore,
+      @Nullable String zipName, final boolean includeYail, final boolean includeScreenShots,
+      final boolean forGallery, final boolean fatalError) throws IOException {
+    final boolean forBuildserver = includeAndroidKeystore && includeYail;
+    Map<String, JSONObject> files = new LinkedHashMap<String, JSONObject>();
+    Map<String, Integer> screens = new HashMap<String, Integer>();
+    String prefix = fileKey(projectId, "");
+    for (Map.Entry<String, byte[]> entry : store.scan(prefix).entrySet()) {
+      String fileName = entry.getKey().substring(prefix.length());
+      files.put(fileName, json(entry.getValue()));
+      if (fileName.startsWith("src/") && (fileName.endsWith(".scm")
+          || fileName.endsWith(".bky") || fileName.endsWith(".yail"))) {
+        String fileNameNoExt = fileName.substring(0, fileName.lastIndexOf("."));
+        Integer count = screens.get(fileNameNoExt);
+        screens.put(fileNameNoExt, count == null ? 1 : count + 1);
+      }
+    }
+    Iterator<Map.Entry<String, JSONObject>> it = files.entrySet().iterator();
+    while (it.hasNext()) {
+      Map.Entry<String, JSONObject> entry = it.next();
+      String fileName = entry.getKey();
+      if (fileName.startsWith("assets/external_comps") && forGallery) {
+        throw new IOException("FATAL Error, external component in gallery app");
+      }
+      if (!entry.getValue().optString("role").equals(ROLE_SOURCE)) {
+        it.remove();
+      } else if (fileName.equals(FileExporter.REMIX_INFORMATION_FILE_PATH)
+          || (fileName.startsWith("screenshots") && !includeScreenShots)
+          || (fileName.startsWith("src/") && fileName.endsWith(".yail") && !includeYail)) {
+        // See ObjectifyStorageIo for why these are left out
+        it.remove();
+      } else if (forBuildserver && fileName.startsWith("src/")
+          && (fileName.endsWith(".scm") || fileName.endsWith(".bky")
+          || fileName.endsWith(".yail"))) {
+        String fileNameNoExt = fileName.substring(0, fileName.lastIndexOf("."));
+        if (screens.get(fileNameNoExt) < 3) {
+          LOG.log(Level.INFO, "Not adding file to build ", fileName);
+          it.remove();
+          if (fileName.endsWith(".yail")) {
+            deleteFile(userId, projectId, fileName);
+          }
+        }
+      }
+    }
+
+    JSONObject projectData = read(PROJECT + projectId);
+    String projectName = projectData == null ? null : projectData.optString("name");
+    ByteArrayOutputStream zipFile = new ByteArrayOutputStream();
+    ZipOutputStream out = new ZipOutputStream(zipFile);
+    out.setComment("Built with MIT App Inventor");
+    int fileCount = 0;
+    for (Map.Entry<String, JSONObject> entry : files.entrySet()) {
+      out.putNextEntry(new ZipEntry(entry.getKey()));
+      String hash = optString(entry.getValue(), "hash");
+      if (hash != null) {
+        InputStream in = openContent(hash, fatalError,
+            collectProjectErrorInfo(userId, projectId, entry.getKey()));
+        try {
+          ByteStreams.copy(in, out);
+        } finally {
+          in.close();
+        }
+      }
+      out.closeEntry();
+      fileCount++;
+    }
+    if (fileCount > 0 && includeProjectHistory
+        && !Strings.isNullOrEmpty(projectData.optString("history"))) {
+      byte[] data = projectData.optString("history").getBytes(StorageUtil.DEFAULT_CHARSET);
+      out.putNextEntry(new ZipEntry(FileExporter.REMIX_INFORMATION_FILE_PATH));
+      out.write(data, 0, data.length);
+      out.closeEntry();
+      fileCount++;
+    }
+
+    if (fileCount == 0) {
+      // can't close out since will get a ZipException due to the lack of files
+      throw new IllegalArgumentException("No files to download");
+    }
+
+    if (includeAndroidKeystore) {
+      JSONObject keystore = read(USER_FILE + userId + "/" + StorageUtil.ANDROID_KEYSTORE_FILENAME);
+      if (keystore != null && keystore.optLong("length") > 0) {
+        byte[] data = readContent(keystore,
+            collectUserErrorInfo(userId, StorageUtil.ANDROID_KEYSTORE_FILENAME));
+        out.putNextEntry(new ZipEntry(StorageUtil.ANDROID_KEYSTORE_FILENAME));
+        out.write(data, 0, data.length);
+        out.closeEntry();
+        fileCount++;
+      }
+    }
+
+    out.close();
+
+    if (zipName == null) {
+      zipName = projectName + ".aia";
+    }
+    ProjectSourceZip projectSourceZip =
+        new ProjectSourceZip(zipName, zipFile.toByteArray(), fileCount);
+    projectSourceZip.setMetadata(projectName);
+    return projectSourceZip;
+  }
+
+  // Opens content for export. Missing content is exported as an empty file
+  // unless fatalError is set.
+  private InputStream openContent(String hash, boolean fatalError, String errorInfo)
+      throws IOException {
+    try {
+      return blobs.openStream(hash);
+    } catch (FileNotFoundException e) {
+      LOG.log(Level.WARNING, "Missing content in export, " + errorInfo);
+      if (fatalError) {
+        throw new IOException("FATAL Error reading content " + hash);
+      }
+      return new ByteArrayInputStream(new byte[0]);
+    }
+  }
+
+  @Override
+  public String findUserByEmail(String email) throws NoSuchElementException {
+    byte[] userId = store.get(EMAIL + email.toLowerCase());
+    if (userId == null) {
+      throw new NoSuchElementException("Couldn't find a user with email " + email);
+    }
+    return utf8(userId);
+  }
+
+  @Override
+  public String findIpAddressByKey(String key) {
+    JSONObject data = read(RENDEZVOUS + key);
+    return data == null ? null : data.optString("ipAddress");
+  }
+
+  @Override
+  public void storeIpAddressByKey(String key, String ipAddress) {
+    JSONObject data = new JSONObject();
+    data.put("ipAddress", ipAddress);
+    data.put("used", System.currentTimeMillis());  // So we can cleanup old entries
+    insert(RENDEZVOUS + key, data);
+  }
+
+  /*
+   * The whitelist is read from a file named "whitelist" in the storage
+   * directory, with one email address per line.
+   */
+  @Override
+  public boolean checkWhiteList(String email) {
+    return whitelist.contains(email.toLowerCase());
+  }
+
+  @Override
+  public void storeFeedback(String notes, String foundIn, String faultData, String comments,
+      String datestamp, String email, String projectId) {
+    JSONObject data = new JSONObject();
+    data.put("notes", notes);
+    data.put("foundIn", foundIn);
+    data.put("faultData", faultData);
+    data.put("comments", comments);
+    data.put("datestamp", datestamp);
+    data.put("email", email);
+    data.put("projectId", projectId);
+    insert(FEEDBACK + UUID.randomUUID().toString(), data);
+  }
+
+  @Override
+  public Nonce getNoncebyValue(String nonceValue) {
+    JSONObject data = read(NONCE + nonceValue);
+    if (data == null) {
+      return null;
+    }
+    return new Nonce(nonceValue, data.optString("userId"), data.optLong("projectId"),
+        new Date(data.optLong("timestamp")));
+  }
+
+  @Override
+  public void storeNonce(String nonceValue, String userId, long projectId) {
+    JSONObject data = new JSONObject();
+    data.put("userId", userId);
+    data.put("projectId", projectId);
+    data.put("timestamp", System.currentTimeMillis());
+    insert(NONCE + nonceValue, data);
+  }
+
+  // Nonces are kept for an hour after they expire, see ObjectifyStorageIo
+  @Override
+  public void cleanupNonces() {
+    deleteOlderThan(NONCE, "timestamp", System.currentTimeMillis() - NONCE_LIFETIME);
+  }
+
+  @Override
+  public void checkUpgrade(String userId) {
+    // There is nothing to upgrade
+  }
+
+  @Override
+  public void doUpgrade(String userId) {
+    // There is nothing to upgrade
+  }
+
+  @Override
+  public SplashConfig getSplashConfig() {
+    JSONObject data = read(SPLASH);
+    if (data == null) {
+      data = new JSONObject();
+      data.put("version", 0);
+      data.put("width", 350);
+      data.put("height", 100);
+      data.put("content", "<b>Welcome to MIT App Inventor</b>");
+      insert(SPLASH, data);
+    }
+    return new SplashConfig(data.optInt("version"), data.optInt("width"),
+        data.optInt("height"), data.optString("content"));
+  }
+
+  @Override
+  public PWData createPWData(String email) {
+    PWData pwData = new PWData();
+    pwData.id = UUID.randomUUID().toString();
+    pwData.email = email;
+    pwData.timestamp = new Date();
+    JSONObject data = new JSONObject();
+    data.put("email", email);
+    data.put("timestamp", pwData.timestamp.getTime());
+    insert(PWDATA + pwData.id, data);
+    return pwData;
+  }
+
+  @Override
+  public PWData findPWData(String uid) {
+    JSONObject data = read(PWDATA + uid);
+    if (data == null) {
+      return null;
+    }
+    PWData pwData = new PWData();
+    pwData.id = uid;
+    pwData.email = data.optString("email");
+    pwData.timestamp = new Date(data.optLong("timestamp"));
+    return pwData;
+  }
+
+  @Override
+  public void cleanuppwdata() {
+    deleteOlderThan(PWDATA, "timestamp", System.currentTimeMillis() - PWDATA_LIFETIME);
+  }
+
+  private void deleteOlderThan(final String prefix, final String field, final long time) {
+    try {
+      store.update(new LocalStore.Update<Void>() {
+        @Override
+        public Void run(LocalStore.Transaction txn) {
+          for (Map.Entry<String, byte[]> entry : txn.scan(prefix).entrySet()) {
+            if (json(entry.getValue()).optLong(field) < time) {
+              txn.delete(entry.getKey());
+            }
+          }
+          return null;
+        }
+      });
+    } catch (IOException e) {
+      // We will be called again, see ObjectifyStorageIo.cleanupNonces
+      LOG.log(Level.WARNING, "Exception during cleanup of " + prefix, e);
+    }
+  }
+
+  @Override
+  public List<AdminUser> searchUsers(String partialEmail) {
+    List<AdminUser> users = new ArrayList<AdminUser>();
+    for (Map.Entry<String, byte[]> entry : store.tail(EMAIL + partialEmail.toLowerCase())
+        .entrySet()) {
+      if (!entry.getKey().startsWith(EMAIL) || users.size() > 20) {
+        break;
+      }
+      String userId = utf8(entry.getValue());
+      JSONObject userData = read(USER + userId);
+      if (userData != null) {
+        long visited = userData.optLong("visited");
+        users.add(new AdminUser(userId, optString(userData, "name"),
+            userData.optString("email"), userData.optBoolean("tosAccepted"),
+            userData.optBoolean("isAdmin"), visited == 0 ? null : new Date(visited)));
+      }
+    }
+    return users;
+  }
+
+  @Override
+  public void storeUser(final AdminUser user) throws AdminInterfaceException {
+    final Result<Boolean> exists = new Result<Boolean>();
+    final Result<String> userId = new Result<String>();
+    update(collectUserErrorInfo(user.getId()), new LocalStore.Update<Void>() {
+      @Override
+      public Void run(LocalStore.Transaction txn) {
+        JSONObject userData = user.getId() == null ? null : read(txn, USER + user.getId());
+        String password = user.getPassword();
+        if (userData != null) {
+          userId.t = user.getId();
+          setEmail(txn, userId.t, userData, user.getEmail());
+          if (password != null && !password.equals("")) {
+            userData.put("password", password);
+          }
+        } else if (txn.get(EMAIL + user.getEmail().toLowerCase()) != null) {
+          exists.t = true;
+          return null;
+        } else {
+          userId.t = UUID.randomUUID().toString();
+          userData = createUser(txn, userId.t, user.getEmail());
+          if (!password.equals("")) {
+            userData.put("password", password);
+          }
+        }
+        userData.put("isAdmin", user.getIsAdmin());
+        write(txn, USER + userId.t, userData);
+        return null;
+      }
+    });
+    if (exists.t != null) {
+      throw new AdminInterfaceException("User Already exists = " + user.getEmail());
+    }
+    SessionCache.getInstance().invalidateUser(userId.t);
+  }
+
+  @Override
+  public String downloadBackpack(String backPackId) {
+    byte[] content = store.get(BACKPACK + backPackId);
+    return content == null ? "[]" : utf8(content);  // No shared backpack, return an empty one
+  }
+
+  @Override
+  public void uploadBackpack(final String backPackId, final String content) {
+    update(null, new LocalStore.Update<Void>() {
+      @Override
+      public Void run(LocalStore.Transaction txn) {
+        txn.put(BACKPACK + backPackId, bytes(content));
+        return null;
+      }
+    });
+  }
+
+  @Override
+  public void storeBuildStatus(String userId, long projectId, int progress) {
+    buildStatus.put(userId + "/" + projectId, progress);
+  }
+
+  @Override
+  public int getBuildStatus(String userId, long projectId) {
+    Integer progress = buildStatus.get(userId + "/" + projectId);
+    return progress == null ? 50 : progress;
+  }
+
+  @Override
+  public void assertUserHasProject(String userId, long projectId) {
+    if (store.get(USER_PROJECT + userId + "/" + projectId) == null) {
+      throw new SecurityException("Unauthorized access");
+    }
+  }
+
+  @VisibleForTesting
+  int getContentRefCount(byte[] content) {
+    byte[] count = store.get(BLOB_REFS + contentHash(content));
+    return count == null ? 0 : Integer.parseInt(utf8(count));
+  }
+
+  @VisibleForTesting
+  boolean hasContent(byte[] content) {
+    return blobs.exists(contentHash(content));
+  }
+
+  @VisibleForTesting
+  void close() throws IOException {
+    store.close();
+  }
+
+  /*
+   * Sets the project's modification date to now, unless it was set less than
+   * a minute ago, and returns it. See ObjectifyStorageIo.updateProjectModDate.
+   */
+  private long updateProjectModDate(LocalStore.Transaction txn, long projectId) {
+    JSONObject projectData = read(txn, PROJECT + projectId);
+    if (projectData == null) {
+      throw CrashReport.createAndLogError(LOG, null, null,
+          new IllegalArgumentException("project " + projectId + " doesn't exist"));
+    }
+    long modDate = System.currentTimeMillis();
+    if (modDate > projectData.optLong("dateModified") + 1000 * 60) {
+      projectData.put("dateModified", modDate);
+      projectData.put("listModified", modDate);
+      write(txn, PROJECT + projectId, projectData);
+      return modDate;
+    }
+    return projectData.optLong("dateModified");
+  }
+
+  private static JSONObject newFileData(String role, String userId) {
+    JSONObject fileData = new JSONObject();
+    fileData.put("role", role);
+    fileData.put("userId", userId);
+    return fileData;
+  }
+
+  private void checkOwner(JSONObject fileData, String userId, long projectId) {
+    String owner = fileData.optString("userId");
+    if (!owner.equals("") && !owner.equals(userId)) {
+      throw CrashReport.createAndLogError(LOG, null,
+          collectUserProjectErrorInfo(userId, projectId),
+          new UnauthorizedAccessException(userId, projectId, null));
+    }
+  }
+
+  // Content
+
+  private static String contentHash(byte[] content) {
+    return Hashing.sha256().hashBytes(content).toString();
+  }
+
+  // Writes content to the blob store, before the transaction that refers to
+  // it. Returns the hashes by file name.
+  private Map<String, String> storeContents(String userId, Map<String, byte[]> contents) {
+    Map<String, String> hashes = new HashMap<String, String>();
+    for (Map.Entry<String, byte[]> entry : contents.entrySet()) {
+      hashes.put(entry.getKey(), storeContent(collectUserErrorInfo(userId, entry.getKey()),
+          entry.getValue()));
+    }
+    return hashes;
+  }
+
+  private String storeContent(String errorInfo, byte[] content) {
+    String hash = contentHash(content);
+    try {
+      blobs.put(hash, content);
+    } catch (IOException e) {
+      throw CrashReport.createAndLogError(LOG, null, errorInfo, e);
+    }
+    return hash;
+  }
+
+  /*
+   * Makes a file or user file record refer to new content, releasing the
+   * content it referred to before. Content not already referred to by another
+   * file is written again if it is missing, in case deleteUnreferenced
+   * removed it after it was stored for this transaction.
+   */
+  private void setContent(LocalStore.Transaction txn, JSONObject fileData, String hash,
+      @Nullable byte[] content, @Nullable List<String> freed) throws IOException {
+    if (freed != null) {
+      release(txn, optString(fileData, "hash"), freed);
+    }
+    byte[] count = txn.get(BLOB_REFS + hash);
+    int refs = count == null ? 0 : Integer.parseInt(utf8(count));
+    if (refs == 0 && content != null && !blobs.exists(hash)) {
+      blobs.put(hash, content);
+    }
+    txn.put(BLOB_REFS + hash, bytes(Integer.toString(refs + 1)));
+    fileData.put("hash", hash);
+    if (content != null) {
+      fileData.put("length", content.length);
+    }
+  }
+
+  private void release(LocalStore.Transaction txn, @Nullable String hash, List<String> freed) {
+    if (hash == null) {
+      return;
+    }
+    byte[] count = txn.get(BLOB_REFS + hash);
+    int refs = count == null ? 0 : Integer.parseInt(utf8(count)) - 1;
+    if (refs > 0) {
+      txn.put(BLOB_REFS + hash, bytes(Integer.toString(refs)));
+    } else {
+      txn.delete(BLOB_REFS + hash);
+      freed.add(hash);
+    }
+  }
+
+  /*
+   * Deletes content no file refers to. This is done only after the change
+   * that released it is on disk, and while holding the store's lock, so that
+   * no transaction can start referring to it again meanwhile.
+   *
+   * Reads do not take the lock, so the content is not deleted at once: it is
+   * recorded as freed, and deleted by a later call once it has gone
+   * unreferenced for freedContentSeconds. Content freed before a restart is
+   * deleted by the first call after it.
+   */
+  private void deleteUnreferenced(final Collection<String> hashes) {
+    if (hashes.isEmpty()) {
+      return;
+    }
+    final long now = System.currentTimeMillis();
+    final long freedBefore = now - freedContentSeconds.get() * 1000L;
+    try {
+      store.update(new LocalStore.Update<Void>() {
+        @Override
+        public Void run(LocalStore.Transaction txn) {
+          for (String hash : new HashSet<String>(hashes)) {
+            if (txn.get(BLOB_REFS + hash) == null) {
+              txn.put(FREED + hash, bytes(Long.toString(now)));
+            }
+          }
+          for (Map.Entry<String, byte[]> entry : txn.scan(FREED).entrySet()) {
+            if (Long.parseLong(utf8(entry.getValue())) > freedBefore) {
+              continue;
+            }
+            String hash = entry.getKey().substring(FREED.length());
+            if (txn.get(BLOB_REFS + hash) == null) {
+              blobs.delete(hash);
+            }
+            txn.delete(entry.getKey());
+          }
+          return null;
+        }
+      });
+    } catch (IOException e) {
+      LOG.log(Level.WARNING, "Unable to delete unused content", e);
+    } catch (IllegalStateException e) {
+      LOG.log(Level.WARNING, "Unable to delete unused content", e);
+    }
+  }
+
+  private byte[] readContent(JSONObject fileData, String errorInfo) {
+    String hash = optString(fileData, "hash");
+    if (hash == null) {
+      return new byte[0];
+    }
+    try {
+      return blobs.get(hash);
+    } catch (IOException e) {
+      throw CrashReport.createAndLogError(LOG, null, errorInfo, e);
+    }
+  }
+
+  // Records
+
+  private static String fileKey(long projectId, String fileName) {
+    return FILE + projectId + "/" + fileName;
+  }
+
+  @Nullable
+  private JSONObject read(String key) {
+    byte[] value = store.get(key);
+    return value == null ? null : json(value);
+  }
+
+  @Nullable
+  private static JSONObject read(LocalStore.Transaction txn, String key) {
+    byte[] value = txn.get(key);
+    return value == null ? null : json(value);
+  }
+
+  private static void write(LocalStore.Transaction txn, String key, JSONObject value) {
+    txn.put(key, bytes(value.toString()));
+  }
+
+  private void insert(final String key, final JSONObject value) {
+    update(null, new LocalStore.Update<Void>() {
+      @Override
+      public Void run(LocalStore.Transaction txn) {
+        write(txn, key, value);
+        return null;
+      }
+    });
+  }
+
+  @VisibleForTesting
+  <T> T update(String errorInfo, LocalStore.Update<T> update) {
+    try {
+      return store.update(update);
+    } catch (IOException e) {
+      throw CrashReport.createAndLogError(LOG, null, errorInfo, e);
+    }
+  }
+
+  private static JSONObject json(byte[] value) {
+    return new JSONObject(utf8(value));
+  }
+
+  @Nullable
+  private static String optString(JSONObject object, String key) {
+    return object.isNull(key) ? null : object.optString(key);
+  }
+
+  private static String utf8(byte[] value) {
+    try {
+      return new String(value, DEFAULT_ENCODING);
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);  // UTF-8 is always supported
+    }
+  }
+
+  private static byte[] bytes(String value) {
+    try {
+      return value.getBytes(DEFAULT_ENCODING);
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);  // UTF-8 is always supported
+    }
+  }
+
+  private static byte[] encode(String content, String encoding, String errorInfo) {
+    try {
+      return content.getBytes(encoding);
+    } catch (UnsupportedEncodingException e) {
+      throw CrashReport.createAndLogError(LOG, null, "Unsupported file content encoding, "
+          + errorInfo, e);
+    }
+  }
+
+  private static Set<String> readWhitelist(File file) throws IOException {
+    Set<String> emails = new HashSet<String>();
+    if (file.isFile()) {
+      BufferedReader reader = new BufferedReader(new InputStreamReader(
+          new FileInputStream(file), DEFAULT_ENCODING));
+      try {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          if (!line.trim().equals("")) {
+            emails.add(line.trim().toLowerCase());
+          }
+        }
+      } finally {
+        reader.close();
+      }
+    }
+    return emails;
+  }
+
+  private static String collectUserErrorInfo(final String userId) {
+    return collectUserErrorInfo(userId, CrashReport.NOT_AVAILABLE);
+  }
+
+  private static String collectUserErrorInfo(final String userId, String fileName) {
+    return "user=" + userId + ", file=" + fileName;
+  }
+
+  private static String collectProjectErrorInfo(final String userId, final long projectId,
+      final String fileName) {
+    return "user=" + userId + ", project=" + projectId + ", file=" + fileName;
+  }
+
+  private static String collectUserProjectErrorInfo(final String userId, final long projectId) {
+    return "user=" + userId + ", project=" + projectId;
+  }
+}
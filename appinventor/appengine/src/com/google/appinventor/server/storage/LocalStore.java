@@ -0,0 +1,419 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.server.storage;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import javax.annotation.Nullable;
+
+/**
+ * A small transactional key-value store kept in memory and made durable by a
+ * write-ahead log, used by {@link LocalStorageIo}.
+ *
+ * <p>Updates run one at a time, each seeing the effect of the ones before it.
+ * The changes an update makes are appended to the log, and the update returns
+ * once they are on disk. Updates that finish while the log is being synced
+ * are written and synced together by the next writer, so a busy server pays
+ * for one sync per group of updates rather than one per update. Reads do not
+ * wait for updates; they see the changes of an update as soon as it has run,
+ * which may be just before those changes are on disk.
+ *
+ * <p>When the log has grown well past the size of the live data it is
+ * rewritten with only the current values.
+ *
+ */
+final class LocalStore {
+  private static final Logger LOG = Logger.getLogger(LocalStore.class.getName());
+
+  /**
+   * The work of an update. {@link #run} may be called only once, with the
+   * store locked, and should not do slow I/O.
+   */
+  interface Update<T> {
+    T run(Transaction txn) throws IOException;
+  }
+
+  /**
+   * The view of the store an update runs against: the committed values with
+   * the update's own changes on top.
+   */
+  final class Transaction {
+    private final Map<String, byte[]> changes = new HashMap<String, byte[]>();
+
+    private Transaction() {
+    }
+
+    @Nullable
+    byte[] get(String key) {
+      if (changes.containsKey(key)) {
+        return changes.get(key);
+      }
+      return data.get(key);
+    }
+
+    void put(String key, byte[] value) {
+      changes.put(key, value);
+    }
+
+    void delete(String key) {
+      changes.put(key, null);
+    }
+
+    /**
+     * Returns the keys and values whose keys start with prefix, in key order.
+     */
+    SortedMap<String, byte[]> scan(String prefix) {
+      TreeMap<String, byte[]> result = new TreeMap<String, byte[]>(LocalStore.this.scan(prefix));
+      for (Map.Entry<String, byte[]> change : changes.entrySet()) {
+        if (change.getKey().startsWith(prefix)) {
+          if (change.getValue() == null) {
+            result.remove(change.getKey());
+          } else {
+            result.put(change.getKey(), change.getValue());
+          }
+        }
+      }
+      return result;
+    }
+  }
+
+  private static final byte OP_DELETE = 0;
+  private static final byte OP_PUT = 1;
+
+  // The log is rewritten when it is larger than this, and more than
+  // COMPACT_RATIO times the size of the live data
+  private static final long MIN_COMPACT_BYTES = 16 * 1024 * 1024;
+  private static final int COMPACT_RATIO = 4;
+
+  private final File logFile;
+  private final ConcurrentSkipListMap<String, byte[]> data =
+      new ConcurrentSkipListMap<String, byte[]>();
+  private long liveBytes;
+
+  // Held while an update runs, and while the log is rewritten
+  private final ReentrantLock updateLock = new ReentrantLock();
+
+  // Records of updates that have run but are not yet written, guarded by
+  // this. Sequence numbers count updates; synced is the last one on disk.
+  private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+  private long appended;
+  private long synced;
+  private boolean syncing;
+  private IOException failure;
+
+  private RandomAccessFile log;
+
+  /**
+   * Opens a store, reading its log if there is one.
+   *
+   * @param logFile the file holding the log
+   * @throws IOException if the log cannot be read or opened for writing
+   */
+  LocalStore(File logFile) throws IOException {
+    this.logFile = logFile;
+    log = new RandomAccessFile(logFile, "rw");
+    long validLength = replay();
+    if (validLength < log.length()) {
+      LOG.warning("Discarding " + (log.length() - validLength) + " bytes at the end of "
+          + logFile + ", left by an interrupted write");
+      log.setLength(validLength);
+    }
+    log.seek(validLength);
+  }
+
+  @Nullable
+  byte[] get(String key) {
+    return data.get(key);
+  }
+
+  /**
+   * Returns the keys and values whose keys start with prefix, in key order.
+   * The map is a live view and must not be changed.
+   */
+  SortedMap<String, byte[]> scan(String prefix) {
+    return data.subMap(prefix, prefix + Character.MAX_VALUE);
+  }
+
+  /**
+   * Returns the keys and values from key onwards, in key order. The map is a
+   * live view and must not be changed.
+   */
+  NavigableMap<String, byte[]> tail(String key) {
+    return data.tailMap(key, true);
+  }
+
+  /**
+   * Runs an update and waits until its changes are on disk.
+   *
+   * @return what the update returned
+   * @throws IOException if the update throws it, or the changes could not be
+   *         written. Once the log cannot be written, all later updates fail.
+   */
+  <T> T update(Update<T> update) throws IOException {
+    long sequence;
+    T result;
+    updateLock.lock();
+    try {
+      synchronized (this) {
+        if (failure != null) {
+          throw new IOException("The store can no longer be written", failure);
+        }
+      }
+      Transaction txn = new Transaction();
+      result = update.run(txn);
+      if (txn.changes.isEmpty()) {
+        return result;
+      }
+      byte[] record = encode(txn.changes);
+      apply(txn.changes);
+      synchronized (this) {
+        pending.write(record, 0, record.length);
+        sequence = ++appended;
+      }
+    } finally {
+      updateLock.unlock();
+    }
+    sync(sequence);
+    maybeCompact();
+    return result;
+  }
+
+  /*
+   * Waits until the update with the given sequence number is on disk. The
+   * first waiter to find no sync in progress writes everything pending, for
+   * itself and for the updates that queued up behind it.
+   */
+  private void sync(long sequence) throws IOException {
+    byte[] batch;
+    long batchEnd;
+    synchronized (this) {
+      while (true) {
+        if (failure != null) {
+          throw new IOException("The store can no longer be written", failure);
+        }
+        if (synced >= sequence) {
+          return;
+        }
+        if (!syncing) {
+          break;
+        }
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IOException("Interrupted waiting for the log", e);
+        }
+      }
+      syncing = true;
+      batch = pending.toByteArray();
+      batchEnd = appended;
+      pending = new ByteArrayOutputStream();
+    }
+    IOException error = null;
+    try {
+      log.write(batch);
+      log.getChannel().force(false);
+    } catch (IOException e) {
+      error = e;
+    }
+    synchronized (this) {
+      syncing = false;
+      if (error != null) {
+        failure = error;
+      } else {
+        synced = batchEnd;
+      }
+      notifyAll();
+    }
+    if (error != null) {
+      throw error;
+    }
+  }
+
+  private void maybeCompact() throws IOException {
+    long logLength;
+    synchronized (this) {
+      logLength = log.length();
+    }
+    if (logLength < MIN_COMPACT_BYTES || logLength < COMPACT_RATIO * liveBytes) {
+      return;
+    }
+    updateLock.lock();
+    try {
+      // Let the last updates reach the old log before it is replaced
+      sync(appended);
+      synchronized (this) {
+        while (syncing) {
+          try {
+            wait();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+          }
+        }
+        compact();
+      }
+    } finally {
+      updateLock.unlock();
+    }
+  }
+
+  @VisibleForTesting
+  synchronized void compact() throws IOException {
+    File tempFile = new File(logFile.getPath() + ".tmp");
+    RandomAccessFile temp = new RandomAccessFile(tempFile, "rw");
+    try {
+      temp.setLength(0);
+      Map<String, byte[]> batch = new HashMap<String, byte[]>();
+      long batchBytes = 0;
+      for (Map.Entry<String, byte[]> entry : data.entrySet()) {
+        batch.put(entry.getKey(), entry.getValue());
+        batchBytes += entry.getKey().length() + entry.getValue().length;
+        if (batchBytes > 1024 * 1024) {
+          temp.write(encode(batch));
+          batch.clear();
+          batchBytes = 0;
+        }
+      }
+      if (!batch.isEmpty()) {
+        temp.write(encode(batch));
+      }
+      temp.getChannel().force(false);
+    } finally {
+      temp.close();
+    }
+    Files.move(tempFile.toPath(), logFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+    log.close();
+    log = new RandomAccessFile(logFile, "rw");
+    log.seek(log.length());
+  }
+
+  synchronized void close() throws IOException {
+    log.close();
+  }
+
+  private void apply(Map<String, byte[]> changes) {
+    for (Map.Entry<String, byte[]> change : changes.entrySet()) {
+      byte[] old;
+      if (change.getValue() == null) {
+        old = data.remove(change.getKey());
+      } else {
+        old = data.put(change.getKey(), change.getValue());
+        liveBytes += change.getKey().length() + change.getValue().length;
+      }
+      if (old != null) {
+        liveBytes -= change.getKey().length() + old.length;
+      }
+    }
+  }
+
+  /*
+   * A record is its length, the CRC-32 of its body, and the body: the number
+   * of changes, then for each an operation, the key, and for a put the value
+   * preceded by its length.
+   */
+  private static byte[] encode(Map<String, byte[]> changes) throws IOException {
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(body);
+    out.writeInt(changes.size());
+    for (Map.Entry<String, byte[]> change : changes.entrySet()) {
+      if (change.getValue() == null) {
+        out.writeByte(OP_DELETE);
+        out.writeUTF(change.getKey());
+      } else {
+        out.writeByte(OP_PUT);
+        out.writeUTF(change.getKey());
+        out.writeInt(change.getValue().length);
+        out.write(change.getValue());
+      }
+    }
+    out.flush();
+    byte[] bytes = body.toByteArray();
+    CRC32 crc = new CRC32();
+    crc.update(bytes);
+    ByteBuffer record = ByteBuffer.allocate(8 + bytes.length);
+    record.putInt(bytes.length);
+    record.putInt((int) crc.getValue());
+    record.put(bytes);
+    return record.array();
+  }
+
+  /*
+   * Reads the log into memory and returns the length of its complete records.
+   * A record cut short or garbled by a crash ends the log.
+   */
+  private long replay() throws IOException {
+    long length = log.length();
+    DataInputStream in = new DataInputStream(
+        new BufferedInputStream(Files.newInputStream(logFile.toPath())));
+    long position = 0;
+    try {
+      while (position + 8 <= length) {
+        int size = in.readInt();
+        int expectedCrc = in.readInt();
+        if (size < 0 || position + 8 + size > length) {
+          break;
+        }
+        byte[] body = new byte[size];
+        in.readFully(body);
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        if ((int) crc.getValue() != expectedCrc) {
+          break;
+        }
+        apply(decode(body));
+        position += 8 + size;
+      }
+    } catch (EOFException e) {
+      // A record cut short, the log ends at position
+    } finally {
+      in.close();
+    }
+    return position;
+  }
+
+  private static Map<String, byte[]> decode(byte[] body) throws IOException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+    int count = in.readInt();
+    Map<String, byte[]> changes = new HashMap<String, byte[]>();
+    for (int i = 0; i < count; i++) {
+      byte op = in.readByte();
+      String key = in.readUTF();
+      if (op == OP_PUT) {
+        byte[] value = new byte[in.readInt()];
+        in.readFully(value);
+        changes.put(key, value);
+      } else {
+        changes.put(key, null);
+      }
+    }
+    return Collections.unmodifiableMap(changes);
+  }
+}
@@ -6,6 +6,7 @@
 
 package com.google.appinventor.server.storage;
 
+import com.google.appengine.api.ThreadManager;
 import com.google.appengine.api.appidentity.AppIdentityService;
 import com.google.appengine.api.appidentity.AppIdentityServiceFactory;
 import com.google.appengine.api.appidentity.AppIdentityServiceFailureException;
@@ -24,8 +25,11 @@ import com.google.apphosting.api.ApiProxy;
 import com.google.appinventor.server.CrashReport;
 import com.google.appinventor.server.FileExporter;
 import com.google.appinventor.server.Server;
+import com.google.appinventor.server.SessionCache;
 import com.google.appinventor.server.flags.Flag;
+import com.google.appinventor.server.util.ZipWriter;
 import com.google.appinventor.server.storage.StoredData.Backpack;
+import com.google.appinventor.server.storage.StoredData.ContentData;
 import com.google.appinventor.server.storage.StoredData.CorruptionRecord;
 import com.google.appinventor.server.storage.StoredData.FeedbackData;
 import com.google.appinventor.server.storage.StoredData.FileData;
@@ -44,9 +48,12 @@ import com.google.appinventor.shared.rpc.BlocksTruncatedException;
 import com.google.appinventor.shared.rpc.Motd;
 import com.google.appinventor.shared.rpc.Nonce;
 import com.google.appinventor.shared.rpc.admin.AdminUser;
+import com.google.appinventor.shared.rpc.project.FileVersionMismatchException;
 import com.google.appinventor.shared.rpc.project.Project;
+import com.google.appinventor.shared.rpc.project.ProjectListPage;
 import com.google.appinventor.shared.rpc.project.ProjectSourceZip;
 import com.google.appinventor.shared.rpc.project.RawFile;
+import com.google.appinventor.shared.rpc.project.TextDelta;
 import com.google.appinventor.shared.rpc.project.TextFile;
 import com.google.appinventor.shared.rpc.project.UserProject;
 import com.google.appinventor.shared.rpc.project.youngandroid.YoungAndroidProjectNode;
@@ -56,7 +63,9 @@ import com.google.appinventor.shared.storage.StorageUtil;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
+import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
+import com.google.common.hash.Hashing;
 import com.google.common.io.ByteSource;
 import com.google.common.io.ByteStreams;
 
@@ -67,6 +76,8 @@ import com.googlecode.objectify.Query;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 
 // GCS imports
 import com.google.appengine.tools.cloudstorage.GcsFileOptions;
@@ -89,13 +100,21 @@ import java.util.ConcurrentModificationException;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.NoSuchElementException;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 import java.util.Date;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.annotation.Nullable;
 
@@ -129,8 +148,29 @@ public class ObjectifyStorageIo implements  StorageIo {
 
   private static final long TWENTYFOURHOURS = 24*3600*1000; // 24 hours in milliseconds
 
+  // A text file in GCS that is changed by a delta keeps the delta next to its
+  // content, until it has this many deltas or they add up to MAX_DELTA_BYTES.
+  // Then, or when a daily backup is due, the whole content is written again.
+  private static final int MAX_DELTAS = 20;
+  private static final int MAX_DELTA_BYTES = 100000;
+
+  // Maximum number of concurrent GCS (or blobstore) operations issued by
+  // downloadFiles and uploadFiles.
+  private static final int MAX_PARALLEL_IO = 8;
+
   private final boolean useGcs = Flag.createFlag("use.gcs", true).get();
 
+  // When true, file content kept in GCS is stored once for all of the files
+  // with the same bytes, named by its hash, rather than once per file. See
+  // acquireContent and releaseContent.
+  private final boolean shareContent = Flag.createFlag("storage.share.content", false).get();
+
+  // When true, text files are stored compressed, see useCompression
+  private final boolean compressText = Flag.createFlag("storage.compress.text", true).get();
+
+  // Prefix of the GCS names of shared content
+  private static final String SHARED_CONTENT_PREFIX = "content/";
+
   private final boolean conversionEnabled = false; // We are converting GCS <=> Blobstore
   private static final boolean DEBUG = Flag.createFlag("appinventor.debugging", false).get();
 
@@ -195,6 +235,7 @@ public class ObjectifyStorageIo implements  StorageIo {
     ObjectifyService.register(PWData.class);
     ObjectifyService.register(SplashData.class);
     ObjectifyService.register(Backpack.class);
+    ObjectifyService.register(ContentData.class);
 
     // Learn GCS Bucket from App Configuration or App Engine Default
     String gcsBucket = Flag.createFlag("gcs.bucket", "").get();
@@ -371,6 +412,7 @@ public class ObjectifyStorageIo implements  StorageIo {
           }
         }
       }, true);
+      SessionCache.getInstance().invalidateUser(userId);
     } catch (ObjectifyException e) {
       throw CrashReport.createAndLogError(LOG, null, collectUserErrorInfo(userId), e);
     }
@@ -390,6 +432,7 @@ public class ObjectifyStorageIo implements  StorageIo {
           }
         }
       }, true);
+      SessionCache.getInstance().invalidateUser(userId);
     } catch (ObjectifyException e) {
       throw CrashReport.createAndLogError(LOG, null, collectUserErrorInfo(userId), e);
     }
@@ -403,6 +446,7 @@ public class ObjectifyStorageIo implements  StorageIo {
         public void run(Objectify datastore) {
           String cachekey = User.usercachekey + "|" + userId;
           memcache.delete(cachekey);  // Flush cached copy prior to update
+          SessionCache.getInstance().invalidateUser(userId);
           UserData userData = datastore.find(userKey(userId));
           if (userData != null) {
             userData.sessionid = sessionId;
@@ -423,6 +467,7 @@ public class ObjectifyStorageIo implements  StorageIo {
         public void run(Objectify datastore) {
           String cachekey = User.usercachekey + "|" + userId;
           memcache.delete(cachekey);  // Flush cached copy prior to update
+          SessionCache.getInstance().invalidateUser(userId);
           UserData userData = datastore.find(userKey(userId));
           if (userData != null) {
             userData.password = password;
@@ -479,7 +524,9 @@ public class ObjectifyStorageIo implements  StorageIo {
   public long createProject(final String userId, final Project project,
       final String projectSettings) {
     final Result<Long> projectId = new Result<Long>();
+    final Result<Long> dateCreated = new Result<Long>();
     final List<FileData> addedFiles = new ArrayList<FileData>();
+    final Map<String, String> sharedContent = new HashMap<String, String>();
 
     try {
       // first job is on the project entity, creating the ProjectData object
@@ -500,6 +547,7 @@ public class ObjectifyStorageIo implements  StorageIo {
 
           assert pd.id != null;
           projectId.t = pd.id;
+          dateCreated.t = date;
           // After the job commits projectId.t should end up with the last value
           // we've gotten for pd.id (i.e. the one that committed if there
           // was no error).
@@ -510,7 +558,8 @@ public class ObjectifyStorageIo implements  StorageIo {
           for (TextFile file : project.getSourceFiles()) {
             try {
               addedFiles.add(createRawFile(projectKey, FileData.RoleEnum.SOURCE, userId,
-                  file.getFileName(), file.getContent().getBytes(DEFAULT_ENCODING)));
+                  file.getFileName(), file.getContent().getBytes(DEFAULT_ENCODING),
+                  sharedContent));
             } catch (IOException e) { // GCS throws this
               throw CrashReport.createAndLogError(LOG, null,
                 collectProjectErrorInfo(userId, projectId.t, file.getFileName()), e);
@@ -519,7 +568,7 @@ public class ObjectifyStorageIo implements  StorageIo {
           for (RawFile file : project.getRawSourceFiles()) {
             try {
               addedFiles.add(createRawFile(projectKey, FileData.RoleEnum.SOURCE, userId, file.getFileName(),
-                  file.getContent()));
+                  file.getContent(), sharedContent));
             } catch (IOException e) {
               throw CrashReport.createAndLogError(LOG, null,
                 collectProjectErrorInfo(userId, projectId.t, file.getFileName()), e);
@@ -551,13 +600,18 @@ public class ObjectifyStorageIo implements  StorageIo {
           upd.settings = projectSettings;
           upd.state = UserProjectData.StateEnum.OPEN;
           upd.userKey = userKey(userId);
+          upd.name = project.getProjectName();
+          upd.sortName = upd.name.toLowerCase();
+          upd.dateCreated = dateCreated.t;
+          upd.dateModified = dateCreated.t;
+          upd.listModified = dateCreated.t;
           datastore.put(upd);
         }
       }, true);
     } catch (ObjectifyException e) {
       for (FileData addedFile : addedFiles) {
         if (isTrue(addedFile.isGCS)) {  // Do something
-          if (addedFile.gcsName != null) {
+          if (addedFile.gcsName != null && !isSharedContent(addedFile.gcsName)) {
             try {
               gcsService.delete(new GcsFilename(GCS_BUCKET_NAME, addedFile.gcsName));
             } catch (IOException ee) {
@@ -566,8 +620,12 @@ public class ObjectifyStorageIo implements  StorageIo {
           }
         }
       }
+      for (String gcsName : sharedContent.values()) {
+        releaseContent(gcsName);
+      }
       // clear addedFiles in case we end up here more than once
       addedFiles.clear();
+      sharedContent.clear();
       throw CrashReport.createAndLogError(LOG, null,
           collectUserProjectErrorInfo(userId, projectId.t), e);
       }
@@ -578,29 +636,148 @@ public class ObjectifyStorageIo implements  StorageIo {
   /*
    *  Creates and returns a new FileData object with the specified fields.
    *  Does not check for the existence of the object and does not update
-   *  the database.
+   *  the database. Shared content acquired for the file is recorded in
+   *  sharedContent by file name, and reused when a job is retried.
    */
   private FileData createRawFile(Key<ProjectData> projectKey, FileData.RoleEnum role,
-    String userId, String fileName, byte[] content) throws ObjectifyException, IOException {
+    String userId, String fileName, byte[] content, Map<String, String> sharedContent)
+    throws ObjectifyException, IOException {
     validateGCS();
     FileData file = new FileData();
     file.fileName = fileName;
     file.projectKey = projectKey;
     file.role = role;
     file.userId = userId;
-    if (useGCSforFile(fileName, content.length)) {
+    file.contentHash = contentHash(content);
+    // Shared content is kept as it is, since files with different formats
+    // may share it
+    int format = contentFormat(fileName);
+    byte[] stored = encodeContent(format, content);
+    if (useGCSforFile(fileName, stored.length) && useSharedContent()) {
+      file.isGCS = true;
+      file.gcsName = sharedContent.get(fileName);
+      if (file.gcsName == null) {
+        file.gcsName = acquireContent(file.contentHash, content);
+        sharedContent.put(fileName, file.gcsName);
+      }
+    } else if (useGCSforFile(fileName, stored.length)) {
       file.isGCS = true;
       file.gcsName = makeGCSfileName(fileName, projectKey.getId());
+      file.contentFormat = format;
       GcsOutputChannel outputChannel =
         gcsService.createOrReplace(new GcsFilename(GCS_BUCKET_NAME, file.gcsName), GcsFileOptions.getDefaultInstance());
-      outputChannel.write(ByteBuffer.wrap(content));
+      outputChannel.write(ByteBuffer.wrap(stored));
       outputChannel.close();
     } else {
-      file.content = content;
+      file.content = stored;
+      file.contentFormat = format;
     }
     return file;
   }
 
+  @Override
+  public long copySourceFiles(final String userId, final long fromProjectId,
+      final long toProjectId, final Map<String, String> fileNames) {
+    validateGCS();
+    final Map<String, FileData> sources = new LinkedHashMap<String, FileData>();
+    final List<FileData> copies = new ArrayList<FileData>();
+    final Map<String, String> sharedContent = new HashMap<String, String>();
+    final List<String> writtenGcsNames = new ArrayList<String>();
+    final Result<Long> modTime = new Result<Long>();
+    boolean committed = false;
+    try {
+      runJobWithRetries(new JobRetryHelper() {
+        @Override
+        public void run(Objectify datastore) {
+          sources.clear();
+          if (datastore.find(userProjectKey(userKey(userId), toProjectId)) == null) {
+            throw CrashReport.createAndLogError(LOG, null,
+                collectUserProjectErrorInfo(userId, toProjectId),
+                new UnauthorizedAccessException(userId, toProjectId, null));
+          }
+          Key<ProjectData> projectKey = projectKey(fromProjectId);
+          List<Key<FileData>> keys = new ArrayList<Key<FileData>>();
+          for (String fileName : fileNames.keySet()) {
+            keys.add(projectFileKey(projectKey, fileName));
+          }
+          Map<Key<FileData>, FileData> found = datastore.get(keys);
+          for (String fileName : fileNames.keySet()) {
+            FileData fd = found.get(projectFileKey(projectKey, fileName));
+            Preconditions.checkState(fd != null);
+            if (fd.userId != null && !fd.userId.equals("") && !fd.userId.equals(userId)) {
+              throw CrashReport.createAndLogError(LOG, null,
+                  collectUserProjectErrorInfo(userId, fromProjectId),
+                  new UnauthorizedAccessException(userId, fromProjectId, null));
+            }
+            sources.put(fileName, fd);
+          }
+        }
+      }, false);
+
+      // Content kept in the datastore, or shared in GCS, is copied by
+      // reference. Only content that belongs to the old project alone has to
+      // be read and stored again.
+      Key<ProjectData> toProjectKey = projectKey(toProjectId);
+      for (Map.Entry<String, FileData> entry : sources.entrySet()) {
+        FileData from = entry.getValue();
+        String toFileName = fileNames.get(entry.getKey());
+        FileData to;
+        if (isTrue(from.isGCS) && isSharedContent(from.gcsName)) {
+          to = new FileData();
+          to.isGCS = true;
+          to.gcsName = acquireContent(sharedContentHash(from.gcsName), null);
+          sharedContent.put(toFileName, to.gcsName);
+          to.contentHash = from.contentHash;
+          to.deltas = from.deltas;
+          to.deltaCount = from.deltaCount;
+        } else if (!isTrue(from.isGCS) && !from.isBlob && from.content != null) {
+          to = new FileData();
+          to.content = from.content;
+          to.contentFormat = from.contentFormat;
+          to.contentHash = from.contentHash != null ? from.contentHash
+              : contentHash(readFileContent(userId, fromProjectId, entry.getKey(), from));
+        } else {
+          byte[] content = downloadRawFile(userId, fromProjectId, entry.getKey());
+          to = createRawFile(toProjectKey, from.role, userId, toFileName, content, sharedContent);
+          if (isTrue(to.isGCS) && !isSharedContent(to.gcsName)) {
+            writtenGcsNames.add(to.gcsName);
+          }
+        }
+        to.fileName = toFileName;
+        to.projectKey = toProjectKey;
+        to.role = from.role;
+        to.userId = userId;
+        to.settings = from.settings;
+        copies.add(to);
+      }
+
+      runJobWithRetries(new JobRetryHelper() {
+        @Override
+        public void run(Objectify datastore) {
+          datastore.put(copies);
+          modTime.t = updateProjectModDate(datastore, userId, toProjectId, false);
+        }
+      }, true);
+      committed = true;
+    } catch (ObjectifyException e) {
+      throw CrashReport.createAndLogError(LOG, null,
+          collectUserProjectErrorInfo(userId, toProjectId), e);
+    } catch (IOException e) {
+      throw CrashReport.createAndLogError(LOG, null,
+          collectUserProjectErrorInfo(userId, toProjectId), e);
+    } finally {
+      if (!committed) {
+        for (String gcsName : sharedContent.values()) {
+          releaseContent(gcsName);
+        }
+        for (String gcsName : writtenGcsNames) {
+          deleteGcsObject(gcsName);
+        }
+      }
+    }
+    return modTime.t;
+  }
+
   @Override
   public void deleteProject(final String userId, final long projectId) {
     validateGCS();
@@ -643,11 +820,7 @@ public class ObjectifyStorageIo implements  StorageIo {
       }
       // Now delete the gcs files
       for (String gcsName: gcsPaths) {
-        try {
-          gcsService.delete(new GcsFilename(GCS_BUCKET_NAME, gcsName));
-        } catch (IOException e) {
-          LOG.log(Level.WARNING, "Unable to delete " + gcsName + " from GCS while deleting project", e);
-        }
+        deleteGcsContent(gcsName);
       }
     } catch (ObjectifyException e) {
       throw CrashReport.createAndLogError(LOG, null,
@@ -671,6 +844,42 @@ public class ObjectifyStorageIo implements  StorageIo {
     } catch (ObjectifyException e) {
       throw CrashReport.createAndLogError(LOG, null, collectUserErrorInfo(userId), e);
     }
+    updateProjectListEntry(userId, projectId, null, flag);
+  }
+
+  /*
+   * Copies a change to a project's modification date or trash flag to the
+   * user's UserProjectData. This runs in its own transaction, possibly while
+   * the transaction that changed the ProjectData is still open, since the two
+   * are in different entity groups. A failure is only logged: the copy is
+   * refreshed by the next change.
+   */
+  private void updateProjectListEntry(final String userId, final long projectId,
+      @Nullable final Long dateModified, @Nullable final Boolean inTrash) {
+    try {
+      runJobWithRetries(new JobRetryHelper() {
+        @Override
+        public void run(Objectify datastore) {
+          UserProjectData upd = datastore.find(userProjectKey(userKey(userId), projectId));
+          if (upd == null || upd.name == null) {
+            return;  // Filled in by getProjectList when it is next read
+          }
+          if (dateModified != null && dateModified > upd.dateModified) {
+            upd.dateModified = dateModified;
+          } else if (inTrash == null || inTrash == upd.inTrash) {
+            return;
+          }
+          if (inTrash != null) {
+            upd.inTrash = inTrash;
+          }
+          upd.listModified = System.currentTimeMillis();
+          datastore.put(upd);
+        }
+      }, true);
+    } catch (ObjectifyException e) {
+      LOG.log(Level.WARNING, "Unable to update the project list entry, "
+          + collectUserProjectErrorInfo(userId, projectId), e);
+    }
   }
 
   @Override
@@ -693,6 +902,170 @@ public class ObjectifyStorageIo implements  StorageIo {
     return projects;
   }
 
+  @Override
+  public List<UserProject> getProjectList(String userId, long changedSince) {
+    List<UserProject> projects = new ArrayList<UserProject>();
+    for (UserProjectData upd : readProjectList(userId)) {
+      // The name is still null if the ProjectData is missing
+      if (upd.name != null && upd.listModified > changedSince) {
+        projects.add(makeUserProject(upd));
+      }
+    }
+    return projects;
+  }
+
+  @Override
+  public ProjectListPage getProjectListPage(final String userId, int sortField,
+      boolean ascending, final int start, final int count) {
+    long timestamp = System.currentTimeMillis();
+    fillProjectList(userId);
+    String field;
+    switch (sortField) {
+      case ProjectListPage.SORT_BY_NAME:
+        field = "sortName";
+        break;
+      case ProjectListPage.SORT_BY_DATE_CREATED:
+        field = "dateCreated";
+        break;
+      default:
+        field = "dateModified";
+        break;
+    }
+    final String order = ascending ? field : "-" + field;
+    final List<UserProjectData> entries = new ArrayList<UserProjectData>();
+    final Result<Integer> total = new Result<Integer>();
+    try {
+      runJobWithRetries(new JobRetryHelper() {
+        @Override
+        public void run(Objectify datastore) {
+          entries.clear();
+          Key<UserData> userKey = userKey(userId);
+          entries.addAll(datastore.query(UserProjectData.class).ancestor(userKey)
+              .order(order).offset(Math.max(0, start)).limit(Math.max(0, count)).list());
+          total.t = datastore.query(UserProjectData.class).ancestor(userKey).count();
+        }
+      }, false);
+    } catch (ObjectifyException e) {
+      throw CrashReport.createAndLogError(LOG, null, collectUserErrorInfo(userId), e);
+    }
+    List<UserProject> projects = Lists.newArrayListWithExpectedSize(entries.size());
+    for (UserProjectData upd : entries) {
+      projects.add(makeUserProject(upd));
+    }
+    return new ProjectListPage(projects, total.t, null, timestamp);
+  }
+
+  @Override
+  public ProjectListPage getProjectListChanges(String userId, long changedSince) {
+    long timestamp = System.currentTimeMillis();
+    List<UserProject> changed = new ArrayList<UserProject>();
+    List<Long> projectIds = new ArrayList<Long>();
+    for (UserProjectData upd : readProjectList(userId)) {
+      if (upd.name != null) {
+        projectIds.add(upd.projectId);
+        if (upd.listModified > changedSince) {
+          changed.add(makeUserProject(upd));
+        }
+      }
+    }
+    return new ProjectListPage(changed, projectIds.size(), projectIds, timestamp);
+  }
+
+  /*
+   * Fills in the list fields of the user's UserProjectData the first time
+   * the list is read in pages, since entries without them would be left out
+   * of the sorted queries.
+   */
+  private void fillProjectList(final String userId) {
+    final Result<Boolean> filled = new Result<Boolean>();
+    try {
+      runJobWithRetries(new JobRetryHelper() {
+        @Override
+        public void run(Objectify datastore) {
+          UserData userData = datastore.find(userKey(userId));
+          filled.t = userData == null || userData.projectListFilled;
+        }
+      }, false);
+      if (filled.t) {
+        return;
+      }
+      readProjectList(userId);
+      runJobWithRetries(new JobRetryHelper() {
+        @Override
+        public void run(Objectify datastore) {
+          UserData userData = datastore.find(userKey(userId));
+          if (userData != null) {
+            userData.projectListFilled = true;
+            datastore.put(userData);
+          }
+        }
+      }, true);
+    } catch (ObjectifyException e) {
+      throw CrashReport.createAndLogError(LOG, null, collectUserErrorInfo(userId), e);
+    }
+  }
+
+  private static UserProject makeUserProject(UserProjectData upd) {
+    return new UserProject(upd.projectId, upd.name,
+        YoungAndroidProjectNode.YOUNG_ANDROID_PROJECT_TYPE, upd.dateCreated,
+        upd.dateModified, upd.inTrash);
+  }
+
+  /*
+   * Reads all of the user's UserProjectData. Projects created before the
+   * list fields were added get them copied from their ProjectData once.
+   */
+  private List<UserProjectData> readProjectList(final String userId) {
+    final List<UserProjectData> entries = new ArrayList<UserProjectData>();
+    try {
+      runJobWithRetries(new JobRetryHelper() {
+        @Override
+        public void run(Objectify datastore) {
+          entries.clear();
+          for (UserProjectData upd : datastore.query(UserProjectData.class)
+              .ancestor(userKey(userId))) {
+            entries.add(upd);
+          }
+        }
+      }, false);
+    } catch (ObjectifyException e) {
+      throw CrashReport.createAndLogError(LOG, null, collectUserErrorInfo(userId), e);
+    }
+
+    final Map<Long, UserProjectData> unfilled = new HashMap<Long, UserProjectData>();
+    for (UserProjectData upd : entries) {
+      if (upd.name == null) {
+        unfilled.put(upd.projectId, upd);
+      }
+    }
+    if (!unfilled.isEmpty()) {
+      final List<UserProjectData> filled = new ArrayList<UserProjectData>();
+      try {
+        runJobWithRetries(new JobRetryHelper() {
+          @Override
+          public void run(Objectify datastore) {
+            filled.clear();
+            long now = System.currentTimeMillis();
+            for (ProjectData pd : datastore.get(ProjectData.class, unfilled.keySet()).values()) {
+              UserProjectData upd = unfilled.get(pd.id);
+              upd.name = pd.name;
+              upd.sortName = pd.name.toLowerCase();
+              upd.dateCreated = pd.dateCreated;
+              upd.dateModified = pd.dateModified;
+              upd.inTrash = pd.projectMovedToTrashFlag;
+              upd.listModified = now;
+              filled.add(upd);
+            }
+            datastore.put(filled);
+          }
+        }, false);
+      } catch (ObjectifyException e) {
+        throw CrashReport.createAndLogError(LOG, null, collectUserErrorInfo(userId), e);
+      }
+    }
+    return entries;
+  }
+
   @Override
   public String loadProjectSettings(final String userId, final long projectId) {
     final Result<String> settings = new Result<String>();
@@ -1168,7 +1541,7 @@ public class ObjectifyStorageIo implements  StorageIo {
     }
     datastore.put(addedFiles); // batch put
     if (changeModDate) {
-      updateProjectModDate(datastore, projectId, false);
+      updateProjectModDate(datastore, userId, projectId, false);
     }
   }
 
@@ -1196,7 +1569,8 @@ public class ObjectifyStorageIo implements  StorageIo {
       runJobWithRetries(new JobRetryHelper() {
         @Override
         public void run(Objectify datastore) {
-          removeFilesFromProject(datastore, projectId, FileData.RoleEnum.SOURCE, changeModDate, fileNames);
+          removeFilesFromProject(datastore, userId, projectId, FileData.RoleEnum.SOURCE,
+              changeModDate, fileNames);
         }
       }, true);
     } catch (ObjectifyException e) {
@@ -1212,7 +1586,8 @@ public class ObjectifyStorageIo implements  StorageIo {
       runJobWithRetries(new JobRetryHelper() {
         @Override
         public void run(Objectify datastore) {
-          removeFilesFromProject(datastore, projectId, FileData.RoleEnum.TARGET, false, fileNames);
+          removeFilesFromProject(datastore, userId, projectId, FileData.RoleEnum.TARGET, false,
+              fileNames);
         }
       }, true);
     } catch (ObjectifyException e) {
@@ -1221,7 +1596,7 @@ public class ObjectifyStorageIo implements  StorageIo {
     }
   }
 
-  private void removeFilesFromProject(Objectify datastore, long projectId,
+  private void removeFilesFromProject(Objectify datastore, String userId, long projectId,
       FileData.RoleEnum role, boolean changeModDate, String... fileNames) {
     Key<ProjectData> projectKey = projectKey(projectId);
     List<Key<FileData>> filesToRemove = new ArrayList<Key<FileData>>();
@@ -1241,7 +1616,7 @@ public class ObjectifyStorageIo implements  StorageIo {
     }
     datastore.delete(filesToRemove);  // batch delete
     if (changeModDate) {
-      updateProjectModDate(datastore, projectId, false);
+      updateProjectModDate(datastore, userId, projectId, false);
     }
   }
 
@@ -1279,6 +1654,34 @@ public class ObjectifyStorageIo implements  StorageIo {
     return result.t;
   }
 
+  @Override
+  public Map<String, String> getProjectSourceFileHashes(final String userId,
+      final long projectId, final String prefix) {
+    final Result<Map<String, String>> result = new Result<Map<String, String>>();
+    try {
+      runJobWithRetries(new JobRetryHelper() {
+        @Override
+        public void run(Objectify datastore) {
+          result.t = new LinkedHashMap<String, String>();
+          for (FileData fd : datastore.query(FileData.class).ancestor(projectKey(projectId))) {
+            if (fd.role.equals(FileData.RoleEnum.SOURCE) && fd.fileName.startsWith(prefix)) {
+              if (fd.userId != null && !fd.userId.equals("") && !fd.userId.equals(userId)) {
+                throw CrashReport.createAndLogError(LOG, null,
+                    collectUserProjectErrorInfo(userId, projectId),
+                    new UnauthorizedAccessException(userId, projectId, null));
+              }
+              result.t.put(fd.fileName, fd.contentHash);
+            }
+          }
+        }
+      }, false);
+    } catch (ObjectifyException e) {
+      throw CrashReport.createAndLogError(LOG, null,
+          collectUserProjectErrorInfo(userId, projectId), e);
+    }
+    return result.t;
+  }
+
   private List<String> getProjectFiles(Objectify datastore, long projectId,
                                        FileData.RoleEnum role) {
     Key<ProjectData> projectKey = projectKey(projectId);
@@ -1313,7 +1716,8 @@ public class ObjectifyStorageIo implements  StorageIo {
     }
   }
 
-  private long updateProjectModDate(Objectify datastore, long projectId, boolean doingConversion) {
+  private long updateProjectModDate(Objectify datastore, String userId, long projectId,
+      boolean doingConversion) {
     long modDate = System.currentTimeMillis();
     ProjectData pd = datastore.find(projectKey(projectId));
     if (pd != null) {
@@ -1324,6 +1728,7 @@ public class ObjectifyStorageIo implements  StorageIo {
       if ((modDate > (pd.dateModified + 1000*60)) && !doingConversion) {
         pd.dateModified = modDate;
         datastore.put(pd);
+        updateProjectListEntry(userId, projectId, modDate, null);
       } else {
         // return the (old) dateModified
         modDate = pd.dateModified;
@@ -1356,8 +1761,16 @@ public class ObjectifyStorageIo implements  StorageIo {
       final boolean force, final byte[] content, final boolean doingConversion) throws BlocksTruncatedException {
     validateGCS();
     final Result<Long> modTime = new Result<Long>();
-    final boolean useGCS = useGCSforFile(fileName, content.length);
+    final String hash = contentHash(content);
+    final int format = contentFormat(fileName);
+    // Compressed once, and only if the content has changed
+    final Result<byte[]> stored = new Result<byte[]>();
     final Result<String> oldBlobstoreKey = new Result<String>();
+    final Result<String> oldGcsName = new Result<String>();
+    // Shared content acquired by one attempt of the job is reused by the next
+    final Result<String> sharedGcsName = new Result<String>();
+    final Result<String> newGcsName = new Result<String>();
+    final Result<Boolean> saved = new Result<Boolean>();
     final boolean considerBackup = (useGcs?((fileName.contains("src/") && fileName.endsWith(".blk")) // AI1 Blocks Files
         || (fileName.contains("src/") && fileName.endsWith(".bky")) // Blockly files
         || (fileName.contains("src/") && fileName.endsWith(".scm"))) // Form Definitions
@@ -1402,34 +1815,63 @@ public class ObjectifyStorageIo implements  StorageIo {
             }
           }
 
+          saved.t = false;
+          oldGcsName.t = null;
+          if (hash.equals(fd.contentHash) && !doingConversion) {
+            // Nothing has changed (typically an autosave), so there is nothing
+            // to write. Passing true leaves the modification date as it is.
+            modTime.t = updateProjectModDate(datastore, userId, projectId, true);
+            return;
+          }
+
           if (fd.isBlob) {
             // mark the old blobstore blob for deletion
            oldBlobstoreKey.t = fd.blobKey;
           }
-          if (useGCS) {
+          if (stored.t == null) {
+            stored.t = encodeContent(format, content);
+          }
+          if (useGCSforFile(fileName, stored.t.length)) {
+            String previousGcsName = isTrue(fd.isGCS) ? fd.gcsName : null;
             fd.isGCS = true;
-            fd.gcsName = makeGCSfileName(fileName, projectId);
             try {
-              GcsOutputChannel outputChannel =
-                gcsService.createOrReplace(new GcsFilename(GCS_BUCKET_NAME, fd.gcsName), GcsFileOptions.getDefaultInstance());
-              outputChannel.write(ByteBuffer.wrap(content));
-              outputChannel.close();
+              if (useSharedContent()) {
+                if (sharedGcsName.t == null) {
+                  sharedGcsName.t = acquireContent(hash, content);
+                }
+                fd.gcsName = sharedGcsName.t;
+                fd.contentFormat = FileData.CONTENT_RAW;
+              } else {
+                if (previousGcsName == null) {
+                  fd.gcsName = makeGCSfileName(fileName, projectId);
+                } else {
+                  // Changed content always goes to a new object, see makeNewGCSfileName
+                  if (newGcsName.t == null) {
+                    newGcsName.t = makeNewGCSfileName(fileName, projectId);
+                  }
+                  fd.gcsName = newGcsName.t;
+                }
+                fd.contentFormat = format;
+                GcsOutputChannel outputChannel =
+                  gcsService.createOrReplace(new GcsFilename(GCS_BUCKET_NAME, fd.gcsName), GcsFileOptions.getDefaultInstance());
+                outputChannel.write(ByteBuffer.wrap(stored.t));
+                outputChannel.close();
+              }
             } catch (IOException e) {
               throw CrashReport.createAndLogError(LOG, null,
                 collectProjectErrorInfo(userId, projectId, fileName), e);
             }
+            if (isContentReplaced(previousGcsName, fd.gcsName)) {
+              oldGcsName.t = previousGcsName;
+            }
             // If the content was previously stored in the datastore, clear it out.
             fd.content = null;
             fd.isBlob = false;  // in case we are converting from a blob
             fd.blobstorePath = null;
           } else {
             if (isTrue(fd.isGCS)) {     // Was a GCS file, must have gotten smaller
-              try {             // and is now stored in the data store
-                gcsService.delete(new GcsFilename(GCS_BUCKET_NAME, fd.gcsName));
-              } catch (IOException e) {
-                throw CrashReport.createAndLogError(LOG, null,
-                  collectProjectErrorInfo(userId, projectId, fileName), e);
-              }
+                                        // and is now stored in the data store
+              oldGcsName.t = fd.gcsName;
               fd.isGCS = false;
               fd.gcsName = null;
             }
@@ -1439,7 +1881,8 @@ public class ObjectifyStorageIo implements  StorageIo {
             // contents from the Blobstore.
             fd.isBlob = false;
             fd.blobstorePath = null;
-            fd.content = content;
+            fd.content = stored.t;
+            fd.contentFormat = format;
           }
           if (considerBackup && !doingConversion) {
             if ((fd.lastBackup + TWENTYFOURHOURS) < System.currentTimeMillis()) {
@@ -1460,9 +1903,13 @@ public class ObjectifyStorageIo implements  StorageIo {
           if (fd.userId == null || fd.userId.equals("")) {
             fd.userId = userId;
           }
+          fd.contentHash = hash;
+          fd.deltas = null;
+          fd.deltaCount = 0;
           datastore.put(fd);
+          saved.t = true;
           memcache.put(key.getString(), fd); // Store the updated data in memcache
-          modTime.t = updateProjectModDate(datastore, projectId, doingConversion);
+          modTime.t = updateProjectModDate(datastore, userId, projectId, doingConversion);
         }
 
         @Override
@@ -1481,16 +1928,377 @@ public class ObjectifyStorageIo implements  StorageIo {
       if (oldBlobstoreKey.t != null) {
         deleteBlobstoreFile(oldBlobstoreKey.t);
       }
+      if (oldGcsName.t != null && isTrue(saved.t)) {
+        deleteGcsContent(oldGcsName.t);
+      }
     } catch (ObjectifyException e) {
       if (e.getMessage().startsWith("Blocks")) { // Convert Exception
         throw new BlocksTruncatedException();
       }
       throw CrashReport.createAndLogError(LOG, null,
           collectProjectErrorInfo(userId, projectId, fileName), e);
+    } finally {
+      // Give back shared content that did not end up in the file
+      if (sharedGcsName.t != null && !isTrue(saved.t)) {
+        releaseContent(sharedGcsName.t);
+      }
+      // and delete a new object the file does not refer to
+      if (newGcsName.t != null && !isTrue(saved.t)) {
+        deleteGcsObject(newGcsName.t);
+      }
+    }
+    return modTime.t;
+  }
+
+  @Override
+  public long uploadFileDelta(final long projectId, final String fileName, final String userId,
+      final boolean force, final String baseVersion, final TextDelta delta)
+      throws BlocksTruncatedException, FileVersionMismatchException {
+    validateGCS();
+    final Key<FileData> key = projectFileKey(projectKey(projectId), fileName);
+    final Result<FileData> fd = new Result<FileData>();
+    try {
+      runJobWithRetries(new JobRetryHelper() {
+        @Override
+        public void run(Objectify datastore) {
+          fd.t = (FileData) memcache.get(key.getString());
+          if (fd.t == null) {
+            fd.t = datastore.find(key);
+          }
+        }
+      }, false); // Transaction not needed
+    } catch (ObjectifyException e) {
+      throw CrashReport.createAndLogError(LOG, null,
+          collectProjectErrorInfo(userId, projectId, fileName), e);
+    }
+
+    if (fd.t == null) {
+      throw new FileVersionMismatchException("There is no saved content for " + fileName);
+    }
+    final byte[] content;
+    try {
+      String base = new String(readFileContent(userId, projectId, fileName, fd.t),
+          DEFAULT_ENCODING);
+      if (!TextDelta.version(base).equals(baseVersion)) {
+        throw new FileVersionMismatchException("The content of " + fileName + " has changed");
+      }
+      String text = delta.apply(base);
+      if (delta.getVersion() != null && !TextDelta.version(text).equals(delta.getVersion())) {
+        throw new FileVersionMismatchException("The delta for " + fileName
+            + " does not give the expected content");
+      }
+      content = text.getBytes(DEFAULT_ENCODING);
+    } catch (IllegalArgumentException e) {
+      throw new FileVersionMismatchException(e.getMessage());
+    } catch (UnsupportedEncodingException e) {
+      throw CrashReport.createAndLogError(LOG, null,
+          collectProjectErrorInfo(userId, projectId, fileName), e);
     }
+
+    // Only a file whose content is in GCS keeps deltas, the datastore rewrites
+    // the whole entity anyway. The daily backup needs the whole content too.
+    final String hash = contentHash(content);
+    final byte[] deltas = appendDelta(fd.t.deltas, delta);
+    boolean backupDue = useGcs && fileName.contains("src/")
+        && (fileName.endsWith(".blk") || fileName.endsWith(".bky") || fileName.endsWith(".scm"))
+        && (fd.t.lastBackup + TWENTYFOURHOURS) < System.currentTimeMillis();
+    // Content that may be a truncated workspace is saved whole, so that it is
+    // checked as any other save is.
+    boolean mayBeTruncated = !force && content.length < 125 && fileName.endsWith(".bky");
+    if (mayBeTruncated
+        || !isTrue(fd.t.isGCS) || fd.t.contentHash == null || hash.equals(fd.t.contentHash)
+        || !useGCSforFile(fileName, content.length) || backupDue
+        || fd.t.deltaCount >= MAX_DELTAS || deltas.length > MAX_DELTA_BYTES) {
+      return uploadRawFile(projectId, fileName, userId, force, content);
+    }
+
+    final String baseHash = fd.t.contentHash;
+    final String baseGcsName = fd.t.gcsName;
+    final int baseDeltaCount = fd.t.deltaCount;
+    final Result<FileData> updated = new Result<FileData>();
+    final Result<Long> modTime = new Result<Long>();
+    try {
+      runJobWithRetries(new JobRetryHelper() {
+        @Override
+        public void run(Objectify datastore) {
+          updated.t = null;
+          FileData current = datastore.find(key);
+          // The deltas were read along with the record, so the record must
+          // still have them: the same hash alone may come from a full save
+          // of the same content since
+          if (current == null || !baseHash.equals(current.contentHash)
+              || !baseGcsName.equals(current.gcsName) || baseDeltaCount != current.deltaCount) {
+            return;  // Saved by someone else since we read it
+          }
+          current.deltas = deltas;
+          current.deltaCount++;
+          current.contentHash = hash;
+          datastore.put(current);
+          updated.t = current;
+          modTime.t = updateProjectModDate(datastore, userId, projectId, false);
+        }
+      }, true);
+    } catch (ObjectifyException e) {
+      throw CrashReport.createAndLogError(LOG, null,
+          collectProjectErrorInfo(userId, projectId, fileName), e);
+    }
+    if (updated.t == null) {
+      throw new FileVersionMismatchException("The content of " + fileName + " has changed");
+    }
+    memcache.put(key.getString(), updated.t);
     return modTime.t;
   }
 
+  @Override
+  public long uploadFiles(final long projectId, final String userId,
+      final Map<String, String> contents, final String encoding, final boolean force)
+      throws BlocksTruncatedException {
+    validateGCS();
+    final Map<String, byte[]> rawContents = new LinkedHashMap<String, byte[]>();
+    for (Map.Entry<String, String> entry : contents.entrySet()) {
+      try {
+        rawContents.put(entry.getKey(), entry.getValue().getBytes(encoding));
+      } catch (UnsupportedEncodingException e) {
+        throw CrashReport.createAndLogError(LOG, null, "Unsupported file content encoding,"
+            + collectProjectErrorInfo(null, projectId, entry.getKey()), e);
+      }
+    }
+    final Map<String, String> hashes = new HashMap<String, String>();
+    for (Map.Entry<String, byte[]> entry : rawContents.entrySet()) {
+      hashes.put(entry.getKey(), contentHash(entry.getValue()));
+    }
+    // Contents as stored, compressed once and only for files that changed
+    final Map<String, byte[]> storedContents = new HashMap<String, byte[]>();
+    final Result<Long> modTime = new Result<Long>();
+    final List<String> oldBlobstoreKeys = new ArrayList<String>();
+    final List<String> oldGcsNames = new ArrayList<String>();
+    final Map<String, FileData> updated = new HashMap<String, FileData>();
+    // Shared content acquired by file name, reused if the job is retried
+    final Map<String, String> sharedContent = new HashMap<String, String>();
+    final Set<String> usedSharedContent = new HashSet<String>();
+    // New GCS objects by file name, see uploadRawFile
+    final Map<String, String> newGcsNames = new HashMap<String, String>();
+    final Set<String> usedNewGcsNames = new HashSet<String>();
+    boolean committed = false;
+
+    try {
+      // All of the files belong to the project's entity group, so they are
+      // read, checked and written together in one transaction.
+      runJobWithRetries(new JobRetryHelper() {
+        @Override
+        public void run(Objectify datastore) throws ObjectifyException {
+          oldBlobstoreKeys.clear();
+          oldGcsNames.clear();
+          updated.clear();
+          usedSharedContent.clear();
+          usedNewGcsNames.clear();
+          Key<ProjectData> projectKey = projectKey(projectId);
+          List<Key<FileData>> keys = new ArrayList<Key<FileData>>();
+          for (String fileName : rawContents.keySet()) {
+            keys.add(projectFileKey(projectKey, fileName));
+          }
+          Map<Key<FileData>, FileData> found = datastore.get(keys);
+          List<Callable<Void>> gcsWork = new ArrayList<Callable<Void>>();
+          for (Map.Entry<String, byte[]> entry : rawContents.entrySet()) {
+            final String fileName = entry.getKey();
+            final byte[] content = entry.getValue();
+            Key<FileData> key = projectFileKey(projectKey, fileName);
+            final FileData fd;
+            if (found.containsKey(key)) {
+              fd = found.get(key);
+            } else if (fileName.endsWith(".yail") || fileName.endsWith(".png")) {
+              // See uploadRawFile
+              fd = createProjectFile(datastore, projectKey, FileData.RoleEnum.SOURCE, fileName);
+              fd.userId = userId;
+            } else {
+              fd = null;
+            }
+
+            Preconditions.checkState(fd != null);
+
+            if (fd.userId != null && !fd.userId.equals("") && !fd.userId.equals(userId)) {
+              throw CrashReport.createAndLogError(LOG, null,
+                  collectUserProjectErrorInfo(userId, projectId),
+                  new UnauthorizedAccessException(userId, projectId, null));
+            }
+
+            if (content.length < 125 && fileName.endsWith(".bky") && !force) {
+              checkForBlocksTruncation(fd);
+            }
+
+            String hash = hashes.get(fileName);
+            if (hash.equals(fd.contentHash)) {
+              continue;  // Unchanged, see uploadRawFile
+            }
+
+            if (fd.isBlob) {
+              oldBlobstoreKeys.add(fd.blobKey);
+            }
+            final int format = contentFormat(fileName);
+            if (!storedContents.containsKey(fileName)) {
+              storedContents.put(fileName, encodeContent(format, content));
+            }
+            final byte[] stored = storedContents.get(fileName);
+            if (useGCSforFile(fileName, stored.length)) {
+              String previousGcsName = isTrue(fd.isGCS) ? fd.gcsName : null;
+              fd.isGCS = true;
+              if (useSharedContent()) {
+                if (!sharedContent.containsKey(fileName)) {
+                  try {
+                    sharedContent.put(fileName, acquireContent(hash, content));
+                  } catch (IOException e) {
+                    throw CrashReport.createAndLogError(LOG, null,
+                        collectProjectErrorInfo(userId, projectId, fileName), e);
+                  }
+                }
+                fd.gcsName = sharedContent.get(fileName);
+                fd.contentFormat = FileData.CONTENT_RAW;
+                usedSharedContent.add(fileName);
+              } else {
+                if (previousGcsName == null) {
+                  fd.gcsName = makeGCSfileName(fileName, projectId);
+                } else {
+                  // Changed content always goes to a new object, see makeNewGCSfileName
+                  if (!newGcsNames.containsKey(fileName)) {
+                    newGcsNames.put(fileName, makeNewGCSfileName(fileName, projectId));
+                  }
+                  fd.gcsName = newGcsNames.get(fileName);
+                  usedNewGcsNames.add(fileName);
+                }
+                fd.contentFormat = format;
+                final String gcsName = fd.gcsName;
+                gcsWork.add(new Callable<Void>() {
+                  @Override
+                  public Void call() {
+                    writeGcsFile(gcsName, stored, userId, projectId, fileName);
+                    return null;
+                  }
+                });
+              }
+              if (isContentReplaced(previousGcsName, fd.gcsName)) {
+                oldGcsNames.add(previousGcsName);
+              }
+              fd.content = null;
+              fd.isBlob = false;
+              fd.blobstorePath = null;
+            } else {
+              if (isTrue(fd.isGCS)) {
+                oldGcsNames.add(fd.gcsName);
+                fd.isGCS = false;
+                fd.gcsName = null;
+              }
+              fd.isBlob = false;
+              fd.blobstorePath = null;
+              fd.content = stored;
+              fd.contentFormat = format;
+            }
+            boolean considerBackup = useGcs && fileName.contains("src/")
+                && (fileName.endsWith(".blk") || fileName.endsWith(".bky")
+                    || fileName.endsWith(".scm"));
+            if (considerBackup && (fd.lastBackup + TWENTYFOURHOURS) < System.currentTimeMillis()) {
+              final String backupName =
+                  makeGCSfileName(fileName + "." + formattedTime() + ".backup", projectId);
+              gcsWork.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                  writeGcsFile(backupName, content, userId, projectId, fileName + "(backup)");
+                  return null;
+                }
+              });
+              fd.lastBackup = System.currentTimeMillis();
+            }
+            if (fd.userId == null || fd.userId.equals("")) {
+              fd.userId = userId;
+            }
+            fd.contentHash = hash;
+            fd.deltas = null;
+            fd.deltaCount = 0;
+            updated.put(key.getString(), fd);
+          }
+          runInParallel(gcsWork);
+          if (!updated.isEmpty()) {
+            datastore.put(updated.values());
+          }
+          // If nothing changed, passing true leaves the modification date as it is
+          modTime.t = updateProjectModDate(datastore, userId, projectId, updated.isEmpty());
+        }
+      }, true);
+      committed = true;
+    } catch (ObjectifyException e) {
+      if (e.getMessage().startsWith("Blocks")) { // Convert Exception
+        throw new BlocksTruncatedException();
+      }
+      throw CrashReport.createAndLogError(LOG, null,
+          collectUserProjectErrorInfo(userId, projectId), e);
+    } finally {
+      // Give back shared content that did not end up in a file
+      for (Map.Entry<String, String> entry : sharedContent.entrySet()) {
+        if (!committed || !usedSharedContent.contains(entry.getKey())) {
+          releaseContent(entry.getValue());
+        }
+      }
+      // and delete new objects that no file refers to
+      for (Map.Entry<String, String> entry : newGcsNames.entrySet()) {
+        if (!committed || !usedNewGcsNames.contains(entry.getKey())) {
+          deleteGcsObject(entry.getValue());
+        }
+      }
+    }
+    // Only cache the new contents once the transaction has committed
+    memcache.putAll(updated);
+    for (String blobKey : oldBlobstoreKeys) {
+      deleteBlobstoreFile(blobKey);
+    }
+    for (String gcsName : oldGcsNames) {
+      deleteGcsContent(gcsName);
+    }
+    return modTime.t;
+  }
+
+  private void writeGcsFile(String gcsName, byte[] content, String userId, long projectId,
+      String fileName) {
+    try {
+      GcsOutputChannel outputChannel = gcsService.createOrReplace(
+          new GcsFilename(GCS_BUCKET_NAME, gcsName), GcsFileOptions.getDefaultInstance());
+      outputChannel.write(ByteBuffer.wrap(content));
+      outputChannel.close();
+    } catch (IOException e) {
+      throw CrashReport.createAndLogError(LOG, null,
+          collectProjectErrorInfo(userId, projectId, fileName), e);
+    }
+  }
+
+  // Runs GCS and blobstore operations for the multi-file methods on request
+  // threads, at most MAX_PARALLEL_IO at a time, and waits for all of them.
+  private void runInParallel(List<Callable<Void>> tasks) {
+    if (tasks.size() <= 1) {
+      for (Callable<Void> task : tasks) {
+        try {
+          task.call();
+        } catch (Exception e) {
+          throw Throwables.propagate(e);
+        }
+      }
+      return;
+    }
+    // The pool's threads are request threads, which can't outlive the
+    // request, so it is shut down as soon as the tasks are done
+    ExecutorService executor = Executors.newFixedThreadPool(
+        Math.min(tasks.size(), MAX_PARALLEL_IO), ThreadManager.currentRequestThreadFactory());
+    try {
+      for (Future<Void> future : executor.invokeAll(tasks)) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
   protected void deleteBlobstoreFile(String blobKeyString) {
     // It would be nice if there were an AppEngineFile.delete() method but alas there isn't, so we
     // have to get the BlobKey and delete via the BlobstoreService.
@@ -1525,6 +2333,278 @@ public class ObjectifyStorageIo implements  StorageIo {
     return (projectId + "/" + fileName);
   }
 
+  /*
+   * Makes a GCS file name that no other file or version of a file uses.
+   * Changed content is written to a new object rather than over the one the
+   * record refers to, and the old object is deleted once the record refers
+   * to the new one. Otherwise, if the record failed to save, the old object
+   * would hold content that doesn't match the record's hash, and readers
+   * holding the old record would get content they don't expect.
+   */
+  private String makeNewGCSfileName(String fileName, long projectId) {
+    return makeGCSfileName(fileName + "." + UUID.randomUUID().toString(), projectId);
+  }
+
+  @VisibleForTesting
+  boolean useSharedContent() {
+    return shareContent;
+  }
+
+  private static String contentHash(byte[] content) {
+    return Hashing.sha256().hashBytes(content).toString();
+  }
+
+  // Blocks, forms, YAIL and project properties are text that compresses
+  // well, often to a tenth of its size. Other files are mostly media that is
+  // already compressed.
+  @VisibleForTesting
+  boolean useCompression(String fileName) {
+    return compressText && (fileName.endsWith(".bky") || fileName.endsWith(".scm")
+        || fileName.endsWith(".yail") || fileName.endsWith("project.properties"));
+  }
+
+  // Returns the format to store a file's content in, see FileData.contentFormat
+  private int contentFormat(String fileName) {
+    return useCompression(fileName) ? FileData.CONTENT_GZIP : FileData.CONTENT_RAW;
+  }
+
+  private static byte[] encodeContent(int format, byte[] content) {
+    if (format != FileData.CONTENT_GZIP) {
+      return content;
+    }
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(content.length / 4 + 32);
+    try {
+      GZIPOutputStream out = new GZIPOutputStream(bytes);
+      out.write(content);
+      out.close();
+    } catch (IOException e) {
+      throw new IllegalStateException(e);  // Cannot happen writing to memory
+    }
+    return bytes.toByteArray();
+  }
+
+  // Stored content may be missing (empty) even if its format says it is
+  // compressed, see readFileContent
+  private static byte[] decodeContent(int format, byte[] stored) throws IOException {
+    if (format != FileData.CONTENT_GZIP || stored.length == 0) {
+      return stored;
+    }
+    GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(stored));
+    try {
+      return ByteStreams.toByteArray(in);
+    } finally {
+      in.close();
+    }
+  }
+
+  // Returns the length of the content of a file kept in the datastore,
+  // without decompressing it: the gzip trailer holds the length.
+  private static int contentLength(FileData fd) {
+    if (fd.content == null) {
+      return 0;
+    }
+    int length = fd.content.length;
+    if (fd.contentFormat != FileData.CONTENT_GZIP || length < 18) {
+      return length;
+    }
+    return (fd.content[length - 4] & 0xff) | ((fd.content[length - 3] & 0xff) << 8)
+        | ((fd.content[length - 2] & 0xff) << 16) | ((fd.content[length - 1] & 0xff) << 24);
+  }
+
+  // Shared content is named SHARED_CONTENT_PREFIX + hash + "/" + generation
+  // Deltas are stored one after the other as the prefix length, the suffix
+  // length, the new length and the replacement in UTF-8, preceded by its
+  // length in bytes.
+  private static byte[] appendDelta(@Nullable byte[] deltas, TextDelta delta) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try {
+      if (deltas != null) {
+        bytes.write(deltas);
+      }
+      DataOutputStream out = new DataOutputStream(bytes);
+      byte[] replacement = delta.getReplacement().getBytes(DEFAULT_ENCODING);
+      out.writeInt(delta.getPrefixLength());
+      out.writeInt(delta.getSuffixLength());
+      out.writeInt(delta.getLength());
+      out.writeInt(replacement.length);
+      out.write(replacement);
+      out.flush();
+    } catch (IOException e) {
+      throw new IllegalStateException(e);  // Cannot happen writing to memory
+    }
+    return bytes.toByteArray();
+  }
+
+  private static byte[] applyDeltas(byte[] content, @Nullable byte[] deltas) {
+    if (deltas == null) {
+      return content;
+    }
+    try {
+      String text = new String(content, DEFAULT_ENCODING);
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(deltas));
+      while (in.available() > 0) {
+        int prefixLength = in.readInt();
+        int suffixLength = in.readInt();
+        int length = in.readInt();
+        byte[] replacement = new byte[in.readInt()];
+        in.readFully(replacement);
+        text = new TextDelta(prefixLength, suffixLength,
+            new String(replacement, DEFAULT_ENCODING), length, null).apply(text);
+      }
+      return text.getBytes(DEFAULT_ENCODING);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);  // Cannot happen reading from memory
+    }
+  }
+
+  private static boolean isSharedContent(String gcsName) {
+    return gcsName != null && gcsName.startsWith(SHARED_CONTENT_PREFIX);
+  }
+
+  private static String sharedContentHash(String gcsName) {
+    int start = SHARED_CONTENT_PREFIX.length();
+    return gcsName.substring(start, gcsName.indexOf('/', start));
+  }
+
+  private static String makeSharedContentName(String hash) {
+    return SHARED_CONTENT_PREFIX + hash + "/" + UUID.randomUUID().toString();
+  }
+
+  // Whether the GCS content a file referred to has to be deleted or released
+  // once the file refers to newGcsName instead. Each reference to shared
+  // content is counted, so the old reference is released even if the names
+  // are the same.
+  private static boolean isContentReplaced(String oldGcsName, String newGcsName) {
+    return oldGcsName != null && (isSharedContent(oldGcsName) || !oldGcsName.equals(newGcsName));
+  }
+
+  /*
+   * Adds a reference to the shared content with the given hash and returns
+   * its GCS name. If the content is not stored yet it is written to GCS
+   * before the reference is recorded, so a file never refers to content that
+   * is not there. If content is null, as when copying a file that already
+   * refers to the shared content, the content must exist.
+   *
+   * The reference is counted in its own transaction, so this may be called
+   * while a job on a project's entity group is running, but the caller must
+   * make sure that a retried job does not acquire the content again.
+   */
+  private String acquireContent(final String hash, @Nullable final byte[] content)
+      throws ObjectifyException, IOException {
+    String written = null;
+    if (content != null && ObjectifyService.begin().find(contentKey(hash)) == null) {
+      written = makeSharedContentName(hash);
+      writeGcsContent(written, content);
+    }
+    final Result<String> gcsName = new Result<String>();
+    final Result<Boolean> missing = new Result<Boolean>();
+    try {
+      while (true) {
+        final String candidate = written;
+        runJobWithRetries(new JobRetryHelper() {
+          @Override
+          public void run(Objectify datastore) {
+            gcsName.t = null;
+            missing.t = false;
+            ContentData cd = datastore.find(contentKey(hash));
+            if (cd == null) {
+              if (content == null) {
+                return;
+              }
+              if (candidate == null) {
+                missing.t = true;
+                return;
+              }
+              cd = new ContentData();
+              cd.hash = hash;
+              cd.gcsName = candidate;
+            }
+            cd.refCount++;
+            datastore.put(cd);
+            gcsName.t = cd.gcsName;
+          }
+        }, true);
+        if (!missing.t) {
+          break;
+        }
+        // The last reference was released since we looked, so the content
+        // is written again before it is referred to
+        written = makeSharedContentName(hash);
+        writeGcsContent(written, content);
+      }
+    } finally {
+      if (written != null && !written.equals(gcsName.t)) {
+        // Someone else stored the same content first, or the reference
+        // could not be recorded
+        deleteGcsObject(written);
+      }
+    }
+    if (gcsName.t == null) {
+      throw new IOException("Shared content " + hash + " does not exist");
+    }
+    return gcsName.t;
+  }
+
+  /*
+   * Removes a reference to shared content, deleting the content along with
+   * its last reference. Errors are logged and not thrown, because at worst
+   * they leave content in GCS that nothing refers to.
+   */
+  private void releaseContent(final String gcsName) {
+    final String hash = sharedContentHash(gcsName);
+    final Result<Boolean> unreferenced = new Result<Boolean>();
+    try {
+      runJobWithRetries(new JobRetryHelper() {
+        @Override
+        public void run(Objectify datastore) {
+          unreferenced.t = false;
+          ContentData cd = datastore.find(contentKey(hash));
+          if (cd == null || !gcsName.equals(cd.gcsName)) {
+            return;
+          }
+          cd.refCount--;
+          if (cd.refCount > 0) {
+            datastore.put(cd);
+          } else {
+            datastore.delete(cd);
+            unreferenced.t = true;
+          }
+        }
+      }, true);
+    } catch (ObjectifyException e) {
+      LOG.log(Level.WARNING, "Unable to release shared content " + gcsName, e);
+      return;
+    }
+    if (unreferenced.t) {
+      deleteGcsObject(gcsName);
+    }
+  }
+
+  // Deletes the content of a file that is no longer used, or releases it if
+  // it is shared.
+  private void deleteGcsContent(String gcsName) {
+    if (isSharedContent(gcsName)) {
+      releaseContent(gcsName);
+    } else {
+      deleteGcsObject(gcsName);
+    }
+  }
+
+  private void deleteGcsObject(String gcsName) {
+    try {
+      gcsService.delete(new GcsFilename(GCS_BUCKET_NAME, gcsName));
+    } catch (IOException e) {
+      LOG.log(Level.WARNING, "Unable to delete " + gcsName + " from GCS.", e);
+    }
+  }
+
+  private void writeGcsContent(String gcsName, byte[] content) throws IOException {
+    GcsOutputChannel outputChannel = gcsService.createOrReplace(
+        new GcsFilename(GCS_BUCKET_NAME, gcsName), GcsFileOptions.getDefaultInstance());
+    outputChannel.write(ByteBuffer.wrap(content));
+    outputChannel.close();
+  }
+
   @Override
   public long deleteFile(final String userId, final long projectId, final String fileName) {
     validateGCS();
@@ -1552,7 +2632,7 @@ public class ObjectifyStorageIo implements  StorageIo {
             }
           }
           datastore.delete(fileKey);
-          modTime.t = updateProjectModDate(datastore, projectId, false);
+          modTime.t = updateProjectModDate(datastore, userId, projectId, false);
         }
       }, true);
     } catch (ObjectifyException e) {
@@ -1563,11 +2643,7 @@ public class ObjectifyStorageIo implements  StorageIo {
       deleteBlobstoreFile(oldBlobKeyString.t);
     }
     if (oldgcsName.t != null) {
-      try {
-        gcsService.delete(new GcsFilename(GCS_BUCKET_NAME, oldgcsName.t));
-      } catch (IOException e) {
-        LOG.log(Level.WARNING, "Unable to delete " + oldgcsName + " from GCS.", e);
-      }
+      deleteGcsContent(oldgcsName.t);
     }
     return (modTime.t == null) ? 0 : modTime.t;
   }
@@ -1611,7 +2687,6 @@ public class ObjectifyStorageIo implements  StorageIo {
   @Override
   public byte[] downloadRawFile(final String userId, final long projectId, final String fileName) {
     validateGCS();
-    final Result<byte[]> result = new Result<byte[]>();
     final Result<FileData> fd = new Result<FileData>();
     try {
       runJobWithRetries(new JobRetryHelper() {
@@ -1629,7 +2704,84 @@ public class ObjectifyStorageIo implements  StorageIo {
           collectProjectErrorInfo(userId, projectId, fileName), e);
     }
     // read the blob/GCS File outside of the job
-    FileData fileData = fd.t;
+    return readFileContent(userId, projectId, fileName, fd.t);
+  }
+
+  @Override
+  public List<String> downloadFiles(final String userId, final long projectId,
+      final List<String> fileNames, final String encoding) {
+    validateGCS();
+    final Map<String, FileData> files = new HashMap<String, FileData>();
+    try {
+      runJobWithRetries(new JobRetryHelper() {
+        @Override
+        public void run(Objectify datastore) {
+          files.clear();
+          Key<ProjectData> projectKey = projectKey(projectId);
+          List<String> cacheKeys = new ArrayList<String>();
+          for (String fileName : fileNames) {
+            cacheKeys.add(projectFileKey(projectKey, fileName).getString());
+          }
+          Map<String, Object> cached = memcache.getAll(cacheKeys);
+          List<Key<FileData>> missing = new ArrayList<Key<FileData>>();
+          for (String fileName : fileNames) {
+            Key<FileData> fileKey = projectFileKey(projectKey, fileName);
+            FileData fileData = (FileData) cached.get(fileKey.getString());
+            if (fileData == null) {
+              missing.add(fileKey);
+            } else {
+              files.put(fileName, fileData);
+            }
+          }
+          if (!missing.isEmpty()) {
+            for (FileData fileData : datastore.get(missing).values()) {
+              files.put(fileData.fileName, fileData);
+            }
+          }
+        }
+      }, false); // Transaction not needed
+    } catch (ObjectifyException e) {
+      throw CrashReport.createAndLogError(LOG, null,
+          collectUserProjectErrorInfo(userId, projectId), e);
+    }
+    // Contents kept in the datastore are already in hand, fetch the rest from
+    // GCS (or the blobstore) concurrently
+    final byte[][] contents = new byte[fileNames.size()][];
+    List<Callable<Void>> reads = new ArrayList<Callable<Void>>();
+    for (int i = 0; i < fileNames.size(); i++) {
+      final int index = i;
+      final String fileName = fileNames.get(i);
+      final FileData fileData = files.get(fileName);
+      if (fileData != null && (fileData.isBlob || isTrue(fileData.isGCS))) {
+        reads.add(new Callable<Void>() {
+          @Override
+          public Void call() {
+            contents[index] = readFileContent(userId, projectId, fileName, fileData);
+            return null;
+          }
+        });
+      } else {
+        contents[index] = readFileContent(userId, projectId, fileName, fileData);
+      }
+    }
+    runInParallel(reads);
+    List<String> result = new ArrayList<String>(contents.length);
+    for (int i = 0; i < contents.length; i++) {
+      try {
+        result.add(new String(contents[i], encoding));
+      } catch (UnsupportedEncodingException e) {
+        throw CrashReport.createAndLogError(LOG, null, "Unsupported file content encoding, "
+            + collectProjectErrorInfo(userId, projectId, fileNames.get(i)), e);
+      }
+    }
+    return result;
+  }
+
+  // Returns the content of a file given its FileData, which may have come
+  // from memcache or the datastore. Must be called outside of any job.
+  private byte[] readFileContent(final String userId, final long projectId,
+      final String fileName, FileData fileData) {
+    final Result<byte[]> result = new Result<byte[]>();
     if (fileData != null) {
       if (fileData.userId != null && !fileData.userId.equals("")) {
         if (!fileData.userId.equals(userId)) {
@@ -1662,7 +2814,8 @@ public class ObjectifyStorageIo implements  StorageIo {
                   }
                 }
                 recovered = true;
-                result.t = resultBuffer.array();
+                result.t = applyDeltas(decodeContent(fileData.contentFormat,
+                    resultBuffer.array()), fileData.deltas);
                 // Should we downgrade to the blobstore (for debugging)?
                 // Note: We only run if we have at least 5 seconds of runtime left in the request
                 long timeRemaining = ApiProxy.getCurrentEnvironment().getRemainingMillis();
@@ -1740,7 +2893,12 @@ public class ObjectifyStorageIo implements  StorageIo {
         if (fileData.content == null) {
           result.t = new byte[0];
         } else {
-          result.t = fileData.content;
+          try {
+            result.t = decodeContent(fileData.contentFormat, fileData.content);
+          } catch (IOException e) {
+            throw CrashReport.createAndLogError(LOG, null,
+                collectProjectErrorInfo(userId, projectId, fileName), e);
+          }
         }
       }
     } else {
@@ -1806,7 +2964,7 @@ public class ObjectifyStorageIo implements  StorageIo {
     String fileName = null;
 
     ByteArrayOutputStream zipFile = new ByteArrayOutputStream();
-    final ZipOutputStream out = new ZipOutputStream(zipFile);
+    final ZipWriter out = new ZipWriter(zipFile);
     out.setComment("Built with MIT App Inventor");
 
     try {
@@ -1949,16 +3107,17 @@ public class ObjectifyStorageIo implements  StorageIo {
         if (data == null) {     // This happens if file creation is interrupted
           data = new byte[0];
         }
-        out.putNextEntry(new ZipEntry(fileName));
-        out.write(data, 0, data.length);
-        out.closeEntry();
+        if (fd.contentFormat == FileData.CONTENT_GZIP && data.length > 0 && fd.deltas == null) {
+          // Already compressed, so the zip entry can reuse the bytes as they are
+          out.putGzipEntry(fileName, data);
+        } else {
+          out.putEntry(fileName, applyDeltas(decodeContent(fd.contentFormat, data), fd.deltas));
+        }
         fileCount.t++;
       }
       if (projectHistory.t != null) {
         byte[] data = projectHistory.t.getBytes(StorageUtil.DEFAULT_CHARSET);
-        out.putNextEntry(new ZipEntry(FileExporter.REMIX_INFORMATION_FILE_PATH));
-        out.write(data, 0, data.length);
-        out.closeEntry();
+        out.putEntry(FileExporter.REMIX_INFORMATION_FILE_PATH, data);
         fileCount.t++;
       }
     } catch (ObjectifyException e) {
@@ -1988,9 +3147,7 @@ public class ObjectifyStorageIo implements  StorageIo {
                 for (UserFileData ufd : datastore.query(UserFileData.class).ancestor(userKey)) {
                   if (ufd.fileName.equals(StorageUtil.ANDROID_KEYSTORE_FILENAME) &&
                       (ufd.content.length > 0)) {
-                    out.putNextEntry(new ZipEntry(StorageUtil.ANDROID_KEYSTORE_FILENAME));
-                    out.write(ufd.content, 0, ufd.content.length);
-                    out.closeEntry();
+                    out.putEntry(StorageUtil.ANDROID_KEYSTORE_FILENAME, ufd.content);
                     fileCount.t++;
                   }
                 }
@@ -2310,6 +3467,10 @@ public class ObjectifyStorageIo implements  StorageIo {
     return new Key<FileData>(projectKey, FileData.class, fileName);
   }
 
+  private Key<ContentData> contentKey(String hash) {
+    return new Key<ContentData>(ContentData.class, hash);
+  }
+
   /**
    * Call job.run() if we get a {@link java.util.ConcurrentModificationException}
    * or {@link com.google.appinventor.server.storage.ObjectifyException}
@@ -2456,6 +3617,12 @@ public class ObjectifyStorageIo implements  StorageIo {
     }
   }
 
+  @VisibleForTesting
+  int getContentRefCount(byte[] content) {
+    ContentData cd = ObjectifyService.begin().find(contentKey(contentHash(content)));
+    return cd == null ? 0 : cd.refCount;
+  }
+
   @VisibleForTesting
   ProjectData getProject(long projectId) {
     return ObjectifyService.begin().find(projectKey(projectId));
@@ -2482,7 +3649,7 @@ public class ObjectifyStorageIo implements  StorageIo {
   // layer to the client code which will put up a dialog box for the user to review
   // See Ode.java for more information
   private void checkForBlocksTruncation(FileData fd) throws ObjectifyException {
-    if (fd.isBlob || isTrue(fd.isGCS) || fd.content.length > 120)
+    if (fd.isBlob || isTrue(fd.isGCS) || contentLength(fd) > 120)
       throw new ObjectifyException("BlocksTruncated"); // Hack
     // I'm avoiding having to modify every use of runJobWithRetries to handle a new
     // exception, so we use this dodge.
@@ -2649,6 +3816,7 @@ public class ObjectifyStorageIo implements  StorageIo {
               }
               userData.isAdmin = user.getIsAdmin();
               datastore.put(userData);
+              SessionCache.getInstance().invalidateUser(userData.id);
             } else {            // New User
               String emaillower = user.getEmail().toLowerCase();
               Objectify qDatastore = ObjectifyService.begin(); // Need an instance not in this transaction
@@ -0,0 +1,79 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.server.storage;
+
+import com.google.appinventor.shared.rpc.project.ProjectListPage;
+import com.google.appinventor.shared.rpc.project.UserProject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Sorts and pages project lists in memory, for storage that cannot sort them
+ * itself and for the bootstrap data, which has read the whole list anyway.
+ *
+ */
+public final class ProjectLists {
+
+  private ProjectLists() {
+  }
+
+  /**
+   * Sorts the user's projects and returns the requested part of them.
+   *
+   * @param projects the user's projects, which are sorted in place
+   * @param sortField one of the {@code SORT_BY} constants of ProjectListPage
+   * @param ascending whether to sort in ascending order
+   * @param start the position of the first project to return
+   * @param count the most projects to return
+   * @param timestamp the time the projects were read
+   */
+  public static ProjectListPage makePage(List<UserProject> projects, int sortField,
+      boolean ascending, int start, int count, long timestamp) {
+    Comparator<UserProject> comparator;
+    switch (sortField) {
+      case ProjectListPage.SORT_BY_NAME:
+        comparator = COMPARE_BY_NAME;
+        break;
+      case ProjectListPage.SORT_BY_DATE_CREATED:
+        comparator = COMPARE_BY_DATE_CREATED;
+        break;
+      default:
+        comparator = COMPARE_BY_DATE_MODIFIED;
+        break;
+    }
+    Collections.sort(projects, ascending ? comparator : Collections.reverseOrder(comparator));
+    int from = Math.max(0, Math.min(start, projects.size()));
+    int to = Math.min(projects.size(), from + Math.max(0, count));
+    return new ProjectListPage(new ArrayList<UserProject>(projects.subList(from, to)),
+        projects.size(), null, timestamp);
+  }
+
+  private static final Comparator<UserProject> COMPARE_BY_NAME = new Comparator<UserProject>() {
+    @Override
+    public int compare(UserProject project1, UserProject project2) {
+      return project1.getProjectName().compareToIgnoreCase(project2.getProjectName());
+    }
+  };
+
+  private static final Comparator<UserProject> COMPARE_BY_DATE_CREATED =
+      new Comparator<UserProject>() {
+        @Override
+        public int compare(UserProject project1, UserProject project2) {
+          return Long.signum(project1.getDateCreated() - project2.getDateCreated());
+        }
+      };
+
+  private static final Comparator<UserProject> COMPARE_BY_DATE_MODIFIED =
+      new Comparator<UserProject>() {
+        @Override
+        public int compare(UserProject project1, UserProject project2) {
+          return Long.signum(project1.getDateModified() - project2.getDateModified());
+        }
+      };
+}
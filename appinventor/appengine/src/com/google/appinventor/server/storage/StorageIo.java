@@ -11,8 +11,11 @@ import com.google.appinventor.shared.rpc.Motd;
 import com.google.appinventor.shared.rpc.Nonce;
 import com.google.appinventor.shared.rpc.admin.AdminUser;
 import com.google.appinventor.shared.rpc.AdminInterfaceException;
+import com.google.appinventor.shared.rpc.project.FileVersionMismatchException;
 import com.google.appinventor.shared.rpc.project.Project;
+import com.google.appinventor.shared.rpc.project.ProjectListPage;
 import com.google.appinventor.shared.rpc.project.ProjectSourceZip;
+import com.google.appinventor.shared.rpc.project.TextDelta;
 import com.google.appinventor.shared.rpc.project.UserProject;
 import com.google.appinventor.shared.rpc.user.User;
 import com.google.appinventor.shared.rpc.user.SplashConfig;
@@ -21,6 +24,7 @@ import java.io.InputStream;
 import java.io.IOException;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 
 import javax.annotation.Nullable;
@@ -134,6 +138,21 @@ public interface StorageIo {
    */
   long createProject(String userId, Project project, String projectSettings);
 
+  /**
+   * Copies source files of a project into another project of the same user.
+   * Where the storage allows, the copies share their content with the
+   * original files, so it is neither read nor written again.
+   *
+   * @param userId user ID
+   * @param fromProjectId ID of the project to copy the files from
+   * @param toProjectId ID of the project to copy the files to
+   * @param fileNames map from the names of the files in the first project to
+   *                  their names in the second
+   * @return modification date for the second project
+   */
+  long copySourceFiles(String userId, long fromProjectId, long toProjectId,
+      Map<String, String> fileNames);
+
   /**
    * Deletes a project and all its files.
    *
@@ -202,6 +221,44 @@ public interface StorageIo {
 
   List<UserProject> getUserProjects(String userId, List<Long> projectIds);
 
+  /**
+   * Returns the user's projects, like getUserProjects for all of the ids
+   * returned by getProjects, but without reading each project's data.
+   *
+   * @param userId a userId
+   * @param changedSince only projects whose name, dates or trash flag have
+   *        changed after this time are returned; 0 for all of them
+   * @return new List of UserProject objects, in no particular order
+   */
+  List<UserProject> getProjectList(String userId, long changedSince);
+
+  /**
+   * Returns part of the user's project list, in the given order, without
+   * reading the projects outside of it where the storage allows.
+   *
+   * @param userId a userId
+   * @param sortField one of the {@code SORT_BY} constants of ProjectListPage
+   * @param ascending whether to sort in ascending order
+   * @param start the position of the first project to return
+   * @param count the most projects to return
+   * @return the projects, the total number of projects and the time the list
+   *         was read
+   */
+  ProjectListPage getProjectListPage(String userId, int sortField, boolean ascending,
+      int start, int count);
+
+  /**
+   * Returns the user's projects that have changed, along with the ids of all
+   * of the user's projects, from one read of the project list.
+   *
+   * @param userId a userId
+   * @param changedSince only projects whose name, dates or trash flag have
+   *        changed after this time are returned
+   * @return the changed projects, the ids of all of the projects and the time
+   *         the list was read
+   */
+  ProjectListPage getProjectListChanges(String userId, long changedSince);
+
   /**
    * Returns a project name.
    *
@@ -378,6 +435,19 @@ public interface StorageIo {
    */
   List<String> getProjectOutputFiles(String userId, long projectId);
 
+  /**
+   * Returns the hashes of the contents of a project's source files, as
+   * recorded when the files were saved, so that callers can tell whether
+   * content has changed without reading it.
+   * @param userId a user Id (the request is made on behalf of this user)
+   * @param projectId  project ID
+   * @param prefix  only files whose names start with this are included
+   *
+   * @return  map from file ID to the hex SHA-256 hash of its content, or to
+   *          null for files saved before hashes were recorded
+   */
+  Map<String, String> getProjectSourceFileHashes(String userId, long projectId, String prefix);
+
   /**
    * Uploads a file.
    * @param projectId  project ID
@@ -423,6 +493,38 @@ public interface StorageIo {
    */
   long uploadRawFileForce(long projectId, String fileId, String userId, byte[] content);
 
+  /**
+   * Changes a text file by applying a delta to its current content. Where
+   * the storage allows, it keeps the delta rather than writing the whole new
+   * content, and writes the whole content from time to time.
+   *
+   * @param projectId  project ID
+   * @param fileId  file ID
+   * @param userId the user who owns the file
+   * @param force write file even if it is a trivial workspace
+   * @param baseVersion  version of the content the delta applies to
+   * @param delta  the change, with the version of the new content
+   * @return modification date for project
+   * @throws FileVersionMismatchException if the file does not have the
+   *         content the delta applies to
+   */
+  long uploadFileDelta(long projectId, String fileId, String userId, boolean force,
+      String baseVersion, TextDelta delta)
+      throws BlocksTruncatedException, FileVersionMismatchException;
+
+  /**
+   * Uploads several files of a project at once. All of the files are checked
+   * before any of them is written, so if one is rejected none are saved.
+   * @param projectId  project ID
+   * @param userId the user who owns the files
+   * @param contents  map from file ID to file content
+   * @param encoding encoding of content
+   * @param force write files even if they are trivial workspaces
+   * @return modification date for project
+   */
+  long uploadFiles(long projectId, String userId, Map<String, String> contents, String encoding,
+      boolean force) throws BlocksTruncatedException;
+
   /**
    * Deletes a file.
    * @param userId a user Id (the request is made on behalf of this user)
@@ -464,6 +566,17 @@ public interface StorageIo {
    */
   byte[] downloadRawFile(String userId, long projectId, String fileId);
 
+  /**
+   * Downloads several text files of a project at once.
+   * @param userId a user Id (the request is made on behalf of this user)
+   * @param projectId  project ID
+   * @param fileIds  file IDs
+   * @param encoding  encoding of text files
+   *
+   * @return  text file contents, in the same order as {@code fileIds}
+   */
+  List<String> downloadFiles(String userId, long projectId, List<String> fileIds, String encoding);
+
   /**
    * Creates a temporary file with the given content and returns
    * its file name, which will always begin with __TEMP__
@@ -6,8 +6,11 @@
 
 package com.google.appinventor.server.storage;
 
+import com.google.appinventor.server.flags.Flag;
 import com.google.common.annotations.VisibleForTesting;
 
+import java.io.IOException;
+
 /**
  * Holds the singleton StorageIo subclass object. We introduce this class
  * so that we can switch out the underlying StorageIo subclass without changing
@@ -17,13 +20,25 @@ import com.google.common.annotations.VisibleForTesting;
  *
  */
 public class StorageIoInstanceHolder {
+  // "local" keeps storage on the local disk, see LocalStorageIo. Anything
+  // else uses the App Engine datastore.
+  private static final Flag<String> backend = Flag.createFlag("storage.backend", "datastore");
+
   private static StorageIo INSTANCE;
   
   private StorageIoInstanceHolder() {} // not to be instantiated
 
   public static StorageIo getInstance() {
     if (INSTANCE == null) {
-      INSTANCE = new ObjectifyStorageIo();
+      if (backend.get().equals("local")) {
+        try {
+          INSTANCE = new LocalStorageIo();
+        } catch (IOException e) {
+          throw new IllegalStateException("Unable to open local storage", e);
+        }
+      } else {
+        INSTANCE = new ObjectifyStorageIo();
+      }
     }
     return INSTANCE;
   }
@@ -62,6 +62,10 @@ public class StoredData {
     // Path to template project passed as GET parameter
     String templatePath;
     boolean upgradedGCS;
+
+    // Whether all of the user's UserProjectData have their list fields
+    // filled in, so that they can be read in sorted pages
+    boolean projectListFilled;
   }
 
   // Project properties
@@ -122,6 +126,20 @@ public class StoredData {
     // User specific project settings
     // TODO(user): is this ever used?
     String settings;
+
+    // Copies of the project's name, dates and trash flag, so that the
+    // project list can be read without fetching every ProjectData. The name
+    // is null until they have been copied. The dates and the lower-cased
+    // name are indexed to read the list in pages.
+    String name;
+    @Indexed String sortName;
+    @Indexed long dateCreated;
+    @Indexed long dateModified;
+    boolean inTrash;
+
+    // When any of the copied fields last changed, for clients that keep
+    // their project list in sync
+    long listModified;
   }
 
   // Non-project-specific files (tied to user)
@@ -184,9 +202,31 @@ public class StoredData {
     // GCS file name (sans bucket).
     Boolean isGCS = false;
 
-    // The GCS filename, sans bucket name
+    // The GCS filename, sans bucket name. Content shared with other files is
+    // named by its hash, see ContentData.
     String gcsName;
 
+    // SHA-256 hash of the content, in hex. Null for files last written before
+    // hashes were recorded.
+    String contentHash;
+
+    // How the bytes in content, or in the GCS object of a file whose content
+    // is not shared, are encoded: CONTENT_RAW or CONTENT_GZIP. Files written
+    // before text files were compressed are raw until they are next written.
+    int contentFormat;
+
+    static final int CONTENT_RAW = 0;
+    static final int CONTENT_GZIP = 1;
+
+    // Changes to apply, in order, to the content in GCS to get the content of
+    // the file. Saving a small change to a large text file stores a delta
+    // here instead of writing the whole file to GCS again, until the next
+    // time the whole file is written. See ObjectifyStorageIo.uploadFileDelta.
+    byte[] deltas;
+
+    // The number of deltas
+    int deltaCount;
+
     // File settings
     String settings;
 
@@ -198,6 +238,21 @@ public class StoredData {
                                 // it yet
   }
 
+  // Content stored in GCS once and shared by all of the project files with
+  // the same bytes. The id is the SHA-256 hash of the content and refCount is
+  // the number of FileData objects whose gcsName refers to it. Each time the
+  // content is stored anew it gets a new gcsName, so that storing it cannot
+  // race with deleting the previous copy after its last reference went away.
+  @Unindexed
+  static final class ContentData {
+    @Id String hash;
+
+    // The GCS filename, sans bucket name
+    String gcsName;
+
+    int refCount;
+  }
+
   // MOTD data.
   @Unindexed
   static final class MotdData {
@@ -0,0 +1,254 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.server.util;
+
+import com.google.common.io.ByteStreams;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Writes a zip archive whose entries are all compressed with deflate.
+ *
+ * <p>Unlike {@link java.util.zip.ZipOutputStream}, an entry can be added from
+ * content that is already compressed in gzip format, such as project files
+ * stored compressed, without inflating and deflating it again: a gzip member
+ * holds the same deflate data as a zip entry, along with the CRC-32 and
+ * length a zip entry needs.
+ *
+ * <p>Archives are limited to 65535 entries and 4GB, since ZIP64 is not
+ * supported.
+ *
+ */
+public final class ZipWriter implements Closeable {
+  private static final int LOCAL_HEADER = 0x04034b50;
+  private static final int CENTRAL_HEADER = 0x02014b50;
+  private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+  private static final int VERSION = 20;
+  private static final int FLAG_UTF8 = 0x0800;
+  private static final int METHOD_DEFLATED = 8;
+
+  // gzip header flags, see RFC 1952
+  private static final int GZIP_FHCRC = 2;
+  private static final int GZIP_FEXTRA = 4;
+  private static final int GZIP_FNAME = 8;
+  private static final int GZIP_FCOMMENT = 16;
+
+  private static class Entry {
+    final byte[] name;
+    final long crc;
+    final long compressedSize;
+    final long size;
+    final long offset;
+
+    Entry(byte[] name, long crc, long compressedSize, long size, long offset) {
+      this.name = name;
+      this.crc = crc;
+      this.compressedSize = compressedSize;
+      this.size = size;
+      this.offset = offset;
+    }
+  }
+
+  private final OutputStream out;
+  private final List<Entry> entries = new ArrayList<Entry>();
+  private final int dosTime;
+  private final int dosDate;
+  private byte[] comment = new byte[0];
+  private long written;
+
+  public ZipWriter(OutputStream out) {
+    this.out = out;
+    Calendar now = Calendar.getInstance();
+    dosTime = (now.get(Calendar.HOUR_OF_DAY) << 11) | (now.get(Calendar.MINUTE) << 5)
+        | (now.get(Calendar.SECOND) >> 1);
+    dosDate = ((now.get(Calendar.YEAR) - 1980) << 9) | ((now.get(Calendar.MONTH) + 1) << 5)
+        | now.get(Calendar.DAY_OF_MONTH);
+  }
+
+  public void setComment(String comment) {
+    this.comment = comment.getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Adds an entry, compressing its content.
+   */
+  public void putEntry(String name, byte[] content) throws IOException {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream(content.length / 4 + 64);
+    Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    try {
+      DeflaterOutputStream deflate = new DeflaterOutputStream(compressed, deflater);
+      deflate.write(content);
+      deflate.finish();
+    } finally {
+      deflater.end();
+    }
+    CRC32 crc = new CRC32();
+    crc.update(content);
+    writeEntry(name, compressed.toByteArray(), 0, compressed.size(), crc.getValue(),
+        content.length);
+  }
+
+  /**
+   * Adds an entry from content compressed in gzip format. The deflate data is
+   * copied as it is.
+   *
+   * @param gzip a single gzip member, as written by
+   *        {@link java.util.zip.GZIPOutputStream}
+   */
+  public void putGzipEntry(String name, byte[] gzip) throws IOException {
+    int start = gzipDataStart(gzip);
+    if (start < 0) {
+      // Not something we can copy, so recompress it
+      putEntry(name, gunzip(gzip));
+      return;
+    }
+    int end = gzip.length - 8;
+    writeEntry(name, gzip, start, end - start, readIntLE(gzip, end) & 0xffffffffL,
+        readIntLE(gzip, end + 4) & 0xffffffffL);
+  }
+
+  @Override
+  public void close() throws IOException {
+    long directoryOffset = written;
+    for (Entry entry : entries) {
+      ByteArrayOutputStream header = new ByteArrayOutputStream(46 + entry.name.length);
+      writeIntLE(header, CENTRAL_HEADER);
+      writeShortLE(header, VERSION);  // version made by
+      writeShortLE(header, VERSION);  // version needed to extract
+      writeShortLE(header, FLAG_UTF8);
+      writeShortLE(header, METHOD_DEFLATED);
+      writeShortLE(header, dosTime);
+      writeShortLE(header, dosDate);
+      writeIntLE(header, (int) entry.crc);
+      writeIntLE(header, (int) entry.compressedSize);
+      writeIntLE(header, (int) entry.size);
+      writeShortLE(header, entry.name.length);
+      writeShortLE(header, 0);  // extra field length
+      writeShortLE(header, 0);  // comment length
+      writeShortLE(header, 0);  // disk number
+      writeShortLE(header, 0);  // internal attributes
+      writeIntLE(header, 0);  // external attributes
+      writeIntLE(header, (int) entry.offset);
+      header.write(entry.name);
+      write(header.toByteArray(), 0, header.size());
+    }
+    long directorySize = written - directoryOffset;
+    if (directoryOffset > 0xffffffffL) {
+      throw new IOException("Zip archive too large");
+    }
+    ByteArrayOutputStream end = new ByteArrayOutputStream(22 + comment.length);
+    writeIntLE(end, END_OF_CENTRAL_DIRECTORY);
+    writeShortLE(end, 0);  // number of this disk
+    writeShortLE(end, 0);  // disk with the central directory
+    writeShortLE(end, entries.size());
+    writeShortLE(end, entries.size());
+    writeIntLE(end, (int) directorySize);
+    writeIntLE(end, (int) directoryOffset);
+    writeShortLE(end, comment.length);
+    end.write(comment);
+    write(end.toByteArray(), 0, end.size());
+    out.close();
+  }
+
+  private void writeEntry(String name, byte[] data, int offset, int length, long crc,
+      long size) throws IOException {
+    if (entries.size() >= 0xffff || written > 0xffffffffL || size > 0xffffffffL) {
+      throw new IOException("Zip archive too large");
+    }
+    byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+    entries.add(new Entry(nameBytes, crc, length, size, written));
+    ByteArrayOutputStream header = new ByteArrayOutputStream(30 + nameBytes.length);
+    writeIntLE(header, LOCAL_HEADER);
+    writeShortLE(header, VERSION);
+    writeShortLE(header, FLAG_UTF8);
+    writeShortLE(header, METHOD_DEFLATED);
+    writeShortLE(header, dosTime);
+    writeShortLE(header, dosDate);
+    writeIntLE(header, (int) crc);
+    writeIntLE(header, length);
+    writeIntLE(header, (int) size);
+    writeShortLE(header, nameBytes.length);
+    writeShortLE(header, 0);  // extra field length
+    header.write(nameBytes);
+    write(header.toByteArray(), 0, header.size());
+    write(data, offset, length);
+  }
+
+  private void write(byte[] data, int offset, int length) throws IOException {
+    out.write(data, offset, length);
+    written += length;
+  }
+
+  /*
+   * Returns the offset of the deflate data in a gzip member, or -1 if it is
+   * not a gzip member this class understands.
+   */
+  private static int gzipDataStart(byte[] gzip) {
+    if (gzip.length < 18 || (gzip[0] & 0xff) != 0x1f || (gzip[1] & 0xff) != 0x8b
+        || gzip[2] != Deflater.DEFLATED) {
+      return -1;
+    }
+    int flags = gzip[3] & 0xff;
+    int position = 10;
+    try {
+      if ((flags & GZIP_FEXTRA) != 0) {
+        position += 2 + ((gzip[position] & 0xff) | ((gzip[position + 1] & 0xff) << 8));
+      }
+      if ((flags & GZIP_FNAME) != 0) {
+        while (gzip[position++] != 0) {
+          // Skip the file name
+        }
+      }
+      if ((flags & GZIP_FCOMMENT) != 0) {
+        while (gzip[position++] != 0) {
+          // Skip the comment
+        }
+      }
+      if ((flags & GZIP_FHCRC) != 0) {
+        position += 2;
+      }
+    } catch (ArrayIndexOutOfBoundsException e) {
+      return -1;
+    }
+    return position <= gzip.length - 8 ? position : -1;
+  }
+
+  private static byte[] gunzip(byte[] gzip) throws IOException {
+    GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzip));
+    try {
+      return ByteStreams.toByteArray(in);
+    } finally {
+      in.close();
+    }
+  }
+
+  private static int readIntLE(byte[] bytes, int offset) {
+    return (bytes[offset] & 0xff) | ((bytes[offset + 1] & 0xff) << 8)
+        | ((bytes[offset + 2] & 0xff) << 16) | ((bytes[offset + 3] & 0xff) << 24);
+  }
+
+  private static void writeShortLE(ByteArrayOutputStream out, int value) {
+    out.write(value & 0xff);
+    out.write((value >>> 8) & 0xff);
+  }
+
+  private static void writeIntLE(ByteArrayOutputStream out, int value) {
+    writeShortLE(out, value & 0xffff);
+    writeShortLE(out, value >>> 16);
+  }
+}
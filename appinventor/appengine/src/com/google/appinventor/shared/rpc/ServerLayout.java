@@ -118,6 +118,12 @@ public class ServerLayout {
    */
   public static final String DOWNLOAD_USERFILE = "userfile";
 
+  /**
+   * Relative path within {@link com.google.appinventor.server.DownloadServlet}
+   * for downloading the content hashes of a project's assets
+   */
+  public static final String DOWNLOAD_ASSET_MANIFEST = "asset-manifest";
+
   /**
    * Relative path of the {@link com.google.appinventor.server.UploadServlet}
    * within the ODE GWT module.
@@ -50,6 +50,13 @@ public class ChecksumedLoadFile implements Serializable {
     }
   }
 
+  /**
+   * Returns the MD5 checksum of the content, in hex.
+   */
+  public String getChecksum() {
+    return checksum;
+  }
+
   public void setContent(String content) throws ChecksumedFileException {
     MessageDigest md = null;
     try {
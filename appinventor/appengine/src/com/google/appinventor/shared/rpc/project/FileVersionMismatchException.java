@@ -0,0 +1,32 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.shared.rpc.project;
+
+import java.io.Serializable;
+
+/**
+ * Thrown when a {@link TextDelta} is saved but the file does not have the
+ * content the delta was computed from, so the whole content has to be saved
+ * instead.
+ */
+public class FileVersionMismatchException extends Exception implements Serializable {
+
+    private String message;
+
+    public FileVersionMismatchException() {
+      super();
+    }
+
+    public FileVersionMismatchException(String message) {
+      super();
+      this.message = message;
+    }
+
+    public String getMessage() {
+      return message;
+    }
+
+}
@@ -0,0 +1,71 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.shared.rpc.project;
+
+import com.google.gwt.user.client.rpc.IsSerializable;
+
+import java.util.List;
+
+/**
+ * Part of a user's project list, as returned by
+ * {@link ProjectService#getProjectListPage} and
+ * {@link ProjectService#getProjectListChanges}.
+ *
+ */
+public class ProjectListPage implements IsSerializable {
+  /**
+   * Sort orders for {@link ProjectService#getProjectListPage}.
+   */
+  public static final int SORT_BY_NAME = 0;
+  public static final int SORT_BY_DATE_CREATED = 1;
+  public static final int SORT_BY_DATE_MODIFIED = 2;
+
+  private List<UserProject> projects;
+
+  // The number of projects in the whole list
+  private int totalCount;
+
+  // The ids of all of the user's projects, only for changes
+  private List<Long> projectIds;
+
+  // The server's time when the list was read, to ask for changes since
+  private long timestamp;
+
+  @SuppressWarnings("unused")
+  private ProjectListPage() {
+  }
+
+  public ProjectListPage(List<UserProject> projects, int totalCount, List<Long> projectIds,
+      long timestamp) {
+    this.projects = projects;
+    this.totalCount = totalCount;
+    this.projectIds = projectIds;
+    this.timestamp = timestamp;
+  }
+
+  /**
+   * Returns the projects on this page, or the projects that have changed.
+   */
+  public List<UserProject> getProjects() {
+    return projects;
+  }
+
+  public int getTotalCount() {
+    return totalCount;
+  }
+
+  /**
+   * Returns the ids of all of the user's projects, so that projects deleted
+   * since can be dropped, or null for a page.
+   */
+  public List<Long> getProjectIds() {
+    return projectIds;
+  }
+
+  public long getTimestamp() {
+    return timestamp;
+  }
+}
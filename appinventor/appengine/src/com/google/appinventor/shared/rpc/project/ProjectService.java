@@ -129,6 +129,26 @@ public interface ProjectService extends RemoteService {
    */
   List<UserProject> getProjectInfos();
 
+  /**
+   * Returns part of the user's project list, in the given order.
+   *
+   * @param sortField  one of the {@code SORT_BY} constants of {@link ProjectListPage}
+   * @param ascending  whether to sort in ascending order
+   * @param start  the position of the first project to return
+   * @param count  the most projects to return
+   * @return the projects, the total number of projects and the server's time
+   */
+  ProjectListPage getProjectListPage(int sortField, boolean ascending, int start, int count);
+
+  /**
+   * Returns the projects whose name, dates or trash flag have changed, and
+   * the ids of all of the user's projects.
+   *
+   * @param since  the timestamp of an earlier {@link ProjectListPage}
+   * @return the changes and the server's time, to ask for the next changes
+   */
+  ProjectListPage getProjectListChanges(long since);
+
   /**
    * Returns the root node for the given project.
    * @param projectId  project ID as received by
@@ -252,6 +272,17 @@ public interface ProjectService extends RemoteService {
    */
   List<FileDescriptorWithContent> load(List<FileDescriptor> files);
 
+  /**
+   * Loads the contents of multiple files of a project in a single request.
+   * Like {@link #load2(long, String)} each file is returned with a checksum.
+   *
+   * @param projectId  project ID
+   * @param fileIds  project nodes whose sources should be loaded
+   * @return  checksummed file objects, in the same order as {@code fileIds}
+   */
+  List<ChecksumedLoadFile> load2(long projectId, List<String> fileIds)
+      throws ChecksumedFileException;
+
   /**
    * Saves the content of the file associated with a node in the project tree.
    *
@@ -281,6 +312,27 @@ public interface ProjectService extends RemoteService {
   long save2(String sessionId, long projectId, String fileId, boolean force, String content) throws InvalidSessionException,
       BlocksTruncatedException;
 
+  /**
+   * Saves a change to the content of a text file, given as a delta from the
+   * content the client last loaded or saved, so that a small change to a
+   * large file does not send the whole file.
+   *
+   * @param sessionId current session id
+   * @param projectId  project ID
+   * @param fileId  project node whose source should be saved
+   * @param force  whether to write a trivial (empty) blocks workspace
+   * @param baseVersion  version of the content the delta applies to, see
+   *                     {@link TextDelta#version(String)}
+   * @param delta  the change
+   * @return modification date for project
+   * @throws FileVersionMismatchException if the file has other content than
+   *         the delta applies to, in which case the client should save the
+   *         whole content
+   */
+  long saveDelta(String sessionId, long projectId, String fileId, boolean force,
+      String baseVersion, TextDelta delta) throws InvalidSessionException,
+      BlocksTruncatedException, FileVersionMismatchException;
+
   /**
    * Saves the contents of multiple files.
    *
@@ -85,6 +85,17 @@ public interface ProjectServiceAsync {
    */
   void getProjectInfos(AsyncCallback<List<UserProject>> callback);
 
+  /**
+   * @see ProjectService#getProjectListPage(int, boolean, int, int)
+   */
+  void getProjectListPage(int sortField, boolean ascending, int start, int count,
+      AsyncCallback<ProjectListPage> callback);
+
+  /**
+   * @see ProjectService#getProjectListChanges(long)
+   */
+  void getProjectListChanges(long since, AsyncCallback<ProjectListPage> callback);
+
   /**
    * @see ProjectService#getProject(long)
    */
@@ -145,6 +156,12 @@ public interface ProjectServiceAsync {
    */
   void load(List<FileDescriptor> files, AsyncCallback<List<FileDescriptorWithContent>> callback);
 
+  /**
+   * @see ProjectService#load2(long, List)
+   */
+  void load2(long projectId, List<String> fileIds,
+      AsyncCallback<List<ChecksumedLoadFile>> callback);
+
   /**
    * @see ProjectService#save(String, long, String, String)
    */
@@ -155,6 +172,12 @@ public interface ProjectServiceAsync {
    */
   void save2(String sessionId, long projectId, String fileId, boolean force, String source, AsyncCallback<Long> callback);
 
+  /**
+   * @see ProjectService#saveDelta(String, long, String, boolean, String, TextDelta)
+   */
+  void saveDelta(String sessionId, long projectId, String fileId, boolean force,
+      String baseVersion, TextDelta delta, AsyncCallback<Long> callback);
+
   /**
    * @see ProjectService#save(String, List)
    */
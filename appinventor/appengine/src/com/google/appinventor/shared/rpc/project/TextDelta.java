@@ -0,0 +1,146 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.shared.rpc.project;
+
+import java.io.Serializable;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * A change to the content of a text file, sent instead of the whole new
+ * content when a small part of a large file changed. The change replaces
+ * everything between the longest common prefix and the longest common suffix
+ * of the old and new content. Editing blocks or components usually changes
+ * one region of a file, so a delta is much smaller than the file.
+ *
+ * <p>Contents are identified by their version, see {@link #version(String)}.
+ */
+public final class TextDelta implements Serializable {
+
+  // For serialization
+  private static final long serialVersionUID = 4176283316092405815L;
+
+  private int prefixLength;
+  private int suffixLength;
+  private String replacement;
+  private int length;
+  private String version;
+
+  /**
+   * Default constructor (for serialization only).
+   * Unfortunately this will prevent any fields from being marked as final!
+   */
+  @SuppressWarnings("unused")
+  private TextDelta() {
+  }
+
+  /**
+   * Creates a delta.
+   *
+   * @param prefixLength  number of characters kept at the start of the content
+   * @param suffixLength  number of characters kept at the end of the content
+   * @param replacement  text replacing the characters in between
+   * @param length  length of the new content
+   * @param version  version of the new content, or null if not known
+   */
+  public TextDelta(int prefixLength, int suffixLength, String replacement, int length,
+      String version) {
+    this.prefixLength = prefixLength;
+    this.suffixLength = suffixLength;
+    this.replacement = replacement;
+    this.length = length;
+    this.version = version;
+  }
+
+  /**
+   * Computes the delta that changes one content into another.
+   *
+   * @param oldContent  the content the delta applies to
+   * @param newContent  the content the delta produces
+   * @return the delta
+   */
+  public static TextDelta compute(String oldContent, String newContent) {
+    int oldLength = oldContent.length();
+    int newLength = newContent.length();
+    int maxLength = Math.min(oldLength, newLength);
+    int prefix = 0;
+    while (prefix < maxLength && oldContent.charAt(prefix) == newContent.charAt(prefix)) {
+      prefix++;
+    }
+    int suffix = 0;
+    while (suffix < maxLength - prefix
+        && oldContent.charAt(oldLength - 1 - suffix) == newContent.charAt(newLength - 1 - suffix)) {
+      suffix++;
+    }
+    return new TextDelta(prefix, suffix, newContent.substring(prefix, newLength - suffix),
+        newLength, version(newContent));
+  }
+
+  /**
+   * Applies the delta.
+   *
+   * @param oldContent  the content the delta was computed from
+   * @return the new content
+   * @throws IllegalArgumentException if the delta does not fit the content
+   */
+  public String apply(String oldContent) {
+    if (prefixLength < 0 || suffixLength < 0
+        || prefixLength + suffixLength > oldContent.length()
+        || prefixLength + replacement.length() + suffixLength != length) {
+      throw new IllegalArgumentException("Delta does not apply to content of length "
+          + oldContent.length());
+    }
+    return oldContent.substring(0, prefixLength) + replacement
+        + oldContent.substring(oldContent.length() - suffixLength);
+  }
+
+  public int getPrefixLength() {
+    return prefixLength;
+  }
+
+  public int getSuffixLength() {
+    return suffixLength;
+  }
+
+  public String getReplacement() {
+    return replacement;
+  }
+
+  /**
+   * Returns the length of the new content.
+   */
+  public int getLength() {
+    return length;
+  }
+
+  /**
+   * Returns the version of the new content, or null if not known.
+   */
+  public String getVersion() {
+    return version;
+  }
+
+  /**
+   * Returns the version of a content: the MD5 hash of its UTF-8 encoding, in
+   * hex, which is also how {@link ChecksumedLoadFile} checks contents.
+   */
+  public static String version(String content) {
+    try {
+      MessageDigest md = MessageDigest.getInstance("MD5");
+      byte[] digest = md.digest(content.getBytes("UTF-8"));
+      StringBuilder sb = new StringBuilder();
+      for (byte b : digest) {
+        sb.append(Integer.toString((b & 0xff) + 0x100, 16).substring(1));
+      }
+      return sb.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e.toString());
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e.toString());
+    }
+  }
+}
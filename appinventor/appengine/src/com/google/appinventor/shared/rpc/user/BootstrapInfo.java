@@ -0,0 +1,87 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.shared.rpc.user;
+
+import com.google.appinventor.shared.rpc.project.ChecksumedLoadFile;
+import com.google.appinventor.shared.rpc.project.ProjectListPage;
+import com.google.appinventor.shared.rpc.project.ProjectRootNode;
+import com.google.gwt.user.client.rpc.IsSerializable;
+
+import java.util.Map;
+
+/**
+ * Data Transfer Object holding everything the client needs to start: the
+ * system configuration, the user's settings, the first page of the user's
+ * projects, and the project the user had open along with the form and blocks
+ * files of its screens.
+ *
+ */
+public class BootstrapInfo implements IsSerializable {
+  private Config config;
+
+  private String userSettings;
+
+  // The most recently modified projects
+  private ProjectListPage projects;
+
+  // The project to open, or 0 if there is none
+  private long currentProjectId;
+  private ProjectRootNode currentProjectRoot;
+  private String currentProjectSettings;
+  // The form and blocks files of the current project, by file id
+  private Map<String, ChecksumedLoadFile> currentProjectFiles;
+
+  public BootstrapInfo() {
+  }
+
+  public Config getConfig() {
+    return config;
+  }
+
+  public void setConfig(Config config) {
+    this.config = config;
+  }
+
+  public String getUserSettings() {
+    return userSettings;
+  }
+
+  public void setUserSettings(String userSettings) {
+    this.userSettings = userSettings;
+  }
+
+  public ProjectListPage getProjects() {
+    return projects;
+  }
+
+  public void setProjects(ProjectListPage projects) {
+    this.projects = projects;
+  }
+
+  public long getCurrentProjectId() {
+    return currentProjectId;
+  }
+
+  public ProjectRootNode getCurrentProjectRoot() {
+    return currentProjectRoot;
+  }
+
+  public String getCurrentProjectSettings() {
+    return currentProjectSettings;
+  }
+
+  public Map<String, ChecksumedLoadFile> getCurrentProjectFiles() {
+    return currentProjectFiles;
+  }
+
+  public void setCurrentProject(long projectId, ProjectRootNode root, String settings,
+      Map<String, ChecksumedLoadFile> files) {
+    this.currentProjectId = projectId;
+    this.currentProjectRoot = root;
+    this.currentProjectSettings = settings;
+    this.currentProjectFiles = files;
+  }
+}
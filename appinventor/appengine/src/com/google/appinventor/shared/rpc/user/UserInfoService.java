@@ -25,6 +25,15 @@ public interface UserInfoService extends RemoteService {
 
   Config getSystemConfig(String sessionId);
 
+  /**
+   * Retrieves everything the client needs at startup in one request: the
+   * system configuration (as {@link #getSystemConfig(String)}), the user's
+   * settings, the first page of the user's projects, and the nodes, settings
+   * and source files of the project the user last had open.
+   *
+   */
+  BootstrapInfo getBootstrapInfo(String sessionId);
+
   /**
    * Retrieve's the stored Backpack
    *
@@ -21,6 +21,11 @@ public interface UserInfoServiceAsync {
    */
   void getSystemConfig(String sessionId, AsyncCallback<Config> callback);
 
+  /**
+   * @see UserInfoService#getBootstrapInfo(String)
+   */
+  void getBootstrapInfo(String sessionId, AsyncCallback<BootstrapInfo> callback);
+
   /**
    * @see UserInfoService#getUserBackpack()
    */
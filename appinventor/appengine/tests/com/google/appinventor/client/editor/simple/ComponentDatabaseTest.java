@@ -27,6 +27,8 @@ public class ComponentDatabaseTest extends TestCase {
 
   private static final String COMPONENT_DESCRIPTOR_FILE =
       "/build/components/simple_components.json";
+  private static final String COMPONENT_INDEX_FILE =
+      "/build/components/simple_components_index.json";
 
   /**
    * Checks whether the component database was correctly initialized.
@@ -53,6 +55,33 @@ public class ComponentDatabaseTest extends TestCase {
     assertEquals("string", find(properties, "Hint").getEditorType());
   }
 
+  /**
+   * Checks that a database loaded from the index holds the same components
+   * as one loaded from the descriptors.
+   */
+  public void testComponentDatabaseFromIndex() throws IOException {
+    ServerJsonParser parser = new ServerJsonParser();
+    ComponentDatabase fromDescriptors = new ComponentDatabase(parser.parse(
+        Files.toString(new File(TestUtils.APP_INVENTOR_ROOT_DIR + COMPONENT_DESCRIPTOR_FILE),
+            Charset.forName("UTF8"))).asArray());
+    ComponentDatabase fromIndex = new ComponentDatabase(parser.parse(
+        Files.toString(new File(TestUtils.APP_INVENTOR_ROOT_DIR + COMPONENT_INDEX_FILE),
+            Charset.forName("UTF8"))).asArray(), parser);
+
+    assertEquals(fromDescriptors.getComponentNames(), fromIndex.getComponentNames());
+    for (String name : fromDescriptors.getComponentNames()) {
+      assertEquals(fromDescriptors.getCategoryString(name), fromIndex.getCategoryString(name));
+      assertEquals(fromDescriptors.getPropertyTypesByName(name),
+          fromIndex.getPropertyTypesByName(name));
+      assertEquals(fromDescriptors.getEventDefinitions(name).size(),
+          fromIndex.getEventDefinitions(name).size());
+      assertEquals(fromDescriptors.getMethodDefinitions(name).size(),
+          fromIndex.getMethodDefinitions(name).size());
+    }
+    List<PropertyDefinition> properties = fromIndex.getPropertyDefinitions("TextBox");
+    assertEquals("non_negative_float", find(properties, "FontSize").getEditorType());
+  }
+
   /*
    * Finds the property definition for the property with the given name.
    */
@@ -14,6 +14,7 @@ import com.google.appinventor.shared.rpc.project.ProjectSourceZip;
 import com.google.appinventor.shared.rpc.project.RawFile;
 import com.google.appinventor.shared.rpc.project.TextFile;
 import com.google.appinventor.shared.storage.StorageUtil;
+import com.google.common.hash.Hashing;
 import com.google.common.io.ByteStreams;
 
 import java.io.ByteArrayInputStream;
@@ -26,6 +27,8 @@ import java.util.Map;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
+import org.json.JSONObject;
+
 /**
  * Tests for {@link FileExporterImpl}.
  *
@@ -167,5 +170,16 @@ public class FileExporterImplTest extends LocalDatastoreTestCase {
     }
   }
 
+  public void testExportAssetManifest() throws Exception {
+    final String assetName = "assets/kitty.png";
+    storageIo.addSourceFilesToProject(USER_ID, projectId, false, assetName);
+    storageIo.uploadRawFile(projectId, assetName, USER_ID, true, IMAGE_CONTENT);
+    RawFile file = exporter.exportAssetManifest(USER_ID, projectId);
+    JSONObject manifest = new JSONObject(
+        new String(file.getContent(), StorageUtil.DEFAULT_CHARSET));
+    assertEquals(1, manifest.length());  // Only files in the assets folder are listed
+    assertEquals(Hashing.sha256().hashBytes(IMAGE_CONTENT).toString(), manifest.getString(assetName));
+  }
+
   // TODO(user): Add test of exportAllProjectsSourceZip().
 }
@@ -45,6 +45,14 @@ public abstract class LocalDatastoreTestCase extends TestCase {
     helper.setUp();
   }
 
+  /**
+   * Sets up the local datastore, for helpers made by <code>createHelper</code>
+   * in tests outside this package.
+   */
+  public void setUpHelper() throws Exception {
+    setUp();
+  }
+
   /**
    * Tests that cannot extend <code>LocalDatastoreTestCase</code> can call
    * <code>createHelper</code> to create a <code>LocalDatastoreTestCase</code>.
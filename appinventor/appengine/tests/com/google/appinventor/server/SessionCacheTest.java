@@ -0,0 +1,67 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+package com.google.appinventor.server;
+
+import com.google.appinventor.shared.rpc.user.User;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.Assert.*;
+
+/**
+ * Tests for {@link SessionCache}.
+ */
+public class SessionCacheTest {
+
+  private final SessionCache cache = new SessionCache(100, 1, TimeUnit.HOURS);
+
+  @Test
+  public void testIdentityRoundTrip() {
+    OdeAuthFilter.UserInfo userInfo = new OdeAuthFilter.UserInfo("user1", true);
+    userInfo.isReadOnly = true;
+    cache.putIdentity("cookie", userInfo);
+    OdeAuthFilter.UserInfo cached = cache.getIdentity("cookie").toUserInfo();
+    assertEquals("user1", cached.getUserId());
+    assertTrue(cached.getIsAdmin());
+    assertTrue(cached.getReadOnly());
+    assertEquals(userInfo.ts, cached.ts);
+    assertNotSame(cached, cache.getIdentity("cookie").toUserInfo());
+    assertNull(cache.getIdentity("other"));
+  }
+
+  @Test
+  public void testUserIsCopied() {
+    User user = new User("user1", "user1@example.com", true, false, null);
+    cache.putUser("user1", user);
+    user.setReadOnly(true);
+    User cached = cache.getUser("user1");
+    assertFalse(cached.isReadOnly());
+    cached.setIsAdmin(true);
+    assertFalse(cache.getUser("user1").getIsAdmin());
+  }
+
+  @Test
+  public void testWhitelistOutcomeFollowsUser() {
+    assertNull(cache.getWhitelisted("user1"));
+    cache.putWhitelisted("user1", true);
+    assertNull(cache.getWhitelisted("user1"));  // No user cached, nothing to attach it to
+    cache.putUser("user1", new User("user1", "user1@example.com", true, false, null));
+    cache.putWhitelisted("user1", true);
+    assertEquals(Boolean.TRUE, cache.getWhitelisted("user1"));
+    cache.invalidateUser("user1");
+    assertNull(cache.getUser("user1"));
+    assertNull(cache.getWhitelisted("user1"));
+  }
+
+  @Test
+  public void testEntriesExpire() throws Exception {
+    SessionCache shortLived = new SessionCache(100, 1, TimeUnit.MILLISECONDS);
+    shortLived.putUser("user1", new User("user1", "user1@example.com", true, false, null));
+    Thread.sleep(10);
+    assertNull(shortLived.getUser("user1"));
+  }
+}
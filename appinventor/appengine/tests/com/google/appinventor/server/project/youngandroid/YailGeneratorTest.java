@@ -0,0 +1,86 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.server.project.youngandroid;
+
+import com.google.appinventor.components.common.YaVersion;
+
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for {@link YailGenerator}.
+ *
+ */
+public class YailGeneratorTest extends TestCase {
+  private static final String PACKAGE_NAME = "appinventor.ai_user.Project.Screen1";
+  private static final String BKY = "<xml xmlns=\"http://www.w3.org/1999/xhtml\"></xml>";
+  private static final String YAIL = "#|\n$Source $Yail\n|#\n\n(define-form "
+      + PACKAGE_NAME + " Screen1)\n";
+
+  private int generated;
+  private YailGenerator generator;
+
+  @Override
+  protected void setUp() {
+    generated = 0;
+    generator = new YailGenerator(new YailGenerator.Engine() {
+      @Override
+      public String generateYail(String formJson, String blocks, String packageName) {
+        generated++;
+        return YAIL;
+      }
+    }, 10);
+  }
+
+  public void testGenerateYail() throws IOException {
+    String scm = form(YaVersion.YOUNG_ANDROID_VERSION, "Button");
+    String yail = generator.generateYail(PACKAGE_NAME, scm, BKY);
+    assertTrue(yail.startsWith("#|\n$Source $Yail\n|#\n; "));
+    assertTrue(yail.endsWith(YAIL.substring(YAIL.indexOf("|#\n") + 3)));
+    assertEquals(1, generated);
+
+    // The same sources are generated only once
+    assertEquals(yail, generator.generateYail(PACKAGE_NAME, scm, BKY));
+    assertEquals(1, generated);
+  }
+
+  public void testIsCurrent() throws IOException {
+    String scm = form(YaVersion.YOUNG_ANDROID_VERSION, "Button");
+    String yail = generator.generateYail(PACKAGE_NAME, scm, BKY);
+    assertTrue(generator.isCurrent(yail, PACKAGE_NAME, scm, BKY));
+    assertFalse(generator.isCurrent(yail, PACKAGE_NAME, scm, BKY + " "));
+    assertFalse(generator.isCurrent(yail, PACKAGE_NAME,
+        form(YaVersion.YOUNG_ANDROID_VERSION, "Label"), BKY));
+
+    // YAIL saved by the editor is always taken to be current
+    assertTrue(generator.isCurrent(YAIL, PACKAGE_NAME, scm, BKY + " "));
+  }
+
+  public void testCannotGenerate() throws IOException {
+    // Forms that need upgrading
+    assertNull(generator.generateYail(PACKAGE_NAME,
+        form(YaVersion.YOUNG_ANDROID_VERSION - 1, "Button"), BKY));
+    // Components with properties computed by the designer
+    assertNull(generator.generateYail(PACKAGE_NAME,
+        form(YaVersion.YOUNG_ANDROID_VERSION, "FirebaseDB"), BKY));
+    assertEquals(0, generated);
+
+    try {
+      generator.generateYail(PACKAGE_NAME, "#|\n$JSON\n{|#", BKY);
+      fail();
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  private static String form(int yaVersion, String componentType) {
+    return "#|\n$JSON\n{\"YaVersion\":\"" + yaVersion + "\",\"Source\":\"Form\","
+        + "\"Properties\":{\"$Name\":\"Screen1\",\"$Type\":\"Form\",\"$Version\":\"1\","
+        + "\"Uuid\":\"0\",\"$Components\":[{\"$Name\":\"" + componentType + "1\","
+        + "\"$Type\":\"" + componentType + "\",\"$Version\":\"1\",\"Uuid\":\"1\"}]}}\n|#";
+  }
+}
@@ -0,0 +1,314 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.server.storage;
+
+import com.google.appinventor.shared.rpc.BlocksTruncatedException;
+import com.google.appinventor.shared.rpc.project.FileVersionMismatchException;
+import com.google.appinventor.shared.rpc.project.Project;
+import com.google.appinventor.shared.rpc.project.TextDelta;
+import com.google.appinventor.shared.rpc.project.youngandroid.YoungAndroidProjectNode;
+import com.google.appinventor.shared.rpc.user.User;
+import com.google.appinventor.shared.storage.StorageUtil;
+
+import com.google.common.base.Charsets;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Tests for {@link LocalStorageIo}.
+ *
+ */
+public class LocalStorageIoTest extends StorageIoTestCase<LocalStorageIo> {
+
+  private File dir;
+  private LocalStorageIo failingStorage;
+
+  @Override
+  protected void setUp() throws Exception {
+    dir = Files.createTempDirectory("localstorage").toFile();
+    // Delete freed content at once, unless a test says otherwise
+    LocalStorageIo.freedContentSeconds.setForTest(0);
+    super.setUp();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    storage.close();
+    if (failingStorage != null) {
+      failingStorage.close();
+    }
+    LocalStorageIo.requireTos.setForTest(false);
+    LocalStorageIo.freedContentSeconds.setForTest(600);
+    delete(dir);
+    super.tearDown();
+  }
+
+  @Override
+  protected LocalStorageIo createStorage() throws IOException {
+    return new LocalStorageIo(dir);
+  }
+
+  @Override
+  protected StorageIo createFailingStorage(boolean afterPartialWrite) throws IOException {
+    failingStorage = new FailingCreateLocalStorageIo(new File(dir, "failing"), afterPartialWrite);
+    return failingStorage;
+  }
+
+  public void testFindUserByEmail() {
+    final String USER_ID = "500";
+    final String USER_EMAIL = "user500@test.com";
+    storage.getUser(USER_ID, USER_EMAIL);
+
+    // A new id with a known email finds the existing user
+    assertEquals(USER_ID, storage.getUser("501", USER_EMAIL).getUserId());
+    assertEquals(USER_ID, storage.findUserByEmail(USER_EMAIL));
+  }
+
+  public void testSetTosAccepted() {
+    final String USER_ID = "100";
+    final String USER_EMAIL = "newuser100@test.com";
+    LocalStorageIo.requireTos.setForTest(true);
+    User user = storage.getUser(USER_ID, USER_EMAIL);
+    assertEquals(false, user.getUserTosAccepted());
+    storage.setTosAccepted(USER_ID);
+    assertEquals(true, storage.getUser(USER_ID, USER_EMAIL).getUserTosAccepted());
+  }
+
+  public void testAssertUserHasProject() {
+    final String USER_ID = "1600";
+    final String USER_EMAIL = "newuser1600@test.com";
+    final String USER_ID2 = "1700";
+    storage.getUser(USER_ID, USER_EMAIL);
+    long projectId = storage.createProject(USER_ID, project, SETTINGS);
+    storage.assertUserHasProject(USER_ID, projectId);
+    try {
+      storage.assertUserHasProject(USER_ID2, projectId);
+      fail();
+    } catch (SecurityException e) {
+      // expected
+    }
+  }
+
+  public void testUnusedContentIsDeleted() throws BlocksTruncatedException {
+    final String USER_ID = "1210";
+    final String USER_EMAIL = "newuser1210@test.com";
+    storage.getUser(USER_ID, USER_EMAIL);
+    long projectId = createProject(USER_ID, PROJECT_NAME, FAKE_PROJECT_TYPE, FORM_QUALIFIED_NAME);
+    storage.addOutputFilesToProject(USER_ID, projectId, FILE_NAME_OUTPUT);
+    storage.uploadRawFile(projectId, FILE_NAME_OUTPUT, USER_ID, true, FILE_CONTENT_OUTPUT);
+    assertTrue(storage.hasContent(FILE_CONTENT_OUTPUT));
+    storage.removeOutputFilesFromProject(USER_ID, projectId, FILE_NAME_OUTPUT);
+    assertFalse(storage.hasContent(FILE_CONTENT_OUTPUT));
+
+    // Files with the same content share it
+    storage.addSourceFilesToProject(USER_ID, projectId, false, SCM_FILE_NAME1, BKY_FILE_NAME1,
+        SCM_FILE_NAME2);
+    Map<String, String> contents = new LinkedHashMap<String, String>();
+    contents.put(SCM_FILE_NAME1, FILE_CONTENT1);
+    contents.put(BKY_FILE_NAME1, FILE_CONTENT2);
+    contents.put(SCM_FILE_NAME2, FILE_CONTENT2);
+    storage.uploadFiles(projectId, USER_ID, contents, StorageUtil.DEFAULT_CHARSET, false);
+    assertEquals(2, storage.getContentRefCount(FILE_CONTENT2.getBytes(Charsets.UTF_8)));
+
+    // Content stored for a save that failed is deleted
+    storage.addSourceFilesToProject(USER_ID, projectId, false, SCM_FILE_NAME2 + "x");
+    contents.clear();
+    contents.put(SCM_FILE_NAME2 + "x", FILE_CONTENT1 + "x");
+    contents.put(BKY_FILE_NAME1, "");
+    try {
+      storage.uploadFiles(projectId, USER_ID, contents, StorageUtil.DEFAULT_CHARSET, false);
+      fail("Trivial workspace accepted");
+    } catch (BlocksTruncatedException e) {
+      // expected
+    }
+    assertFalse(storage.hasContent((FILE_CONTENT1 + "x").getBytes(Charsets.UTF_8)));
+  }
+
+  public void testFreedContentIsKept() throws BlocksTruncatedException {
+    final String USER_ID = "1220";
+    final String USER_EMAIL = "newuser1220@test.com";
+    LocalStorageIo.freedContentSeconds.setForTest(600);
+    storage.getUser(USER_ID, USER_EMAIL);
+    long projectId = createProject(USER_ID, PROJECT_NAME, FAKE_PROJECT_TYPE, FORM_QUALIFIED_NAME);
+    storage.addSourceFilesToProject(USER_ID, projectId, false, ASSET_FILE_NAME1);
+    storage.uploadRawFile(projectId, ASSET_FILE_NAME1, USER_ID, true, ASSET_FILE_CONTENT1);
+
+    // A read that found the old record can still read what it refers to
+    storage.uploadRawFile(projectId, ASSET_FILE_NAME1, USER_ID, true, RAW_FILE_CONTENT3);
+    assertEquals(0, storage.getContentRefCount(ASSET_FILE_CONTENT1));
+    assertTrue(storage.hasContent(ASSET_FILE_CONTENT1));
+
+    // Once it has been freed long enough, the next change deletes it
+    LocalStorageIo.freedContentSeconds.setForTest(0);
+    byte[] content = FILE_CONTENT1.getBytes(Charsets.UTF_8);
+    storage.uploadRawFile(projectId, ASSET_FILE_NAME1, USER_ID, true, content);
+    assertFalse(storage.hasContent(ASSET_FILE_CONTENT1));
+    assertFalse(storage.hasContent(RAW_FILE_CONTENT3));
+    assertTrue(Arrays.equals(content,
+        storage.downloadRawFile(USER_ID, projectId, ASSET_FILE_NAME1)));
+  }
+
+  public void testSharedContent() throws BlocksTruncatedException {
+    final String USER_ID = "1320";
+    final String USER_EMAIL = "newuser1320@test.com";
+    storage.getUser(USER_ID, USER_EMAIL);
+    long projectId1 = createProject(USER_ID, PROJECT_NAME,
+        YoungAndroidProjectNode.YOUNG_ANDROID_PROJECT_TYPE, FORM_QUALIFIED_NAME);
+    storage.addSourceFilesToProject(USER_ID, projectId1, false, ASSET_FILE_NAME1);
+    storage.uploadRawFile(projectId1, ASSET_FILE_NAME1, USER_ID, true, ASSET_FILE_CONTENT1);
+    assertEquals(1, storage.getContentRefCount(ASSET_FILE_CONTENT1));
+
+    // Copying a file adds a reference to the same content
+    long projectId2 = createProject(USER_ID, PROJECT_NAME + "Copy",
+        YoungAndroidProjectNode.YOUNG_ANDROID_PROJECT_TYPE, FORM_QUALIFIED_NAME);
+    Map<String, String> fileNames = new LinkedHashMap<String, String>();
+    fileNames.put(ASSET_FILE_NAME1, ASSET_FILE_NAME1);
+    storage.copySourceFiles(USER_ID, projectId1, projectId2, fileNames);
+    assertEquals(2, storage.getContentRefCount(ASSET_FILE_CONTENT1));
+
+    // The copy outlives the original
+    storage.deleteProject(USER_ID, projectId1);
+    assertEquals(1, storage.getContentRefCount(ASSET_FILE_CONTENT1));
+    assertTrue(Arrays.equals(ASSET_FILE_CONTENT1,
+        storage.downloadRawFile(USER_ID, projectId2, ASSET_FILE_NAME1)));
+
+    // Saving the same content again changes nothing
+    storage.uploadRawFile(projectId2, ASSET_FILE_NAME1, USER_ID, true, ASSET_FILE_CONTENT1);
+    assertEquals(1, storage.getContentRefCount(ASSET_FILE_CONTENT1));
+
+    // Saving new content releases the old
+    storage.uploadRawFile(projectId2, ASSET_FILE_NAME1, USER_ID, true, RAW_FILE_CONTENT3);
+    assertEquals(0, storage.getContentRefCount(ASSET_FILE_CONTENT1));
+    assertFalse(storage.hasContent(ASSET_FILE_CONTENT1));
+    assertEquals(1, storage.getContentRefCount(RAW_FILE_CONTENT3));
+
+    storage.deleteProject(USER_ID, projectId2);
+    assertEquals(0, storage.getContentRefCount(RAW_FILE_CONTENT3));
+    assertFalse(storage.hasContent(RAW_FILE_CONTENT3));
+  }
+
+  public void testUploadFileDelta() throws Exception {
+    final String USER_ID = "1330";
+    final String USER_EMAIL = "newuser1330@test.com";
+    storage.getUser(USER_ID, USER_EMAIL);
+    long projectId = createProject(USER_ID, PROJECT_NAME,
+        YoungAndroidProjectNode.YOUNG_ANDROID_PROJECT_TYPE, FORM_QUALIFIED_NAME);
+    storage.addSourceFilesToProject(USER_ID, projectId, false, BKY_FILE_NAME1);
+    String content = "<xml><block type=\"a\"/></xml>";
+    storage.uploadFile(projectId, BKY_FILE_NAME1, USER_ID, content, StorageUtil.DEFAULT_CHARSET);
+
+    String[] versions = {
+        "<xml><block type=\"a\"/><block type=\"b\"/></xml>",
+        "<xml><block type=\"c\"/><block type=\"b\"/></xml>",
+        "<xml><block type=\"c\"/></xml>" };
+    for (String next : versions) {
+      storage.uploadFileDelta(projectId, BKY_FILE_NAME1, USER_ID, false,
+          TextDelta.version(content), TextDelta.compute(content, next));
+      content = next;
+      assertEquals(content, storage.downloadFile(USER_ID, projectId, BKY_FILE_NAME1,
+          StorageUtil.DEFAULT_CHARSET));
+    }
+
+    // A delta from content the server no longer has is refused
+    try {
+      storage.uploadFileDelta(projectId, BKY_FILE_NAME1, USER_ID, false,
+          TextDelta.version(versions[0]), TextDelta.compute(versions[0], "<xml/>"));
+      fail();
+    } catch (FileVersionMismatchException e) {
+      // expected
+    }
+    assertEquals(content, storage.downloadFile(USER_ID, projectId, BKY_FILE_NAME1,
+        StorageUtil.DEFAULT_CHARSET));
+  }
+
+  public void testLargeContent() throws Exception {
+    final String USER_ID = "1350";
+    final String USER_EMAIL = "newuser1350@test.com";
+    storage.getUser(USER_ID, USER_EMAIL);
+    long projectId = createProject(USER_ID, PROJECT_NAME,
+        YoungAndroidProjectNode.YOUNG_ANDROID_PROJECT_TYPE, FORM_QUALIFIED_NAME);
+    // Large enough to be memory mapped when read
+    byte[] content = new byte[1024 * 1024];
+    for (int i = 0; i < content.length; i++) {
+      content[i] = (byte) i;
+    }
+    storage.addSourceFilesToProject(USER_ID, projectId, false, ASSET_FILE_NAME1);
+    storage.uploadRawFile(projectId, ASSET_FILE_NAME1, USER_ID, true, content);
+    assertTrue(Arrays.equals(content,
+        storage.downloadRawFile(USER_ID, projectId, ASSET_FILE_NAME1)));
+  }
+
+  public void testReopen() throws Exception {
+    final String USER_ID = "2000";
+    final String USER_EMAIL = "newuser2000@test.com";
+    storage.getUser(USER_ID, USER_EMAIL);
+    long projectId = storage.createProject(USER_ID, project, SETTINGS);
+    storage.close();
+
+    storage = new LocalStorageIo(dir);
+    assertEquals(USER_EMAIL, storage.getUser(USER_ID).getUserEmail());
+    assertEquals(Arrays.asList(projectId), storage.getProjects(USER_ID));
+    assertEquals(FILE_CONTENT1, storage.downloadFile(USER_ID, projectId, FILE_NAME1,
+        StorageUtil.DEFAULT_CHARSET));
+    // New projects do not reuse ids
+    assertTrue(storage.createProject(USER_ID, project, SETTINGS) > projectId);
+  }
+
+  /*
+   * Fails the transaction that creates a project, either before it runs or
+   * after it has made its changes.
+   */
+  private static class FailingCreateLocalStorageIo extends LocalStorageIo {
+    private final boolean afterPartialWrite;
+    private boolean inCreateProject;
+
+    FailingCreateLocalStorageIo(File dir, boolean afterPartialWrite) throws IOException {
+      super(dir);
+      this.afterPartialWrite = afterPartialWrite;
+    }
+
+    @Override
+    public long createProject(String userId, Project project, String projectSettings) {
+      inCreateProject = true;
+      try {
+        return super.createProject(userId, project, projectSettings);
+      } finally {
+        inCreateProject = false;
+      }
+    }
+
+    @Override
+    <T> T update(String errorInfo, final LocalStore.Update<T> update) {
+      if (!inCreateProject) {
+        return super.update(errorInfo, update);
+      } else if (!afterPartialWrite) {
+        throw new RuntimeException("update failed (on purpose)");
+      }
+      return super.update(errorInfo, new LocalStore.Update<T>() {
+        @Override
+        public T run(LocalStore.Transaction txn) throws IOException {
+          update.run(txn);
+          throw new IOException("update failed (on purpose)");
+        }
+      });
+    }
+  }
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+}
@@ -0,0 +1,184 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.server.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for {@link LocalStore}.
+ *
+ */
+public class LocalStoreTest extends TestCase {
+  private File dir;
+  private File logFile;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    dir = Files.createTempDirectory("localstore").toFile();
+    logFile = new File(dir, "store.log");
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    for (File file : dir.listFiles()) {
+      file.delete();
+    }
+    dir.delete();
+    super.tearDown();
+  }
+
+  public void testUpdateAndReopen() throws IOException {
+    LocalStore store = new LocalStore(logFile);
+    put(store, "a/1", "one");
+    put(store, "a/2", "two");
+    put(store, "b/1", "three");
+    store.update(new LocalStore.Update<Void>() {
+      @Override
+      public Void run(LocalStore.Transaction txn) {
+        txn.delete("a/1");
+        // The transaction sees its own changes
+        assertNull(txn.get("a/1"));
+        assertEquals(Arrays.asList("a/2"), new ArrayList<String>(txn.scan("a/").keySet()));
+        return null;
+      }
+    });
+    store.close();
+
+    store = new LocalStore(logFile);
+    assertNull(store.get("a/1"));
+    assertEquals("two", new String(store.get("a/2"), "UTF-8"));
+    assertEquals(Arrays.asList("a/2"), new ArrayList<String>(store.scan("a/").keySet()));
+    assertEquals("b/1", store.tail("a/3").firstKey());
+    store.close();
+  }
+
+  public void testFailedUpdateChangesNothing() throws IOException {
+    LocalStore store = new LocalStore(logFile);
+    put(store, "a", "one");
+    try {
+      store.update(new LocalStore.Update<Void>() {
+        @Override
+        public Void run(LocalStore.Transaction txn) {
+          txn.put("a", new byte[] { 1 });
+          throw new IllegalStateException("on purpose");
+        }
+      });
+      fail();
+    } catch (IllegalStateException e) {
+      // expected
+    }
+    assertEquals("one", new String(store.get("a"), "UTF-8"));
+    store.close();
+  }
+
+  public void testTruncatedLogIsDiscarded() throws IOException {
+    LocalStore store = new LocalStore(logFile);
+    put(store, "a", "one");
+    long length = logFile.length();
+    put(store, "b", "two");
+    store.close();
+
+    // Cut the last record short, as a crash while writing it would
+    RandomAccessFile file = new RandomAccessFile(logFile, "rw");
+    file.setLength(logFile.length() - 2);
+    file.close();
+
+    store = new LocalStore(logFile);
+    assertEquals("one", new String(store.get("a"), "UTF-8"));
+    assertNull(store.get("b"));
+    assertEquals(length, logFile.length());
+    // The log can be written after the discarded record
+    put(store, "c", "three");
+    store.close();
+    store = new LocalStore(logFile);
+    assertEquals("three", new String(store.get("c"), "UTF-8"));
+    store.close();
+  }
+
+  public void testCompact() throws IOException {
+    LocalStore store = new LocalStore(logFile);
+    for (int i = 0; i < 100; i++) {
+      put(store, "a", "value" + i);
+    }
+    put(store, "b", "other");
+    long length = logFile.length();
+    store.compact();
+    assertTrue(logFile.length() < length);
+    put(store, "c", "after");
+    store.close();
+
+    store = new LocalStore(logFile);
+    assertEquals("value99", new String(store.get("a"), "UTF-8"));
+    assertEquals("other", new String(store.get("b"), "UTF-8"));
+    assertEquals("after", new String(store.get("c"), "UTF-8"));
+    store.close();
+  }
+
+  public void testConcurrentUpdates() throws Exception {
+    final LocalStore store = new LocalStore(logFile);
+    final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int t = 0; t < 8; t++) {
+      final int thread = t;
+      threads.add(new Thread() {
+        @Override
+        public void run() {
+          try {
+            for (int i = 0; i < 50; i++) {
+              put(store, "t" + thread + "/" + i, "x");
+              // Counters only stay right if updates do not interleave
+              store.update(new LocalStore.Update<Void>() {
+                @Override
+                public Void run(LocalStore.Transaction txn) throws IOException {
+                  byte[] count = txn.get("count");
+                  int n = count == null ? 0 : Integer.parseInt(new String(count, "UTF-8"));
+                  txn.put("count", Integer.toString(n + 1).getBytes("UTF-8"));
+                  return null;
+                }
+              });
+            }
+          } catch (Throwable e) {
+            error.set(e);
+          }
+        }
+      });
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertNull(error.get());
+    store.close();
+
+    LocalStore reopened = new LocalStore(logFile);
+    assertEquals("400", new String(reopened.get("count"), "UTF-8"));
+    assertEquals(50, reopened.scan("t7/").size());
+    reopened.close();
+  }
+
+  private static void put(LocalStore store, final String key, final String value)
+      throws IOException {
+    store.update(new LocalStore.Update<Void>() {
+      @Override
+      public Void run(LocalStore.Transaction txn) throws IOException {
+        txn.put(key, value.getBytes("UTF-8"));
+        return null;
+      }
+    });
+  }
+}
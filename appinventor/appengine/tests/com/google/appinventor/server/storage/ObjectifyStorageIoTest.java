@@ -6,92 +6,67 @@
 
 package com.google.appinventor.server.storage;
 
-import com.google.appengine.api.blobstore.BlobKey;
 import com.google.appinventor.server.LocalDatastoreTestCase;
 import com.google.appinventor.server.storage.StoredData.ProjectData;
+import com.google.appinventor.server.storage.StoredData.UserData;
+import com.google.appinventor.server.storage.StoredData.UserProjectData;
 import com.google.appinventor.shared.rpc.BlocksTruncatedException;
-import com.google.appinventor.shared.rpc.component.Component;
-import com.google.appinventor.shared.rpc.project.Project;
-import com.google.appinventor.shared.rpc.project.RawFile;
-import com.google.appinventor.shared.rpc.project.TextFile;
-import com.google.appinventor.shared.rpc.project.UserProject;
+import com.google.appinventor.shared.rpc.project.FileVersionMismatchException;
+import com.google.appinventor.shared.rpc.project.ProjectListPage;
+import com.google.appinventor.shared.rpc.project.TextDelta;
 import com.google.appinventor.shared.rpc.project.ProjectSourceZip;
 import com.google.appinventor.shared.rpc.project.youngandroid.YoungAndroidProjectNode;
-import com.google.appinventor.shared.rpc.user.User;
 import com.google.appinventor.shared.storage.StorageUtil;
 
-import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import com.googlecode.objectify.Key;
+import com.googlecode.objectify.Objectify;
+import com.googlecode.objectify.ObjectifyService;
 
-import java.io.BufferedReader;
-import java.io.FileNotFoundException;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
 
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.ConcurrentModificationException;
-import java.util.List;
-
-import org.json.JSONObject;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 /**
  * Tests for {@link ObjectifyStorageIo}.
  *
  * @author sharon@google.com (Sharon Perl)
  */
-public class ObjectifyStorageIoTest extends LocalDatastoreTestCase {
-
-  private static final String SETTINGS = "{settings: \"none\"}";
-  private static final String FAKE_PROJECT_TYPE = "FakeProjectType";
-  private static final String PROJECT_NAME = "Project1";
-  private static final String FILE_NAME1 = "File1.src";
-  private static final String FILE_NAME2 = "src/File2.blk";
-  private static final String RAW_FILE_NAME1 = "assets/File1.jpg";
-  private static final String RAW_FILE_NAME2 = "assets/File2.wav";
+public class ObjectifyStorageIoTest extends StorageIoTestCase<ObjectifyStorageIo> {
+
   private static final String COMPONENT_FILE_NAME1 = "com.package.Twitter.aix";
   private static final String COMPONENT_FILE_NAME2 = "com.package.Facebook.aix";
   private static final String COMPONENT_EXTENSION_NAME = ".aix";
-  private static final String FILE_NAME_OUTPUT = "File.apk";
-  private static final String FILE_CONTENT1 = "The quick onyx goblin jumps over the lazy dwarf";
-  private static final String FILE_CONTENT2 = "This Pangram contains four a's, one b, two c's, "
-      + "one d, thirty e's, six f's, five g's, seven h's, eleven i's, one j, one k, two l's, "
-      + "two m's, eighteen n's, fifteen o's, two p's, one q, five r's, twenty-seven s's, "
-      + "eighteen t's, two u's, seven v's, eight w's, two x's, three y's, & one z.";
-  private static final byte[] RAW_FILE_CONTENT1 = { (byte) 0, (byte) 1, (byte) 32, (byte) 255};
-  private static final byte[] RAW_FILE_CONTENT2 = { (byte) 0, (byte) 1, (byte) 32, (byte) 255};
-  private static final byte[] RAW_FILE_CONTENT3 = { (byte) 0, (byte) 1, (byte) 2, (byte) 3};
-  private static final byte[] FILE_CONTENT_OUTPUT = { (byte) 0, (byte) 1, (byte) 32, (byte) 255};
-  private static final String FORM_NAME = "Form1";
-  private static final String FORM_QUALIFIED_NAME = "com.yourdomain." + FORM_NAME;
-  private static final String ASSET_FILE_NAME1 = "assets/kitty.jpg";
-  private static final byte[] ASSET_FILE_CONTENT1 = { (byte) 0, (byte) 1, (byte) 32, (byte) 255};
-  private static final String APK_FILE_NAME1 = "/ode/build/Android/HelloPurr.apk";
-  private static final byte[] APK_FILE_CONTENT = { (byte) 0, (byte) 1, (byte) 32, (byte) 255};
-  private static final String BLOCK_FILE_NAME = "src/blocks.blk";
-  private static final byte[] BLOCK_FILE_CONTENT = {(byte) 0, (byte) 1, (byte) 32, (byte) 255};
-
-  private static final String SCM_FILE_NAME1 = "src/File1.scm";
-  private static final String BKY_FILE_NAME1 = "src/File1.bky";
-  private static final String YAIL_FILE_NAME1 = "src/File1.yail";
-  private static final String SCM_FILE_NAME2 = "src/File2.scm";
-  private static final String BKY_FILE_NAME2 = "src/File2.bky";
-  private static final String YAIL_FILE_NAME2 = "src/File2.yail";
-
-  private ObjectifyStorageIo storage;
-  private Project project;
+
+  private final LocalDatastoreTestCase helper = LocalDatastoreTestCase.createHelper();
 
   @Override
   protected void setUp() throws Exception {
+    helper.setUpHelper();
     super.setUp();
-    storage = new ObjectifyStorageIo();
-
-    project = new Project(PROJECT_NAME);
-    project.setProjectType(FAKE_PROJECT_TYPE);
-    project.addTextFile(new TextFile(FILE_NAME1, FILE_CONTENT1));
-    project.addTextFile(new TextFile(FILE_NAME2, FILE_CONTENT2));
-    project.addRawFile(new RawFile(RAW_FILE_NAME1, RAW_FILE_CONTENT1));
-    project.addRawFile(new RawFile(RAW_FILE_NAME2, RAW_FILE_CONTENT2));
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    helper.tearDown();
+    super.tearDown();
+  }
+
+  @Override
+  protected ObjectifyStorageIo createStorage() {
+    return new ObjectifyStorageIo();
+  }
+
+  @Override
+  protected StorageIo createFailingStorage(boolean afterPartialWrite) {
+    // fail on the first or second job in createProject (getUser runs the first job overall)
+    return new FailingJobObjectifyStorageIo(afterPartialWrite ? 3 : 2);
   }
 
   private void createUserFiles(String userId, String userEmail, ObjectifyStorageIo storage)
@@ -111,28 +86,6 @@ public class ObjectifyStorageIoTest extends LocalDatastoreTestCase {
     storage.createRawUserFile(userId, RAW_FILE_NAME2, RAW_FILE_CONTENT2);
   }
 
-  public void testGetUser() {
-    final String USER_ID = "500";
-    final String USER_EMAIL = "user500@test.com";
-    final String USER_EMAIL_NEW = "newuser500@test.com";
-
-    User user1 = storage.getUser(USER_ID, USER_EMAIL);
-    assertEquals(USER_ID, user1.getUserId());
-    assertEquals(USER_EMAIL, user1.getUserEmail());
-
-    User user2 = storage.getUser(USER_ID);
-    assertEquals(USER_ID, user2.getUserId());
-    assertEquals(USER_EMAIL, user2.getUserEmail());
-
-    User user3 = storage.getUser(USER_ID, USER_EMAIL_NEW);
-    assertEquals(USER_ID, user3.getUserId());
-    assertEquals(USER_EMAIL_NEW, user3.getUserEmail());
-
-    User user4 = storage.getUser(USER_ID);
-    assertEquals(USER_ID, user4.getUserId());
-    assertEquals(USER_EMAIL_NEW, user4.getUserEmail());
-  }
-
   public void testSetTosAccepted() {
     final String USER_ID = "100";
     final String USER_EMAIL = "newuser100@test.com";
@@ -143,273 +96,7 @@ public class ObjectifyStorageIoTest extends LocalDatastoreTestCase {
     assertEquals(true, storage.getUser(USER_ID, USER_EMAIL).getUserTosAccepted());
   }
 
-  public void testLoadSettingsNewUser() {
-    final String USER_ID = "200";
-    final String USER_EMAIL = "newuser200@test.com";
-    assertEquals("", storage.loadSettings(USER_ID));
-  }
-
-  public void testStoreLoadSettings() {
-    final String USER_ID = "300";
-    final String USER_EMAIL = "newuser300@test.com";
-    storage.getUser(USER_ID, USER_EMAIL);
-    storage.storeSettings(USER_ID, SETTINGS);
-    assertEquals(SETTINGS, storage.loadSettings(USER_ID));
-  }
-
-  public void testCreateProjectSuccessful() {
-    final String USER_ID = "400";
-    final String USER_EMAIL = "newuser400@test.com";
-    storage.getUser(USER_ID, USER_EMAIL);
-    storage.createProject(USER_ID, project, SETTINGS);
-    assertEquals(1, storage.getProjects(USER_ID).size());
-  }
-
-  public void testCreateProjectFailFirst() {
-    final String USER_ID = "600";
-    final String USER_EMAIL = "newuser600@test.com";
-    // fail on first job in createProject (2nd job overall)
-    StorageIo throwingStorage = new FailingJobObjectifyStorageIo(2);
-
-    try {
-      throwingStorage.getUser(USER_ID, USER_EMAIL);
-      throwingStorage.createProject(USER_ID, project, SETTINGS);
-    } catch (RuntimeException e) {
-      assertEquals(0, throwingStorage.getProjects(USER_ID).size());
-      return;
-    }
-
-    fail();
-  }
-
-  public void testCreateProjectFailSecond() {
-    final String USER_ID = "700";
-    final String USER_EMAIL = "newuser700@test.com";
-    // fail on second job in createProject (3rd job overall)
-    StorageIo throwingStorage = new FailingJobObjectifyStorageIo(3);
-
-    try {
-      throwingStorage.getUser(USER_ID, USER_EMAIL);
-      throwingStorage.createProject(USER_ID, project, SETTINGS);
-    } catch (RuntimeException e) {
-      assertEquals(0, throwingStorage.getProjects(USER_ID).size());
-      return;
-    }
-
-    fail();
-  }
-
-  public void testUploadBeforeAdd() throws BlocksTruncatedException {
-    final String USER_ID = "800";
-    final String USER_EMAIL = "newuser800@test.com";
-    storage.getUser(USER_ID, USER_EMAIL);
-    long projectId = createProject(USER_ID, PROJECT_NAME, FAKE_PROJECT_TYPE, FORM_QUALIFIED_NAME);
-    try {
-      storage.uploadFile(projectId, FILE_NAME1, USER_ID, "does not matter",
-          StorageUtil.DEFAULT_CHARSET);
-      fail("Allowed upload before add");
-    } catch (IllegalStateException ignored) {
-      // File upload should be preceded by add
-    }
-    try {
-      storage.uploadRawFile(projectId, FILE_NAME1, USER_ID, true, "does not matter".getBytes());
-      fail("Allowed upload before add");
-    } catch (IllegalStateException ignored) {
-      // File upload should be preceded by add
-    }
-  }
-
-  public void testMuliRoleFile() {
-    final String USER_ID = "1000";
-    final String USER_EMAIL = "newuser1000@test.com";
-    storage.getUser(USER_ID, USER_EMAIL);
-    long projectId = createProject(USER_ID, PROJECT_NAME, FAKE_PROJECT_TYPE, FORM_QUALIFIED_NAME);
-    storage.addSourceFilesToProject(USER_ID, projectId, false, FILE_NAME1);
-    try {
-      storage.addOutputFilesToProject(USER_ID, projectId, FILE_NAME1);
-      fail("File role changed");
-    } catch (IllegalStateException ignored) {
-      // File role change is not allowed
-    }
-    try {
-      storage.removeOutputFilesFromProject(USER_ID, projectId, FILE_NAME1);
-      fail("File role changed");
-    } catch (IllegalStateException ignored) {
-      // File role change is not allowed
-    } catch (RuntimeException ignored) {
-      // File role change is not allowed
-    }
-  }
-
-  public void testUpdateModificationTime() throws BlocksTruncatedException {
-    final String USER_ID = "1100";
-    final String USER_EMAIL = "newuser1100@test.com";
-    storage.getUser(USER_ID, USER_EMAIL);
-    long projectId = createProject(USER_ID, PROJECT_NAME, FAKE_PROJECT_TYPE, FORM_QUALIFIED_NAME);
-    UserProject uproject = storage.getUserProject(USER_ID, projectId);
-    long creationDate = uproject.getDateCreated();
-    long modificationDate = uproject.getDateModified();
-    assertEquals(creationDate, modificationDate);
-    long oldModificationDate = modificationDate;
-
-    storage.addSourceFilesToProject(USER_ID, projectId, false, FILE_NAME1);
-    assertTrue(storage.getProjectSourceFiles(USER_ID, projectId).contains(FILE_NAME1));
-    modificationDate = storage.getProjectDateModified(USER_ID, projectId);
-    assertEquals(oldModificationDate, modificationDate);
-    oldModificationDate = modificationDate;
-
-    storage.removeSourceFilesFromProject(USER_ID, projectId, false, FILE_NAME1);
-    assertFalse(storage.getProjectSourceFiles(USER_ID, projectId).contains(FILE_NAME1));
-    modificationDate = storage.getProjectDateModified(USER_ID, projectId);
-    assertEquals(oldModificationDate, modificationDate);
-    oldModificationDate = modificationDate;
-
-    storage.addSourceFilesToProject(USER_ID, projectId, true, FILE_NAME1);
-    assertTrue(storage.getProjectSourceFiles(USER_ID, projectId).contains(FILE_NAME1));
-    modificationDate = storage.getProjectDateModified(USER_ID, projectId);
-    // Note: Modification date will not change due to restrictions where we only
-    // update project modification date if it is more then a minute since the last
-    // update.
-    assertTrue(oldModificationDate <= modificationDate);
-    oldModificationDate = modificationDate;
-
-    storage.removeSourceFilesFromProject(USER_ID, projectId, true, FILE_NAME1);
-    assertFalse(storage.getProjectSourceFiles(USER_ID, projectId).contains(FILE_NAME1));
-    modificationDate = storage.getProjectDateModified(USER_ID, projectId);
-    assertTrue(oldModificationDate <= modificationDate);
-    oldModificationDate = modificationDate;
-
-    storage.addSourceFilesToProject(USER_ID, projectId, false, FILE_NAME1);
-    modificationDate = storage.uploadFile(projectId, FILE_NAME1, USER_ID, FILE_CONTENT1,
-        StorageUtil.DEFAULT_CHARSET);
-    assertTrue(oldModificationDate <= modificationDate);
-    oldModificationDate = modificationDate;
-    modificationDate = storage.getProjectDateModified(USER_ID, projectId);
-    assertEquals(oldModificationDate, modificationDate);
-    oldModificationDate = modificationDate;
-
-    storage.addOutputFilesToProject(USER_ID, projectId, FILE_NAME_OUTPUT);
-    modificationDate = storage.uploadRawFile(projectId, FILE_NAME_OUTPUT, USER_ID,
-        true, FILE_CONTENT_OUTPUT);
-    assertTrue(oldModificationDate <= modificationDate);
-    oldModificationDate = modificationDate;
-    modificationDate = storage.getProjectDateModified(USER_ID, projectId);
-    assertEquals(oldModificationDate, modificationDate);
-    oldModificationDate = modificationDate;
-
-
-    modificationDate = storage.deleteFile(USER_ID, projectId, FILE_NAME1);
-    assertTrue(oldModificationDate <= modificationDate);
-    oldModificationDate = modificationDate;
-    modificationDate = storage.getProjectDateModified(USER_ID, projectId);
-    assertEquals(oldModificationDate, modificationDate);
-    oldModificationDate = modificationDate;
-  }
-
-  public void testAddRemoveFile() throws BlocksTruncatedException {
-    final String USER_ID = "1200";
-    final String USER_EMAIL = "newuser1200@test.com";
-    storage.getUser(USER_ID, USER_EMAIL);
-    long projectId = createProject(USER_ID, PROJECT_NAME, FAKE_PROJECT_TYPE, FORM_QUALIFIED_NAME);
-    storage.addSourceFilesToProject(USER_ID, projectId, false, FILE_NAME1);
-    storage.uploadFile(projectId, FILE_NAME1, USER_ID, FILE_CONTENT1, StorageUtil.DEFAULT_CHARSET);
-    storage.addOutputFilesToProject(USER_ID, projectId, FILE_NAME_OUTPUT);
-    storage.uploadRawFile(projectId, FILE_NAME_OUTPUT, USER_ID, true, FILE_CONTENT_OUTPUT);
-
-    assertTrue(storage.getProjectSourceFiles(USER_ID, projectId).contains(FILE_NAME1));
-    assertTrue(storage.getProjectOutputFiles(USER_ID, projectId).contains(FILE_NAME_OUTPUT));
-    assertEquals(FILE_CONTENT1, storage.downloadFile(USER_ID, projectId, FILE_NAME1,
-        StorageUtil.DEFAULT_CHARSET));
-    assertTrue(
-        java.util.Arrays.equals(FILE_CONTENT_OUTPUT,
-                                storage.downloadRawFile(USER_ID, projectId, FILE_NAME_OUTPUT)));
-
-    storage.removeSourceFilesFromProject(USER_ID, projectId, false, FILE_NAME1);
-    assertFalse(storage.getProjectSourceFiles(USER_ID, projectId).contains(FILE_NAME1));
-    assertTrue(storage.getProjectOutputFiles(USER_ID, projectId).contains(FILE_NAME_OUTPUT));
-
-    storage.removeOutputFilesFromProject(USER_ID, projectId, FILE_NAME_OUTPUT);
-    assertFalse(storage.getProjectSourceFiles(USER_ID, projectId).contains(FILE_NAME1));
-    assertFalse(storage.getProjectOutputFiles(USER_ID, projectId).contains(FILE_NAME_OUTPUT));
-  }
-
-  public void testAddRemoveUserFile() {
-    // Note that neither FILE_NAME1 nor FILE_NAME_OUTPUT should exist
-    // at the start of this test
-    final String USER_ID = "1100";
-    final String USER_EMAIL = "newuser1100@test.com";
-    storage.getUser(USER_ID, USER_EMAIL);
-    storage.addFilesToUser(USER_ID, FILE_NAME1);
-    storage.uploadUserFile(USER_ID, FILE_NAME1, FILE_CONTENT1,
-        StorageUtil.DEFAULT_CHARSET);
-    storage.addFilesToUser(USER_ID, FILE_NAME_OUTPUT);
-    storage.uploadRawUserFile(USER_ID, FILE_NAME_OUTPUT, FILE_CONTENT_OUTPUT);
-
-    assertTrue(storage.getUserFiles(USER_ID).contains(FILE_NAME1));
-    assertTrue(storage.getUserFiles(USER_ID).contains(FILE_NAME_OUTPUT));
-    assertEquals(FILE_CONTENT1, storage.downloadUserFile(USER_ID, FILE_NAME1,
-        StorageUtil.DEFAULT_CHARSET));
-    assertEquals(new String(FILE_CONTENT_OUTPUT),
-        new String(storage.downloadRawUserFile(USER_ID, FILE_NAME_OUTPUT)));
-
-    storage.deleteUserFile(USER_ID, FILE_NAME1);
-    assertFalse(storage.getUserFiles(USER_ID).contains(FILE_NAME1));
-    assertTrue(storage.getUserFiles(USER_ID).contains(FILE_NAME_OUTPUT));
-
-    storage.deleteUserFile(USER_ID, FILE_NAME_OUTPUT);
-    assertFalse(storage.getUserFiles(USER_ID).contains(FILE_NAME1));
-    assertFalse(storage.getUserFiles(USER_ID).contains(FILE_NAME_OUTPUT));
-  }
-
-  public void testUnsupportedEncoding() throws BlocksTruncatedException {
-    final String USER_ID = "1100";
-    final String USER_EMAIL = "newuser1100@test.com";
-    storage.getUser(USER_ID, USER_EMAIL);
-    long projectId = createProject(USER_ID, PROJECT_NAME, FAKE_PROJECT_TYPE, FORM_QUALIFIED_NAME);
-    storage.addSourceFilesToProject(USER_ID, projectId, false, FILE_NAME1);
-    try {
-      storage.uploadFile(projectId, FILE_NAME1, USER_ID, FILE_CONTENT1, "No such encoding");
-      fail("Unsupported encoding accepted");
-    } catch (RuntimeException e) {
-      // This encoding is not supported
-      assertTrue(e.getCause() instanceof UnsupportedEncodingException);
-    }
-    storage.uploadFile(projectId, FILE_NAME1, USER_ID, FILE_CONTENT1, StorageUtil.DEFAULT_CHARSET);
-    try {
-      storage.downloadFile(USER_ID, projectId, FILE_NAME1, "No such encoding");
-      fail("Unsupported encoding accepted");
-    } catch (RuntimeException e) {
-      // This encoding is not supported
-      assertTrue(e.getCause() instanceof UnsupportedEncodingException);
-    }
-  }
-
-  public void testUnsupportedEncodingUserFIle() {
-    // Note that neither FILE_NAME1 nor FILE_NAME_OUTPUT should exist
-    // at the start of this test
-    final String USER_ID = "1100";
-    final String USER_EMAIL = "newuser1100@test.com";
-    storage.getUser(USER_ID, USER_EMAIL);
-    storage.addFilesToUser(USER_ID, FILE_NAME1);
-    try {
-      storage.uploadUserFile(USER_ID, FILE_NAME1, FILE_CONTENT1, "No such encoding");
-      fail("Unsupported encoding accepted");
-    } catch (RuntimeException e) {
-      // This encoding is not supported
-      assertTrue(e.getCause() instanceof UnsupportedEncodingException);
-    }
-    storage.uploadUserFile(USER_ID, FILE_NAME1, FILE_CONTENT1,
-        StorageUtil.DEFAULT_CHARSET);
-    try {
-      storage.downloadUserFile(USER_ID, FILE_NAME1, "No such encoding");
-      fail("Unsupported encoding accepted");
-    } catch (RuntimeException e) {
-      // This encoding is not supported
-      assertTrue(e.getCause() instanceof UnsupportedEncodingException);
-    }
-  }
-
-  public void testBlobFiles() throws BlocksTruncatedException {
+  public void testBlobFilesInGcs() throws BlocksTruncatedException {
     final String USER_ID = "1300";
     final String USER_EMAIL = "newuser1300@test.com";
     storage.getUser(USER_ID, USER_EMAIL);
@@ -423,24 +110,9 @@ public class ObjectifyStorageIoTest extends LocalDatastoreTestCase {
     storage.addOutputFilesToProject(USER_ID, projectId, APK_FILE_NAME1);
     storage.uploadRawFile(projectId, APK_FILE_NAME1, USER_ID, true, APK_FILE_CONTENT);
 
-    assertTrue(storage.getProjectSourceFiles(USER_ID, projectId).contains(ASSET_FILE_NAME1));
-    assertTrue(storage.getProjectOutputFiles(USER_ID, projectId).contains(APK_FILE_NAME1));
-    assertTrue(Arrays.equals(ASSET_FILE_CONTENT1,
-        storage.downloadRawFile(USER_ID, projectId, ASSET_FILE_NAME1)));
-    assertTrue(Arrays.equals(APK_FILE_CONTENT,
-        storage.downloadRawFile(USER_ID, projectId, APK_FILE_NAME1)));
-    assertTrue(Arrays.equals(BLOCK_FILE_CONTENT,
-        storage.downloadRawFile(USER_ID, projectId, BLOCK_FILE_NAME)));
     assertTrue(storage.isGcsFile(projectId, ASSET_FILE_NAME1));
     assertTrue(storage.isGcsFile(projectId, APK_FILE_NAME1));
     assertTrue(!storage.isGcsFile(projectId, BLOCK_FILE_NAME)); // small block files now in datastore
-
-    storage.removeSourceFilesFromProject(USER_ID, projectId, false, ASSET_FILE_NAME1);
-    storage.removeOutputFilesFromProject(USER_ID, projectId, APK_FILE_NAME1);
-    storage.removeSourceFilesFromProject(USER_ID, projectId, false, BLOCK_FILE_NAME);
-    assertFalse(storage.getProjectSourceFiles(USER_ID, projectId).contains(ASSET_FILE_NAME1));
-    assertFalse(storage.getProjectOutputFiles(USER_ID, projectId).contains(APK_FILE_NAME1));
-    assertFalse(storage.getProjectOutputFiles(USER_ID, projectId).contains(BLOCK_FILE_NAME));
     // TODO(sharon): would be good to check that blobrefs are deleted from blobstore too
 
     // TODO(sharon): should test large blob files (e.g., >2MB (chunk size), >4MB (row size));
@@ -474,7 +146,117 @@ public class ObjectifyStorageIoTest extends LocalDatastoreTestCase {
           USER_ID, projectId, BLOCK_FILE_NAME)));
  }
 
-  public void testGetProject() {
+  public void testSharedContent() throws BlocksTruncatedException {
+    ObjectifyStorageIo sharingStorage = new ObjectifyStorageIo() {
+      @Override
+      boolean useSharedContent() {
+        return true;
+      }
+    };
+
+    final String USER_ID = "1320";
+    final String USER_EMAIL = "newuser1320@test.com";
+    sharingStorage.getUser(USER_ID, USER_EMAIL);
+    long projectId1 = createProject(USER_ID, PROJECT_NAME,
+        YoungAndroidProjectNode.YOUNG_ANDROID_PROJECT_TYPE, FORM_QUALIFIED_NAME, sharingStorage);
+    sharingStorage.addSourceFilesToProject(USER_ID, projectId1, false, ASSET_FILE_NAME1);
+    sharingStorage.uploadRawFile(projectId1, ASSET_FILE_NAME1, USER_ID, true, ASSET_FILE_CONTENT1);
+    assertEquals(1, sharingStorage.getContentRefCount(ASSET_FILE_CONTENT1));
+
+    // Copying a file adds a reference to the same content
+    long projectId2 = createProject(USER_ID, PROJECT_NAME + "Copy",
+        YoungAndroidProjectNode.YOUNG_ANDROID_PROJECT_TYPE, FORM_QUALIFIED_NAME, sharingStorage);
+    Map<String, String> fileNames = new LinkedHashMap<String, String>();
+    fileNames.put(ASSET_FILE_NAME1, ASSET_FILE_NAME1);
+    sharingStorage.copySourceFiles(USER_ID, projectId1, projectId2, fileNames);
+    assertEquals(2, sharingStorage.getContentRefCount(ASSET_FILE_CONTENT1));
+    assertTrue(sharingStorage.isGcsFile(projectId2, ASSET_FILE_NAME1));
+
+    // The copy outlives the original
+    sharingStorage.deleteProject(USER_ID, projectId1);
+    assertEquals(1, sharingStorage.getContentRefCount(ASSET_FILE_CONTENT1));
+    assertTrue(Arrays.equals(ASSET_FILE_CONTENT1,
+        sharingStorage.downloadRawFile(USER_ID, projectId2, ASSET_FILE_NAME1)));
+
+    // Saving the same content again changes nothing
+    sharingStorage.uploadRawFile(projectId2, ASSET_FILE_NAME1, USER_ID, true, ASSET_FILE_CONTENT1);
+    assertEquals(1, sharingStorage.getContentRefCount(ASSET_FILE_CONTENT1));
+
+    // Saving new content releases the old
+    sharingStorage.uploadRawFile(projectId2, ASSET_FILE_NAME1, USER_ID, true, RAW_FILE_CONTENT3);
+    assertEquals(0, sharingStorage.getContentRefCount(ASSET_FILE_CONTENT1));
+    assertEquals(1, sharingStorage.getContentRefCount(RAW_FILE_CONTENT3));
+    assertTrue(Arrays.equals(RAW_FILE_CONTENT3,
+        sharingStorage.downloadRawFile(USER_ID, projectId2, ASSET_FILE_NAME1)));
+
+    sharingStorage.deleteProject(USER_ID, projectId2);
+    assertEquals(0, sharingStorage.getContentRefCount(RAW_FILE_CONTENT3));
+  }
+
+  public void testUploadFileDelta() throws Exception {
+    ObjectifyStorageIo gcsStorage = new ObjectifyStorageIo() {
+      @Override
+      boolean useGCSforFile(String fileName, int length) {
+        return true;
+      }
+    };
+
+    final String USER_ID = "1330";
+    final String USER_EMAIL = "newuser1330@test.com";
+    gcsStorage.getUser(USER_ID, USER_EMAIL);
+    long projectId = createProject(USER_ID, PROJECT_NAME,
+        YoungAndroidProjectNode.YOUNG_ANDROID_PROJECT_TYPE, FORM_QUALIFIED_NAME, gcsStorage);
+    gcsStorage.addSourceFilesToProject(USER_ID, projectId, false, BKY_FILE_NAME1);
+    String content = "<xml><block type=\"a\"/></xml>";
+    gcsStorage.uploadFile(projectId, BKY_FILE_NAME1, USER_ID, content, StorageUtil.DEFAULT_CHARSET);
+
+    String[] versions = {
+        "<xml><block type=\"a\"/><block type=\"b\"/></xml>",
+        "<xml><block type=\"c\"/><block type=\"b\"/></xml>",
+        "<xml><block type=\"c\"/></xml>" };
+    // These are small enough to be taken for a truncated workspace, so force them
+    for (String next : versions) {
+      gcsStorage.uploadFileDelta(projectId, BKY_FILE_NAME1, USER_ID, true,
+          TextDelta.version(content), TextDelta.compute(content, next));
+      content = next;
+      assertEquals(content, gcsStorage.downloadFile(USER_ID, projectId, BKY_FILE_NAME1,
+          StorageUtil.DEFAULT_CHARSET));
+    }
+
+    // A delta from content the server no longer has is refused
+    try {
+      gcsStorage.uploadFileDelta(projectId, BKY_FILE_NAME1, USER_ID, false,
+          TextDelta.version(versions[0]), TextDelta.compute(versions[0], "<xml/>"));
+      fail();
+    } catch (FileVersionMismatchException e) {
+      // expected
+    }
+    assertEquals(content, gcsStorage.downloadFile(USER_ID, projectId, BKY_FILE_NAME1,
+        StorageUtil.DEFAULT_CHARSET));
+
+    // Unless forced, a delta is checked for truncation as a full save is
+    try {
+      gcsStorage.uploadFileDelta(projectId, BKY_FILE_NAME1, USER_ID, false,
+          TextDelta.version(content), TextDelta.compute(content, "<xml/>"));
+      fail();
+    } catch (BlocksTruncatedException e) {
+      // expected
+    }
+    assertEquals(content, gcsStorage.downloadFile(USER_ID, projectId, BKY_FILE_NAME1,
+        StorageUtil.DEFAULT_CHARSET));
+
+    // A full save replaces the deltas, and deltas may follow it again
+    gcsStorage.uploadFile(projectId, BKY_FILE_NAME1, USER_ID, "<xml/>",
+        StorageUtil.DEFAULT_CHARSET);
+    assertEquals("<xml/>", gcsStorage.downloadFile(USER_ID, projectId, BKY_FILE_NAME1,
+        StorageUtil.DEFAULT_CHARSET));
+    gcsStorage.uploadFileDelta(projectId, BKY_FILE_NAME1, USER_ID, true,
+        TextDelta.version("<xml/>"), TextDelta.compute("<xml/>", versions[0]));
+    assertEquals(versions[0], gcsStorage.downloadFile(USER_ID, projectId, BKY_FILE_NAME1,
+        StorageUtil.DEFAULT_CHARSET));
+  }
+
+  public void testGetProjectData() {
     final String USER_ID = "1400";
     final String USER_EMAIL = "newuser1400@test.com";
     storage.getUser(USER_ID, USER_EMAIL);
@@ -485,7 +267,7 @@ public class ObjectifyStorageIoTest extends LocalDatastoreTestCase {
     assertEquals(FAKE_PROJECT_TYPE, result.type);
   }
 
-  public void testGetProject_withNonexistentProject() {
+  public void testGetProjectData_withNonexistentProject() {
     final String USER_ID = "1500";
     final String USER_EMAIL = "newuser1500@test.com";
     storage.getUser(USER_ID, USER_EMAIL);
@@ -495,86 +277,70 @@ public class ObjectifyStorageIoTest extends LocalDatastoreTestCase {
     assertNull(result);
   }
 
-  public void testWrongUserThrowsException() throws Exception {
-    final String USER_ID = "1600";
-    final String USER_EMAIL = "newuser1600@test.com";
-    final String USER_ID2 = "1700";
-    createUserFiles(USER_ID, USER_EMAIL, storage);
-
-    long projectId = storage.createProject(USER_ID, project, SETTINGS);
-    assertTrue(Arrays.equals(RAW_FILE_CONTENT1,
-        storage.downloadRawFile(USER_ID, projectId, RAW_FILE_NAME1)));
-    try {
-      storage.downloadRawFile(USER_ID2, projectId, RAW_FILE_NAME1);
-      fail();
-    } catch (Exception e) {
-      assertTrue(e instanceof UnauthorizedAccessException
-                 || e.getCause() instanceof UnauthorizedAccessException);
-    }
+  public void testOldProjectListEntriesAreFilledForPages() {
+    final String USER_ID = "1370";
+    final String USER_EMAIL = "newuser1370@test.com";
+    storage.getUser(USER_ID, USER_EMAIL);
+    long projectId = createProject(USER_ID, PROJECT_NAME,
+        YoungAndroidProjectNode.YOUNG_ANDROID_PROJECT_TYPE, FORM_QUALIFIED_NAME);
+
+    // As written before the list fields were added
+    Objectify datastore = ObjectifyService.begin();
+    Key<UserData> userKey = new Key<UserData>(UserData.class, USER_ID);
+    UserProjectData upd = datastore.get(
+        new Key<UserProjectData>(userKey, UserProjectData.class, projectId));
+    upd.name = null;
+    upd.sortName = null;
+    datastore.put(upd);
+
+    ProjectListPage page = storage.getProjectListPage(USER_ID,
+        ProjectListPage.SORT_BY_NAME, true, 0, 10);
+    assertEquals(1, page.getProjects().size());
+    assertEquals(PROJECT_NAME, page.getProjects().get(0).getProjectName());
+    assertTrue(datastore.get(userKey).projectListFilled);
   }
 
-  public void testTempFiles() throws Exception {
-    String fileName = storage.uploadTempFile("test\n".getBytes(Charsets.UTF_8));
-    BufferedReader reader = new BufferedReader(new InputStreamReader(storage.openTempFile(fileName),
-        Charsets.UTF_8));
-    assertTrue(reader.readLine().equals("test"));
-    storage.deleteTempFile(fileName);
-    try {
-      storage.deleteTempFile("frob"); // Should fail because doesn't start with __TEMP__
-      fail();
-    } catch (Exception e) {
-      assertTrue(e instanceof RuntimeException);
-    }
+  @Override
+  public void testWrongUserThrowsException() throws Exception {
+    // The user's own files must not be taken for the project's
+    createUserFiles("1600", "newuser1600@test.com", storage);
+    super.testWrongUserThrowsException();
   }
 
-  public void testExportProjectZip() throws BlocksTruncatedException, IOException {
-    final String USER_ID = "1800";
-    final String USER_EMAIL = "newuser1800@test.com";
+  public void testCompressedTextFiles() throws BlocksTruncatedException, IOException {
+    final String USER_ID = "1910";
+    final String USER_EMAIL = "newuser1910@test.com";
     storage.getUser(USER_ID, USER_EMAIL);
     long projectId = createProject(USER_ID, PROJECT_NAME, FAKE_PROJECT_TYPE, FORM_QUALIFIED_NAME);
-    storage.addSourceFilesToProject(USER_ID, projectId, false, SCM_FILE_NAME1);
-    storage.uploadFile(projectId, SCM_FILE_NAME1, USER_ID, FILE_CONTENT1, StorageUtil.DEFAULT_CHARSET);
-    storage.addSourceFilesToProject(USER_ID, projectId, false, BKY_FILE_NAME1);
-    storage.uploadFile(projectId, BKY_FILE_NAME1, USER_ID, FILE_CONTENT2, StorageUtil.DEFAULT_CHARSET);
-    storage.addSourceFilesToProject(USER_ID, projectId, false, YAIL_FILE_NAME1);
-    storage.uploadFile(projectId, YAIL_FILE_NAME1, USER_ID, FILE_CONTENT1, StorageUtil.DEFAULT_CHARSET);
-
-    storage.addSourceFilesToProject(USER_ID, projectId, false, SCM_FILE_NAME2);
-    storage.uploadFile(projectId, SCM_FILE_NAME2, USER_ID, FILE_CONTENT1, StorageUtil.DEFAULT_CHARSET);
-    storage.addSourceFilesToProject(USER_ID, projectId, false, BKY_FILE_NAME2);
-    storage.uploadFile(projectId, BKY_FILE_NAME2, USER_ID, FILE_CONTENT2, StorageUtil.DEFAULT_CHARSET);
-    storage.addSourceFilesToProject(USER_ID, projectId, false, YAIL_FILE_NAME2);
-    storage.uploadFile(projectId, YAIL_FILE_NAME2, USER_ID, FILE_CONTENT1, StorageUtil.DEFAULT_CHARSET);
-    ProjectSourceZip zipFile = storage.exportProjectSourceZip(USER_ID, projectId, false,
-            /* includeAndroidKeystore */ true,
-            "project_" + projectId + ".aia", true, false, true, false);
-    assertEquals(7,zipFile.getFileCount());
-  }
+    assertTrue(storage.useCompression(BKY_FILE_NAME1));
+    assertFalse(storage.useCompression(ASSET_FILE_NAME1));
 
-  public void testExportProjectZipNoSCM() throws BlocksTruncatedException, IOException {
-    final String USER_ID = "1900";
-    final String USER_EMAIL = "newuser1900@test.com";
-    storage.getUser(USER_ID, USER_EMAIL);
-    long projectId = createProject(USER_ID, PROJECT_NAME, FAKE_PROJECT_TYPE, FORM_QUALIFIED_NAME);
-    storage.addSourceFilesToProject(USER_ID, projectId, false, SCM_FILE_NAME1);
-    storage.uploadFile(projectId, SCM_FILE_NAME1, USER_ID, FILE_CONTENT1, StorageUtil.DEFAULT_CHARSET);
+    // Large enough for GCS if it were not compressed
+    StringBuilder blocks = new StringBuilder("<xml>");
+    for (int i = 0; i < 2000; i++) {
+      blocks.append("<block type=\"text\" id=\"").append(i).append("\"></block>");
+    }
+    blocks.append("</xml>");
+    byte[] content = blocks.toString().getBytes(StorageUtil.DEFAULT_CHARSET);
+    assertTrue(content.length > 50000);
     storage.addSourceFilesToProject(USER_ID, projectId, false, BKY_FILE_NAME1);
-    storage.uploadFile(projectId, BKY_FILE_NAME1, USER_ID, FILE_CONTENT2, StorageUtil.DEFAULT_CHARSET);
-    storage.addSourceFilesToProject(USER_ID, projectId, false, YAIL_FILE_NAME1);
-    storage.uploadFile(projectId, YAIL_FILE_NAME1, USER_ID, FILE_CONTENT1, StorageUtil.DEFAULT_CHARSET);
-
-    storage.addSourceFilesToProject(USER_ID, projectId, false, BKY_FILE_NAME2);
-    storage.uploadFile(projectId, BKY_FILE_NAME2, USER_ID, FILE_CONTENT2, StorageUtil.DEFAULT_CHARSET);
-    storage.addSourceFilesToProject(USER_ID, projectId, false, YAIL_FILE_NAME2);
-    storage.uploadFile(projectId, YAIL_FILE_NAME2, USER_ID, FILE_CONTENT1, StorageUtil.DEFAULT_CHARSET);
-    List<String> sourcesFiles = storage.getProjectSourceFiles(USER_ID, projectId);
-    assertTrue(sourcesFiles.contains(YAIL_FILE_NAME2));
+    storage.uploadRawFile(projectId, BKY_FILE_NAME1, USER_ID, true, content);
+    assertFalse(storage.isGcsFile(projectId, BKY_FILE_NAME1));
+    assertTrue(Arrays.equals(content, storage.downloadRawFile(USER_ID, projectId, BKY_FILE_NAME1)));
+
+    // The export has the content as it was saved
     ProjectSourceZip zipFile = storage.exportProjectSourceZip(USER_ID, projectId, false,
-            /* includeAndroidKeystore */ true,
-            "project_" + projectId + ".aia", true, false, true, false);
-    assertEquals(4,zipFile.getFileCount());
-    sourcesFiles = storage.getProjectSourceFiles(USER_ID, projectId);
-    assertFalse(sourcesFiles.contains(YAIL_FILE_NAME2));
+        /* includeAndroidKeystore */ false, "project_" + projectId + ".aia", true, false, true,
+        false);
+    ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(zipFile.getContent()));
+    boolean found = false;
+    for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+      if (entry.getName().equals(BKY_FILE_NAME1)) {
+        assertTrue(Arrays.equals(content, ByteStreams.toByteArray(zip)));
+        found = true;
+      }
+    }
+    assertTrue(found);
   }
   /*
    * Fail on the Nth call to runJobWithRetries, where N is the value of the
@@ -612,16 +378,4 @@ public class ObjectifyStorageIoTest extends LocalDatastoreTestCase {
       return numDeletedBlobs;
     }
   }
-
-  private long createProject(String userId, String name, String type, String fileName) {
-    return createProject(userId, name, type, fileName, storage);
-  }
-
-  private long createProject(String userId, String name, String type, String fileName,
-                             ObjectifyStorageIo storageIo) {
-    Project project = new Project(name);
-    project.setProjectType(type);
-    project.addTextFile(new TextFile(fileName, ""));
-    return storageIo.createProject(userId, project, SETTINGS);
-  }
 }
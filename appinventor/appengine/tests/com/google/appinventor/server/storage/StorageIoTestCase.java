@@ -0,0 +1,698 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2009-2011 Google, All Rights reserved
+// Copyright 2011-2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.server.storage;
+
+import com.google.appinventor.shared.rpc.BlocksTruncatedException;
+import com.google.appinventor.shared.rpc.project.Project;
+import com.google.appinventor.shared.rpc.project.ProjectListPage;
+import com.google.appinventor.shared.rpc.project.ProjectSourceZip;
+import com.google.appinventor.shared.rpc.project.RawFile;
+import com.google.appinventor.shared.rpc.project.TextFile;
+import com.google.appinventor.shared.rpc.project.UserProject;
+import com.google.appinventor.shared.rpc.project.youngandroid.YoungAndroidProjectNode;
+import com.google.appinventor.shared.rpc.user.User;
+import com.google.appinventor.shared.storage.StorageUtil;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests that every {@link StorageIo} has to pass. Each implementation's test
+ * extends this with the storage to test and its own cases.
+ *
+ * @param <S> the type of storage tested
+ */
+public abstract class StorageIoTestCase<S extends StorageIo> extends TestCase {
+
+  protected static final String SETTINGS = "{settings: \"none\"}";
+  protected static final String FAKE_PROJECT_TYPE = "FakeProjectType";
+  protected static final String PROJECT_NAME = "Project1";
+  protected static final String FILE_NAME1 = "File1.src";
+  protected static final String FILE_NAME2 = "src/File2.blk";
+  protected static final String RAW_FILE_NAME1 = "assets/File1.jpg";
+  protected static final String RAW_FILE_NAME2 = "assets/File2.wav";
+  protected static final String FILE_NAME_OUTPUT = "File.apk";
+  protected static final String FILE_CONTENT1 = "The quick onyx goblin jumps over the lazy dwarf";
+  protected static final String FILE_CONTENT2 = "This Pangram contains four a's, one b, two c's, "
+      + "one d, thirty e's, six f's, five g's, seven h's, eleven i's, one j, one k, two l's, "
+      + "two m's, eighteen n's, fifteen o's, two p's, one q, five r's, twenty-seven s's, "
+      + "eighteen t's, two u's, seven v's, eight w's, two x's, three y's, & one z.";
+  protected static final byte[] RAW_FILE_CONTENT1 = { (byte) 0, (byte) 1, (byte) 32, (byte) 255};
+  protected static final byte[] RAW_FILE_CONTENT2 = { (byte) 0, (byte) 1, (byte) 32, (byte) 255};
+  protected static final byte[] RAW_FILE_CONTENT3 = { (byte) 0, (byte) 1, (byte) 2, (byte) 3};
+  protected static final byte[] FILE_CONTENT_OUTPUT = { (byte) 0, (byte) 1, (byte) 32, (byte) 255};
+  protected static final String FORM_NAME = "Form1";
+  protected static final String FORM_QUALIFIED_NAME = "com.yourdomain." + FORM_NAME;
+  protected static final String ASSET_FILE_NAME1 = "assets/kitty.jpg";
+  protected static final byte[] ASSET_FILE_CONTENT1 = { (byte) 0, (byte) 1, (byte) 32, (byte) 255};
+  protected static final String APK_FILE_NAME1 = "/ode/build/Android/HelloPurr.apk";
+  protected static final byte[] APK_FILE_CONTENT = { (byte) 0, (byte) 1, (byte) 32, (byte) 255};
+  protected static final String BLOCK_FILE_NAME = "src/blocks.blk";
+  protected static final byte[] BLOCK_FILE_CONTENT = {(byte) 0, (byte) 1, (byte) 32, (byte) 255};
+
+  protected static final String SCM_FILE_NAME1 = "src/File1.scm";
+  protected static final String BKY_FILE_NAME1 = "src/File1.bky";
+  protected static final String YAIL_FILE_NAME1 = "src/File1.yail";
+  protected static final String SCM_FILE_NAME2 = "src/File2.scm";
+  protected static final String BKY_FILE_NAME2 = "src/File2.bky";
+  protected static final String YAIL_FILE_NAME2 = "src/File2.yail";
+
+  protected S storage;
+  protected Project project;
+
+  /**
+   * Returns new, empty storage to test.
+   */
+  protected abstract S createStorage() throws Exception;
+
+  /**
+   * Returns new, empty storage on which creating a project for a new user
+   * fails, either before anything is written or after part of the project
+   * has been.
+   */
+  protected abstract StorageIo createFailingStorage(boolean afterPartialWrite) throws Exception;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    storage = createStorage();
+
+    project = new Project(PROJECT_NAME);
+    project.setProjectType(FAKE_PROJECT_TYPE);
+    project.addTextFile(new TextFile(FILE_NAME1, FILE_CONTENT1));
+    project.addTextFile(new TextFile(FILE_NAME2, FILE_CONTENT2));
+    project.addRawFile(new RawFile(RAW_FILE_NAME1, RAW_FILE_CONTENT1));
+    project.addRawFile(new RawFile(RAW_FILE_NAME2, RAW_FILE_CONTENT2));
+  }
+
+  public void testGetUser() {
+    final String USER_ID = "500";
+    final String USER_EMAIL = "user500@test.com";
+    final String USER_EMAIL_NEW = "newuser500@test.com";
+
+    User user1 = storage.getUser(USER_ID, USER_EMAIL);
+    assertEquals(USER_ID, user1.getUserId());
+    assertEquals(USER_EMAIL, user1.getUserEmail());
+
+    User user2 = storage.getUser(USER_ID);
+    assertEquals(USER_ID, user2.getUserId());
+    assertEquals(USER_EMAIL, user2.getUserEmail());
+
+    User user3 = storage.getUser(USER_ID, USER_EMAIL_NEW);
+    assertEquals(USER_ID, user3.getUserId());
+    assertEquals(USER_EMAIL_NEW, user3.getUserEmail());
+
+    User user4 = storage.getUser(USER_ID);
+    assertEquals(USER_ID, user4.getUserId());
+    assertEquals(USER_EMAIL_NEW, user4.getUserEmail());
+  }
+
+  public void testLoadSettingsNewUser() {
+    final String USER_ID = "200";
+    assertEquals("", storage.loadSettings(USER_ID));
+  }
+
+  public void testStoreLoadSettings() {
+    final String USER_ID = "300";
+    final String USER_EMAIL = "newuser300@test.com";
+    storage.getUser(USER_ID, USER_EMAIL);
+    storage.storeSettings(USER_ID, SETTINGS);
+    assertEquals(SETTINGS, storage.loadSettings(USER_ID));
+  }
+
+  public void testCreateProjectSuccessful() {
+    final String USER_ID = "400";
+    final String USER_EMAIL = "newuser400@test.com";
+    storage.getUser(USER_ID, USER_EMAIL);
+    long projectId = storage.createProject(USER_ID, project, SETTINGS);
+    assertEquals(Arrays.asList(projectId), storage.getProjects(USER_ID));
+    assertEquals(PROJECT_NAME, storage.getProjectName(USER_ID, projectId));
+    assertEquals(SETTINGS, storage.loadProjectSettings(USER_ID, projectId));
+    assertEquals(FILE_CONTENT2, storage.downloadFile(USER_ID, projectId, FILE_NAME2,
+        StorageUtil.DEFAULT_CHARSET));
+    assertTrue(Arrays.equals(RAW_FILE_CONTENT1,
+        storage.downloadRawFile(USER_ID, projectId, RAW_FILE_NAME1)));
+  }
+
+  public void testCreateProjectFailFirst() throws Exception {
+    final String USER_ID = "600";
+    final String USER_EMAIL = "newuser600@test.com";
+    StorageIo throwingStorage = createFailingStorage(false);
+
+    try {
+      throwingStorage.getUser(USER_ID, USER_EMAIL);
+      throwingStorage.createProject(USER_ID, project, SETTINGS);
+    } catch (RuntimeException e) {
+      assertEquals(0, throwingStorage.getProjects(USER_ID).size());
+      return;
+    }
+
+    fail();
+  }
+
+  public void testCreateProjectFailSecond() throws Exception {
+    final String USER_ID = "700";
+    final String USER_EMAIL = "newuser700@test.com";
+    StorageIo throwingStorage = createFailingStorage(true);
+
+    try {
+      throwingStorage.getUser(USER_ID, USER_EMAIL);
+      throwingStorage.createProject(USER_ID, project, SETTINGS);
+    } catch (RuntimeException e) {
+      assertEquals(0, throwingStorage.getProjects(USER_ID).size());
+      return;
+    }
+
+    fail();
+  }
+
+  public void testUploadBeforeAdd() throws BlocksTruncatedException {
+    final String USER_ID = "800";
+    final String USER_EMAIL = "newuser800@test.com";
+    storage.getUser(USER_ID, USER_EMAIL);
+    long projectId = createProject(USER_ID, PROJECT_NAME, FAKE_PROJECT_TYPE, FORM_QUALIFIED_NAME);
+    try {
+      storage.uploadFile(projectId, FILE_NAME1, USER_ID, "does not matter",
+          StorageUtil.DEFAULT_CHARSET);
+      fail("Allowed upload before add");
+    } catch (IllegalStateException ignored) {
+      // File upload should be preceded by add
+    }
+    try {
+      storage.uploadRawFile(projectId, FILE_NAME1, USER_ID, true, "does not matter".getBytes());
+      fail("Allowed upload before add");
+    } catch (IllegalStateException ignored) {
+      // File upload should be preceded by add
+    }
+  }
+
+  public void testMuliRoleFile() {
+    final String USER_ID = "1000";
+    final String USER_EMAIL = "newuser1000@test.com";
+    storage.getUser(USER_ID, USER_EMAIL);
+    long projectId = createProject(USER_ID, PROJECT_NAME, FAKE_PROJECT_TYPE, FORM_QUALIFIED_NAME);
+    storage.addSourceFilesToProject(USER_ID, projectId, false, FILE_NAME1);
+    try {
+      storage.addOutputFilesToProject(USER_ID, projectId, FILE_NAME1);
+      fail("File role changed");
+    } catch (IllegalStateException ignored) {
+      // File role change is not allowed
+    }
+    try {
+      storage.removeOutputFilesFromProject(USER_ID, projectId, FILE_NAME1);
+      fail("File role changed");
+    } catch (IllegalStateException ignored) {
+      // File role change is not allowed
+    } catch (RuntimeException ignored) {
+      // File role change is not allowed
+    }
+  }
+
+  public void testUpdateModificationTime() throws BlocksTruncatedException {
+    final String USER_ID = "1100";
+    final String USER_EMAIL = "newuser1100@test.com";
+    storage.getUser(USER_ID, USER_EMAIL);
+    long projectId = createProject(USER_ID, PROJECT_NAME, FAKE_PROJECT_TYPE, FORM_QUALIFIED_NAME);
+    UserProject uproject = storage.getUserProject(USER_ID, projectId);
+    long creationDate = uproject.getDateCreated();
+    long modificationDate = uproject.getDateModified();
+    assertEquals(creationDate, modificationDate);
+    long oldModificationDate = modificationDate;
+
+    storage.addSourceFilesToProject(USER_ID, projectId, false, FILE_NAME1);
+    assertTrue(storage.getProjectSourceFiles(USER_ID, projectId).contains(FILE_NAME1));
+    modificationDate = storage.getProjectDateModified(USER_ID, projectId);
+    assertEquals(oldModificationDate, modificationDate);
+    oldModificationDate = modificationDate;
+
+    storage.removeSourceFilesFromProject(USER_ID, projectId, false, FILE_NAME1);
+    assertFalse(storage.getProjectSourceFiles(USER_ID, projectId).contains(FILE_NAME1));
+    modificationDate = storage.getProjectDateModified(USER_ID, projectId);
+    assertEquals(oldModificationDate, modificationDate);
+    oldModificationDate = modificationDate;
+
+    storage.addSourceFilesToProject(USER_ID, projectId, true, FILE_NAME1);
+    assertTrue(storage.getProjectSourceFiles(USER_ID, projectId).contains(FILE_NAME1));
+    modificationDate = storage.getProjectDateModified(USER_ID, projectId);
+    // Note: Modification date will not change due to restrictions where we only
+    // update project modification date if it is more then a minute since the last
+    // update.
+    assertTrue(oldModificationDate <= modificationDate);
+    oldModificationDate = modificationDate;
+
+    storage.removeSourceFilesFromProject(USER_ID, projectId, true, FILE_NAME1);
+    assertFalse(storage.getProjectSourceFiles(USER_ID, projectId).contains(FILE_NAME1));
+    modificationDate = storage.getProjectDateModified(USER_ID, projectId);
+    assertTrue(oldModificationDate <= modificationDate);
+    oldModificationDate = modificationDate;
+
+    storage.addSourceFilesToProject(USER_ID, projectId, false, FILE_NAME1);
+    modificationDate = storage.uploadFile(projectId, FILE_NAME1, USER_ID, FILE_CONTENT1,
+        StorageUtil.DEFAULT_CHARSET);
+    assertTrue(oldModificationDate <= modificationDate);
+    oldModificationDate = modificationDate;
+    modificationDate = storage.getProjectDateModified(USER_ID, projectId);
+    assertEquals(oldModificationDate, modificationDate);
+    oldModificationDate = modificationDate;
+
+    storage.addOutputFilesToProject(USER_ID, projectId, FILE_NAME_OUTPUT);
+    modificationDate = storage.uploadRawFile(projectId, FILE_NAME_OUTPUT, USER_ID,
+        true, FILE_CONTENT_OUTPUT);
+    assertTrue(oldModificationDate <= modificationDate);
+    oldModificationDate = modificationDate;
+    modificationDate = storage.getProjectDateModified(USER_ID, projectId);
+    assertEquals(oldModificationDate, modificationDate);
+    oldModificationDate = modificationDate;
+
+
+    modificationDate = storage.deleteFile(USER_ID, projectId, FILE_NAME1);
+    assertTrue(oldModificationDate <= modificationDate);
+    oldModificationDate = modificationDate;
+    modificationDate = storage.getProjectDateModified(USER_ID, projectId);
+    assertEquals(oldModificationDate, modificationDate);
+    oldModificationDate = modificationDate;
+  }
+
+  public void testAddRemoveFile() throws BlocksTruncatedException {
+    final String USER_ID = "1200";
+    final String USER_EMAIL = "newuser1200@test.com";
+    storage.getUser(USER_ID, USER_EMAIL);
+    long projectId = createProject(USER_ID, PROJECT_NAME, FAKE_PROJECT_TYPE, FORM_QUALIFIED_NAME);
+    storage.addSourceFilesToProject(USER_ID, projectId, false, FILE_NAME1);
+    storage.uploadFile(projectId, FILE_NAME1, USER_ID, FILE_CONTENT1, StorageUtil.DEFAULT_CHARSET);
+    storage.addOutputFilesToProject(USER_ID, projectId, FILE_NAME_OUTPUT);
+    storage.uploadRawFile(projectId, FILE_NAME_OUTPUT, USER_ID, true, FILE_CONTENT_OUTPUT);
+
+    assertTrue(storage.getProjectSourceFiles(USER_ID, projectId).contains(FILE_NAME1));
+    assertTrue(storage.getProjectOutputFiles(USER_ID, projectId).contains(FILE_NAME_OUTPUT));
+    assertEquals(FILE_CONTENT1, storage.downloadFile(USER_ID, projectId, FILE_NAME1,
+        StorageUtil.DEFAULT_CHARSET));
+    assertTrue(Arrays.equals(FILE_CONTENT_OUTPUT,
+        storage.downloadRawFile(USER_ID, projectId, FILE_NAME_OUTPUT)));
+
+    storage.removeSourceFilesFromProject(USER_ID, projectId, false, FILE_NAME1);
+    assertFalse(storage.getProjectSourceFiles(USER_ID, projectId).contains(FILE_NAME1));
+    assertTrue(storage.getProjectOutputFiles(USER_ID, projectId).contains(FILE_NAME_OUTPUT));
+
+    storage.removeOutputFilesFromProject(USER_ID, projectId, FILE_NAME_OUTPUT);
+    assertFalse(storage.getProjectSourceFiles(USER_ID, projectId).contains(FILE_NAME1));
+    assertFalse(storage.getProjectOutputFiles(USER_ID, projectId).contains(FILE_NAME_OUTPUT));
+  }
+
+  public void testUploadDownloadFiles() throws BlocksTruncatedException {
+    final String USER_ID = "1250";
+    final String USER_EMAIL = "newuser1250@test.com";
+    storage.getUser(USER_ID, USER_EMAIL);
+    long projectId = createProject(USER_ID, PROJECT_NAME, FAKE_PROJECT_TYPE, FORM_QUALIFIED_NAME);
+    storage.addSourceFilesToProject(USER_ID, projectId, false, SCM_FILE_NAME1, BKY_FILE_NAME1,
+        SCM_FILE_NAME2);
+    Map<String, String> contents = new LinkedHashMap<String, String>();
+    contents.put(SCM_FILE_NAME1, FILE_CONTENT1);
+    contents.put(BKY_FILE_NAME1, FILE_CONTENT2);
+    contents.put(SCM_FILE_NAME2, FILE_CONTENT2);
+    long modificationDate = storage.uploadFiles(projectId, USER_ID, contents,
+        StorageUtil.DEFAULT_CHARSET, false);
+    assertEquals(modificationDate, storage.getProjectDateModified(USER_ID, projectId));
+
+    assertEquals(Arrays.asList(FILE_CONTENT2, FILE_CONTENT1, FILE_CONTENT2),
+        storage.downloadFiles(USER_ID, projectId,
+            Arrays.asList(SCM_FILE_NAME2, SCM_FILE_NAME1, BKY_FILE_NAME1),
+            StorageUtil.DEFAULT_CHARSET));
+    assertEquals(FILE_CONTENT1, storage.downloadFile(USER_ID, projectId, SCM_FILE_NAME1,
+        StorageUtil.DEFAULT_CHARSET));
+  }
+
+  public void testUploadFilesBlocksTruncated() throws BlocksTruncatedException {
+    final String USER_ID = "1260";
+    final String USER_EMAIL = "newuser1260@test.com";
+    storage.getUser(USER_ID, USER_EMAIL);
+    long projectId = createProject(USER_ID, PROJECT_NAME, FAKE_PROJECT_TYPE, FORM_QUALIFIED_NAME);
+    storage.addSourceFilesToProject(USER_ID, projectId, false, SCM_FILE_NAME1, BKY_FILE_NAME1);
+    storage.uploadFile(projectId, BKY_FILE_NAME1, USER_ID, FILE_CONTENT2,
+        StorageUtil.DEFAULT_CHARSET);
+    Map<String, String> contents = new LinkedHashMap<String, String>();
+    contents.put(SCM_FILE_NAME1, FILE_CONTENT1);
+    contents.put(BKY_FILE_NAME1, "");
+    try {
+      storage.uploadFiles(projectId, USER_ID, contents, StorageUtil.DEFAULT_CHARSET, false);
+      fail("Trivial workspace accepted");
+    } catch (BlocksTruncatedException e) {
+      // expected
+    }
+    // Neither file was written
+    assertEquals(Arrays.asList("", FILE_CONTENT2), storage.downloadFiles(USER_ID, projectId,
+        Arrays.asList(SCM_FILE_NAME1, BKY_FILE_NAME1), StorageUtil.DEFAULT_CHARSET));
+
+    storage.uploadFiles(projectId, USER_ID, contents, StorageUtil.DEFAULT_CHARSET, true);
+    assertEquals(Arrays.asList(FILE_CONTENT1, ""), storage.downloadFiles(USER_ID, projectId,
+        Arrays.asList(SCM_FILE_NAME1, BKY_FILE_NAME1), StorageUtil.DEFAULT_CHARSET));
+  }
+
+  public void testAddRemoveUserFile() {
+    // Note that neither FILE_NAME1 nor FILE_NAME_OUTPUT should exist
+    // at the start of this test
+    final String USER_ID = "1100";
+    final String USER_EMAIL = "newuser1100@test.com";
+    storage.getUser(USER_ID, USER_EMAIL);
+    storage.addFilesToUser(USER_ID, FILE_NAME1);
+    storage.uploadUserFile(USER_ID, FILE_NAME1, FILE_CONTENT1,
+        StorageUtil.DEFAULT_CHARSET);
+    storage.addFilesToUser(USER_ID, FILE_NAME_OUTPUT);
+    storage.uploadRawUserFile(USER_ID, FILE_NAME_OUTPUT, FILE_CONTENT_OUTPUT);
+
+    assertTrue(storage.getUserFiles(USER_ID).contains(FILE_NAME1));
+    assertTrue(storage.getUserFiles(USER_ID).contains(FILE_NAME_OUTPUT));
+    assertEquals(FILE_CONTENT1, storage.downloadUserFile(USER_ID, FILE_NAME1,
+        StorageUtil.DEFAULT_CHARSET));
+    assertTrue(Arrays.equals(FILE_CONTENT_OUTPUT,
+        storage.downloadRawUserFile(USER_ID, FILE_NAME_OUTPUT)));
+
+    storage.deleteUserFile(USER_ID, FILE_NAME1);
+    assertFalse(storage.getUserFiles(USER_ID).contains(FILE_NAME1));
+    assertTrue(storage.getUserFiles(USER_ID).contains(FILE_NAME_OUTPUT));
+
+    storage.deleteUserFile(USER_ID, FILE_NAME_OUTPUT);
+    assertFalse(storage.getUserFiles(USER_ID).contains(FILE_NAME1));
+    assertFalse(storage.getUserFiles(USER_ID).contains(FILE_NAME_OUTPUT));
+  }
+
+  public void testUnsupportedEncoding() throws BlocksTruncatedException {
+    final String USER_ID = "1100";
+    final String USER_EMAIL = "newuser1100@test.com";
+    storage.getUser(USER_ID, USER_EMAIL);
+    long projectId = createProject(USER_ID, PROJECT_NAME, FAKE_PROJECT_TYPE, FORM_QUALIFIED_NAME);
+    storage.addSourceFilesToProject(USER_ID, projectId, false, FILE_NAME1);
+    try {
+      storage.uploadFile(projectId, FILE_NAME1, USER_ID, FILE_CONTENT1, "No such encoding");
+      fail("Unsupported encoding accepted");
+    } catch (RuntimeException e) {
+      // This encoding is not supported
+      assertTrue(e.getCause() instanceof UnsupportedEncodingException);
+    }
+    storage.uploadFile(projectId, FILE_NAME1, USER_ID, FILE_CONTENT1, StorageUtil.DEFAULT_CHARSET);
+    try {
+      storage.downloadFile(USER_ID, projectId, FILE_NAME1, "No such encoding");
+      fail("Unsupported encoding accepted");
+    } catch (RuntimeException e) {
+      // This encoding is not supported
+      assertTrue(e.getCause() instanceof UnsupportedEncodingException);
+    }
+  }
+
+  public void testUnsupportedEncodingUserFIle() {
+    // Note that neither FILE_NAME1 nor FILE_NAME_OUTPUT should exist
+    // at the start of this test
+    final String USER_ID = "1100";
+    final String USER_EMAIL = "newuser1100@test.com";
+    storage.getUser(USER_ID, USER_EMAIL);
+    storage.addFilesToUser(USER_ID, FILE_NAME1);
+    try {
+      storage.uploadUserFile(USER_ID, FILE_NAME1, FILE_CONTENT1, "No such encoding");
+      fail("Unsupported encoding accepted");
+    } catch (RuntimeException e) {
+      // This encoding is not supported
+      assertTrue(e.getCause() instanceof UnsupportedEncodingException);
+    }
+    storage.uploadUserFile(USER_ID, FILE_NAME1, FILE_CONTENT1,
+        StorageUtil.DEFAULT_CHARSET);
+    try {
+      storage.downloadUserFile(USER_ID, FILE_NAME1, "No such encoding");
+      fail("Unsupported encoding accepted");
+    } catch (RuntimeException e) {
+      // This encoding is not supported
+      assertTrue(e.getCause() instanceof UnsupportedEncodingException);
+    }
+  }
+
+  public void testBlobFiles() throws BlocksTruncatedException {
+    final String USER_ID = "1300";
+    final String USER_EMAIL = "newuser1300@test.com";
+    storage.getUser(USER_ID, USER_EMAIL);
+    long projectId = createProject(
+        USER_ID, PROJECT_NAME, YoungAndroidProjectNode.YOUNG_ANDROID_PROJECT_TYPE,
+        FORM_QUALIFIED_NAME);
+    storage.addSourceFilesToProject(USER_ID, projectId, false, ASSET_FILE_NAME1);
+    storage.uploadRawFile(projectId, ASSET_FILE_NAME1, USER_ID, true, ASSET_FILE_CONTENT1);
+    storage.addSourceFilesToProject(USER_ID, projectId, false, BLOCK_FILE_NAME);
+    storage.uploadRawFile(projectId, BLOCK_FILE_NAME, USER_ID, true, BLOCK_FILE_CONTENT);
+    storage.addOutputFilesToProject(USER_ID, projectId, APK_FILE_NAME1);
+    storage.uploadRawFile(projectId, APK_FILE_NAME1, USER_ID, true, APK_FILE_CONTENT);
+
+    assertTrue(storage.getProjectSourceFiles(USER_ID, projectId).contains(ASSET_FILE_NAME1));
+    assertTrue(storage.getProjectOutputFiles(USER_ID, projectId).contains(APK_FILE_NAME1));
+    assertTrue(Arrays.equals(ASSET_FILE_CONTENT1,
+        storage.downloadRawFile(USER_ID, projectId, ASSET_FILE_NAME1)));
+    assertTrue(Arrays.equals(APK_FILE_CONTENT,
+        storage.downloadRawFile(USER_ID, projectId, APK_FILE_NAME1)));
+    assertTrue(Arrays.equals(BLOCK_FILE_CONTENT,
+        storage.downloadRawFile(USER_ID, projectId, BLOCK_FILE_NAME)));
+
+    storage.removeSourceFilesFromProject(USER_ID, projectId, false, ASSET_FILE_NAME1);
+    storage.removeOutputFilesFromProject(USER_ID, projectId, APK_FILE_NAME1);
+    storage.removeSourceFilesFromProject(USER_ID, projectId, false, BLOCK_FILE_NAME);
+    assertFalse(storage.getProjectSourceFiles(USER_ID, projectId).contains(ASSET_FILE_NAME1));
+    assertFalse(storage.getProjectOutputFiles(USER_ID, projectId).contains(APK_FILE_NAME1));
+    assertFalse(storage.getProjectOutputFiles(USER_ID, projectId).contains(BLOCK_FILE_NAME));
+  }
+
+  public void testGetProjectSourceFileHashes() throws BlocksTruncatedException {
+    final String USER_ID = "1335";
+    final String USER_EMAIL = "newuser1335@test.com";
+    storage.getUser(USER_ID, USER_EMAIL);
+    long projectId = createProject(USER_ID, PROJECT_NAME, FAKE_PROJECT_TYPE, FORM_QUALIFIED_NAME);
+    storage.addSourceFilesToProject(USER_ID, projectId, false, ASSET_FILE_NAME1, BKY_FILE_NAME1);
+    storage.uploadRawFile(projectId, ASSET_FILE_NAME1, USER_ID, true, ASSET_FILE_CONTENT1);
+    storage.uploadFile(projectId, BKY_FILE_NAME1, USER_ID, FILE_CONTENT2,
+        StorageUtil.DEFAULT_CHARSET);
+    storage.addOutputFilesToProject(USER_ID, projectId, "assets/" + FILE_NAME_OUTPUT);
+
+    // Only source files with the prefix are listed
+    Map<String, String> hashes = storage.getProjectSourceFileHashes(USER_ID, projectId, "assets/");
+    assertEquals(1, hashes.size());
+    assertEquals(Hashing.sha256().hashBytes(ASSET_FILE_CONTENT1).toString(),
+        hashes.get(ASSET_FILE_NAME1));
+
+    storage.uploadRawFile(projectId, ASSET_FILE_NAME1, USER_ID, true, RAW_FILE_CONTENT3);
+    assertEquals(Hashing.sha256().hashBytes(RAW_FILE_CONTENT3).toString(),
+        storage.getProjectSourceFileHashes(USER_ID, projectId, "assets/").get(ASSET_FILE_NAME1));
+  }
+
+  public void testGetProjectList() throws Exception {
+    final String USER_ID = "1340";
+    final String USER_EMAIL = "newuser1340@test.com";
+    storage.getUser(USER_ID, USER_EMAIL);
+    long projectId1 = createProject(USER_ID, PROJECT_NAME,
+        YoungAndroidProjectNode.YOUNG_ANDROID_PROJECT_TYPE, FORM_QUALIFIED_NAME);
+    long projectId2 = createProject(USER_ID, PROJECT_NAME + "2",
+        YoungAndroidProjectNode.YOUNG_ANDROID_PROJECT_TYPE, FORM_QUALIFIED_NAME);
+
+    List<UserProject> projects = storage.getProjectList(USER_ID, 0);
+    assertEquals(2, projects.size());
+    for (UserProject project : projects) {
+      assertEquals(storage.getProjectName(USER_ID, project.getProjectId()),
+          project.getProjectName());
+      assertEquals(storage.getProjectDateCreated(USER_ID, project.getProjectId()),
+          project.getDateCreated());
+      assertFalse(project.isInTrash());
+    }
+
+    // Only the entries changed since are returned
+    Thread.sleep(5);
+    long since = System.currentTimeMillis();
+    Thread.sleep(5);
+    storage.setMoveToTrashFlag(USER_ID, projectId2, true);
+    projects = storage.getProjectList(USER_ID, since);
+    assertEquals(1, projects.size());
+    assertEquals(projectId2, projects.get(0).getProjectId());
+    assertTrue(projects.get(0).isInTrash());
+
+    storage.addSourceFilesToProject(USER_ID, projectId1, false, FILE_NAME1);
+    storage.uploadFile(projectId1, FILE_NAME1, USER_ID, FILE_CONTENT1,
+        StorageUtil.DEFAULT_CHARSET);
+    for (UserProject project : storage.getProjectList(USER_ID, 0)) {
+      assertEquals(storage.getProjectDateModified(USER_ID, project.getProjectId()),
+          project.getDateModified());
+    }
+  }
+
+  public void testGetProjectListPage() throws Exception {
+    final String USER_ID = "1350";
+    final String USER_EMAIL = "newuser1350@test.com";
+    storage.getUser(USER_ID, USER_EMAIL);
+    long projectIdB = createProject(USER_ID, "b", YoungAndroidProjectNode.YOUNG_ANDROID_PROJECT_TYPE,
+        FORM_QUALIFIED_NAME);
+    Thread.sleep(5);
+    long projectIdA = createProject(USER_ID, "A", YoungAndroidProjectNode.YOUNG_ANDROID_PROJECT_TYPE,
+        FORM_QUALIFIED_NAME);
+    Thread.sleep(5);
+    long projectIdC = createProject(USER_ID, "c", YoungAndroidProjectNode.YOUNG_ANDROID_PROJECT_TYPE,
+        FORM_QUALIFIED_NAME);
+
+    ProjectListPage page = storage.getProjectListPage(USER_ID, ProjectListPage.SORT_BY_NAME,
+        true, 0, 2);
+    assertEquals(3, page.getTotalCount());
+    assertNull(page.getProjectIds());
+    assertEquals(2, page.getProjects().size());
+    assertEquals(projectIdA, page.getProjects().get(0).getProjectId());
+    assertEquals(projectIdB, page.getProjects().get(1).getProjectId());
+    page = storage.getProjectListPage(USER_ID, ProjectListPage.SORT_BY_NAME, true, 2, 2);
+    assertEquals(1, page.getProjects().size());
+    assertEquals(projectIdC, page.getProjects().get(0).getProjectId());
+
+    page = storage.getProjectListPage(USER_ID, ProjectListPage.SORT_BY_DATE_CREATED, false,
+        0, 3);
+    assertEquals(projectIdC, page.getProjects().get(0).getProjectId());
+    assertEquals(projectIdA, page.getProjects().get(1).getProjectId());
+    assertEquals(projectIdB, page.getProjects().get(2).getProjectId());
+  }
+
+  public void testGetProjectListChanges() throws Exception {
+    final String USER_ID = "1360";
+    final String USER_EMAIL = "newuser1360@test.com";
+    storage.getUser(USER_ID, USER_EMAIL);
+    long projectId1 = createProject(USER_ID, PROJECT_NAME,
+        YoungAndroidProjectNode.YOUNG_ANDROID_PROJECT_TYPE, FORM_QUALIFIED_NAME);
+    long projectId2 = createProject(USER_ID, PROJECT_NAME + "2",
+        YoungAndroidProjectNode.YOUNG_ANDROID_PROJECT_TYPE, FORM_QUALIFIED_NAME);
+
+    Thread.sleep(5);
+    long since = System.currentTimeMillis();
+    Thread.sleep(5);
+    storage.setMoveToTrashFlag(USER_ID, projectId2, true);
+    ProjectListPage changes = storage.getProjectListChanges(USER_ID, since);
+    assertEquals(1, changes.getProjects().size());
+    assertEquals(projectId2, changes.getProjects().get(0).getProjectId());
+    assertTrue(changes.getProjects().get(0).isInTrash());
+    // All of the projects are listed, whether they changed or not
+    assertEquals(2, changes.getTotalCount());
+    assertTrue(changes.getProjectIds().contains(projectId1));
+    assertTrue(changes.getProjectIds().contains(projectId2));
+    assertTrue(changes.getTimestamp() >= since);
+  }
+
+  public void testGetProject() {
+    final String USER_ID = "1400";
+    final String USER_EMAIL = "newuser1400@test.com";
+    storage.getUser(USER_ID, USER_EMAIL);
+    long projectId = createProject(USER_ID, PROJECT_NAME, FAKE_PROJECT_TYPE, FORM_QUALIFIED_NAME);
+    UserProject result = storage.getUserProject(USER_ID, projectId);
+    assertEquals(projectId, result.getProjectId());
+    assertEquals(PROJECT_NAME, result.getProjectName());
+    assertEquals(FAKE_PROJECT_TYPE, result.getProjectType());
+  }
+
+  public void testGetProject_withNonexistentProject() {
+    final String USER_ID = "1500";
+    final String USER_EMAIL = "newuser1500@test.com";
+    storage.getUser(USER_ID, USER_EMAIL);
+    long projectId = createProject(USER_ID, PROJECT_NAME, FAKE_PROJECT_TYPE, FORM_QUALIFIED_NAME);
+    long nonExistentProjectId = (projectId + 10);
+    assertNull(storage.getUserProject(USER_ID, nonExistentProjectId));
+  }
+
+  public void testWrongUserThrowsException() throws Exception {
+    final String USER_ID = "1600";
+    final String USER_EMAIL = "newuser1600@test.com";
+    final String USER_ID2 = "1700";
+    storage.getUser(USER_ID, USER_EMAIL);
+
+    long projectId = storage.createProject(USER_ID, project, SETTINGS);
+    assertTrue(Arrays.equals(RAW_FILE_CONTENT1,
+        storage.downloadRawFile(USER_ID, projectId, RAW_FILE_NAME1)));
+    try {
+      storage.downloadRawFile(USER_ID2, projectId, RAW_FILE_NAME1);
+      fail();
+    } catch (Exception e) {
+      assertTrue(e instanceof UnauthorizedAccessException
+                 || e.getCause() instanceof UnauthorizedAccessException);
+    }
+  }
+
+  public void testTempFiles() throws Exception {
+    String fileName = storage.uploadTempFile("test\n".getBytes(Charsets.UTF_8));
+    BufferedReader reader = new BufferedReader(new InputStreamReader(storage.openTempFile(fileName),
+        Charsets.UTF_8));
+    assertTrue(reader.readLine().equals("test"));
+    reader.close();
+    storage.deleteTempFile(fileName);
+    try {
+      storage.deleteTempFile("frob"); // Should fail because doesn't start with __TEMP__
+      fail();
+    } catch (Exception e) {
+      assertTrue(e instanceof RuntimeException);
+    }
+  }
+
+  public void testExportProjectZip() throws BlocksTruncatedException, IOException {
+    final String USER_ID = "1800";
+    final String USER_EMAIL = "newuser1800@test.com";
+    storage.getUser(USER_ID, USER_EMAIL);
+    long projectId = createProject(USER_ID, PROJECT_NAME, FAKE_PROJECT_TYPE, FORM_QUALIFIED_NAME);
+    uploadScreen(USER_ID, projectId, SCM_FILE_NAME1, BKY_FILE_NAME1, YAIL_FILE_NAME1);
+    uploadScreen(USER_ID, projectId, SCM_FILE_NAME2, BKY_FILE_NAME2, YAIL_FILE_NAME2);
+    ProjectSourceZip zipFile = storage.exportProjectSourceZip(USER_ID, projectId, false,
+            /* includeAndroidKeystore */ true,
+            "project_" + projectId + ".aia", true, false, true, false);
+    assertEquals(7, zipFile.getFileCount());
+  }
+
+  public void testExportProjectZipNoSCM() throws BlocksTruncatedException, IOException {
+    final String USER_ID = "1900";
+    final String USER_EMAIL = "newuser1900@test.com";
+    storage.getUser(USER_ID, USER_EMAIL);
+    long projectId = createProject(USER_ID, PROJECT_NAME, FAKE_PROJECT_TYPE, FORM_QUALIFIED_NAME);
+    uploadScreen(USER_ID, projectId, SCM_FILE_NAME1, BKY_FILE_NAME1, YAIL_FILE_NAME1);
+    uploadScreen(USER_ID, projectId, null, BKY_FILE_NAME2, YAIL_FILE_NAME2);
+    List<String> sourcesFiles = storage.getProjectSourceFiles(USER_ID, projectId);
+    assertTrue(sourcesFiles.contains(YAIL_FILE_NAME2));
+    ProjectSourceZip zipFile = storage.exportProjectSourceZip(USER_ID, projectId, false,
+            /* includeAndroidKeystore */ true,
+            "project_" + projectId + ".aia", true, false, true, false);
+    assertEquals(4, zipFile.getFileCount());
+    sourcesFiles = storage.getProjectSourceFiles(USER_ID, projectId);
+    assertFalse(sourcesFiles.contains(YAIL_FILE_NAME2));
+  }
+
+  /**
+   * Adds and saves the files of a screen. A null file name leaves that file
+   * out.
+   */
+  protected void uploadScreen(String userId, long projectId, String scm, String bky,
+      String yail) throws BlocksTruncatedException {
+    for (String fileName : new String[] { scm, bky, yail }) {
+      if (fileName != null) {
+        storage.addSourceFilesToProject(userId, projectId, false, fileName);
+        storage.uploadFile(projectId, fileName, userId,
+            fileName.endsWith(".bky") ? FILE_CONTENT2 : FILE_CONTENT1,
+            StorageUtil.DEFAULT_CHARSET);
+      }
+    }
+  }
+
+  protected long createProject(String userId, String name, String type, String fileName) {
+    return createProject(userId, name, type, fileName, storage);
+  }
+
+  protected long createProject(String userId, String name, String type, String fileName,
+                               StorageIo storageIo) {
+    Project project = new Project(name);
+    project.setProjectType(type);
+    project.addTextFile(new TextFile(fileName, ""));
+    return storageIo.createProject(userId, project, SETTINGS);
+  }
+}
@@ -0,0 +1,114 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.server.util;
+
+import com.google.common.io.ByteStreams;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for {@link ZipWriter}.
+ *
+ */
+public class ZipWriterTest extends TestCase {
+  private static final byte[] TEXT = repeat("<block type=\"text\"></block>", 500);
+  private static final byte[] BINARY = { (byte) 0, (byte) 1, (byte) 32, (byte) 255 };
+
+  public void testEntriesReadBack() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ZipWriter out = new ZipWriter(bytes);
+    out.putEntry("src/Screen1.bky", TEXT);
+    out.putGzipEntry("src/Screen1.scm", gzip(TEXT));
+    out.putEntry("assets/kitty.jpg", BINARY);
+    out.putEntry("empty", new byte[0]);
+    out.close();
+
+    ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    assertEntry(in, "src/Screen1.bky", TEXT);
+    assertEntry(in, "src/Screen1.scm", TEXT);
+    assertEntry(in, "assets/kitty.jpg", BINARY);
+    assertEntry(in, "empty", new byte[0]);
+    assertNull(in.getNextEntry());
+  }
+
+  public void testCentralDirectory() throws IOException {
+    File file = File.createTempFile("zipwriter", ".zip");
+    try {
+      ZipWriter out = new ZipWriter(new FileOutputStream(file));
+      out.setComment("Built with MIT App Inventor");
+      out.putGzipEntry("src/Screen1.bky", gzip(TEXT));
+      out.putEntry("src/Screen1.scm", TEXT);
+      out.close();
+
+      ZipFile zip = new ZipFile(file);
+      try {
+        assertEquals(2, zip.size());
+        assertEquals("Built with MIT App Inventor", zip.getComment());
+        ZipEntry entry = zip.getEntry("src/Screen1.bky");
+        assertEquals(TEXT.length, entry.getSize());
+        assertTrue(Arrays.equals(TEXT, ByteStreams.toByteArray(zip.getInputStream(entry))));
+      } finally {
+        zip.close();
+      }
+    } finally {
+      file.delete();
+    }
+  }
+
+  public void testGzipWithHeaderFields() throws IOException {
+    // A gzip member with a file name, as gzip(1) writes
+    byte[] plain = gzip(TEXT);
+    byte[] named = new byte[plain.length + 6];
+    System.arraycopy(plain, 0, named, 0, 10);
+    named[3] = 8;  // FNAME
+    System.arraycopy("a.txt\0".getBytes(StandardCharsets.US_ASCII), 0, named, 10, 6);
+    System.arraycopy(plain, 10, named, 16, plain.length - 10);
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ZipWriter out = new ZipWriter(bytes);
+    out.putGzipEntry("named", named);
+    out.close();
+
+    ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    assertEntry(in, "named", TEXT);
+  }
+
+  private static void assertEntry(ZipInputStream in, String name, byte[] content)
+      throws IOException {
+    ZipEntry entry = in.getNextEntry();
+    assertNotNull(entry);
+    assertEquals(name, entry.getName());
+    assertTrue(Arrays.equals(content, ByteStreams.toByteArray(in)));
+  }
+
+  private static byte[] gzip(byte[] content) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    GZIPOutputStream out = new GZIPOutputStream(bytes);
+    out.write(content);
+    out.close();
+    return bytes.toByteArray();
+  }
+
+  private static byte[] repeat(String text, int count) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < count; i++) {
+      sb.append(text);
+    }
+    return sb.toString().getBytes(StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,53 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.shared.rpc.project;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for TextDelta.
+ */
+public class TextDeltaTest extends TestCase {
+  public void testComputeAndApply() throws Exception {
+    String[][] pairs = {
+        {"", ""},
+        {"", "abc"},
+        {"abc", ""},
+        {"<xml><block id=\"1\"/></xml>", "<xml><block id=\"1\"/><block id=\"2\"/></xml>"},
+        {"aaaa", "aa"},
+        {"aa", "aaaa"},
+        {"abcdef", "abXYef"},
+        {"same", "same"},
+    };
+    for (String[] pair : pairs) {
+      TextDelta delta = TextDelta.compute(pair[0], pair[1]);
+      assertEquals(pair[1], delta.apply(pair[0]));
+      assertEquals(TextDelta.version(pair[1]), delta.getVersion());
+    }
+  }
+
+  public void testDeltaIsSmall() throws Exception {
+    TextDelta delta = TextDelta.compute("abcdef", "abXYef");
+    assertEquals(2, delta.getPrefixLength());
+    assertEquals(2, delta.getSuffixLength());
+    assertEquals("XY", delta.getReplacement());
+    assertEquals(6, delta.getLength());
+  }
+
+  public void testApplyToOtherContent() throws Exception {
+    TextDelta delta = TextDelta.compute("abcdef", "abXYef");
+    try {
+      delta.apply("abc");
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  public void testVersion() throws Exception {
+    assertEquals("d41d8cd98f00b204e9800998ecf8427e", TextDelta.version(""));
+    assertFalse(TextDelta.version("a").equals(TextDelta.version("b")));
+  }
+}
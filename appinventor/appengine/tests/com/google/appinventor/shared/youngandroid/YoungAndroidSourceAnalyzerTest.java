@@ -314,4 +314,21 @@ public class YoungAndroidSourceAnalyzerTest extends TestCase {
     assertEquals("1", label1Properties.get("$Version").asString().getString());
     assertEquals("Text\nfor\nLabel1", label1Properties.get("Text").asString().getString());
   }
+
+  public void testGetJsonSection() {
+    assertEquals("{\"Source\":\"Form\",\"YaVersion\":\"1\",\"Properties\":{\"$Version\":\"1\"," +
+        "\"$Type\":\"Form\",\"$Name\":\"Screen1\",\"Title\":\"Screen1\"}}",
+        YoungAndroidSourceAnalyzer.getJsonSection(COMPLETE_FILE_FORM));
+
+    // The $Properties section of an old file is skipped
+    assertEquals(YoungAndroidSourceAnalyzer.getJsonSection(COMPLETE_FILE_FORM_WITH_CONTAINER),
+        YoungAndroidSourceAnalyzer.getJsonSection(OLD_COMPLETE_FILE_FORM_WITH_CONTAINER));
+
+    try {
+      YoungAndroidSourceAnalyzer.getJsonSection("#|\n$Properties\n|#");
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
 }
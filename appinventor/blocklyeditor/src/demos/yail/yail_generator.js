@@ -0,0 +1,80 @@
+// -*- mode: javascript; js-indent-level: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+/**
+ * PhantomJS script that generates YAIL on behalf of the App Inventor server,
+ * see com.google.appinventor.server.project.youngandroid.YailGenerator.
+ *
+ *   phantomjs yail_generator.js <blocks language version> <YaVersion>
+ *
+ * The script loads yail_testing_index.html, as the generator tests do, and
+ * then reads requests from standard input, one JSON object per line with the
+ * members form (the $JSON section of a .scm file), blocks (the content of the
+ * .bky file) and packageName. It answers each with one line on standard
+ * output, holding a JSON object with either a yail or an error member. The
+ * page is loaded only once, and the workspace is emptied after each request.
+ */
+
+var fs = require('fs'); //Always required to read from files
+var system = require('system');
+var args = system.args;
+
+var pagePath = fs.absolute(args[0]).replace(/[^\/]*$/, '') + 'yail_testing_index.html';
+
+var page = require('webpage').create();
+// Standard output carries the responses, so anything else goes to standard error
+page.onConsoleMessage = function (msg) { system.stderr.writeLine(msg); };
+page.onError = function (msg, trace) {
+  system.stderr.writeLine(msg);
+  trace.forEach(function(item) {
+    system.stderr.writeLine('  ' + item.file + ':' + item.line);
+  })
+}
+
+page.open(pagePath, function(status) {
+  if (status != 'success') {
+    system.stderr.writeLine('Unable to load ' + pagePath);
+    phantom.exit(1);
+    return;
+  }
+
+  page.evaluate(function(blocksVersion, yaVersion) {
+    processVersion(blocksVersion, yaVersion);
+  }, args[1], args[2]);
+
+  // Requests are never empty, so an empty line means the server has closed our input
+  var line;
+  while ((line = system.stdin.readLine())) {
+    var request = JSON.parse(line);
+    var response = page.evaluate(function(form, blocks, packageName) {
+      var removeComponents = function(componentJsonObj) {
+        Blockly.mainWorkspace.removeComponent(componentJsonObj.Uuid);
+        if (componentJsonObj.$Components) {
+          for (var i = 0, comp; comp = componentJsonObj.$Components[i]; i++) {
+            removeComponents(comp);
+          }
+        }
+      };
+      try {
+        processForm(form);
+        processBlocks(form, blocks);
+        return {yail: Blockly.Yail.getFormYail(formJson, packageName, false,
+            Blockly.mainWorkspace)};
+      } catch (e) {
+        return {error: String(e)};
+      } finally {
+        try {
+          Blockly.mainWorkspace.clear();
+          removeComponents(JSON.parse(form).Properties);
+        } catch (e) {
+          // The form could not be parsed, so none of its components were added
+        }
+      }
+    }, request.form, request.blocks, request.packageName);
+    system.stdout.writeLine(JSON.stringify(response));
+    system.stdout.flush();
+  }
+  phantom.exit();
+});
@@ -312,6 +312,9 @@ Blockly.ReplMgr.putYail = (function() {
     var webrtcisopen = false;
     var webrtcforcestop = false;
     var webrtcdata;
+    var wsconn;                 // WebSocket to the Companion's HTTPD, see websocketstart
+    var wsstarting = false;
+    var wsrunning = false;
     var seennonce = {};
     var fixchrome89 = function(desc) {
         var sdp = desc.sdp;
@@ -527,6 +530,51 @@ Blockly.ReplMgr.putYail = (function() {
               poll();
             }, 5000);           // Wait 5 seconds for Rendezvous server to gather all ice candidates
         },
+        // Opens a WebSocket to the Companion, used in place of one POST per
+        // evaluation and the long poll for return values. Code is sent as
+        // soon as it is queued, and the Companion combines whatever arrives
+        // while it is busy. If the socket cannot be opened, or is lost, we
+        // fall back to HTTP.
+        'websocketstart' : function() {
+            var mac = Blockly.ReplMgr.hmac('_repl' + rs.seq_count);
+            var url = rs.url.replace(/^http/, 'ws').replace('/_newblocks', '/_repl') +
+                '?seq=' + rs.seq_count + '&mac=' + mac;
+            var fallback = function() {
+                wsconn = null;
+                wsstarting = false;
+                wsrunning = false;
+                rs.phoneState.websocket = false;
+                if (rs.phoneState.initialized) {
+                    engine.pollphone(); // Continue over HTTP
+                }
+            };
+            try {
+                wsconn = new WebSocket(url);
+            } catch (err) {
+                console.log("websocket: " + err);
+                fallback();
+                return;
+            }
+            wsconn.onopen = function() {
+                console.log("websocket open");
+                rs.seq_count += 1;
+                wsrunning = true;
+                wsstarting = false;
+                engine.pollphone();
+            };
+            wsconn.onmessage = function(ev) {
+                var json = goog.json.parse(ev.data);
+                if (json.status == 'OK') {
+                    context.processRetvals(json.values);
+                }
+            };
+            wsconn.onclose = function() {
+                console.log("websocket closed");
+                if (wsconn) {
+                    fallback();
+                }
+            };
+        },
         'chunker' : (function() {
             var seq = 0;
             var gensym = function() {
@@ -569,7 +617,7 @@ Blockly.ReplMgr.putYail = (function() {
             }
             var blockid;
             var sendcode;
-            if (!phonereceiving && !top.usewebrtc) {
+            if (!phonereceiving && !top.usewebrtc && !rs.phoneState.websocket) {
                 engine.receivefromphone();
             }
             var work;
@@ -634,7 +682,32 @@ Blockly.ReplMgr.putYail = (function() {
                 rs.phoneState.ioRunning = false;
                 return;
             }
-            // We only get here if we are not using webrtc
+            if (rs.phoneState.websocket) {
+                if (!wsrunning) {
+                    if (!wsstarting) {
+                        wsstarting = true;
+                        engine.websocketstart(); // Calls pollphone once open
+                    }
+                    return;
+                }
+                // Send everything queued without waiting, results come back
+                // on the same socket
+                while ((work = rs.phoneState.phoneQueue.shift())) {
+                    if (!work.block) {
+                        blockid = -1;
+                    } else {
+                        blockid = '"' + work.block.id + '"';
+                    }
+                    wsconn.send("(begin (require <com.google.youngandroid.runtime>) (process-repl-input " +
+                        blockid + " (begin " + work.code + ")))");
+                    if (work.success) {
+                        work.success();
+                    }
+                }
+                rs.phoneState.ioRunning = false;
+                return;
+            }
+            // We only get here if we are not using webrtc or a websocket
             if (top.loadAll) {
                 var chunk;
                 var allcode = "";
@@ -754,6 +827,8 @@ Blockly.ReplMgr.putYail = (function() {
                             engine.checkversionupgrade(false, json.installer, false);
                             return;
                         }
+                        // Newer Companions accept a WebSocket for the REPL
+                        rs.phoneState.websocket = !!json.websocket && !!window.WebSocket;
                         if (!json.fqcn) {
                             // Set a compatibility flag to indicate that we
                             // should trim package names from Component blocks
@@ -817,6 +892,13 @@ Blockly.ReplMgr.putYail = (function() {
                 webrtcrunning = false;
                 webrtcstarting = false;
             }
+            if (wsconn) {
+                var ws = wsconn;
+                wsconn = null;  // So that onclose does not fall back to HTTP
+                ws.close();
+            }
+            wsstarting = false;
+            wsrunning = false;
             if (rxhr) {
                 rxhr.abort();
             }
@@ -1109,6 +1191,11 @@ Blockly.ReplMgr.processRetvals = function(responses) {
         case "assetTransferred":
             top.AssetManager_markAssetTransferred(r.value);
             break;
+        case "assetsSynced":
+            console.log("Asset sync: " + r.value.fetched + " of " + r.value.total +
+                " assets fetched (" + r.value.bytes + " bytes), " + r.value.skipped +
+                " unchanged, " + r.value.failed + " failed, in " + r.value.millis + " ms");
+            break;
         case "extensionsLoaded":
             rs.state = Blockly.ReplMgr.rsState.CONNECTED;
             Blockly.mainWorkspace.fireChangeListener(new AI.Events.CompanionConnect());
@@ -1490,6 +1577,8 @@ Blockly.ReplMgr.getFromRendezvous = function() {
                 var getstarted = function() {
                     if (json.webrtc && json.webrtc == "true") { // We are the webRTC Companion
                         top.usewebrtc = true;
+                        // Current Companions can sync all of the assets in one request
+                        rs.assetsync = Blockly.ReplMgr.acceptableVersion(json.version);
                         rs.state = me.rsState.ASSET;
                         me.putYail(); // This starts the whole negotiation process!
                         return;         // And we are done here.
@@ -1706,6 +1795,29 @@ Blockly.ReplMgr.getCookie = function() {
     return cookie;
 };
 
+// Ask the Companion to bring the named assets up to date with the
+// server. The Companion only downloads the assets whose content has
+// changed since it last fetched them, and reports each one with an
+// "assetTransferred" return value. Only used with webrtc. Returns
+// false if the Companion is too old, in which case the caller should
+// use putAsset for each asset instead.
+
+Blockly.ReplMgr.putAssets = function(projectid, filenames) {
+    if (top.ReplState === undefined || !top.ReplState.assetsync)
+        return false;
+    if (top.ReplState.state != this.rsState.ASSET && top.ReplState.state != this.rsState.CONNECTED)
+        return false;           // We didn't really do anything
+    var uri = window.location.origin;
+    var cookie = this.getCookie();
+    var assets = JSON.stringify(filenames).replace(/\\/g, '\\\\').replace(/"/g, '\\"');
+    var yail = "(AssetFetcher:syncAssets \"" + cookie + "\" \"" + projectid +
+        "\" \"" + uri + "\" \"" + assets + "\")";
+    this.putYail();             // This sets up the internal context variable
+                                // inside of the Closure for putYail and friends
+    this.putYail.putAsset(yail);
+    return true;
+};
+
 Blockly.ReplMgr.putAsset = function(projectid, filename, blob, success, fail, force) {
     if (top.ReplState === undefined)
         return false;
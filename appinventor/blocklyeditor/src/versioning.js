@@ -1147,7 +1147,12 @@ Blockly.Versioning.AllUpgradeMaps =
     3: "noUpgrade",
 
     // AI2: LegacyMode property was added.
-    4: "noUpgrade"
+    4: "noUpgrade",
+
+    // AI2: The EventInterval, BatchSize, WindowSize and LowPassFactor properties, the
+    // WindowMean, WindowMinimum, WindowMaximum, WindowRMS and LowPass methods and the
+    // SamplesReceived event were added.
+    5: "noUpgrade"
 
   }, // End Accelerometer upgraders
 
@@ -1224,6 +1229,18 @@ Blockly.Versioning.AllUpgradeMaps =
 
   }, // End BarcodeScanner upgraders
 
+  "Barometer": {
+
+    // This is initial version. Placeholder for future upgrades
+    1: "noUpgrade",
+
+    // AI2: The EventInterval, BatchSize, WindowSize and LowPassFactor properties, the
+    // WindowMean, WindowMinimum, WindowMaximum, WindowRMS and LowPass methods and the
+    // SamplesReceived event were added.
+    2: "noUpgrade"
+
+  }, // End Barometer upgraders
+
   "BluetoothClient": {
 
     // AI1: The BluetoothClient.Enabled property was added.
@@ -1251,7 +1268,11 @@ Blockly.Versioning.AllUpgradeMaps =
 
     // The BluetoothClient.DisconnectOnError property was added.
     // No blocks need to be modified to upgrade to version 5.
-    6: "noUpgrade"
+    6: "noUpgrade",
+
+    // The StartReceiving, StopReceiving and DecodeFrame methods and DataReceived event were added.
+    // No blocks need to be modified to upgrade to version 7.
+    7: "noUpgrade"
 
   }, // End BluetoothClient upgraders
 
@@ -1277,7 +1298,11 @@ Blockly.Versioning.AllUpgradeMaps =
 
     // The BluetoothServer.Secure property was added.
     // No blocks need to be modified to upgrade to version 5.
-    5: "noUpgrade"
+    5: "noUpgrade",
+
+    // The StartReceiving, StopReceiving and DecodeFrame methods and DataReceived event were added.
+    // No blocks need to be modified to upgrade to version 6.
+    6: "noUpgrade"
 
   }, // End BluetoothServer upgraders
 
@@ -1394,7 +1419,15 @@ Blockly.Versioning.AllUpgradeMaps =
 
     //  BackgroundImageinBase64 was added
     // No blocks need to be modified to upgrade to version 13.
-    13: "noUpgrade"
+    13: "noUpgrade",
+
+    // FrameTime was added
+    // No blocks need to be modified to upgrade to version 14.
+    14: "noUpgrade",
+
+    // DrawPoints, DrawLines, GetBackgroundPixels and SetBackgroundPixels were added
+    // No blocks need to be modified to upgrade to version 15.
+    15: "noUpgrade"
 
   }, // End Canvas upgraders
 
@@ -1560,7 +1593,12 @@ Blockly.Versioning.AllUpgradeMaps =
   "GyroscopeSensor": {
 
     // This is initial version. Placeholder for future upgrades
-    1: "noUpgrade"
+    1: "noUpgrade",
+
+    // AI2: The EventInterval, BatchSize, WindowSize and LowPassFactor properties, the
+    // WindowMean, WindowMinimum, WindowMaximum, WindowRMS and LowPass methods and the
+    // SamplesReceived event were added.
+    2: "noUpgrade"
 
   }, // End GyroscopeSensor upgraders
 
@@ -1582,6 +1620,18 @@ Blockly.Versioning.AllUpgradeMaps =
 
   }, // End HorizontalScrollArrangement upgraders
 
+  "Hygrometer": {
+
+    // This is initial version. Placeholder for future upgrades
+    1: "noUpgrade",
+
+    // AI2: The EventInterval, BatchSize, WindowSize and LowPassFactor properties, the
+    // WindowMean, WindowMinimum, WindowMaximum, WindowRMS and LowPass methods and the
+    // SamplesReceived event were added.
+    2: "noUpgrade"
+
+  }, // End Hygrometer upgraders
+
   "Image": {
 
     //This is initial version. Placeholder for future upgrades
@@ -1838,6 +1888,18 @@ Blockly.Versioning.AllUpgradeMaps =
   }, // End Language upgraders
 
 
+  "LightSensor": {
+
+    // This is initial version. Placeholder for future upgrades
+    1: "noUpgrade",
+
+    // AI2: The EventInterval, BatchSize, WindowSize and LowPassFactor properties, the
+    // WindowMean, WindowMinimum, WindowMaximum, WindowRMS and LowPass methods and the
+    // SamplesReceived event were added.
+    2: "noUpgrade"
+
+  }, // End LightSensor upgraders
+
   "ListPicker": {
 
     // AI1: The Alignment property was renamed to TextAlignment.
@@ -1886,7 +1948,11 @@ Blockly.Versioning.AllUpgradeMaps =
     4: "noUpgrade",
     // AI2:
     // - Added SelectionColor Property
-    5: "noUpgrade"
+    5: "noUpgrade",
+
+    // AI2:
+    // - Added AddItem, AddItemAtIndex, RemoveItemAtIndex and UpdateItemAtIndex methods
+    6: "noUpgrade"
 
   }, // End ListView upgraders
 
@@ -1901,6 +1967,18 @@ Blockly.Versioning.AllUpgradeMaps =
 
   }, // End LocationSensor upgraders
 
+  "MagneticFieldSensor": {
+
+    // This is initial version. Placeholder for future upgrades
+    1: "noUpgrade",
+
+    // AI2: The EventInterval, BatchSize, WindowSize and LowPassFactor properties, the
+    // WindowMean, WindowMinimum, WindowMaximum, WindowRMS and LowPass methods and the
+    // SamplesReceived event were added.
+    2: "noUpgrade"
+
+  }, // End MagneticFieldSensor upgraders
+
   "Map": {
 
     // AI2:
@@ -2128,7 +2206,12 @@ Blockly.Versioning.AllUpgradeMaps =
         changeFirstMatchingSocketBlockConnectorLabel(block, "yaw", "azimuth");
       }
     */
-    2: "ai1CantDoUpgrade" // Just indicates we couldn't do upgrade even if we wanted to
+    2: "ai1CantDoUpgrade", // Just indicates we couldn't do upgrade even if we wanted to
+
+    // AI2: The EventInterval, BatchSize, WindowSize and LowPassFactor properties, the
+    // WindowMean, WindowMinimum, WindowMaximum, WindowRMS and LowPass methods and the
+    // SamplesReceived event were added.
+    3: "noUpgrade"
 
   }, // End OrientationSensor upgraders
 
@@ -2359,6 +2442,14 @@ Blockly.Versioning.AllUpgradeMaps =
 
   }, // End Screen
 
+  "Serial": {
+
+    // The StartReceiving, StopReceiving and DecodeFrame methods and DataReceived event were added.
+    // No blocks need to be modified to upgrade to version 2.
+    2: "noUpgrade"
+
+  }, // End Serial upgraders
+
   "Sharing": {
 
     //This is initial version. Placeholder for future upgrades
@@ -2390,7 +2481,11 @@ Blockly.Versioning.AllUpgradeMaps =
             "Please use the Screen.ErrorOccurred event instead.");
       }
     */
-    3: "ai1CantDoUpgrade" // Just indicates we couldn't do upgrade even if we wanted to
+    3: "ai1CantDoUpgrade", // Just indicates we couldn't do upgrade even if we wanted to
+
+    // AI2: The Sound.PlayLatency property was added.
+    // No blocks need to be modified to upgrade to version 4.
+    4: "noUpgrade"
 
   }, // End Sound upgraders
 
@@ -2492,6 +2587,18 @@ Blockly.Versioning.AllUpgradeMaps =
 
   }, // End TextToSpeech upgraders
 
+  "Thermometer": {
+
+    // This is initial version. Placeholder for future upgrades
+    1: "noUpgrade",
+
+    // AI2: The EventInterval, BatchSize, WindowSize and LowPassFactor properties, the
+    // WindowMean, WindowMinimum, WindowMaximum, WindowRMS and LowPass methods and the
+    // SamplesReceived event were added.
+    2: "noUpgrade"
+
+  }, // End Thermometer upgraders
+
   "TimePicker": {
 
     // AI2: After feedback from the forum, the timepicker dialog was updated
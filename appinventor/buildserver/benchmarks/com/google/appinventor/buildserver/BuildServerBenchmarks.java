@@ -0,0 +1,408 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.buildserver;
+
+import com.google.appinventor.buildserver.util.AARLibraries;
+import com.google.appinventor.components.common.ComponentDescriptorConstants;
+import com.google.common.collect.Sets;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+
+import com.android.ide.common.internal.PngCruncher;
+
+import org.kohsuke.args4j.CmdLineException;
+import org.kohsuke.args4j.CmdLineParser;
+import org.kohsuke.args4j.Option;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Microbenchmarks for the CPU-bound stages of a build that run inside the build server process,
+ * as opposed to the external tools (Kawa, dx, aapt, apksigner) that run in child processes.
+ *
+ * <p>The benchmarks operate on a synthetic project with a configurable number of components so
+ * that results are repeatable between runs and machines. Run them with:</p>
+ *
+ * <pre>
+ *   ant BuildServerBenchmarks [-Dbenchmark.filter=Icon]
+ * </pre>
+ */
+public final class BuildServerBenchmarks {
+
+  static class CommandLineOptions {
+    @Option(name = "--filter",
+        usage = "Only run benchmarks whose name contains this string.")
+    String filter = "";
+
+    @Option(name = "--warmup",
+        usage = "Number of warmup iterations.")
+    int warmupIterations = 5;
+
+    @Option(name = "--iterations",
+        usage = "Number of measurement iterations.")
+    int measurementIterations = 10;
+
+    @Option(name = "--iterationMs",
+        usage = "Duration of each iteration, in milliseconds.")
+    long iterationMillis = 1000;
+
+    @Option(name = "--components",
+        usage = "Number of components on the synthetic screen.")
+    int components = 200;
+  }
+
+  private static final String PACKAGE = "appinventor.ai_benchmark.Benchmark";
+  private static final String RUNTIME_PACKAGE = "com.google.appinventor.components.runtime.";
+  private static final String[] COMPONENT_TYPES = {
+    "Button", "Label", "TextBox", "Image", "Canvas", "ImageSprite", "Clock", "TinyDB", "Sound",
+    "Web", "ListView", "HorizontalArrangement", "VerticalArrangement"
+  };
+  private static final PrintStream NULL_STREAM = new PrintStream(ByteStreams.nullOutputStream());
+
+  private final File projectRoot;
+  private final File propertiesFile;
+  private final File screenScm;
+  private final File screenBky;
+  private final File buildDir;
+  private final Set<String> componentTypes = Sets.newHashSet();
+  private final Map<String, Set<String>> componentBlocks = new HashMap<>();
+
+  private BuildServerBenchmarks(int components) throws IOException {
+    projectRoot = Files.createTempDir();
+    File srcDir = new File(projectRoot, "src/" + PACKAGE.replace('.', '/'));
+    File assetsDir = new File(projectRoot, "assets");
+    File propsDir = new File(projectRoot, "youngandroidproject");
+    buildDir = new File(projectRoot, "build");
+    for (File dir : Arrays.asList(srcDir, assetsDir, propsDir, buildDir)) {
+      if (!dir.mkdirs()) {
+        throw new IOException("Unable to create " + dir);
+      }
+    }
+    propertiesFile = new File(propsDir, "project.properties");
+    Files.write("main=" + PACKAGE + ".Screen1\n"
+        + "name=Benchmark\n"
+        + "assets=../assets\n"
+        + "source=../src\n"
+        + "build=../build\n"
+        + "icon=icon.png\n"
+        + "versioncode=1\n"
+        + "versionname=1.0\n"
+        + "theme=AppTheme.Light.DarkActionBar\n"
+        + "color.primary=&HFF3F51B5\n"
+        + "color.primary.dark=&HFF303F9F\n"
+        + "color.accent=&HFFFF4081\n", propertiesFile, StandardCharsets.UTF_8);
+    screenScm = new File(srcDir, "Screen1.scm");
+    Files.write(generateScm(components), screenScm, StandardCharsets.UTF_8);
+    screenBky = new File(srcDir, "Screen1.bky");
+    Files.write(generateBky(components), screenBky, StandardCharsets.UTF_8);
+    ImageIO.write(generateIcon(512), "png", new File(assetsDir, "icon.png"));
+    componentTypes.add(RUNTIME_PACKAGE + "Form");
+    for (String type : COMPONENT_TYPES) {
+      componentTypes.add(RUNTIME_PACKAGE + type);
+    }
+    componentBlocks.putAll(ProjectBuilder.getComponentBlocks(
+        Arrays.asList(screenScm.getAbsolutePath(), screenBky.getAbsolutePath())));
+  }
+
+  private static String generateScm(int components) {
+    StringBuilder sb = new StringBuilder();
+    sb.append("#|\n$JSON\n{\"authURL\":[\"localhost\"],\"YaVersion\":\"208\",\"Source\":\"Form\",");
+    sb.append("\"Properties\":{\"$Name\":\"Screen1\",\"$Type\":\"Form\",\"$Version\":\"27\",");
+    sb.append("\"AppName\":\"Benchmark\",\"Title\":\"Screen1\",\"Uuid\":\"0\",\"$Components\":[");
+    for (int i = 0; i < components; i++) {
+      String type = COMPONENT_TYPES[i % COMPONENT_TYPES.length];
+      if (i > 0) {
+        sb.append(',');
+      }
+      sb.append("{\"$Name\":\"").append(type).append(i).append("\",\"$Type\":\"").append(type)
+          .append("\",\"$Version\":\"1\",\"Uuid\":\"").append(i + 1)
+          .append("\",\"Width\":\"-2\",\"Visible\":\"True\"}");
+    }
+    sb.append("]}}\n|#\n");
+    return sb.toString();
+  }
+
+  private static String generateBky(int components) {
+    StringBuilder sb = new StringBuilder();
+    sb.append("<xml xmlns=\"http://www.w3.org/1999/xhtml\">");
+    for (int i = 0; i < components; i++) {
+      String type = COMPONENT_TYPES[i % COMPONENT_TYPES.length];
+      sb.append("<block type=\"component_event\" id=\"e").append(i).append("\"")
+          .append(i % 10 == 9 ? " disabled=\"true\"" : "").append(" x=\"0\" y=\"0\">")
+          .append("<mutation component_type=\"").append(type)
+          .append("\" is_generic=\"false\" instance_name=\"").append(type).append(i)
+          .append("\" event_name=\"Click\"></mutation>")
+          .append("<field name=\"COMPONENT_SELECTOR\">").append(type).append(i).append("</field>")
+          .append("<statement name=\"DO\">")
+          .append("<block type=\"component_set_get\" id=\"s").append(i).append("\">")
+          .append("<mutation component_type=\"").append(type)
+          .append("\" set_or_get=\"set\" property_name=\"Visible\" is_generic=\"false\"")
+          .append(" instance_name=\"").append(type).append(i).append("\"></mutation>")
+          .append("<field name=\"COMPONENT_SELECTOR\">").append(type).append(i).append("</field>")
+          .append("<value name=\"VALUE\"><block type=\"logic_boolean\" id=\"b").append(i)
+          .append("\"><field name=\"BOOL\">TRUE</field></block></value>")
+          .append("<next><block type=\"component_method\" id=\"m").append(i).append("\">")
+          .append("<mutation component_type=\"").append(type)
+          .append("\" method_name=\"Refresh\" is_generic=\"false\" instance_name=\"")
+          .append(type).append(i).append("\"></mutation></block></next>")
+          .append("</block></statement></block>");
+    }
+    sb.append("<yacodeblocks ya-version=\"208\" language-version=\"33\"></yacodeblocks></xml>");
+    return sb.toString();
+  }
+
+  private static BufferedImage generateIcon(int size) {
+    BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+    Graphics2D g = image.createGraphics();
+    g.setPaint(new GradientPaint(0, 0, Color.ORANGE, size, size, Color.BLUE));
+    g.fillRect(0, 0, size, size);
+    g.setColor(Color.WHITE);
+    g.fillOval(size / 4, size / 4, size / 2, size / 2);
+    g.dispose();
+    return image;
+  }
+
+  private Compiler newCompiler() {
+    Project project = new Project(propertiesFile.getAbsolutePath());
+    return new Compiler(project, componentTypes, componentBlocks, NULL_STREAM, NULL_STREAM,
+        NULL_STREAM, false, false, false, 2048, null, null);
+  }
+
+  private static File newDir(File parent, String name) {
+    File dir = new File(parent, name);
+    dir.mkdirs();
+    return dir;
+  }
+
+  private static void deleteRecursively(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        deleteRecursively(child);
+      }
+    }
+    file.delete();
+  }
+
+  private List<MicroBenchmark> createBenchmarks() throws IOException {
+    final String scmContent = Files.toString(screenScm, StandardCharsets.UTF_8);
+    final String bkyContent = Files.toString(screenBky, StandardCharsets.UTF_8);
+    final List<String> sourceFiles =
+        Arrays.asList(screenScm.getAbsolutePath(), screenBky.getAbsolutePath());
+    final File assetsDir = new File(projectRoot, "assets");
+    final File resDir = newDir(buildDir, "res");
+    final List<Integer> standardSizes = Arrays.asList(48, 72, 96, 144, 192);
+    final List<Integer> foregroundSizes = Arrays.asList(108, 162, 216, 324, 432);
+    final List<File> mipmapDirs = new ArrayList<>();
+    for (String density : new String[] { "mdpi", "hdpi", "xhdpi", "xxhdpi", "xxxhdpi" }) {
+      mipmapDirs.add(newDir(resDir, "mipmap-" + density));
+    }
+    final File drawableDir = newDir(resDir, "drawable");
+    final File valuesDir = newDir(resDir, "values");
+
+    List<MicroBenchmark> benchmarks = new ArrayList<>();
+    benchmarks.add(new MicroBenchmark("FormPropertiesAnalyzer.getComponentBlocksFromBlocksFile") {
+      @Override
+      protected Object run() {
+        return FormPropertiesAnalyzer.getComponentBlocksFromBlocksFile(bkyContent);
+      }
+    });
+    benchmarks.add(new MicroBenchmark("FormPropertiesAnalyzer.getComponentBlocksFromSchemeFile") {
+      @Override
+      protected Object run() {
+        return FormPropertiesAnalyzer.getComponentBlocksFromSchemeFile(scmContent);
+      }
+    });
+    benchmarks.add(new MicroBenchmark("ProjectBuilder.getComponentBlocks") {
+      @Override
+      protected Object run() throws Exception {
+        return ProjectBuilder.getComponentBlocks(sourceFiles);
+      }
+    });
+    benchmarks.add(new MicroBenchmark("ProjectBuilder.createNameTypeMap") {
+      @Override
+      protected Object run() throws Exception {
+        return ProjectBuilder.createNameTypeMap(assetsDir);
+      }
+    });
+    benchmarks.add(new MicroBenchmark("Compiler.loadJsonInfo") {
+      private Compiler compiler;
+
+      @Override
+      protected void setUp() {
+        compiler = newCompiler();
+      }
+
+      @Override
+      protected Object run() throws Exception {
+        ConcurrentHashMap<String, Set<String>> info = new ConcurrentHashMap<>();
+        compiler.loadJsonInfo(info, ComponentDescriptorConstants.PERMISSIONS_TARGET);
+        return info;
+      }
+    });
+    benchmarks.add(new MicroBenchmark("Compiler.writeAndroidManifest") {
+      private Compiler compiler;
+      private File manifest;
+
+      @Override
+      protected void setUp() {
+        compiler = newCompiler();
+        compiler.generateAssets();
+        compiler.generateActivities();
+        compiler.generateMetadata();
+        compiler.generateActivityMetadata();
+        compiler.generateBroadcastReceivers();
+        compiler.generateServices();
+        compiler.generateContentProviders();
+        compiler.generateLibNames();
+        compiler.generateNativeLibNames();
+        compiler.generatePermissions();
+        compiler.generateMinSdks();
+        compiler.generateBroadcastReceiver();
+        manifest = new File(buildDir, "AndroidManifest.xml");
+      }
+
+      @Override
+      protected Object run() {
+        return compiler.writeAndroidManifest(manifest);
+      }
+    });
+    benchmarks.add(new MicroBenchmark("Compiler.createValuesXml") {
+      private Compiler compiler;
+
+      @Override
+      protected void setUp() {
+        compiler = newCompiler();
+      }
+
+      @Override
+      protected Object run() {
+        return compiler.createValuesXml(valuesDir, "");
+      }
+    });
+    benchmarks.add(new MicroBenchmark("Compiler.prepareApplicationIcon") {
+      private Compiler compiler;
+      private File output;
+
+      @Override
+      protected void setUp() {
+        compiler = newCompiler();
+        output = new File(drawableDir, "ya.png");
+      }
+
+      @Override
+      protected Object run() {
+        return compiler.prepareApplicationIcon(output, mipmapDirs, standardSizes,
+            foregroundSizes);
+      }
+    });
+    benchmarks.add(new MicroBenchmark("Compiler.resizeImage") {
+      private Compiler compiler;
+      private BufferedImage icon;
+
+      @Override
+      protected void setUp() {
+        compiler = newCompiler();
+        icon = compiler.produceRoundIcon(generateIcon(512));
+      }
+
+      @Override
+      protected Object run() {
+        return compiler.resizeImage(icon, 192, 192);
+      }
+    });
+    benchmarks.add(new MicroBenchmark("AARLibraries.mergeResources") {
+      private File mergedDir;
+      private PngCruncher cruncher;
+
+      @Override
+      protected void setUp() throws IOException {
+        // Populate the main resource directory the same way the compiler does before merging.
+        Compiler compiler = newCompiler();
+        compiler.createValuesXml(valuesDir, "");
+        compiler.prepareApplicationIcon(new File(drawableDir, "ya.png"), mipmapDirs,
+            standardSizes, foregroundSizes);
+        mergedDir = newDir(buildDir, "intermediates/res/merged");
+        // Copy PNGs rather than invoking aapt so that only the in-process merge is measured.
+        cruncher = new PngCruncher() {
+          @Override
+          public int start() {
+            return 0;
+          }
+
+          @Override
+          public void crunchPng(int key, File from, File to) {
+            try {
+              Files.copy(from, to);
+            } catch (IOException e) {
+              throw new IllegalStateException(e);
+            }
+          }
+
+          @Override
+          public void end(int key) {
+          }
+        };
+      }
+
+      @Override
+      protected Object run() {
+        AARLibraries libraries =
+            new AARLibraries(new File(buildDir, "generated/src"));
+        return libraries.mergeResources(mergedDir, resDir, cruncher);
+      }
+    });
+    return benchmarks;
+  }
+
+  /**
+   * Main entry point.
+   *
+   * @param args command line arguments
+   */
+  public static void main(String[] args) throws Exception {
+    CommandLineOptions options = new CommandLineOptions();
+    CmdLineParser cmdLineParser = new CmdLineParser(options);
+    try {
+      cmdLineParser.parseArgument(args);
+    } catch (CmdLineException e) {
+      System.err.println(e.getMessage());
+      cmdLineParser.printUsage(System.err);
+      System.exit(1);
+    }
+
+    BuildServerBenchmarks suite = new BuildServerBenchmarks(options.components);
+    try {
+      System.out.println("Warmup: " + options.warmupIterations + " x " + options.iterationMillis
+          + " ms, measurement: " + options.measurementIterations + " x "
+          + options.iterationMillis + " ms, components: " + options.components);
+      for (MicroBenchmark benchmark : suite.createBenchmarks()) {
+        if (benchmark.getName().contains(options.filter)) {
+          benchmark.execute(System.out, options.warmupIterations, options.measurementIterations,
+              options.iterationMillis);
+        }
+      }
+    } finally {
+      deleteRecursively(suite.projectRoot);
+    }
+  }
+}
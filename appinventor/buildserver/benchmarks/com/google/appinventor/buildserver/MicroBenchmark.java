@@ -0,0 +1,105 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.buildserver;
+
+import java.io.PrintStream;
+import java.util.Locale;
+
+/**
+ * MicroBenchmark is a minimal harness for timing in-process build stages. Each benchmark is run
+ * for a number of warmup iterations, whose results are discarded, followed by a number of
+ * measurement iterations. Each iteration invokes {@link #run()} repeatedly for a fixed amount of
+ * wall clock time and records the average time per invocation. The mean and standard deviation
+ * over the measurement iterations are reported, similar to JMH's average time mode.
+ *
+ * <p>Subclasses should return a value derived from their work from {@link #run()} so that the
+ * JIT cannot eliminate it.</p>
+ */
+public abstract class MicroBenchmark {
+
+  /**
+   * Sink for benchmark results, used to defeat dead code elimination.
+   */
+  private static volatile int blackhole;
+
+  private final String name;
+
+  protected MicroBenchmark(String name) {
+    this.name = name;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Prepares any state needed by {@link #run()}. Not included in the measurement.
+   */
+  protected void setUp() throws Exception {
+  }
+
+  /**
+   * Performs a single operation to be measured.
+   *
+   * @return a value derived from the operation
+   */
+  protected abstract Object run() throws Exception;
+
+  /**
+   * Releases any state created by {@link #setUp()}. Not included in the measurement.
+   */
+  protected void tearDown() throws Exception {
+  }
+
+  /**
+   * Runs the benchmark and prints a summary line to {@code out}.
+   *
+   * @param out the stream to print the results to
+   * @param warmupIterations number of iterations to discard
+   * @param measurementIterations number of iterations to report
+   * @param iterationMillis duration of each iteration, in milliseconds
+   */
+  public void execute(PrintStream out, int warmupIterations, int measurementIterations,
+      long iterationMillis) throws Exception {
+    setUp();
+    try {
+      for (int i = 0; i < warmupIterations; i++) {
+        iteration(iterationMillis);
+      }
+      double[] results = new double[measurementIterations];
+      double sum = 0;
+      for (int i = 0; i < measurementIterations; i++) {
+        results[i] = iteration(iterationMillis);
+        sum += results[i];
+      }
+      double mean = sum / measurementIterations;
+      double variance = 0;
+      for (double result : results) {
+        variance += (result - mean) * (result - mean);
+      }
+      double stdev = measurementIterations > 1
+          ? Math.sqrt(variance / (measurementIterations - 1)) : 0;
+      out.println(String.format(Locale.US, "%-48s %14.3f +/- %10.3f us/op", name, mean / 1000.0,
+          stdev / 1000.0));
+    } finally {
+      tearDown();
+    }
+  }
+
+  private double iteration(long iterationMillis) throws Exception {
+    long deadline = System.nanoTime() + iterationMillis * 1000000L;
+    long operations = 0;
+    long start = System.nanoTime();
+    long now;
+    do {
+      Object result = run();
+      blackhole ^= result == null ? 0 : System.identityHashCode(result);
+      operations++;
+      now = System.nanoTime();
+    } while (now < deadline);
+    return (double) (now - start) / operations;
+  }
+}
@@ -17,17 +17,20 @@ import com.google.appinventor.components.common.YaVersion;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Charsets;
 import com.google.common.base.Strings;
+import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import com.google.common.hash.Hashing;
 import com.google.common.io.Files;
 import com.google.common.io.Resources;
 import java.awt.Graphics2D;
-import java.awt.Image;
+import java.awt.RenderingHints;
 import java.awt.geom.Ellipse2D;
 import java.awt.geom.RoundRectangle2D;
 import java.awt.image.BufferedImage;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -54,11 +57,14 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.zip.ZipEntry;
@@ -94,6 +100,22 @@ public final class Compiler {
   // Kawa and DX processes can use a lot of memory. We only launch one Kawa or DX process at a time.
   private static final Object SYNC_KAWA_OR_DX = new Object();
 
+  // Launcher icon rendering is CPU bound and split into independent tasks, so it gets its own
+  // small pool shared by all builds.
+  private static final ExecutorService ICON_EXECUTOR = Executors.newFixedThreadPool(
+      Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors())),
+      new ThreadFactory() {
+        private final ThreadFactory defaultFactory = Executors.defaultThreadFactory();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+          Thread thread = defaultFactory.newThread(runnable);
+          thread.setDaemon(true);
+          thread.setName("IconRenderer-" + thread.getName());
+          return thread;
+        }
+      });
+
   private static final String SLASH = File.separator;
   private static final String SLASHREGEX = File.separatorChar == '\\' ? "\\\\" : "/";
   private static final String COLON = File.pathSeparator;
@@ -114,6 +136,10 @@ public final class Compiler {
 
   private static final String DEFAULT_APP_NAME = "";
   private static final String DEFAULT_ICON = RUNTIME_FILES_DIR + "ya.png";
+  private static final String ICON_CACHE_DIR_NAME = "icons";
+  private static final String[] LAUNCHER_ICON_NAMES = {
+      "ic_launcher.png", "ic_launcher_round.png", "ic_launcher_foreground.png"
+  };
   private static final String DEFAULT_VERSION_CODE = "1";
   private static final String DEFAULT_VERSION_NAME = "1.0";
   private static final String DEFAULT_MIN_SDK = "7";
@@ -734,7 +760,8 @@ public final class Compiler {
     }
   }
 
-  private void generateMinSdks() {
+  @VisibleForTesting
+  void generateMinSdks() {
     try {
       loadJsonInfo(minSdksNeeded, ComponentDescriptorConstants.ANDROIDMINSDK_TARGET);
     } catch (IOException|JSONException e) {
@@ -845,7 +872,8 @@ public final class Compiler {
   /**
    * Create the default color and styling for the app.
    */
-  private boolean createValuesXml(File valuesDir, String suffix) {
+  @VisibleForTesting
+  boolean createValuesXml(File valuesDir, String suffix) {
     String colorPrimary = project.getPrimaryColor() == null ? "#A5CF47" : project.getPrimaryColor();
     String colorPrimaryDark = project.getPrimaryColorDark() == null ? "#41521C" : project.getPrimaryColorDark();
     String colorAccent = project.getAccentColor() == null ? "#00728A" : project.getAccentColor();
@@ -1004,7 +1032,8 @@ public final class Compiler {
   /*
    * Creates an AndroidManifest.xml file needed for the Android application.
    */
-  private boolean writeAndroidManifest(File manifestFile) {
+  @VisibleForTesting
+  boolean writeAndroidManifest(File manifestFile) {
     // Create AndroidManifest.xml
     String mainClass = project.getMainClass();
     String packageName = Signatures.getPackageName(mainClass);
@@ -2016,42 +2045,67 @@ public final class Compiler {
   /*
    * Returns a resized image given a new width and height
    */
-  private BufferedImage resizeImage(BufferedImage icon, int height, int width) {
-    Image tmp = icon.getScaledInstance(width, height, Image.SCALE_SMOOTH);
-    BufferedImage finalResized = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-    Graphics2D g2 = finalResized.createGraphics();
-    g2.drawImage(tmp, 0, 0, null);
-    return finalResized;
+  @VisibleForTesting
+  BufferedImage resizeImage(BufferedImage icon, int height, int width) {
+    return scaleImage(icon, width, height);
+  }
+
+  /*
+   * Scales an image using bilinear interpolation. When shrinking by more than a factor of two,
+   * the image is halved repeatedly so that every source pixel contributes to the result. This
+   * gives output comparable to Image.SCALE_SMOOTH (area averaging) at a fraction of the cost.
+   */
+  private static BufferedImage scaleImage(BufferedImage image, int width, int height) {
+    BufferedImage current = image;
+    int currentWidth = image.getWidth();
+    int currentHeight = image.getHeight();
+    do {
+      currentWidth = currentWidth > width ? Math.max(currentWidth / 2, width) : width;
+      currentHeight = currentHeight > height ? Math.max(currentHeight / 2, height) : height;
+      BufferedImage scaled = new BufferedImage(currentWidth, currentHeight,
+          BufferedImage.TYPE_INT_ARGB);
+      Graphics2D g2 = scaled.createGraphics();
+      g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+          RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+      g2.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+      g2.drawImage(current, 0, 0, currentWidth, currentHeight, null);
+      g2.dispose();
+      current = scaled;
+    } while (currentWidth != width || currentHeight != height);
+    return current;
   }
 
   /*
    * Creates the circle image of an icon
    */
-  private BufferedImage produceRoundIcon(BufferedImage icon) {
+  @VisibleForTesting
+  BufferedImage produceRoundIcon(BufferedImage icon) {
     int imageWidth = icon.getWidth();
     // Ratio of icon size to png image size for round icon is 0.80
     double iconWidth = imageWidth * 0.80;
     // Round iconWidth value to even int for a centered png
     int intIconWidth = ((int)Math.round(iconWidth / 2) * 2);
-    Image tmp = icon.getScaledInstance(intIconWidth, intIconWidth, Image.SCALE_SMOOTH);
+    BufferedImage tmp = scaleImage(icon, intIconWidth, intIconWidth);
     int marginWidth = ((imageWidth - intIconWidth) / 2);
     BufferedImage roundIcon = new BufferedImage(imageWidth, imageWidth, BufferedImage.TYPE_INT_ARGB);
     Graphics2D g2 = roundIcon.createGraphics();
     g2.setClip(new Ellipse2D.Float(marginWidth, marginWidth, intIconWidth, intIconWidth));
     g2.drawImage(tmp, marginWidth, marginWidth, null);
+    g2.dispose();
     return roundIcon;
   }
 
   /*
    * Creates the image of an icon with rounded corners
    */
-  private BufferedImage produceRoundedCornerIcon(BufferedImage icon) {
+  @VisibleForTesting
+  BufferedImage produceRoundedCornerIcon(BufferedImage icon) {
     int imageWidth = icon.getWidth();
     // Ratio of icon size to png image size for roundRect icon is 0.93
     double iconWidth = imageWidth * 0.93;
     // Round iconWidth value to even int for a centered png
     int intIconWidth = ((int)Math.round(iconWidth / 2) * 2);
-    Image tmp = icon.getScaledInstance(intIconWidth, intIconWidth, Image.SCALE_SMOOTH);
+    BufferedImage tmp = scaleImage(icon, intIconWidth, intIconWidth);
     int marginWidth = ((imageWidth - intIconWidth) / 2);
     // Corner radius of roundedCornerIcon needs to be 1/12 of width according to Android material guidelines
     float cornerRadius = intIconWidth / 12;
@@ -2059,73 +2113,233 @@ public final class Compiler {
     Graphics2D g2 = roundedCornerIcon.createGraphics();
     g2.setClip(new RoundRectangle2D.Float(marginWidth, marginWidth, intIconWidth, intIconWidth, cornerRadius, cornerRadius));
     g2.drawImage(tmp, marginWidth, marginWidth, null);
+    g2.dispose();
     return roundedCornerIcon;
   }
 
   /*
    * Creates the foreground image of an icon
    */
-  private BufferedImage produceForegroundImageIcon(BufferedImage icon) {
+  @VisibleForTesting
+  BufferedImage produceForegroundImageIcon(BufferedImage icon) {
     int imageWidth = icon.getWidth();
     // According to the adaptive icon documentation, both layers are 108x108dp but only the inner
     // 72x72dp appears in the masked viewport, so we shrink down the size of the image accordingly.
     double iconWidth = imageWidth * 72.0 / 108.0;
     // Round iconWidth value to even int for a centered png
     int intIconWidth = ((int)Math.round(iconWidth / 2) * 2);
-    Image tmp = icon.getScaledInstance(intIconWidth, intIconWidth, Image.SCALE_SMOOTH);
+    BufferedImage tmp = scaleImage(icon, intIconWidth, intIconWidth);
     int marginWidth = ((imageWidth - intIconWidth) / 2);
     BufferedImage foregroundImageIcon = new BufferedImage(imageWidth, imageWidth, BufferedImage.TYPE_INT_ARGB);
     Graphics2D g2 = foregroundImageIcon.createGraphics();
     g2.drawImage(tmp, marginWidth, marginWidth, null);
+    g2.dispose();
     return foregroundImageIcon;
   }
 
+  /*
+   * Writes an image as a PNG file on the icon executor.
+   */
+  private static Future<Boolean> writePngAsync(final BufferedImage image, final File file) {
+    return ICON_EXECUTOR.submit(new Callable<Boolean>() {
+      @Override
+      public Boolean call() throws IOException {
+        return ImageIO.write(image, "png", file);
+      }
+    });
+  }
+
+  /*
+   * Resizes an image and writes it as a PNG file on the icon executor.
+   */
+  private static Future<Boolean> resizeAndWritePngAsync(final BufferedImage image, final int size,
+      final File file) {
+    return ICON_EXECUTOR.submit(new Callable<Boolean>() {
+      @Override
+      public Boolean call() throws IOException {
+        return ImageIO.write(scaleImage(image, size, size), "png", file);
+      }
+    });
+  }
+
+  /*
+   * Renders the launcher icons for each mipmap directory. The variants and densities are
+   * independent, so they are produced in parallel on the icon executor.
+   */
+  private void renderApplicationIcon(final BufferedImage icon, File outputPngFile,
+      List<File> mipmapDirectories, List<Integer> standardICSizes,
+      List<Integer> foregroundICSizes) throws IOException, InterruptedException {
+    List<Future<Boolean>> pending = new ArrayList<>();
+    pending.add(writePngAsync(icon, outputPngFile));
+    Future<BufferedImage> roundIcon = ICON_EXECUTOR.submit(new Callable<BufferedImage>() {
+      @Override
+      public BufferedImage call() {
+        return produceRoundIcon(icon);
+      }
+    });
+    Future<BufferedImage> roundRectIcon = ICON_EXECUTOR.submit(new Callable<BufferedImage>() {
+      @Override
+      public BufferedImage call() {
+        return produceRoundedCornerIcon(icon);
+      }
+    });
+    Future<BufferedImage> foregroundIcon = ICON_EXECUTOR.submit(new Callable<BufferedImage>() {
+      @Override
+      public BufferedImage call() {
+        return produceForegroundImageIcon(icon);
+      }
+    });
+    try {
+      // For each mipmap directory, create all types of ic_launcher photos with respective mipmap sizes
+      for (int i = 0; i < mipmapDirectories.size(); i++) {
+        File mipmapDirectory = mipmapDirectories.get(i);
+        int standardSize = standardICSizes.get(i);
+        int foregroundSize = foregroundICSizes.get(i);
+        pending.add(resizeAndWritePngAsync(roundIcon.get(), standardSize,
+            new File(mipmapDirectory, "ic_launcher_round.png")));
+        pending.add(resizeAndWritePngAsync(roundRectIcon.get(), standardSize,
+            new File(mipmapDirectory, "ic_launcher.png")));
+        pending.add(resizeAndWritePngAsync(foregroundIcon.get(), foregroundSize,
+            new File(mipmapDirectory, "ic_launcher_foreground.png")));
+      }
+      for (Future<Boolean> result : pending) {
+        if (!result.get()) {
+          throw new IOException("No PNG writer available");
+        }
+      }
+    } catch (ExecutionException e) {
+      for (Future<Boolean> result : pending) {
+        result.cancel(true);
+      }
+      Throwables.propagateIfInstanceOf(e.getCause(), IOException.class);
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+
+  /*
+   * Returns the directory in which the rendered launcher icons for the given icon content and
+   * sizes are cached, or null if there is no cache directory.
+   */
+  private File getIconCacheDir(byte[] iconBytes, List<Integer> standardICSizes,
+      List<Integer> foregroundICSizes) {
+    if (dexCacheDir == null) {
+      return null;
+    }
+    String key = Hashing.md5().newHasher()
+        .putBytes(iconBytes)
+        .putString(standardICSizes + ";" + foregroundICSizes, Charsets.UTF_8)
+        .hash()
+        .toString();
+    return new File(new File(dexCacheDir, ICON_CACHE_DIR_NAME), key);
+  }
+
+  /*
+   * Copies the cached launcher icons into the build. Returns false if the cache is incomplete.
+   */
+  private static boolean copyCachedIcons(File cacheDir, File outputPngFile,
+      List<File> mipmapDirectories) throws IOException {
+    File cachedPng = new File(cacheDir, outputPngFile.getName());
+    if (!cachedPng.isFile()) {
+      return false;
+    }
+    for (int i = 0; i < mipmapDirectories.size(); i++) {
+      File cachedMipmapDir = new File(cacheDir, Integer.toString(i));
+      for (String name : LAUNCHER_ICON_NAMES) {
+        if (!new File(cachedMipmapDir, name).isFile()) {
+          return false;
+        }
+      }
+    }
+    Files.copy(cachedPng, outputPngFile);
+    for (int i = 0; i < mipmapDirectories.size(); i++) {
+      File cachedMipmapDir = new File(cacheDir, Integer.toString(i));
+      for (String name : LAUNCHER_ICON_NAMES) {
+        Files.copy(new File(cachedMipmapDir, name), new File(mipmapDirectories.get(i), name));
+      }
+    }
+    return true;
+  }
+
+  /*
+   * Stores the launcher icons just rendered into the build in the icon cache. The icons are
+   * first copied to a temporary directory that is then renamed so that concurrent builds never
+   * observe a partially written cache entry.
+   */
+  private static void cacheIcons(File cacheDir, File outputPngFile,
+      List<File> mipmapDirectories) {
+    File tempDir = new File(cacheDir.getParentFile(),
+        cacheDir.getName() + ".tmp" + Thread.currentThread().getId());
+    try {
+      cacheDir.getParentFile().mkdirs();
+      createDir(tempDir);
+      Files.copy(outputPngFile, new File(tempDir, outputPngFile.getName()));
+      for (int i = 0; i < mipmapDirectories.size(); i++) {
+        File cachedMipmapDir = createDir(tempDir, Integer.toString(i));
+        for (String name : LAUNCHER_ICON_NAMES) {
+          Files.copy(new File(mipmapDirectories.get(i), name), new File(cachedMipmapDir, name));
+        }
+      }
+      if (!tempDir.renameTo(cacheDir)) {
+        // Another build cached the same icon first.
+        deleteRecursively(tempDir);
+      }
+    } catch (IOException e) {
+      LOG.log(Level.WARNING, "Unable to cache launcher icons", e);
+      deleteRecursively(tempDir);
+    }
+  }
+
+  private static void deleteRecursively(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        deleteRecursively(child);
+      }
+    }
+    file.delete();
+  }
+
   /*
    * Loads the icon for the application, either a user provided one or the default one.
+   *
+   * Rendered launcher icons are cached in the dex cache directory, keyed by the content of the
+   * icon file and the requested sizes, so that builds of projects whose icon hasn't changed only
+   * copy the previous output.
    */
-  private boolean prepareApplicationIcon(File outputPngFile, List<File> mipmapDirectories, List<Integer> standardICSizes, List<Integer> foregroundICSizes) {
+  @VisibleForTesting
+  boolean prepareApplicationIcon(File outputPngFile, List<File> mipmapDirectories, List<Integer> standardICSizes, List<Integer> foregroundICSizes) {
     String userSpecifiedIcon = Strings.nullToEmpty(project.getIcon());
     try {
-      BufferedImage icon;
+      byte[] iconBytes;
       if (!userSpecifiedIcon.isEmpty()) {
         File iconFile = new File(project.getAssetsDirectory(), userSpecifiedIcon);
-        icon = ImageIO.read(iconFile);
-        if (icon == null) {
-          // This can happen if the iconFile isn't an image file.
-          // For example, icon is null if the file is a .wav file.
-          // TODO(lizlooney) - This happens if the user specifies a .ico file. We should
-          // fix that.
-          userErrors.print(String.format(ICON_ERROR, userSpecifiedIcon));
-          return false;
-        }
+        iconBytes = Files.toByteArray(iconFile);
       } else {
         // Load the default image.
-        icon = ImageIO.read(Compiler.class.getResource(DEFAULT_ICON));
+        iconBytes = Resources.toByteArray(Compiler.class.getResource(DEFAULT_ICON));
       }
 
-      BufferedImage roundIcon = produceRoundIcon(icon);
-      BufferedImage roundRectIcon = produceRoundedCornerIcon(icon);
-      BufferedImage foregroundIcon = produceForegroundImageIcon(icon);
-
-      // For each mipmap directory, create all types of ic_launcher photos with respective mipmap sizes
-      for(int i=0; i < mipmapDirectories.size(); i++){
-        File mipmapDirectory = mipmapDirectories.get(i);
-        Integer standardSize = standardICSizes.get(i);
-        Integer foregroundSize = foregroundICSizes.get(i);
-
-        BufferedImage round = resizeImage(roundIcon,standardSize,standardSize);
-        BufferedImage roundRect = resizeImage(roundRectIcon,standardSize,standardSize);
-        BufferedImage foreground = resizeImage(foregroundIcon,foregroundSize,foregroundSize);
+      File cacheDir = getIconCacheDir(iconBytes, standardICSizes, foregroundICSizes);
+      if (cacheDir != null && copyCachedIcons(cacheDir, outputPngFile, mipmapDirectories)) {
+        LOG.info("Using cached launcher icons from " + cacheDir.getName());
+        return true;
+      }
 
-        File roundIconPng = new File(mipmapDirectory,"ic_launcher_round.png");
-        File roundRectIconPng = new File(mipmapDirectory,"ic_launcher.png");
-        File foregroundPng = new File(mipmapDirectory,"ic_launcher_foreground.png");
+      BufferedImage icon = ImageIO.read(new ByteArrayInputStream(iconBytes));
+      if (icon == null) {
+        // This can happen if the iconFile isn't an image file.
+        // For example, icon is null if the file is a .wav file.
+        // TODO(lizlooney) - This happens if the user specifies a .ico file. We should
+        // fix that.
+        userErrors.print(String.format(ICON_ERROR, userSpecifiedIcon));
+        return false;
+      }
 
-        ImageIO.write(round, "png", roundIconPng);
-        ImageIO.write(roundRect, "png", roundRectIconPng);
-        ImageIO.write(foreground, "png", foregroundPng);
+      renderApplicationIcon(icon, outputPngFile, mipmapDirectories, standardICSizes,
+          foregroundICSizes);
+      if (cacheDir != null) {
+        cacheIcons(cacheDir, outputPngFile, mipmapDirectories);
       }
-      ImageIO.write(icon, "png", outputPngFile);
     } catch (Exception e) {
       e.printStackTrace();
       // If the user specified the icon, this is fatal.
@@ -2787,7 +3001,8 @@ public final class Compiler {
   /*
    *  Loads permissions and information on component libraries and assets.
    */
-  private void loadJsonInfo(ConcurrentMap<String, Set<String>> infoMap, String targetInfo)
+  @VisibleForTesting
+  void loadJsonInfo(ConcurrentMap<String, Set<String>> infoMap, String targetInfo)
       throws IOException, JSONException {
     synchronized (infoMap) {
       if (!infoMap.isEmpty()) {
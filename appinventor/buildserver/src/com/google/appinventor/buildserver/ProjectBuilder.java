@@ -279,7 +279,8 @@ public final class ProjectBuilder {
    * @throws IOException if any of the files named in {@code files} cannot be
    * read
    */
-  private static Map<String, Set<String>> getComponentBlocks(List<String> files)
+  @VisibleForTesting
+  static Map<String, Set<String>> getComponentBlocks(List<String> files)
       throws IOException {
     Map<String, Set<String>> result = new HashMap<>();
     for (String f : files) {
@@ -318,7 +319,8 @@ public final class ProjectBuilder {
    * ode to the corresponding type, aka fully qualified name. The type will be
    * used to build apk.
    */
-  private static Map<String, String> createNameTypeMap(File assetsDir)
+  @VisibleForTesting
+  static Map<String, String> createNameTypeMap(File assetsDir)
       throws IOException, JSONException {
     Map<String, String> nameTypeMap = Maps.newHashMap();
 
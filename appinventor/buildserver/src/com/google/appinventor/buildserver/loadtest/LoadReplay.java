@@ -0,0 +1,479 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.buildserver.loadtest;
+
+import com.google.common.io.ByteStreams;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.kohsuke.args4j.CmdLineException;
+import org.kohsuke.args4j.CmdLineParser;
+import org.kohsuke.args4j.Option;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * LoadReplay replays a corpus of App Inventor project archives (.aia or source .zip files)
+ * against a running {@link com.google.appinventor.buildserver.BuildServer} using the
+ * {@code build-all-from-zip-async} endpoint, the same way the App Engine server does.
+ *
+ * <p>A stub callback receiver is started on a local port to collect progress reports and
+ * build results. Requests are issued at a configurable arrival rate with a bound on the number
+ * of requests outstanding at any time. At the end of the run a report is printed with the
+ * throughput, rejection rate, latency distributions for each progress milestone and for the
+ * complete build, the peak heap usage observed via {@code /buildserver/vars}, and the per-stage
+ * statistics collected by the server's {@code /buildserver/stats} page.</p>
+ *
+ * <p>Run the build server with the {@code --maxSimultaneousBuilds} and
+ * {@code --childProcessRamMb} settings under evaluation, then point this tool at it, e.g.:</p>
+ *
+ * <pre>
+ *   ant RunLoadReplay -Dcorpus.dir=$HOME/aia-corpus -Dconcurrency=8 -Drate=0.5
+ * </pre>
+ */
+public final class LoadReplay {
+
+  static class CommandLineOptions {
+    @Option(name = "--corpusDir", required = true,
+        usage = "Directory containing the .aia/.zip projects to replay.")
+    File corpusDir;
+
+    @Option(name = "--buildServerUrl",
+        usage = "Base URL of the build server under test.")
+    String buildServerUrl = "http://localhost:9990/buildserver";
+
+    @Option(name = "--callbackPort",
+        usage = "Port for the local stub callback receiver.")
+    int callbackPort = 9991;
+
+    @Option(name = "--concurrency",
+        usage = "Maximum number of builds outstanding at any time.")
+    int concurrency = 4;
+
+    @Option(name = "--rate",
+        usage = "Arrival rate in requests per second. 0 means as fast as concurrency allows.")
+    double rate = 0;
+
+    @Option(name = "--requests",
+        usage = "Total number of requests to issue. 0 means one pass over the corpus.")
+    int requests = 0;
+
+    @Option(name = "--timeoutSecs",
+        usage = "Maximum number of seconds to wait for an accepted build to call back.")
+    int timeoutSecs = 600;
+
+    @Option(name = "--pollMs",
+        usage = "Interval in milliseconds for sampling the server's memory usage.")
+    int pollMs = 1000;
+
+    @Option(name = "--ext",
+        usage = "Build type to request, apk or aab.")
+    String ext = "apk";
+
+    @Option(name = "--userName",
+        usage = "User name passed to the build server.")
+    String userName = "loadreplay";
+  }
+
+  // Logging support
+  private static final Logger LOG = Logger.getLogger(LoadReplay.class.getName());
+
+  private static final Pattern HTML_VAR = Pattern.compile("<b>([^<]+)</b> ([^<]*)<br>");
+
+  /**
+   * Timing information gathered for a single replayed build.
+   */
+  static class BuildTrace {
+    final int id;
+    final String project;
+    long submitted;
+    long accepted;
+    long finished;
+    int status;
+    boolean succeeded;
+    final Map<Integer, Long> progress = new ConcurrentHashMap<>();
+    final CountDownLatch done = new CountDownLatch(1);
+
+    BuildTrace(int id, String project) {
+      this.id = id;
+      this.project = project;
+    }
+  }
+
+  /**
+   * A list of latency samples with simple order statistics.
+   */
+  static class Distribution {
+    private final List<Long> samples = new ArrayList<>();
+
+    synchronized void add(long value) {
+      samples.add(value);
+    }
+
+    synchronized int count() {
+      return samples.size();
+    }
+
+    synchronized long percentile(double p) {
+      if (samples.isEmpty()) {
+        return 0;
+      }
+      List<Long> sorted = new ArrayList<>(samples);
+      Collections.sort(sorted);
+      int index = (int) Math.ceil(p / 100.0 * sorted.size()) - 1;
+      return sorted.get(Math.max(0, Math.min(index, sorted.size() - 1)));
+    }
+
+    synchronized double mean() {
+      if (samples.isEmpty()) {
+        return 0;
+      }
+      double sum = 0;
+      for (long sample : samples) {
+        sum += sample;
+      }
+      return sum / samples.size();
+    }
+
+    void print(PrintStream out, String name) {
+      out.printf("  %-28s n=%-5d mean=%8.0f p50=%7d p90=%7d p99=%7d max=%7d (ms)%n",
+          name, count(), mean(), percentile(50), percentile(90), percentile(99),
+          percentile(100));
+    }
+  }
+
+  private final CommandLineOptions options;
+  private final Map<Integer, BuildTrace> traces = new ConcurrentHashMap<>();
+  private final AtomicInteger rejected = new AtomicInteger(0);
+  private final AtomicInteger errors = new AtomicInteger(0);
+  private final AtomicInteger timedOut = new AtomicInteger(0);
+  private final AtomicLong peakHeap = new AtomicLong(0);
+  private final AtomicInteger peakActive = new AtomicInteger(0);
+  private volatile boolean running = true;
+
+  LoadReplay(CommandLineOptions options) {
+    this.options = options;
+  }
+
+  /**
+   * Main entry point.
+   *
+   * @param args command line arguments
+   */
+  public static void main(String[] args) throws Exception {
+    CommandLineOptions options = new CommandLineOptions();
+    CmdLineParser cmdLineParser = new CmdLineParser(options);
+    try {
+      cmdLineParser.parseArgument(args);
+    } catch (CmdLineException e) {
+      System.err.println(e.getMessage());
+      cmdLineParser.printUsage(System.err);
+      System.exit(1);
+    }
+    new LoadReplay(options).run(System.out);
+    System.exit(0);
+  }
+
+  void run(PrintStream out) throws Exception {
+    File[] corpus = options.corpusDir.listFiles(new FilenameFilter() {
+      @Override
+      public boolean accept(File dir, String name) {
+        return name.endsWith(".aia") || name.endsWith(".zip");
+      }
+    });
+    if (corpus == null || corpus.length == 0) {
+      throw new IOException("No .aia or .zip files found in " + options.corpusDir);
+    }
+    Arrays.sort(corpus);
+    int total = options.requests > 0 ? options.requests : corpus.length;
+
+    HttpServer callbackServer = HttpServer.create(
+        new InetSocketAddress(options.callbackPort), 0);
+    callbackServer.createContext("/callback/", new CallbackHandler());
+    callbackServer.setExecutor(Executors.newCachedThreadPool());
+    callbackServer.start();
+
+    Thread sampler = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        while (running) {
+          sampleServerVars();
+          try {
+            Thread.sleep(options.pollMs);
+          } catch (InterruptedException e) {
+            return;
+          }
+        }
+      }
+    }, "LoadReplay-sampler");
+    sampler.setDaemon(true);
+    sampler.start();
+
+    final Semaphore outstanding = new Semaphore(Math.max(1, options.concurrency));
+    ExecutorService submitters = Executors.newCachedThreadPool();
+    long intervalNanos = options.rate > 0 ? (long) (1e9 / options.rate) : 0;
+    long start = System.currentTimeMillis();
+    long nextArrival = System.nanoTime();
+    for (int i = 0; i < total; i++) {
+      if (intervalNanos > 0) {
+        long delay = nextArrival - System.nanoTime();
+        if (delay > 0) {
+          TimeUnit.NANOSECONDS.sleep(delay);
+        }
+        nextArrival += intervalNanos;
+      }
+      outstanding.acquire();
+      final BuildTrace trace = new BuildTrace(i, corpus[i % corpus.length].getName());
+      final File project = corpus[i % corpus.length];
+      traces.put(trace.id, trace);
+      submitters.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            submitAndWait(trace, project);
+          } finally {
+            outstanding.release();
+          }
+        }
+      });
+    }
+    submitters.shutdown();
+    submitters.awaitTermination(options.timeoutSecs + 60L, TimeUnit.SECONDS);
+    long elapsed = System.currentTimeMillis() - start;
+    running = false;
+    sampleServerVars();
+    callbackServer.stop(0);
+    ((ExecutorService) callbackServer.getExecutor()).shutdownNow();
+    report(out, total, elapsed);
+  }
+
+  private void submitAndWait(BuildTrace trace, File project) {
+    try {
+      String callback = "http://localhost:" + options.callbackPort + "/callback/" + trace.id;
+      URL url = new URL(options.buildServerUrl + "/build-all-from-zip-async"
+          + "?uname=" + URLEncoder.encode(options.userName, "UTF-8")
+          + "&callback=" + URLEncoder.encode(callback, "UTF-8")
+          + "&ext=" + URLEncoder.encode(options.ext, "UTF-8"));
+      trace.submitted = System.currentTimeMillis();
+      HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+      connection.setDoOutput(true);
+      connection.setRequestMethod("POST");
+      // Match the content type used by YoungAndroidProjectService.build
+      connection.addRequestProperty("Content-Type", "application/zip; charset=utf-8");
+      connection.setConnectTimeout(60000);
+      connection.setReadTimeout(60000);
+      try (InputStream in = new BufferedInputStream(new FileInputStream(project));
+           OutputStream os = new BufferedOutputStream(connection.getOutputStream())) {
+        ByteStreams.copy(in, os);
+      }
+      trace.status = connection.getResponseCode();
+      trace.accepted = System.currentTimeMillis();
+      if (trace.status != HttpURLConnection.HTTP_OK) {
+        if (trace.status == HttpURLConnection.HTTP_UNAVAILABLE
+            || trace.status == HttpURLConnection.HTTP_FORBIDDEN) {
+          rejected.incrementAndGet();
+        } else {
+          errors.incrementAndGet();
+        }
+        LOG.info("Build " + trace.id + " (" + trace.project + ") rejected with status "
+            + trace.status);
+        return;
+      }
+      if (!trace.done.await(options.timeoutSecs, TimeUnit.SECONDS)) {
+        timedOut.incrementAndGet();
+        LOG.warning("Build " + trace.id + " (" + trace.project + ") timed out");
+      }
+    } catch (IOException e) {
+      errors.incrementAndGet();
+      LOG.warning("Build " + trace.id + " (" + trace.project + ") failed: " + e.getMessage());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Receives the zip files posted back by the build server. A zip containing a
+   * {@code build.status} entry is a progress report; a zip containing {@code build.out}
+   * is the final result.
+   */
+  private class CallbackHandler implements HttpHandler {
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+      long now = System.currentTimeMillis();
+      try {
+        String path = exchange.getRequestURI().getPath();
+        BuildTrace trace = traces.get(Integer.parseInt(path.substring(path.lastIndexOf('/') + 1)));
+        byte[] body = ByteStreams.toByteArray(exchange.getRequestBody());
+        if (trace != null) {
+          handleZip(trace, body, now);
+        }
+      } catch (NumberFormatException e) {
+        LOG.warning("Unexpected callback " + exchange.getRequestURI());
+      } finally {
+        exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, -1);
+        exchange.close();
+      }
+    }
+
+    private void handleZip(BuildTrace trace, byte[] body, long now) throws IOException {
+      ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(body));
+      try {
+        ZipEntry entry;
+        while ((entry = zip.getNextEntry()) != null) {
+          if (entry.getName().equals("build.status")) {
+            String value = new String(ByteStreams.toByteArray(zip), "UTF-8").trim();
+            try {
+              Integer progress = Integer.valueOf(value);
+              if (!trace.progress.containsKey(progress)) {
+                trace.progress.put(progress, now);
+              }
+            } catch (NumberFormatException e) {
+              LOG.warning("Bad progress value " + value);
+            }
+          } else if (entry.getName().equals("build.out")) {
+            String json = new String(ByteStreams.toByteArray(zip), "UTF-8");
+            trace.succeeded = json.contains("\"result\":0");
+            trace.finished = now;
+            trace.done.countDown();
+          }
+        }
+      } finally {
+        zip.close();
+      }
+    }
+  }
+
+  private Map<String, String> fetchVariables(String page) {
+    Map<String, String> variables = new TreeMap<>();
+    try {
+      URL url = new URL(options.buildServerUrl + "/" + page);
+      HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+      connection.setConnectTimeout(5000);
+      connection.setReadTimeout(5000);
+      String html;
+      try (InputStream in = connection.getInputStream()) {
+        html = new String(ByteStreams.toByteArray(in), "UTF-8");
+      }
+      Matcher m = HTML_VAR.matcher(html);
+      while (m.find()) {
+        variables.put(m.group(1), m.group(2));
+      }
+    } catch (IOException e) {
+      LOG.fine("Unable to fetch " + page + ": " + e.getMessage());
+    }
+    return variables;
+  }
+
+  private void sampleServerVars() {
+    Map<String, String> vars = fetchVariables("vars");
+    try {
+      if (vars.containsKey("used-heap")) {
+        long used = Long.parseLong(vars.get("used-heap"));
+        if (used > peakHeap.get()) {
+          peakHeap.set(used);
+        }
+      }
+      if (vars.containsKey("active-build-tasks")) {
+        int active = Integer.parseInt(vars.get("active-build-tasks"));
+        if (active > peakActive.get()) {
+          peakActive.set(active);
+        }
+      }
+    } catch (NumberFormatException e) {
+      LOG.warning("Unexpected value in /vars: " + e.getMessage());
+    }
+  }
+
+  private void report(PrintStream out, int total, long elapsed) {
+    Distribution accept = new Distribution();
+    Distribution complete = new Distribution();
+    Map<Integer, Distribution> milestones = new TreeMap<>();
+    int accepted = 0;
+    int succeeded = 0;
+    int failed = 0;
+    for (BuildTrace trace : traces.values()) {
+      if (trace.status != HttpURLConnection.HTTP_OK) {
+        continue;
+      }
+      accepted++;
+      accept.add(trace.accepted - trace.submitted);
+      if (trace.finished == 0) {
+        continue;
+      }
+      if (trace.succeeded) {
+        succeeded++;
+      } else {
+        failed++;
+      }
+      complete.add(trace.finished - trace.submitted);
+      for (Map.Entry<Integer, Long> entry : trace.progress.entrySet()) {
+        Distribution d = milestones.get(entry.getKey());
+        if (d == null) {
+          d = new Distribution();
+          milestones.put(entry.getKey(), d);
+        }
+        d.add(entry.getValue() - trace.submitted);
+      }
+    }
+    double seconds = elapsed / 1000.0;
+    out.println("Build server load replay: " + options.buildServerUrl);
+    out.printf("  requests=%d accepted=%d rejected=%d errors=%d timed-out=%d%n",
+        total, accepted, rejected.get(), errors.get(), timedOut.get());
+    out.printf("  succeeded=%d failed=%d%n", succeeded, failed);
+    out.printf("  elapsed=%.1f s throughput=%.3f builds/s rejection-rate=%.1f%%%n",
+        seconds, seconds > 0 ? (succeeded + failed) / seconds : 0,
+        total > 0 ? 100.0 * rejected.get() / total : 0);
+    out.printf("  peak-used-heap=%d bytes peak-active-build-tasks=%d%n",
+        peakHeap.get(), peakActive.get());
+    out.println("Latency from submission:");
+    accept.print(out, "accepted");
+    for (Map.Entry<Integer, Distribution> entry : milestones.entrySet()) {
+      entry.getValue().print(out, "progress " + entry.getKey() + "%");
+    }
+    complete.print(out, "result received");
+    out.println("Server stage statistics (/buildserver/stats):");
+    for (Map.Entry<String, String> entry : fetchVariables("stats").entrySet()) {
+      if (entry.getKey().startsWith("last1000.")) {
+        out.println("  " + entry.getKey().substring("last1000.".length()) + " "
+            + entry.getValue());
+      }
+    }
+  }
+}
@@ -6,14 +6,22 @@
 
 package com.google.appinventor.buildserver;
 
+import com.google.common.base.Charsets;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.io.Files;
 
 import junit.framework.TestCase;
 
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import javax.imageio.ImageIO;
+
 /**
  * Tests Compiler class.
  *
@@ -130,4 +138,53 @@ public class CompilerTest extends TestCase {
     // Finally, test for the name attribute of the <intent-filter>'s <action> subelement
     assertTrue(activityElementString.contains("name=\"android.intent.action.MAIN\""));
   }
+
+  public void testPrepareApplicationIconUsesCache() throws Exception {
+    File root = Files.createTempDir();
+    File propsDir = new File(root, "youngandroidproject");
+    File resDir = new File(root, "build/res");
+    File dexCacheDir = new File(root, "dexCache");
+    assertTrue(propsDir.mkdirs());
+    assertTrue(resDir.mkdirs());
+    assertTrue(new File(root, "assets").mkdirs());
+    File properties = new File(propsDir, "project.properties");
+    Files.write("main=appinventor.ai_test.Test.Screen1\nname=Test\nassets=../assets\n"
+        + "source=../src\nbuild=../build\n", properties, Charsets.UTF_8);
+    List<Integer> standardSizes = Arrays.asList(48, 72);
+    List<Integer> foregroundSizes = Arrays.asList(108, 162);
+    List<File> mipmapDirs = Arrays.asList(new File(resDir, "mipmap-mdpi"),
+        new File(resDir, "mipmap-hdpi"));
+    for (File dir : mipmapDirs) {
+      assertTrue(dir.mkdirs());
+    }
+    File outputPng = new File(resDir, "ya.png");
+
+    Compiler compiler = new Compiler(new Project(properties), Sets.<String>newHashSet(),
+        Maps.<String, Set<String>>newHashMap(), System.out, System.err, System.err, false, false,
+        false, 2048, dexCacheDir.getAbsolutePath(), null);
+    assertTrue(compiler.prepareApplicationIcon(outputPng, mipmapDirs, standardSizes,
+        foregroundSizes));
+    File[] cached = new File(dexCacheDir, "icons").listFiles();
+    assertNotNull(cached);
+    assertEquals(1, cached.length);
+    BufferedImage round = ImageIO.read(new File(mipmapDirs.get(1), "ic_launcher_round.png"));
+    assertEquals(72, round.getWidth());
+    BufferedImage foreground =
+        ImageIO.read(new File(mipmapDirs.get(0), "ic_launcher_foreground.png"));
+    assertEquals(108, foreground.getWidth());
+    byte[] rendered = Files.toByteArray(new File(mipmapDirs.get(0), "ic_launcher.png"));
+
+    // A second build with the same icon copies the cached output.
+    for (File dir : mipmapDirs) {
+      for (File file : dir.listFiles()) {
+        assertTrue(file.delete());
+      }
+    }
+    assertTrue(outputPng.delete());
+    assertTrue(compiler.prepareApplicationIcon(outputPng, mipmapDirs, standardSizes,
+        foregroundSizes));
+    assertTrue(outputPng.isFile());
+    assertTrue(Arrays.equals(rendered,
+        Files.toByteArray(new File(mipmapDirs.get(0), "ic_launcher.png"))));
+  }
 }
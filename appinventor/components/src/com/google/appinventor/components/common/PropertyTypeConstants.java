@@ -217,6 +217,12 @@ public class PropertyTypeConstants {
    */
   public static final String PROPERTY_TYPE_SCREEN_ANIMATION = "screen_animation";
 
+  /**
+   * Instances of sensors in the current project whose readings can be logged. See
+   * {@link com.google.appinventor.components.runtime.SampledSensor}.
+   */
+  public static final String PROPERTY_TYPE_SAMPLED_SENSOR = "sampled_sensor";
+
    /**
     * Minimum distance interval, in meters, that the location sensor will try to use
     * for sending out location updates. See {@link com.google.appinventor.components.runtime.LocationSensor}.
@@ -515,7 +515,30 @@ public class YaVersion {
   // For YOUNG_ANDROID_VERSION 208:
   // - FILE_COMPONENT_VERSION was incremented to 3
   // - BLOCKS_LANGUAGE_VERSION was incremented to 33
-  public static final int YOUNG_ANDROID_VERSION = 208;
+  // For YOUNG_ANDROID_VERSION 209:
+  // - CANVAS_COMPONENT_VERSION was incremented to 14
+  // For YOUNG_ANDROID_VERSION 210:
+  // - CANVAS_COMPONENT_VERSION was incremented to 15
+  // For YOUNG_ANDROID_VERSION 211:
+  // - SOUND_COMPONENT_VERSION was incremented to 4
+  // For YOUNG_ANDROID_VERSION 212:
+  // - ACCELEROMETERSENSOR_COMPONENT_VERSION was incremented to 5
+  // - BAROMETER_COMPONENT_VERSION was incremented to 2
+  // - GYROSCOPESENSOR_COMPONENT_VERSION was incremented to 2
+  // - HYGROMETER_COMPONENT_VERSION was incremented to 2
+  // - LIGHTSENSOR_COMPONENT_VERSION was incremented to 2
+  // - MAGNETICFIELDSENSOR_COMPONENT_VERSION was incremented to 2
+  // - ORIENTATIONSENSOR_COMPONENT_VERSION was incremented to 3
+  // - THERMOMETER_COMPONENT_VERSION was incremented to 2
+  // For YOUNG_ANDROID_VERSION 213:
+  // - DATALOGGER_COMPONENT_VERSION was initialized to 1
+  // For YOUNG_ANDROID_VERSION 214:
+  // - LISTVIEW_COMPONENT_VERSION was incremented to 6
+  // For YOUNG_ANDROID_VERSION 215:
+  // - BLUETOOTHCLIENT_COMPONENT_VERSION was incremented to 7
+  // - BLUETOOTHSERVER_COMPONENT_VERSION was incremented to 6
+  // - SERIAL_COMPONENT_VERSION was incremented to 2
+  public static final int YOUNG_ANDROID_VERSION = 215;
 
   // ............................... Blocks Language Version Number ...............................
 
@@ -650,7 +673,11 @@ public class YaVersion {
   // - AccelerometerSensor.Sensitivty property was added.
   //For ACCELEROMETERSENSOR_COMPONENT_VERSION 4:
   // - Added the LegacyMode property.
-  public static final int ACCELEROMETERSENSOR_COMPONENT_VERSION = 4;
+  //For ACCELEROMETERSENSOR_COMPONENT_VERSION 5:
+  // - The EventInterval, BatchSize, WindowSize and LowPassFactor properties were added.
+  // - The WindowMean, WindowMinimum, WindowMaximum, WindowRMS and LowPass methods were added.
+  // - The SamplesReceived event was added.
+  public static final int ACCELEROMETERSENSOR_COMPONENT_VERSION = 5;
 
   // For ACTIVITYSTARTER_COMPONENT_VERSION 2:
   // - The ActivityStarter.DataType, ActivityStarter.ResultType, and ActivityStarter.ResultUri
@@ -695,7 +722,10 @@ public class YaVersion {
   // - The BluetoothClient.Secure property was added.
   // For BLUETOOTHCLIENT_COMPONENT_VERSION 6:
   // - The BluetoothClient.DisconnectOnError property was added.
-  public static final int BLUETOOTHCLIENT_COMPONENT_VERSION = 6;
+  // For BLUETOOTHCLIENT_COMPONENT_VERSION 7:
+  // - The BluetoothClient.StartReceiving, StopReceiving and DecodeFrame methods were added.
+  // - The BluetoothClient.DataReceived event was added.
+  public static final int BLUETOOTHCLIENT_COMPONENT_VERSION = 7;
 
   // For BLUETOOTHSERVER_COMPONENT_VERSION 2:
   // - The BluetoothServer.Enabled property was added.
@@ -705,7 +735,10 @@ public class YaVersion {
   // - The BluetoothServer.DelimiterByte property was added.
   // For BLUETOOTHSERVER_COMPONENT_VERSION 5:
   // - The BluetoothServer.Secure property was added.
-  public static final int BLUETOOTHSERVER_COMPONENT_VERSION = 5;
+  // For BLUETOOTHSERVER_COMPONENT_VERSION 6:
+  // - The BluetoothServer.StartReceiving, StopReceiving and DecodeFrame methods were added.
+  // - The BluetoothServer.DataReceived event was added.
+  public static final int BLUETOOTHSERVER_COMPONENT_VERSION = 6;
 
   // For BUTTON_COMPONENT_VERSION 2:
   // - The Alignment property was renamed to TextAlignment.
@@ -758,7 +791,11 @@ public class YaVersion {
   // - ExtendMovesOutsideCanvas was added
   // For CANVAS_COMPONENT_VERSION 13
   // - BackgroundImageinBase64 was added
-  public static final int CANVAS_COMPONENT_VERSION = 13;
+  // For CANVAS_COMPONENT_VERSION 14
+  // - FrameTime was added
+  // For CANVAS_COMPONENT_VERSION 15
+  // - DrawPoints, DrawLines, GetBackgroundPixels and SetBackgroundPixels were added
+  public static final int CANVAS_COMPONENT_VERSION = 15;
 
   // For CHECKBOX_COMPONENT_VERSION 2:
   // - The Value property was renamed to Checked.
@@ -792,6 +829,8 @@ public class YaVersion {
   // - The ContactUri property was added
   public static final int CONTACTPICKER_COMPONENT_VERSION = 6;
 
+  public static final int DATALOGGER_COMPONENT_VERSION = 1;
+
   // For DATEPICKER_COMPONENT_VERSION 2:
   // The datepicker dialog was updated to show the current date
   // instead of the last set date by default.
@@ -899,7 +938,11 @@ public class YaVersion {
 
   public static final int GAMECLIENT_COMPONENT_VERSION = 1;
 
-  public static final int GYROSCOPESENSOR_COMPONENT_VERSION = 1;
+  // For GYROSCOPESENSOR_COMPONENT_VERSION 2:
+  // - The EventInterval, BatchSize, WindowSize and LowPassFactor properties were added.
+  // - The WindowMean, WindowMinimum, WindowMaximum, WindowRMS and LowPass methods were added.
+  // - The SamplesReceived event was added.
+  public static final int GYROSCOPESENSOR_COMPONENT_VERSION = 2;
 
   // For HORIZONTALARRANGEMENT_COMPONENT_VERSION 2:
   // - The AlignHorizontal property was added
@@ -991,7 +1034,9 @@ public class YaVersion {
   // - Added TextSize Property
   // For LISTVIEW_COMPONENT_VERSION 5:
   // - Added SelectionColor Property
-  public static final int LISTVIEW_COMPONENT_VERSION = 5;
+  // For LISTVIEW_COMPONENT_VERSION 6:
+  // - Added AddItem, AddItemAtIndex, RemoveItemAtIndex and UpdateItemAtIndex methods
+  public static final int LISTVIEW_COMPONENT_VERSION = 6;
 
   // For LOCATIONSENSOR_COMPONENT_VERSION 2:
   // - The TimeInterval and DistanceInterval properties were added.
@@ -1075,7 +1120,11 @@ public class YaVersion {
   // For ORIENTATIONSENSOR_COMPONENT_VERSION = 2:
   // - The Yaw property was renamed to Azimuth.
   // - The yaw parameter to OrientationChanged was renamed to azimuth.
-  public static final int ORIENTATIONSENSOR_COMPONENT_VERSION = 2;
+  // For ORIENTATIONSENSOR_COMPONENT_VERSION = 3:
+  // - The EventInterval, BatchSize, WindowSize and LowPassFactor properties were added.
+  // - The WindowMean, WindowMinimum, WindowMaximum, WindowRMS and LowPass methods were added.
+  // - The SamplesReceived event was added.
+  public static final int ORIENTATIONSENSOR_COMPONENT_VERSION = 3;
 
   // For PASSWORDTEXTBOX_COMPONENT_VERSION 2:
   // - The Alignment property was renamed to TextAlignment.
@@ -1155,7 +1204,9 @@ public class YaVersion {
   // - The Sound.SoundError event was added.
   // For SOUND_COMPONENT_VERSION 3:
   // - The Sound.SoundError event was marked userVisible false and is no longer used.
-  public static final int SOUND_COMPONENT_VERSION = 3;
+  // For SOUND_COMPONENT_VERSION 4:
+  // - The Sound.PlayLatency property was added.
+  public static final int SOUND_COMPONENT_VERSION = 4;
 
   // For SOUND_RECORDER_COMPONENT_VERSION 2:
   // - The SavedRecording property was added.
@@ -1353,10 +1404,17 @@ public class YaVersion {
   public static final int PROXIMITYSENSOR_COMPONENT_VERSION = 1;
 
   //For SERIAL_COMPONENT_VERSION: Initial Version
-  public static final int SERIAL_COMPONENT_VERSION = 1;
+  //For SERIAL_COMPONENT_VERSION 2:
+  // - The StartReceiving, StopReceiving and DecodeFrame methods were added.
+  // - The DataReceived event was added.
+  public static final int SERIAL_COMPONENT_VERSION = 2;
 
   //For MAGNETICFIELDSENSOR_COMPONENT_VERSION: Initial Version
-  public static final int MAGNETICFIELDSENSOR_COMPONENT_VERSION = 1;
+  //For MAGNETICFIELDSENSOR_COMPONENT_VERSION 2:
+  // - The EventInterval, BatchSize, WindowSize and LowPassFactor properties were added.
+  // - The WindowMean, WindowMinimum, WindowMaximum, WindowRMS and LowPass methods were added.
+  // - The SamplesReceived event was added.
+  public static final int MAGNETICFIELDSENSOR_COMPONENT_VERSION = 2;
 
   // Rendezvous Server Location
   public static final String RENDEZVOUS_SERVER = "rendezvous.appinventor.mit.edu";
@@ -1373,10 +1431,16 @@ public class YaVersion {
   // For THERMOMETER_COMPONENT_VERSION 1:
   // - Initial version
 
-  public static final int BAROMETER_COMPONENT_VERSION = 1;
-  public static final int HYGROMETER_COMPONENT_VERSION = 1;
-  public static final int LIGHTSENSOR_COMPONENT_VERSION = 1;
-  public static final int THERMOMETER_COMPONENT_VERSION = 1;
+  // For BAROMETER_COMPONENT_VERSION, HYGROMETER_COMPONENT_VERSION,
+  // LIGHTSENSOR_COMPONENT_VERSION and THERMOMETER_COMPONENT_VERSION 2:
+  // - The EventInterval, BatchSize, WindowSize and LowPassFactor properties were added.
+  // - The WindowMean, WindowMinimum, WindowMaximum, WindowRMS and LowPass methods were added.
+  // - The SamplesReceived event was added.
+
+  public static final int BAROMETER_COMPONENT_VERSION = 2;
+  public static final int HYGROMETER_COMPONENT_VERSION = 2;
+  public static final int LIGHTSENSOR_COMPONENT_VERSION = 2;
+  public static final int THERMOMETER_COMPONENT_VERSION = 2;
 
   // Companion Versions and Update Information
 
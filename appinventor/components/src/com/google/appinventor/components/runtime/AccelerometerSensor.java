@@ -88,7 +88,7 @@ import java.util.Queue;
     nonVisible = true,
     iconName = "images/accelerometersensor.png")
 @SimpleObject
-public class AccelerometerSensor extends AndroidNonvisibleComponent
+public class AccelerometerSensor extends SampledSensor
     implements OnPauseListener, OnResumeListener, SensorComponent, SensorEventListener, Deleteable {
 
   // Logging and Debugging
@@ -143,7 +143,7 @@ public class AccelerometerSensor extends AndroidNonvisibleComponent
    * @param container  ignored (because this is a non-visible component)
    */
   public AccelerometerSensor(ComponentContainer container) {
-    super(container.$form());
+    super(container.$form(), 3);
     form.registerForOnResume(this);
     form.registerForOnPause(this);
 
@@ -248,7 +248,10 @@ public class AccelerometerSensor extends AndroidNonvisibleComponent
       Shaking();
     }
 
-    EventDispatcher.dispatchEvent(this, "AccelerationChanged", xAccel, yAccel, zAccel);
+    // Shake detection above sees every reading, even when the event is throttled.
+    if (eventDue()) {
+      EventDispatcher.dispatchEvent(this, "AccelerationChanged", xAccel, yAccel, zAccel);
+    }
   }
 
 public int getDeviceDefaultOrientation() {
@@ -353,6 +356,7 @@ public int getDeviceDefaultOrientation() {
       startListening();
     } else {
       stopListening();
+      clearSamples();
     }
   }
 
@@ -467,6 +471,7 @@ public int getDeviceDefaultOrientation() {
       }
       zAccel = values[2];
       accuracy = sensorEvent.accuracy;
+      addSample(xAccel, yAccel, zAccel);
       AccelerationChanged(xAccel, yAccel, zAccel);
     }
   }
@@ -15,6 +15,9 @@ import com.google.appinventor.components.annotations.SimpleProperty;
 import com.google.appinventor.components.common.PropertyTypeConstants;
 import com.google.appinventor.components.runtime.util.BluetoothReflection;
 import com.google.appinventor.components.runtime.util.ErrorMessages;
+import com.google.appinventor.components.runtime.util.FrameBuffer;
+import com.google.appinventor.components.runtime.util.FrameDecoder;
+import com.google.appinventor.components.runtime.util.FrameReader;
 import com.google.appinventor.components.runtime.util.SdkLevel;
 import com.google.appinventor.components.runtime.util.YailList;
 
@@ -41,6 +44,10 @@ import java.util.List;
 public abstract class BluetoothConnectionBase extends AndroidNonvisibleComponent
     implements Component, OnDestroyListener, Deleteable {
 
+  // The longest delimited frame, and the most frames held for DataReceived.
+  private static final int MAX_FRAME_SIZE = 4096;
+  private static final int MAX_PENDING_FRAMES = 1000;
+
   protected final String logTag;
   private final List<BluetoothConnectionListener> bluetoothConnectionListeners =
       new ArrayList<BluetoothConnectionListener>();
@@ -56,6 +63,11 @@ public abstract class BluetoothConnectionBase extends AndroidNonvisibleComponent
   private OutputStream outputStream;
   private final int sdkLevel;
 
+  // The reader is started by the first StartReceiving and reads the connection
+  // until it is closed. The buffer is non-null while frames are being received.
+  private FrameReader frameReader;
+  private FrameBuffer frameBuffer;
+
   /**
    * Creates a new BluetoothConnectionBase.
    */
@@ -179,6 +191,7 @@ public abstract class BluetoothConnectionBase extends AndroidNonvisibleComponent
    */
   @SimpleFunction(description = "Disconnect from the connected Bluetooth device.")
   public final void Disconnect() {
+    stopReceiving();
     if (connectedBluetoothSocket != null) {
       fireBeforeDisconnectEvent();
       try {
@@ -556,6 +569,168 @@ public abstract class BluetoothConnectionBase extends AndroidNonvisibleComponent
     }
   }
 
+  /**
+   * Starts receiving data in the background. Each time data arrives, the
+   * {@link #DataReceived(YailList)} event runs with the whole frames received so far, so that
+   * fast streams of data, such as sensor readings sent by an Arduino, can be handled without
+   * polling. Once receiving has started, the Receive blocks cannot be used until the connection
+   * is closed, and data that arrives after {@link #StopReceiving()} is discarded.
+   *
+   *   If `frameLength` is positive, each frame is that many bytes. If it is negative, each
+   * frame ends with the {@link #DelimiterByte(int)}, which is not included. If it is `0`,
+   * each frame starts with a byte giving the number of bytes that follow. Frames can be at most
+   * 4096 bytes.
+   *
+   * @param frameLength the number of bytes in each frame, negative for delimited frames, or 0
+   *        for frames prefixed with their length
+   */
+  @SimpleFunction(description = "Start receiving frames of data in the background, " +
+      "delivered by the DataReceived event. If frameLength is positive, each frame is that " +
+      "many bytes. If it is negative, each frame ends with the delimiter byte. If it is 0, " +
+      "each frame starts with a byte giving its length.")
+  public void StartReceiving(int frameLength) {
+    String functionName = "StartReceiving";
+    if (!IsConnected()) {
+      bluetoothError(functionName,
+          ErrorMessages.ERROR_BLUETOOTH_NOT_CONNECTED_TO_DEVICE);
+      return;
+    }
+    if (frameLength > MAX_FRAME_SIZE) {
+      bluetoothError(functionName, ErrorMessages.ERROR_FRAME_TOO_LONG, frameLength,
+          MAX_FRAME_SIZE);
+      return;
+    }
+    frameBuffer = new FrameBuffer(frameLength, delimiter, MAX_FRAME_SIZE, MAX_PENDING_FRAMES);
+    if (isReaderRunning()) {
+      frameReader.setFrames(frameBuffer);
+      return;
+    }
+    frameReader = new FrameReader(inputStream, frameBuffer, new FrameReader.Callback() {
+      @Override
+      public void framesAvailable() {
+        BluetoothConnectionBase.this.framesAvailable();
+      }
+
+      @Override
+      public void readFailed(final IOException e) {
+        Log.e(logTag, "Stopped receiving", e);
+        form.runOnUiThread(new Runnable() {
+          @Override
+          public void run() {
+            if (e == null) {
+              bluetoothError("DataReceived", ErrorMessages.ERROR_BLUETOOTH_END_OF_STREAM);
+            } else {
+              if (disconnectOnError) {
+                Disconnect();
+              }
+              bluetoothError("DataReceived",
+                  ErrorMessages.ERROR_BLUETOOTH_UNABLE_TO_READ, e.getMessage());
+            }
+          }
+        });
+      }
+    });
+    frameReader.start();
+  }
+
+  /**
+   * Stops receiving data in the background. Data that arrives until receiving starts again is
+   * discarded.
+   */
+  @SimpleFunction(description = "Stop receiving frames of data in the background. Data " +
+      "that arrives until receiving starts again is discarded.")
+  public void StopReceiving() {
+    frameBuffer = null;
+    if (frameReader != null) {
+      frameReader.setFrames(null);
+    }
+  }
+
+  /**
+   * Indicates that frames of data have arrived after {@link #StartReceiving(int)} was called.
+   * Each item of `frames` is a list of byte values between 0 and 255, which can be turned into
+   * numbers with {@link #DecodeFrame(YailList, String)}. If frames arrive faster than this event
+   * can handle them, they are collected and delivered together.
+   *
+   * @param frames the frames received, oldest first
+   */
+  @SimpleEvent(description = "Indicates that frames of data have arrived after " +
+      "StartReceiving was called. Each frame is a list of byte values between 0 and 255.")
+  public void DataReceived(YailList frames) {
+    EventDispatcher.dispatchEvent(this, "DataReceived", frames);
+  }
+
+  /**
+   * Converts a frame received by {@link #DataReceived(YailList)} into a list of numbers, as
+   * described by `format`. Each character of the format reads one number: `b` and `B` a signed
+   * and unsigned 1-byte number, `h` and `H` 2-byte numbers, `i` and `I` 4-byte numbers, `f` a
+   * 4-byte and `d` an 8-byte floating point number, while `x` skips a byte. A count before a
+   * character repeats it, as in `3h`. Numbers are read in the order given by
+   * {@link #HighByteFirst(boolean)}, unless the format contains `>` (high byte first) or `<`
+   * (low byte first).
+   *
+   * @param frame the list of byte values
+   * @param format the format of the frame
+   * @return the numbers
+   */
+  @SimpleFunction(description = "Convert a frame of bytes into a list of numbers, as " +
+      "described by a format such as \"3h\": b/B for signed/unsigned 1-byte numbers, h/H for " +
+      "2-byte, i/I for 4-byte, f and d for 4- and 8-byte floating point, and x to skip a byte.")
+  public YailList DecodeFrame(YailList frame, String format) {
+    try {
+      return YailList.makeList(FrameDecoder.decode(FrameDecoder.fromBytes(frame.toArray()),
+          format, byteOrder == ByteOrder.BIG_ENDIAN));
+    } catch (IllegalArgumentException e) {
+      bluetoothError("DecodeFrame", ErrorMessages.ERROR_INVALID_FRAME_FORMAT, format,
+          e.getMessage());
+      return YailList.makeEmptyList();
+    }
+  }
+
+  /**
+   * Called on the reader thread when frames are waiting. Delivers them on the UI thread.
+   */
+  protected void framesAvailable() {
+    form.runOnUiThread(new Runnable() {
+      @Override
+      public void run() {
+        deliverFrames();
+      }
+    });
+  }
+
+  /**
+   * Raises {@link #DataReceived(YailList)} with all the frames waiting.
+   */
+  protected final void deliverFrames() {
+    FrameBuffer buffer = frameBuffer;
+    if (buffer == null) {
+      return;
+    }
+    List<byte[]> frames = buffer.takeFrames();
+    if (frames.isEmpty()) {
+      return;
+    }
+    List<YailList> lists = new ArrayList<YailList>(frames.size());
+    for (byte[] frame : frames) {
+      lists.add(YailList.makeList(FrameDecoder.toUnsignedBytes(frame)));
+    }
+    DataReceived(YailList.makeList(lists));
+  }
+
+  private boolean isReaderRunning() {
+    return frameReader != null && frameReader.isRunning();
+  }
+
+  // Called before the connection is closed, which ends the read in progress
+  private void stopReceiving() {
+    if (frameReader != null) {
+      frameReader.stop();
+      frameReader = null;
+    }
+    frameBuffer = null;
+  }
+
   /**
    * Returns number of bytes available from the input stream.
    */
@@ -595,7 +770,7 @@ public abstract class BluetoothConnectionBase extends AndroidNonvisibleComponent
   public String ReceiveText(int numberOfBytes) {
     byte[] bytes = read("ReceiveText", numberOfBytes);
     try {
-      if (numberOfBytes < 0) {
+      if (numberOfBytes < 0 && bytes.length > 0) {
         // bytes contains a trailing delimiter byte that we ignore when converting to String.
         return new String(bytes, 0, bytes.length - 1, encoding);
       } else {
@@ -781,6 +956,11 @@ public abstract class BluetoothConnectionBase extends AndroidNonvisibleComponent
           ErrorMessages.ERROR_BLUETOOTH_NOT_CONNECTED_TO_DEVICE);
       return new byte[0];
     }
+    if (isReaderRunning()) {
+      bluetoothError(functionName,
+          ErrorMessages.ERROR_BLUETOOTH_RECEIVING_IN_BACKGROUND);
+      return new byte[0];
+    }
 
     ByteArrayOutputStream buffer = new ByteArrayOutputStream();
 
@@ -17,12 +17,15 @@ import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Path;
 import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
 import android.graphics.Rect;
 import android.graphics.RectF;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.ColorDrawable;
 import android.graphics.drawable.Drawable;
 
+import android.os.Handler;
+import android.os.SystemClock;
 import android.text.TextUtils;
 
 import android.util.Base64;
@@ -57,6 +60,7 @@ import com.google.appinventor.components.runtime.util.BoundingBox;
 import com.google.appinventor.components.runtime.util.BulkPermissionRequest;
 import com.google.appinventor.components.runtime.util.ErrorMessages;
 import com.google.appinventor.components.runtime.util.FileUtil;
+import com.google.appinventor.components.runtime.util.JellybeanUtil;
 import com.google.appinventor.components.runtime.util.MediaUtil;
 import com.google.appinventor.components.runtime.util.PaintUtil;
 import com.google.appinventor.components.runtime.util.SdkLevel;
@@ -68,6 +72,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
@@ -154,11 +159,38 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
   private static final int DEFAULT_BACKGROUND_COLOR = Component.COLOR_WHITE;
   private static final int DEFAULT_TEXTALIGNMENT = Component.ALIGNMENT_CENTER;
   private static final int FLING_INTERVAL = 1000;  // ms
+  private static final int FALLBACK_FRAME_INTERVAL = 16;  // ms, used before Jellybean
+  private static final double FRAME_TIME_SMOOTHING = 0.1;
 
   // Keep track of enclosed sprites.  This list should always be
   // sorted by increasing sprite.Z().
   private final List<Sprite> sprites;
 
+  // Sprite movement is driven by a single animation loop per Canvas rather than a
+  // timer per sprite.  On each frame all moving sprites are advanced, then collisions
+  // are checked for the sprites that changed and the view is invalidated once.  The
+  // loop is aligned with the display's vsync through Choreographer where available
+  // and stops when no sprite is moving.
+  private final Handler androidUIHandler = new Handler();
+  private final Runnable frameRunnable = new Runnable() {
+    @Override
+    public void run() {
+      onFrame();
+    }
+  };
+  private Object frameCallback;  // Choreographer.FrameCallback, Jellybean and later only
+  private boolean frameScheduled = false;
+
+  // While sprites are being advanced, registerChange() only records the changed
+  // sprites here so that they can be handled together at the end of the frame.
+  private boolean inFrame = false;
+  private final Set<Sprite> changedSprites = new LinkedHashSet<Sprite>();
+
+  // Time of the previous frame (0 if not animating) and the smoothed time between
+  // frames, both in ms, reported by FrameTime.
+  private long lastFrameTime = 0;
+  private double frameTime = 0;
+
   // Handle touches and drags
   private final MotionEventParser motionEventParser;
 
@@ -413,12 +445,58 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
     // when the Canvas is saved to a file.
     private Bitmap completeCache;
 
+    // Drawing operations record the area of the drawing layer they changed in
+    // dirtyRect.  The view is invalidated once for that area after the event
+    // handler doing the drawing returns, rather than once per operation.
+    private final RectF dirtyRect = new RectF();
+    private boolean invalidatePending = false;
+    private final Runnable invalidateDirtyRect = new Runnable() {
+      @Override
+      public void run() {
+        invalidatePending = false;
+        if (!dirtyRect.isEmpty()) {
+          invalidate((int) Math.floor(dirtyRect.left), (int) Math.floor(dirtyRect.top),
+              (int) Math.ceil(dirtyRect.right), (int) Math.ceil(dirtyRect.bottom));
+          dirtyRect.setEmpty();
+        }
+      }
+    };
+
+    // Used to copy pixel regions into the drawing layer unfiltered and
+    // replacing, rather than blending with, what was there.
+    private final Paint pixelRegionPaint = new Paint();
+
     public CanvasView(Context context) {
       super(context);
       bitmap = Bitmap.createBitmap(ComponentConstants.CANVAS_PREFERRED_WIDTH,
                                    ComponentConstants.CANVAS_PREFERRED_HEIGHT,
                                    Bitmap.Config.ARGB_8888);
       canvas = new android.graphics.Canvas(bitmap);
+      pixelRegionPaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC));
+    }
+
+    /*
+     * Records that the given area of the drawing layer has changed, widened by
+     * half the stroke width plus a pixel for anti-aliasing, and arranges for it
+     * to be redrawn.
+     */
+    private void invalidateDrawing(float left, float top, float right, float bottom,
+        float strokeWidth) {
+      completeCache = null;
+      float inset = strokeWidth / 2 + 1;
+      dirtyRect.union(left - inset, top - inset, right + inset, bottom + inset);
+      if (!invalidatePending) {
+        invalidatePending = true;
+        androidUIHandler.post(invalidateDirtyRect);
+      }
+    }
+
+    /*
+     * Records that the drawing layer has changed in an area that is not known,
+     * such as for text.
+     */
+    private void invalidateDrawing() {
+      invalidateDrawing(0, 0, getWidth(), getHeight(), 0);
     }
 
     /*
@@ -661,7 +739,7 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
       canvas.rotate(-angle, x, y);
       canvas.drawText(text, x, y, paint);
       canvas.restore();
-      invalidate();
+      invalidateDrawing();
     }
 
     // This intentionally ignores sprites.
@@ -681,23 +759,8 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
         }
 
         // If nothing has been drawn on the bitmap at that location,
-        // check if there is a background image.
-        if (backgroundDrawable != null) {
-          if (scaledBackgroundBitmap == null) {
-            scaledBackgroundBitmap = Bitmap.createScaledBitmap(
-                backgroundDrawable.getBitmap(),
-                bitmap.getWidth(), bitmap.getHeight(),
-                false);  // false argument indicates not to filter
-          }
-          color = scaledBackgroundBitmap.getPixel(x, y);
-          return color;
-        }
-
-        // If there is no background image, use the background color.
-        if (Color.alpha(backgroundColor) != 0) {
-          return backgroundColor;
-        }
-        return Component.COLOR_NONE;
+        // use the background.
+        return getUnderlyingColor(x, y);
       } catch (IllegalArgumentException e) {
         // This should never occur, since we have checked bounds.
         Log.e(LOG_TAG,
@@ -706,6 +769,91 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
       }
     }
 
+    // Returns the color of the background image or color at the given
+    // in-bounds point, which shows wherever nothing has been drawn.
+    private int getUnderlyingColor(int x, int y) {
+      // Check if there is a background image.
+      if (backgroundDrawable != null) {
+        if (scaledBackgroundBitmap == null) {
+          scaledBackgroundBitmap = Bitmap.createScaledBitmap(
+              backgroundDrawable.getBitmap(),
+              bitmap.getWidth(), bitmap.getHeight(),
+              false);  // false argument indicates not to filter
+        }
+        return scaledBackgroundBitmap.getPixel(x, y);
+      }
+
+      // If there is no background image, use the background color.
+      if (Color.alpha(backgroundColor) != 0) {
+        return backgroundColor;
+      }
+      return Component.COLOR_NONE;
+    }
+
+    // Like getBackgroundPixelColor() for each point of a region, in rows.  The
+    // region is given in unscaled coordinates, and the drawing layer is read
+    // with a single call.
+    private int[] getBackgroundPixels(int left, int top, int width, int height, float density) {
+      int[] colors = new int[width * height];
+
+      // The part of the bitmap covered by the region.
+      int x0 = Math.max(0, (int) (left * density));
+      int y0 = Math.max(0, (int) (top * density));
+      int x1 = Math.min(bitmap.getWidth(), (int) ((left + width - 1) * density) + 1);
+      int y1 = Math.min(bitmap.getHeight(), (int) ((top + height - 1) * density) + 1);
+      int stride = x1 - x0;
+      int[] layer = null;
+      if (x0 < x1 && y0 < y1) {
+        layer = new int[stride * (y1 - y0)];
+        bitmap.getPixels(layer, 0, stride, x0, y0, stride, y1 - y0);
+      }
+
+      int i = 0;
+      for (int row = 0; row < height; row++) {
+        int y = (int) ((top + row) * density);
+        for (int col = 0; col < width; col++) {
+          int x = (int) ((left + col) * density);
+          if (layer == null || x < x0 || x >= x1 || y < y0 || y >= y1) {
+            colors[i++] = Component.COLOR_NONE;
+          } else {
+            int color = layer[(y - y0) * stride + (x - x0)];
+            colors[i++] = color != Color.TRANSPARENT ? color : getUnderlyingColor(x, y);
+          }
+        }
+      }
+      return colors;
+    }
+
+    // Replaces the drawing layer in a region, given in unscaled coordinates,
+    // with the given colors, in rows.
+    private void setBackgroundPixels(int left, int top, int width, int height, int[] colors,
+        float density) {
+      Bitmap region = Bitmap.createBitmap(colors, width, height, Bitmap.Config.ARGB_8888);
+      RectF dst = new RectF(left * density, top * density,
+          (left + width) * density, (top + height) * density);
+      canvas.drawBitmap(region, null, dst, pixelRegionPaint);
+      region.recycle();
+      invalidateDrawing(dst.left, dst.top, dst.right, dst.bottom, 0);
+    }
+
+    // Returns whether a visible sprite might be drawn over the given point.
+    // This errs on the side of true, allowing for sprites that are rotated.
+    private boolean isAnySpriteNear(int x, int y) {
+      float density = $form().deviceDensity();
+      double qx = x / density;
+      double qy = y / density;
+      for (Sprite sprite : sprites) {
+        if (sprite.Visible()) {
+          int margin = Math.max(sprite.Width(), sprite.Height());
+          if (qx >= sprite.xLeft - margin && qx < sprite.xLeft + sprite.Width() + margin &&
+              qy >= sprite.yTop - margin && qy < sprite.yTop + sprite.Height() + margin) {
+            return true;
+          }
+        }
+      }
+      return false;
+    }
+
     private int getPixelColor(int x, int y) {
       // If the request is out of bounds, return COLOR_NONE.
       if (x < 0 || x >= bitmap.getWidth() ||
@@ -715,22 +863,13 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
 
       // If the cache isn't available, try to avoid rebuilding it.
       if (completeCache == null) {
-        // If there are no visible sprites, just call getBackgroundPixelColor().
-        boolean anySpritesVisible = false;
-        for (Sprite sprite : sprites) {
-          if (sprite.Visible()) {
-            anySpritesVisible = true;
-            break;
-          }
-        }
-        if (!anySpritesVisible) {
+        // If no visible sprite overlaps (x, y), just call getBackgroundPixelColor().
+        if (!isAnySpriteNear(x, y)) {
           return getBackgroundPixelColor(x, y);
         }
 
-        // TODO(user): If needed for efficiency, check whether there are any
-        // sprites overlapping (x, y).  If not, we can just call getBackgroundPixelColor().
-        // If so, maybe we can just draw those sprites instead of building a full
-        // cache of the view.
+        // TODO(user): If needed for efficiency, draw just the sprites overlapping
+        // (x, y) instead of building a full cache of the view.
 
         completeCache = buildCache();
       }
@@ -768,6 +907,9 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
     sprites = new LinkedList<Sprite>();
     motionEventParser = new MotionEventParser();
     mGestureDetector = new GestureDetector(context, new FlingGestureListener());
+    if (SdkLevel.getLevel() >= SdkLevel.LEVEL_JELLYBEAN) {
+      frameCallback = JellybeanUtil.newFrameCallback(frameRunnable);
+    }
   }
 
   public void Initialize() {
@@ -897,15 +1039,79 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
 
   /**
    * Indicates that a sprite has changed, triggering invalidation of the view
-   * and a check for collisions.
+   * and a check for collisions.  Changes made while the animation loop is
+   * advancing sprites are deferred to the end of the frame.
    *
    * @param sprite the sprite whose location, size, or appearance has changed
    */
   void registerChange(Sprite sprite) {
+    if (inFrame) {
+      changedSprites.add(sprite);
+      return;
+    }
     view.invalidate();
     findSpriteCollisions(sprite);
   }
 
+  // Methods for animating sprites
+
+  /**
+   * Requests an animation frame, unless one is already pending.  Sprites call
+   * this when they start moving; the loop keeps itself going for as long as
+   * any sprite is moving.
+   */
+  void scheduleFrame() {
+    if (frameScheduled) {
+      return;
+    }
+    frameScheduled = true;
+    if (frameCallback != null) {
+      JellybeanUtil.postFrameCallback(frameCallback);
+    } else {
+      androidUIHandler.postDelayed(frameRunnable, FALLBACK_FRAME_INTERVAL);
+    }
+  }
+
+  /**
+   * Runs one animation frame: advances every sprite, then checks collisions
+   * for the sprites that changed and invalidates the view once.
+   */
+  private void onFrame() {
+    frameScheduled = false;
+    long now = SystemClock.uptimeMillis();
+    if (lastFrameTime != 0) {
+      long elapsed = now - lastFrameTime;
+      frameTime = frameTime == 0 ? elapsed
+          : frameTime + (elapsed - frameTime) * FRAME_TIME_SMOOTHING;
+    }
+    lastFrameTime = now;
+
+    boolean animating = false;
+    inFrame = true;
+    try {
+      for (Sprite sprite : sprites) {
+        animating |= sprite.advance(now);
+      }
+    } finally {
+      inFrame = false;
+    }
+
+    if (!changedSprites.isEmpty()) {
+      view.invalidate();
+      for (Sprite sprite : changedSprites) {
+        findSpriteCollisions(sprite);
+      }
+      changedSprites.clear();
+    }
+
+    if (animating) {
+      scheduleFrame();
+    } else {
+      lastFrameTime = 0;
+      frameTime = 0;
+    }
+  }
+
 
   // Methods for detecting collisions
 
@@ -1242,6 +1448,18 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
     extendMovesOutsideCanvas = extend;   
   }
 
+  /**
+   * The average time, in milliseconds, between the animation frames that move the sprites on
+   * this `%type%`, or 0 if no sprite is moving. Values near 16.7 mean that the animation keeps
+   * up with a 60 Hz display; larger values mean that frames are being dropped.
+   */
+  @SimpleProperty(description = "The average time, in milliseconds, between the animation " +
+      "frames that move the sprites on this %type%, or 0 if no sprite is moving.",
+      category = PropertyCategory.BEHAVIOR)
+  public double FrameTime() {
+    return frameTime;
+  }
+
   // Methods supporting event handling
 
   /**
@@ -1356,7 +1574,30 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
     float correctedX = x * $form().deviceDensity();
     float correctedY = y * $form().deviceDensity();
     view.canvas.drawPoint(correctedX, correctedY, paint);
-    view.invalidate();
+    view.invalidateDrawing(correctedX, correctedY, correctedX, correctedY, paint.getStrokeWidth());
+  }
+
+  /**
+   * Draws a point at each of the coordinates in the given list. This is much faster than
+   * calling {@link #DrawPoint(int, int)} for each point.
+   *
+   * @param pointList  A list of points, should contains sub-lists with two number which represents
+   *                   a coordinate, e.g. ((x1 y1) (x2 y2) (x3 y3))
+   */
+  @SimpleFunction(description = "Draws a point at each of the coordinates in pointList, which " +
+      "should be a list of sub-lists with two numbers, e.g. ((x1 y1) (x2 y2) (x3 y3)). " +
+      "This is much faster than drawing the points one at a time.")
+  public void DrawPoints(YailList pointList) {
+    float[] points;
+    try {
+      points = scalePoints(parsePointList(pointList));
+    } catch (IllegalArgumentException e) {
+      $form().dispatchErrorOccurredEvent(this, "DrawPoints",
+          ErrorMessages.ERROR_CANVAS_BAD_POINT_LIST);
+      return;
+    }
+    view.canvas.drawPoints(points, paint);
+    invalidatePoints(points);
   }
 
  /**
@@ -1376,7 +1617,8 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
     Paint p = new Paint(paint);
     p.setStyle(fill ? Paint.Style.FILL : Paint.Style.STROKE);
     view.canvas.drawCircle(correctedX, correctedY, correctedR, p);
-    view.invalidate();
+    view.invalidateDrawing(correctedX - correctedR, correctedY - correctedR,
+        correctedX + correctedR, correctedY + correctedR, p.getStrokeWidth());
   }
 
   /**
@@ -1394,7 +1636,74 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
     float correctedX2 = x2 * $form().deviceDensity();
     float correctedY2 = y2 * $form().deviceDensity();
     view.canvas.drawLine(correctedX1, correctedY1, correctedX2, correctedY2, paint);
-    view.invalidate();
+    view.invalidateDrawing(Math.min(correctedX1, correctedX2), Math.min(correctedY1, correctedY2),
+        Math.max(correctedX1, correctedX2), Math.max(correctedY1, correctedY2),
+        paint.getStrokeWidth());
+  }
+
+  /**
+   * Draws lines joining each of the coordinates in the given list to the next, as when plotting
+   * a series of values. This is much faster than calling {@link #DrawLine(int, int, int, int)}
+   * for each segment.
+   *
+   * @param pointList  A list of points, should contains sub-lists with two number which represents
+   *                   a coordinate, e.g. ((x1 y1) (x2 y2) (x3 y3))
+   */
+  @SimpleFunction(description = "Draws lines joining each of the coordinates in pointList to the " +
+      "next, as when plotting a series of values. pointList should be a list of sub-lists with " +
+      "two numbers, e.g. ((x1 y1) (x2 y2) (x3 y3)). The last point is not joined to the first. " +
+      "This is much faster than drawing the lines one at a time.")
+  public void DrawLines(YailList pointList) {
+    float[] points;
+    try {
+      points = scalePoints(parsePointList(pointList));
+    } catch (IllegalArgumentException e) {
+      $form().dispatchErrorOccurredEvent(this, "DrawLines",
+          ErrorMessages.ERROR_CANVAS_BAD_POINT_LIST);
+      return;
+    }
+    if (points.length < 4) {
+      return;  // A single point has no segments.
+    }
+    // Canvas.drawLines() takes each segment as a separate pair of points.
+    float[] segments = new float[2 * points.length - 4];
+    for (int i = 0, j = 0; i + 3 < points.length; i += 2) {
+      segments[j++] = points[i];
+      segments[j++] = points[i + 1];
+      segments[j++] = points[i + 2];
+      segments[j++] = points[i + 3];
+    }
+    view.canvas.drawLines(segments, paint);
+    invalidatePoints(points);
+  }
+
+  /*
+   * Scales points given in the form returned by parsePointList() to device pixels, returning
+   * them in the flattened form expected by Canvas.drawPoints() and friends.
+   */
+  private float[] scalePoints(float[][] points) {
+    float scalingFactor = $form().deviceDensity();
+    float[] scaled = new float[2 * points.length];
+    for (int i = 0; i < points.length; i++) {
+      scaled[2 * i] = points[i][0] * scalingFactor;
+      scaled[2 * i + 1] = points[i][1] * scalingFactor;
+    }
+    return scaled;
+  }
+
+  // Invalidates the bounding box of flattened points drawn with the current paint.
+  private void invalidatePoints(float[] points) {
+    float left = Float.MAX_VALUE;
+    float top = Float.MAX_VALUE;
+    float right = -Float.MAX_VALUE;
+    float bottom = -Float.MAX_VALUE;
+    for (int i = 0; i + 1 < points.length; i += 2) {
+      left = Math.min(left, points[i]);
+      right = Math.max(right, points[i]);
+      top = Math.min(top, points[i + 1]);
+      bottom = Math.max(bottom, points[i + 1]);
+    }
+    view.invalidateDrawing(left, top, right, bottom, paint.getStrokeWidth());
   }
 
   /**
@@ -1424,7 +1733,10 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
     Paint p = new Paint(paint);
     p.setStyle(fill ? Paint.Style.FILL : Paint.Style.STROKE);
     view.canvas.drawPath(path, p);
-    view.invalidate();
+    RectF bounds = new RectF();
+    path.computeBounds(bounds, true);
+    view.invalidateDrawing(bounds.left, bounds.top, bounds.right, bounds.bottom,
+        p.getStrokeWidth());
   }
 
   private Path parsePath(float[][] points) throws IllegalArgumentException {
@@ -1454,8 +1766,8 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
         pointYailList = (YailList) pointObject;
         if (pointYailList.size() == 2) {
           try {
-            points[index][0] = Float.parseFloat(pointYailList.getString(0));
-            points[index][1] = Float.parseFloat(pointYailList.getString(1));
+            points[index][0] = parseCoordinate(pointYailList.getObject(0));
+            points[index][1] = parseCoordinate(pointYailList.getObject(1));
             index++;
           } catch (NullPointerException e) {
             throw new IllegalArgumentException(e.fillInStackTrace());
@@ -1472,6 +1784,15 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
     return points;
   }
 
+  // Numbers are converted directly, which matters for long point lists;
+  // anything else is parsed from its string form.
+  private static float parseCoordinate(Object coordinate) {
+    if (coordinate instanceof Number) {
+      return ((Number) coordinate).floatValue();
+    }
+    return Float.parseFloat(coordinate.toString());
+  }
+
   /**
    * Draw an arc on Canvas, by drawing an arc from a specified oval (specified by left, top, right & bottom).
    * Start angle is 0 when heading to the right, and increase when rotate clockwise.
@@ -1497,11 +1818,11 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
     float scalingFactor = $form().deviceDensity();
     Paint p = new Paint(paint);
     p.setStyle(fill ? Paint.Style.FILL : Paint.Style.STROKE);
-    view.canvas.drawArc(
-      new RectF(scalingFactor * left, scalingFactor * top,
-                scalingFactor * right, scalingFactor * bottom),
-      startAngle, sweepAngle, useCenter, p);
-    view.invalidate();
+    RectF oval = new RectF(scalingFactor * left, scalingFactor * top,
+        scalingFactor * right, scalingFactor * bottom);
+    view.canvas.drawArc(oval, startAngle, sweepAngle, useCenter, p);
+    view.invalidateDrawing(Math.min(oval.left, oval.right), Math.min(oval.top, oval.bottom),
+        Math.max(oval.left, oval.right), Math.max(oval.top, oval.bottom), p.getStrokeWidth());
   }
 
   /**
@@ -1520,7 +1841,7 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
     float correctedX = x * fontScalingFactor;
     float correctedY = y * fontScalingFactor;
     view.canvas.drawText(text, correctedX, correctedY, paint);
-    view.invalidate();
+    view.invalidateDrawing();
   }
 
   /**
@@ -1575,7 +1896,7 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
     int correctedX = (int) (x * $form().deviceDensity());
     int correctedY = (int) (y * $form().deviceDensity());
     view.canvas.drawPoint(correctedX, correctedY, pixelPaint);
-    view.invalidate();
+    view.invalidateDrawing(correctedX, correctedY, correctedX, correctedY, 0);
   }
 
   /**
@@ -1594,6 +1915,66 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
     return view.getPixelColor(correctedX, correctedY);
   }
 
+  /**
+   * Gets the colors of the points in a rectangular region, ignoring sprites. This is much faster
+   * than calling {@link #GetBackgroundPixelColor(int, int)} for each point.
+   *
+   * @param x the x-coordinate of the upper left corner of the region
+   * @param y the y-coordinate of the upper left corner of the region
+   * @param width the width of the region
+   * @param height the height of the region
+   * @return a list of width times height colors, row by row from the top, with
+   *         {@link Component#COLOR_NONE} for points that are not on this Canvas
+   */
+  @SimpleFunction(description = "Gets the colors of the points in the rectangle with the " +
+      "specified upper left corner, width and height, as a list going row by row from the top. " +
+      "Like GetBackgroundPixelColor, this includes the background and anything drawn but not " +
+      "sprites.")
+  public YailList GetBackgroundPixels(int x, int y, int width, int height) {
+    if (width <= 0 || height <= 0) {
+      return YailList.makeEmptyList();
+    }
+    int[] colors = view.getBackgroundPixels(x, y, width, height, $form().deviceDensity());
+    Object[] values = new Object[colors.length];
+    for (int i = 0; i < colors.length; i++) {
+      values[i] = colors[i];
+    }
+    return YailList.makeList(values);
+  }
+
+  /**
+   * Sets the colors of the points in a rectangular region, replacing anything drawn there. This
+   * is much faster than calling {@link #SetBackgroundPixelColor(int, int, int)} for each point.
+   *
+   * @param x the x-coordinate of the upper left corner of the region
+   * @param y the y-coordinate of the upper left corner of the region
+   * @param width the width of the region
+   * @param height the height of the region
+   * @param colors a list of width times height colors, row by row from the top
+   */
+  @SimpleFunction(description = "Sets the colors of the points in the rectangle with the " +
+      "specified upper left corner, width and height from a list of colors going row by row " +
+      "from the top, as returned by GetBackgroundPixels. This replaces anything drawn there; " +
+      "the color None lets the background show through.")
+  public void SetBackgroundPixels(int x, int y, int width, int height, YailList colors) {
+    if (width <= 0 || height <= 0 || colors.size() != width * height) {
+      $form().dispatchErrorOccurredEvent(this, "SetBackgroundPixels",
+          ErrorMessages.ERROR_CANVAS_BAD_PIXEL_LIST, width, height);
+      return;
+    }
+    int[] argb = new int[colors.size()];
+    int i = 0;
+    for (Object color : colors.toArray()) {
+      if (!(color instanceof Number)) {
+        $form().dispatchErrorOccurredEvent(this, "SetBackgroundPixels",
+            ErrorMessages.ERROR_CANVAS_BAD_PIXEL_LIST, width, height);
+        return;
+      }
+      argb[i++] = ((Number) color).intValue();
+    }
+    view.setBackgroundPixels(x, y, width, height, argb, $form().deviceDensity());
+  }
+
   /**
    * Saves a picture of this Canvas to the device's external storage.
    * If an error occurs, the Screen's ErrorOccurred event will be called.
@@ -0,0 +1,728 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime;
+
+import android.Manifest;
+import android.util.Log;
+
+import com.google.appinventor.components.annotations.DesignerComponent;
+import com.google.appinventor.components.annotations.DesignerProperty;
+import com.google.appinventor.components.annotations.PropertyCategory;
+import com.google.appinventor.components.annotations.SimpleEvent;
+import com.google.appinventor.components.annotations.SimpleFunction;
+import com.google.appinventor.components.annotations.SimpleObject;
+import com.google.appinventor.components.annotations.SimpleProperty;
+import com.google.appinventor.components.annotations.UsesPermissions;
+import com.google.appinventor.components.common.ComponentCategory;
+import com.google.appinventor.components.common.PropertyTypeConstants;
+import com.google.appinventor.components.common.YaVersion;
+import com.google.appinventor.components.runtime.util.DataLogBuffer;
+import com.google.appinventor.components.runtime.util.DataLogFile;
+import com.google.appinventor.components.runtime.util.ErrorMessages;
+import com.google.appinventor.components.runtime.util.MediaUtil;
+import com.google.appinventor.components.runtime.util.QUtil;
+import com.google.appinventor.components.runtime.util.YailList;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Non-visible component that records numeric readings to a file on the device, fast enough to
+ * keep up with sensors reporting a hundred readings per second for hours. Each reading is a time
+ * and up to [`Channels`](#DataLogger.Channels) numbers. Readings come from the
+ * [`Log`](#DataLogger.Log) block or, without any blocks, from the sensor chosen as the
+ * [`Source`](#DataLogger.Source).
+ *
+ * Readings are kept in memory and written to the log file in large pieces in the background, so
+ * logging does not slow the app down. The log can then be summarized, turned into a series of
+ * points for charting, or exported as comma-separated values to share with other programs.
+ *
+ * File names follow the same rules as the [`File`](storage.html#File) component.
+ *
+ * @internaldoc
+ * The log uses the binary format of {@link DataLogFile}. All file access, including queries,
+ * happens in order on a single background thread.
+ */
+@DesignerComponent(version = YaVersion.DATALOGGER_COMPONENT_VERSION,
+    description = "Non-visible component that records numeric readings, such as those of a " +
+    "sensor, to a file on the device. Readings are written in the background in large pieces, " +
+    "so that a hundred readings per second can be logged for hours. The log can be summarized, " +
+    "turned into a series of points for charting, or exported as CSV.",
+    category = ComponentCategory.STORAGE,
+    nonVisible = true,
+    iconName = "images/file.png")
+@SimpleObject
+@UsesPermissions(permissionNames = "android.permission.WRITE_EXTERNAL_STORAGE, android.permission.READ_EXTERNAL_STORAGE")
+public class DataLogger extends AndroidNonvisibleComponent
+    implements SampledSensor.SampleListener, OnPauseListener, OnDestroyListener, Deleteable {
+  private static final String LOG_TAG = "DataLogger";
+
+  private static final String DEFAULT_FILE_NAME = "datalog.bin";
+  private static final int DEFAULT_CHANNELS = 3;
+  private static final int DEFAULT_BUFFER_SIZE = 1000;
+  private static final int DEFAULT_FLUSH_INTERVAL = 1000;  // ms
+
+  private String fileName = DEFAULT_FILE_NAME;
+  private int channels = DEFAULT_CHANNELS;
+  private int bufferSize = DEFAULT_BUFFER_SIZE;
+  private int flushInterval = DEFAULT_FLUSH_INTERVAL;
+  private Component source;
+
+  // All file access runs on this thread, in the order it was requested.
+  private final ScheduledExecutorService ioThread = Executors.newSingleThreadScheduledExecutor();
+
+  // The readings waiting to be written, non-null while logging.
+  private DataLogBuffer buffer;
+  private double[] scratch;
+  private Runnable flushTask;
+  private ScheduledFuture<?> scheduledFlush;
+  private final AtomicBoolean flushPending = new AtomicBoolean();
+  private long dropped;
+  // Set once the component is deleted or its screen destroyed, after which ioThread is shut down.
+  private boolean shutDown;
+
+  // Used only on ioThread.
+  private DataLogFile.Appender appender;
+  private long[] flushTimes;
+  private double[] flushValues;
+
+  /**
+   * Creates a new DataLogger component.
+   *
+   * @param container the Form that this component is contained in.
+   */
+  public DataLogger(ComponentContainer container) {
+    super(container.$form());
+    form.registerForOnPause(this);
+    form.registerForOnDestroy(this);
+  }
+
+  /**
+   * The name of the log file.
+   */
+  @SimpleProperty(category = PropertyCategory.BEHAVIOR)
+  public String FileName() {
+    return fileName;
+  }
+
+  /**
+   * The name of the log file. If it begins with a slash (`/`), the file is on the SD card;
+   * otherwise it is in the app's private storage. Changes take effect the next time logging is
+   * started.
+   *
+   * @param fileName the file name
+   */
+  @DesignerProperty(editorType = PropertyTypeConstants.PROPERTY_TYPE_STRING,
+      defaultValue = DEFAULT_FILE_NAME)
+  @SimpleProperty
+  public void FileName(String fileName) {
+    this.fileName = fileName;
+  }
+
+  /**
+   * The number of values in each reading.
+   */
+  @SimpleProperty(category = PropertyCategory.BEHAVIOR)
+  public int Channels() {
+    return channels;
+  }
+
+  /**
+   * The number of values in each reading. Missing values are logged as blank and extra values
+   * are ignored. An existing log can only be added to with the same number of channels.
+   * Changes take effect the next time logging is started.
+   *
+   * @param channels the number of values, at least 1
+   */
+  @DesignerProperty(editorType = PropertyTypeConstants.PROPERTY_TYPE_NON_NEGATIVE_INTEGER,
+      defaultValue = DEFAULT_CHANNELS + "")
+  @SimpleProperty
+  public void Channels(int channels) {
+    this.channels = Math.max(1, channels);
+  }
+
+  /**
+   * The number of readings kept in memory before they are written.
+   */
+  @SimpleProperty(category = PropertyCategory.BEHAVIOR)
+  public int BufferSize() {
+    return bufferSize;
+  }
+
+  /**
+   * The number of readings kept in memory until they are written. Writing starts when the
+   * buffer is half full; readings arriving while it is full are dropped and counted in
+   * [`DroppedSamples`](#DataLogger.DroppedSamples). Changes take effect the next time logging is
+   * started.
+   *
+   * @param size the number of readings, at least 2
+   */
+  @DesignerProperty(editorType = PropertyTypeConstants.PROPERTY_TYPE_NON_NEGATIVE_INTEGER,
+      defaultValue = DEFAULT_BUFFER_SIZE + "")
+  @SimpleProperty
+  public void BufferSize(int size) {
+    bufferSize = Math.max(2, size);
+  }
+
+  /**
+   * The time, in milliseconds, between writes of the readings kept in memory.
+   */
+  @SimpleProperty(category = PropertyCategory.BEHAVIOR)
+  public int FlushInterval() {
+    return flushInterval;
+  }
+
+  /**
+   * The longest time, in milliseconds, that readings are kept in memory before they are
+   * written. If `0`, readings are only written when the buffer is half full or logging stops.
+   * Changes take effect the next time logging is started.
+   *
+   * @param interval the interval in ms
+   */
+  @DesignerProperty(editorType = PropertyTypeConstants.PROPERTY_TYPE_NON_NEGATIVE_INTEGER,
+      defaultValue = DEFAULT_FLUSH_INTERVAL + "")
+  @SimpleProperty
+  public void FlushInterval(int interval) {
+    flushInterval = Math.max(0, interval);
+  }
+
+  /**
+   * The sensor whose readings are logged.
+   */
+  @SimpleProperty(category = PropertyCategory.BEHAVIOR)
+  public Component Source() {
+    return source;
+  }
+
+  /**
+   * A sensor, such as an [`AccelerometerSensor`](sensors.html#AccelerometerSensor), whose every
+   * reading is logged while logging is started, without the need for any blocks.
+   *
+   * @param source the sensor, or none
+   */
+  @DesignerProperty(editorType = PropertyTypeConstants.PROPERTY_TYPE_SAMPLED_SENSOR)
+  @SimpleProperty
+  public void Source(Component source) {
+    if (shutDown) {
+      return;
+    }
+    if (this.source instanceof SampledSensor) {
+      ((SampledSensor) this.source).removeSampleListener(this);
+    }
+    this.source = null;
+    if (source instanceof SampledSensor) {
+      this.source = source;
+      ((SampledSensor) source).addSampleListener(this);
+    } else if (source != null) {
+      form.dispatchErrorOccurredEvent(this, "Source",
+          ErrorMessages.ERROR_DATALOGGER_INVALID_SOURCE, source.getClass().getSimpleName());
+    }
+  }
+
+  /**
+   * Returns whether readings are being logged.
+   */
+  @SimpleProperty(category = PropertyCategory.BEHAVIOR)
+  public boolean Logging() {
+    return buffer != null;
+  }
+
+  /**
+   * Returns the number of readings dropped since logging was last started, because they arrived
+   * faster than they could be written. Raising [`BufferSize`](#DataLogger.BufferSize) helps.
+   */
+  @SimpleProperty(category = PropertyCategory.BEHAVIOR)
+  public long DroppedSamples() {
+    return buffer == null ? dropped : buffer.getDropped();
+  }
+
+  /**
+   * Starts logging. Readings are added to the end of the log file, which is created if needed.
+   */
+  @SimpleFunction
+  public void Start() {
+    if (buffer != null || shutDown) {
+      return;
+    }
+    if (needsPermission(fileName)) {
+      form.askPermission(Manifest.permission.WRITE_EXTERNAL_STORAGE, new PermissionResultHandler() {
+        @Override
+        public void HandlePermissionResponse(String permission, boolean granted) {
+          if (granted) {
+            Start();
+          } else {
+            form.dispatchPermissionDeniedEvent(DataLogger.this, "Start", permission);
+          }
+        }
+      });
+      return;
+    }
+
+    final java.io.File file = logFile();
+    final DataLogBuffer newBuffer = new DataLogBuffer(channels, bufferSize);
+    buffer = newBuffer;
+    scratch = new double[channels];
+    flushTask = new Runnable() {
+      @Override
+      public void run() {
+        flush(newBuffer, file);
+      }
+    };
+    ioThread.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          appender = new DataLogFile.Appender(file, newBuffer.getChannels(),
+              newBuffer.getCapacity());
+          flushTimes = new long[newBuffer.getCapacity()];
+          flushValues = new double[newBuffer.getCapacity() * newBuffer.getChannels()];
+        } catch (IOException e) {
+          Log.e(LOG_TAG, "Unable to open " + file, e);
+          form.dispatchErrorOccurredEvent(DataLogger.this, "Start",
+              ErrorMessages.ERROR_DATALOGGER_CANNOT_OPEN, fileName, e.getMessage());
+          form.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+              if (buffer == newBuffer) {
+                Stop();
+              }
+            }
+          });
+        }
+      }
+    });
+    if (flushInterval > 0) {
+      scheduledFlush = ioThread.scheduleWithFixedDelay(flushTask, flushInterval, flushInterval,
+          TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Stops logging, writing any readings still in memory.
+   */
+  @SimpleFunction
+  public void Stop() {
+    if (buffer == null) {
+      return;
+    }
+    if (scheduledFlush != null) {
+      scheduledFlush.cancel(false);
+      scheduledFlush = null;
+    }
+    dropped = buffer.getDropped();
+    final Runnable flush = flushTask;
+    buffer = null;
+    flushTask = null;
+    ioThread.execute(new Runnable() {
+      @Override
+      public void run() {
+        flush.run();
+        closeAppender();
+      }
+    });
+  }
+
+  /**
+   * Logs a reading made now. The values should be numbers, one per channel.
+   *
+   * @param values the values of the reading
+   */
+  @SimpleFunction
+  public void Log(YailList values) {
+    if (buffer == null) {
+      form.dispatchErrorOccurredEvent(this, "Log", ErrorMessages.ERROR_DATALOGGER_NOT_LOGGING);
+      return;
+    }
+    Object[] items = values.toArray();
+    int count = Math.min(items.length, scratch.length);
+    for (int i = 0; i < count; i++) {
+      scratch[i] = toDouble(items[i]);
+    }
+    buffer.add(System.currentTimeMillis(), scratch, count);
+    flushIfHalfFull();
+  }
+
+  /**
+   * Removes all readings from the log, including those not written yet.
+   */
+  @SimpleFunction
+  public void Clear() {
+    if (shutDown) {
+      return;
+    }
+    final DataLogBuffer current = buffer;
+    final java.io.File file = logFile();
+    ioThread.execute(new Runnable() {
+      @Override
+      public void run() {
+        if (current != null) {
+          current.clear();
+        }
+        try {
+          if (appender != null) {
+            appender.truncate();
+          } else {
+            file.delete();
+          }
+        } catch (IOException e) {
+          Log.e(LOG_TAG, "Unable to clear " + file, e);
+          form.dispatchErrorOccurredEvent(DataLogger.this, "Clear",
+              ErrorMessages.ERROR_DATALOGGER_CANNOT_WRITE, fileName);
+        }
+      }
+    });
+  }
+
+  /**
+   * Requests the number of readings in the log and the times of the first and last ones. The
+   * answer is delivered by the [`GotSummary`](#DataLogger.GotSummary) event.
+   */
+  @SimpleFunction
+  public void RequestSummary() {
+    if (shutDown) {
+      return;
+    }
+    final java.io.File file = logFile();
+    final Runnable flush = flushTask;
+    ioThread.execute(new Runnable() {
+      @Override
+      public void run() {
+        if (flush != null) {
+          flush.run();
+        }
+        int count = 0;
+        long startTime = 0;
+        long endTime = 0;
+        if (file.exists()) {
+          try {
+            DataLogFile.Reader reader = new DataLogFile.Reader(file);
+            try {
+              count = reader.size();
+              if (count > 0) {
+                startTime = reader.time(0);
+                endTime = reader.time(count - 1);
+              }
+            } finally {
+              reader.close();
+            }
+          } catch (IOException e) {
+            readFailed("RequestSummary", e);
+            return;
+          }
+        }
+        final int finalCount = count;
+        final long finalStartTime = startTime;
+        final long finalEndTime = endTime;
+        form.runOnUiThread(new Runnable() {
+          @Override
+          public void run() {
+            GotSummary(finalCount, finalStartTime, finalEndTime);
+          }
+        });
+      }
+    });
+  }
+
+  /**
+   * Requests at most `points` points summarizing one channel of the log between two times, for
+   * charting. Each point is the average of a run of consecutive readings. The answer is
+   * delivered by the [`GotSeries`](#DataLogger.GotSeries) event.
+   *
+   * @param channel the channel, starting at 1
+   * @param startTime the earliest time, in milliseconds
+   * @param endTime the latest time, in milliseconds
+   * @param points the largest number of points
+   */
+  @SimpleFunction
+  public void RequestSeries(final int channel, final long startTime, final long endTime,
+      final int points) {
+    if (shutDown) {
+      return;
+    }
+    final java.io.File file = logFile();
+    final Runnable flush = flushTask;
+    ioThread.execute(new Runnable() {
+      @Override
+      public void run() {
+        if (flush != null) {
+          flush.run();
+        }
+        final List<YailList> series = new ArrayList<YailList>();
+        if (file.exists()) {
+          try {
+            DataLogFile.Reader reader = new DataLogFile.Reader(file);
+            try {
+              if (channel < 1 || channel > reader.getChannels()) {
+                form.dispatchErrorOccurredEvent(DataLogger.this, "RequestSeries",
+                    ErrorMessages.ERROR_DATALOGGER_INVALID_CHANNEL, channel,
+                    reader.getChannels());
+                return;
+              }
+              DataLogFile.Series downsampled = reader.downsample(channel - 1, startTime, endTime,
+                  Math.max(1, points));
+              for (int i = 0; i < downsampled.size(); i++) {
+                if (!Double.isNaN(downsampled.values[i])) {
+                  series.add(YailList.makeList(
+                      new Object[] { downsampled.times[i], downsampled.values[i] }));
+                }
+              }
+            } finally {
+              reader.close();
+            }
+          } catch (IOException e) {
+            readFailed("RequestSeries", e);
+            return;
+          }
+        }
+        form.runOnUiThread(new Runnable() {
+          @Override
+          public void run() {
+            GotSeries(channel, YailList.makeList(series));
+          }
+        });
+      }
+    });
+  }
+
+  /**
+   * Writes the log as comma-separated values to another file, with one line per reading holding
+   * its time followed by its values. The file name follows the same rules as
+   * [`FileName`](#DataLogger.FileName). When done, the
+   * [`AfterExported`](#DataLogger.AfterExported) event runs.
+   *
+   * @param csvFileName the name of the CSV file
+   */
+  @SimpleFunction
+  public void ExportCSV(final String csvFileName) {
+    if (shutDown) {
+      return;
+    }
+    if (needsPermission(csvFileName)) {
+      form.askPermission(Manifest.permission.WRITE_EXTERNAL_STORAGE, new PermissionResultHandler() {
+        @Override
+        public void HandlePermissionResponse(String permission, boolean granted) {
+          if (granted) {
+            ExportCSV(csvFileName);
+          } else {
+            form.dispatchPermissionDeniedEvent(DataLogger.this, "ExportCSV", permission);
+          }
+        }
+      });
+      return;
+    }
+    final java.io.File file = logFile();
+    final java.io.File csvFile = new java.io.File(absoluteFileName(csvFileName));
+    final Runnable flush = flushTask;
+    ioThread.execute(new Runnable() {
+      @Override
+      public void run() {
+        if (flush != null) {
+          flush.run();
+        }
+        try {
+          DataLogFile.Reader reader = new DataLogFile.Reader(file);
+          try {
+            Writer out = new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(csvFile), "UTF-8"), 65536);
+            try {
+              reader.exportCsv(out);
+            } finally {
+              out.close();
+            }
+          } finally {
+            reader.close();
+          }
+        } catch (IOException e) {
+          Log.e(LOG_TAG, "Unable to export " + file + " to " + csvFile, e);
+          form.dispatchErrorOccurredEvent(DataLogger.this, "ExportCSV",
+              ErrorMessages.ERROR_DATALOGGER_CANNOT_WRITE, csvFileName);
+          return;
+        }
+        form.runOnUiThread(new Runnable() {
+          @Override
+          public void run() {
+            AfterExported(csvFileName);
+          }
+        });
+      }
+    });
+  }
+
+  /**
+   * Indicates the answer to [`RequestSummary`](#DataLogger.RequestSummary).
+   *
+   * @param count the number of readings in the log
+   * @param startTime the time of the first reading, in milliseconds, or 0 if there is none
+   * @param endTime the time of the last reading, in milliseconds, or 0 if there is none
+   */
+  @SimpleEvent
+  public void GotSummary(int count, long startTime, long endTime) {
+    EventDispatcher.dispatchEvent(this, "GotSummary", count, startTime, endTime);
+  }
+
+  /**
+   * Indicates the answer to [`RequestSeries`](#DataLogger.RequestSeries). Each item of `series`
+   * is a list of a time, in milliseconds, and a value.
+   *
+   * @param channel the channel that was requested
+   * @param series the points, in order of time
+   */
+  @SimpleEvent
+  public void GotSeries(int channel, YailList series) {
+    EventDispatcher.dispatchEvent(this, "GotSeries", channel, series);
+  }
+
+  /**
+   * Indicates that [`ExportCSV`](#DataLogger.ExportCSV) has finished writing a file.
+   *
+   * @param fileName the name of the CSV file
+   */
+  @SimpleEvent
+  public void AfterExported(String fileName) {
+    EventDispatcher.dispatchEvent(this, "AfterExported", fileName);
+  }
+
+  // SampledSensor.SampleListener implementation
+
+  @Override
+  public void onSample(SampledSensor sensor, long time, float[] values) {
+    if (buffer != null) {
+      buffer.add(time, values, values.length);
+      flushIfHalfFull();
+    }
+  }
+
+  // OnPauseListener implementation
+
+  @Override
+  public void onPause() {
+    // The app may be killed while paused, so get the readings onto disk.
+    if (flushTask != null) {
+      ioThread.execute(flushTask);
+    }
+  }
+
+  // OnDestroyListener implementation
+
+  @Override
+  public void onDestroy() {
+    shutdown();
+  }
+
+  // Deleteable implementation
+
+  @Override
+  public void onDelete() {
+    shutdown();
+  }
+
+  private void shutdown() {
+    if (shutDown) {
+      return;
+    }
+    if (source instanceof SampledSensor) {
+      ((SampledSensor) source).removeSampleListener(this);
+    }
+    Stop();
+    shutDown = true;
+    ioThread.shutdown();  // Lets the final flush finish
+  }
+
+  private void flushIfHalfFull() {
+    if (buffer.size() >= buffer.getCapacity() / 2 && flushPending.compareAndSet(false, true)) {
+      ioThread.execute(flushTask);
+    }
+  }
+
+  // Runs on ioThread.
+  private void flush(DataLogBuffer readings, java.io.File file) {
+    flushPending.set(false);
+    if (appender == null) {
+      readings.clear();
+      return;
+    }
+    try {
+      int count;
+      while ((count = readings.drainTo(flushTimes, flushValues)) > 0) {
+        appender.append(flushTimes, flushValues, count);
+      }
+    } catch (IOException e) {
+      Log.e(LOG_TAG, "Unable to write to " + file, e);
+      readings.clear();
+      form.dispatchErrorOccurredEvent(this, "Log", ErrorMessages.ERROR_DATALOGGER_CANNOT_WRITE,
+          fileName);
+    }
+  }
+
+  // Runs on ioThread.
+  private void closeAppender() {
+    if (appender != null) {
+      try {
+        appender.close();
+      } catch (IOException e) {
+        Log.w(LOG_TAG, "Unable to close log", e);
+      }
+      appender = null;
+      flushTimes = null;
+      flushValues = null;
+    }
+  }
+
+  private void readFailed(String functionName, IOException e) {
+    Log.e(LOG_TAG, "Unable to read " + fileName, e);
+    form.dispatchErrorOccurredEvent(this, functionName, ErrorMessages.ERROR_DATALOGGER_CANNOT_READ,
+        fileName);
+  }
+
+  private java.io.File logFile() {
+    return new java.io.File(absoluteFileName(fileName));
+  }
+
+  private boolean needsPermission(String name) {
+    return MediaUtil.isExternalFile(form, absoluteFileName(name))
+        && form.isDeniedPermission(Manifest.permission.WRITE_EXTERNAL_STORAGE);
+  }
+
+  /**
+   * Returns the absolute path of a file name, following the rules of the File component.
+   */
+  private String absoluteFileName(String name) {
+    if (name.startsWith("/")) {
+      return QUtil.getExternalStoragePath(form) + name;
+    }
+    java.io.File dirPath;
+    if (form.isRepl()) {
+      dirPath = new java.io.File(QUtil.getReplDataPath(form));
+    } else {
+      dirPath = form.getFilesDir();
+    }
+    if (!dirPath.exists()) {
+      dirPath.mkdirs();
+    }
+    return dirPath.getPath() + "/" + name;
+  }
+
+  private static double toDouble(Object value) {
+    if (value instanceof Number) {
+      return ((Number) value).doubleValue();
+    }
+    try {
+      return Double.parseDouble(value.toString());
+    } catch (NumberFormatException e) {
+      return Double.NaN;
+    }
+  }
+}
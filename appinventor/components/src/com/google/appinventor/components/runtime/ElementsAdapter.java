@@ -0,0 +1,232 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.Filter;
+import android.widget.Filterable;
+import android.widget.TextView;
+
+import com.google.appinventor.components.runtime.util.ElementsFilter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A list adapter over text elements, shared by ListView and ListPickerActivity.
+ *
+ * <p>Rows are formatted by {@link #bindRow} only when they are shown, so a long list costs
+ * no more to set than a short one. Elements can be added, removed and replaced one at a time,
+ * which only rebinds the visible rows. Filtering runs on the filter thread against a
+ * snapshot of the elements, using an {@link ElementsFilter} as its index.
+ *
+ * <p>All methods except the filter's must be called on the UI thread.
+ */
+abstract class ElementsAdapter extends BaseAdapter implements Filterable {
+
+  /**
+   * The elements as of a given version, handed to the filter thread.
+   */
+  private static final class Snapshot {
+    final String[] elements;
+    final int version;
+
+    Snapshot(String[] elements, int version) {
+      this.elements = elements;
+      this.version = version;
+    }
+  }
+
+  /**
+   * The result of filtering a snapshot.
+   */
+  private static final class Matches {
+    final int version;
+    final String query;
+    final int[] elements;
+
+    Matches(int version, String query, int[] elements) {
+      this.version = version;
+      this.query = query;
+      this.elements = elements;
+    }
+  }
+
+  private final Context context;
+  private final ElementsFilter index = new ElementsFilter();
+  private List<String> elements = new ArrayList<String>();
+  private int version;  // incremented whenever the elements change
+  private String query = "";
+  private int[] filtered;  // the elements shown while filtering, or null
+  private volatile Snapshot snapshot;
+
+  private final Filter filter = new Filter() {
+    @Override
+    protected FilterResults performFiltering(CharSequence constraint) {
+      Snapshot current = snapshot;
+      FilterResults results = new FilterResults();
+      if (current == null) {
+        return results;  // Not requested through filter(CharSequence)
+      }
+      String text = constraint == null ? "" : constraint.toString();
+      int[] matches = index.filter(current.elements, current.version, text);
+      results.values = new Matches(current.version, text, matches);
+      results.count = matches.length;
+      return results;
+    }
+
+    @Override
+    protected void publishResults(CharSequence constraint, FilterResults results) {
+      Matches matches = (Matches) results.values;
+      if (matches == null || matches.version != version || !matches.query.equals(query)) {
+        return;  // A newer request is pending
+      }
+      filtered = matches.elements;
+      notifyDataSetChanged();
+    }
+  };
+
+  ElementsAdapter(Context context) {
+    this.context = context;
+  }
+
+  /**
+   * Binds a row to an element.
+   *
+   * @param row the row, which may have been bound to another element before
+   * @param element the index of the element
+   */
+  protected abstract void bindRow(TextView row, int element);
+
+  /**
+   * Replaces all the elements.
+   */
+  void setElements(String[] items) {
+    elements = new ArrayList<String>(Arrays.asList(items));
+    if (filtered != null) {
+      filtered = new int[0];  // until the new elements are filtered
+    }
+    changed();
+  }
+
+  List<String> getElements() {
+    return Collections.unmodifiableList(elements);
+  }
+
+  int getElementCount() {
+    return elements.size();
+  }
+
+  String getElement(int element) {
+    return elements.get(element);
+  }
+
+  /**
+   * Inserts an element before the given index.
+   */
+  void addElement(int element, String text) {
+    elements.add(element, text);
+    if (filtered != null) {
+      for (int i = 0; i < filtered.length; i++) {
+        if (filtered[i] >= element) {
+          filtered[i]++;
+        }
+      }
+    }
+    changed();
+  }
+
+  void removeElement(int element) {
+    elements.remove(element);
+    if (filtered != null) {
+      int[] remaining = new int[filtered.length];
+      int n = 0;
+      for (int i = 0; i < filtered.length; i++) {
+        if (filtered[i] != element) {
+          remaining[n++] = filtered[i] > element ? filtered[i] - 1 : filtered[i];
+        }
+      }
+      filtered = Arrays.copyOf(remaining, n);
+    }
+    changed();
+  }
+
+  void setElement(int element, String text) {
+    elements.set(element, text);
+    changed();
+  }
+
+  /**
+   * Returns the index of the element shown at a position of the list.
+   */
+  int getElementIndex(int position) {
+    return filtered == null ? position : filtered[position];
+  }
+
+  /**
+   * Shows only the elements matching the text typed into the filter bar. Matching happens in
+   * the background, and the list changes when it is done.
+   */
+  void filter(CharSequence text) {
+    query = text == null ? "" : text.toString();
+    if (query.length() == 0) {
+      if (filtered != null) {
+        filtered = null;
+        notifyDataSetChanged();
+      }
+      return;
+    }
+    if (snapshot == null || snapshot.version != version) {
+      snapshot = new Snapshot(elements.toArray(new String[elements.size()]), version);
+    }
+    filter.filter(query);
+  }
+
+  private void changed() {
+    version++;
+    if (filtered != null) {
+      filter(query);
+    }
+    notifyDataSetChanged();
+  }
+
+  @Override
+  public Filter getFilter() {
+    return filter;
+  }
+
+  @Override
+  public int getCount() {
+    return filtered == null ? elements.size() : filtered.length;
+  }
+
+  @Override
+  public String getItem(int position) {
+    return elements.get(getElementIndex(position));
+  }
+
+  @Override
+  public long getItemId(int position) {
+    return getElementIndex(position);
+  }
+
+  @Override
+  public View getView(int position, View convertView, ViewGroup parent) {
+    TextView row = (TextView) convertView;
+    if (row == null) {
+      row = (TextView) LayoutInflater.from(context)
+          .inflate(android.R.layout.simple_list_item_1, parent, false);
+    }
+    bindRow(row, getElementIndex(position));
+    return row;
+  }
+}
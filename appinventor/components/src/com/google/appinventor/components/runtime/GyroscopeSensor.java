@@ -35,7 +35,7 @@ import android.hardware.SensorManager;
     iconName = "images/gyroscopesensor.png")
 
 @SimpleObject
-public class GyroscopeSensor extends AndroidNonvisibleComponent
+public class GyroscopeSensor extends SampledSensor
     implements SensorEventListener, Deleteable, OnPauseListener, OnResumeListener {
 
   // Properties
@@ -53,7 +53,7 @@ public class GyroscopeSensor extends AndroidNonvisibleComponent
    * Creates a new GyroscopeSensor component.
    */
   public GyroscopeSensor(ComponentContainer container) {
-    super(container.$form());
+    super(container.$form(), 3);
 
     // Get sensors, and start listening.
     sensorManager = (SensorManager) form.getSystemService(Context.SENSOR_SERVICE);
@@ -83,6 +83,7 @@ public class GyroscopeSensor extends AndroidNonvisibleComponent
       xAngularVelocity = 0;
       yAngularVelocity = 0;
       zAngularVelocity = 0;
+      clearSamples();
     }
   }
 
@@ -207,9 +208,13 @@ public class GyroscopeSensor extends AndroidNonvisibleComponent
       yAngularVelocity = (float) Math.toDegrees(sensorEvent.values[1]);
       zAngularVelocity = (float) Math.toDegrees(sensorEvent.values[2]);
 
+      addSample(xAngularVelocity, yAngularVelocity, zAngularVelocity);
+
       // Raise event.
-      GyroscopeChanged(xAngularVelocity, yAngularVelocity, zAngularVelocity,
-          sensorEvent.timestamp);
+      if (eventDue()) {
+        GyroscopeChanged(xAngularVelocity, yAngularVelocity, zAngularVelocity,
+            sensorEvent.timestamp);
+      }
     }
   }
 
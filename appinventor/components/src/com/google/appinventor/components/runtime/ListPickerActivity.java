@@ -9,12 +9,9 @@ package com.google.appinventor.components.runtime;
 import android.content.pm.ActivityInfo;
 import android.graphics.Color;
 import android.view.KeyEvent;
-import android.view.LayoutInflater;
 import android.view.View;
-import android.view.ViewGroup;
 import android.view.WindowManager;
 import android.widget.AdapterView;
-import android.widget.ArrayAdapter;
 import android.widget.EditText;
 import android.widget.LinearLayout;
 import android.widget.ListView;
@@ -41,7 +38,7 @@ public class ListPickerActivity extends AppInventorCompatActivity implements Ada
   private ListView listView;
 
   // Listview Adapter
-  MyAdapter adapter;
+  ElementsAdapter adapter;
 
   // Search EditText
   EditText txtSearchBox;
@@ -77,7 +74,7 @@ public class ListPickerActivity extends AppInventorCompatActivity implements Ada
       setTitle(title);
     }
     if (myIntent.hasExtra(ListPicker.LIST_ACTIVITY_ARG_NAME)) {
-      String items[] = getIntent().getStringArrayExtra(ListPicker.LIST_ACTIVITY_ARG_NAME);
+      String items[] = myIntent.getStringArrayExtra(ListPicker.LIST_ACTIVITY_ARG_NAME);
       listView = new ListView(this);
       listView.setOnItemClickListener(this);
       listView.setScrollingCacheEnabled(false);
@@ -88,7 +85,14 @@ public class ListPickerActivity extends AppInventorCompatActivity implements Ada
       viewLayout.setBackgroundColor(backgroundColor);
 
       // Adding items to listview
-      adapter = new MyAdapter(this, items);
+      adapter = new ElementsAdapter(this) {
+        @Override
+        protected void bindRow(TextView row, int element) {
+          row.setText(getElement(element));
+          row.setTextColor(itemColor);
+        }
+      };
+      adapter.setElements(items);
       listView.setAdapter(adapter);
       String showFilterBar =myIntent.getStringExtra(ListPicker.LIST_ACTIVITY_SHOW_SEARCH_BAR);
 
@@ -112,7 +116,7 @@ public class ListPickerActivity extends AppInventorCompatActivity implements Ada
         @Override
         public void onTextChanged(CharSequence cs, int arg1, int arg2, int arg3) {
           // When user changed the Text
-          ListPickerActivity.this.adapter.getFilter().filter(cs);
+          ListPickerActivity.this.adapter.filter(cs);
         }
 
         @Override
@@ -146,10 +150,11 @@ public class ListPickerActivity extends AppInventorCompatActivity implements Ada
 
   @Override
   public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
-    String selected = (String) parent.getAdapter().getItem(position);
+    int element = adapter.getElementIndex(position);
+    String selected = adapter.getElement(element);
     Intent resultIntent = new Intent();
     resultIntent.putExtra(ListPicker.LIST_ACTIVITY_RESULT_NAME, selected);
-    resultIntent.putExtra(ListPicker.LIST_ACTIVITY_RESULT_INDEX, position + 1);
+    resultIntent.putExtra(ListPicker.LIST_ACTIVITY_RESULT_INDEX, element + 1);
     closeAnim = selected;
     setResult(RESULT_OK, resultIntent);
     finish();
@@ -164,30 +169,4 @@ public class ListPickerActivity extends AppInventorCompatActivity implements Ada
     super.onBackPressed();
   }
 
-
-  private static class MyAdapter extends ArrayAdapter<String> {
-
-    private final Context mContext;
-
-    public MyAdapter(final Context context, final String[] items) {
-      super(context, android.R.layout.activity_list_item, items);
-      mContext = context;
-    }
-
-    @Override
-    public long getItemId(final int position) {
-      return getItem(position).hashCode();
-    }
-
-    @Override
-    public View getView(final int position, final View convertView, final ViewGroup parent) {
-      TextView tv = (TextView) convertView;
-      if (tv == null) {
-        tv = (TextView) LayoutInflater.from(mContext).inflate(android.R.layout.simple_list_item_1, parent, false);
-      }
-      tv.setText(getItem(position));
-      tv.setTextColor(itemColor);
-      return tv;
-    }
-  }
 }
@@ -12,18 +12,15 @@ import android.graphics.drawable.Drawable;
 import android.graphics.drawable.GradientDrawable;
 import android.graphics.drawable.StateListDrawable;
 import android.text.Editable;
-import android.text.Spannable;
-import android.text.SpannableString;
 import android.text.TextWatcher;
-import android.text.style.AbsoluteSizeSpan;
-import android.text.style.ForegroundColorSpan;
+import android.util.TypedValue;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.AbsListView;
 import android.widget.AdapterView;
-import android.widget.ArrayAdapter;
 import android.widget.EditText;
 import android.widget.LinearLayout;
+import android.widget.TextView;
 
 import android.widget.LinearLayout.LayoutParams;
 import com.google.appinventor.components.annotations.DesignerComponent;
@@ -31,12 +28,14 @@ import com.google.appinventor.components.annotations.DesignerProperty;
 import com.google.appinventor.components.annotations.IsColor;
 import com.google.appinventor.components.annotations.PropertyCategory;
 import com.google.appinventor.components.annotations.SimpleEvent;
+import com.google.appinventor.components.annotations.SimpleFunction;
 import com.google.appinventor.components.annotations.SimpleObject;
 import com.google.appinventor.components.annotations.SimpleProperty;
 import com.google.appinventor.components.common.ComponentCategory;
 import com.google.appinventor.components.common.PropertyTypeConstants;
 import com.google.appinventor.components.common.YaVersion;
 import com.google.appinventor.components.runtime.util.ElementsUtil;
+import com.google.appinventor.components.runtime.util.ErrorMessages;
 import com.google.appinventor.components.runtime.util.YailList;
 
 /**
@@ -71,11 +70,9 @@ public final class ListView extends AndroidViewComponent implements AdapterView.
   protected final ComponentContainer container;
   private final LinearLayout listViewLayout;
 
-  // The adapter contains spannables rather than strings, since we will be changing the item
-  // colors using ForegroundColorSpan
-  private ArrayAdapter<Spannable> adapter;
-  private ArrayAdapter<Spannable> adapterCopy;
-  private YailList items;
+  // The adapter holds the text of the items, and styles each row only when it is shown
+  private final ElementsAdapter adapter;
+  private YailList items;  // the items as a list, or null until Elements is next read
   private int selectionIndex;
   private String selection;
   private boolean showFilter = false;
@@ -105,6 +102,16 @@ public final class ListView extends AndroidViewComponent implements AdapterView.
   public ListView(ComponentContainer container) {
     super(container);
     this.container = container;
+    adapter = new ElementsAdapter(container.$context()) {
+      @Override
+      protected void bindRow(TextView row, int element) {
+        row.setText(getElement(element));
+        row.setTextColor(textColor);
+        row.setTextSize(TypedValue.COMPLEX_UNIT_PX, displayTextSize());
+        row.setBackgroundDrawable(element == selectionIndex - 1 ? selectionDrawable
+            : UNSELECTED_DRAWABLE);
+      }
+    };
     items = YailList.makeEmptyList();
     // initialize selectionIndex which also sets selection
     SelectionIndex(0);
@@ -114,6 +121,7 @@ public final class ListView extends AndroidViewComponent implements AdapterView.
     view.setChoiceMode(android.widget.ListView.CHOICE_MODE_SINGLE);
     view.setScrollingCacheEnabled(false);
     view.setSelector(new StateListDrawable()); // Set to empty selector to prevent issues with dynamic highlighting
+    view.setAdapter(adapter);
     listViewLayout = new LinearLayout(container.$context());
     listViewLayout.setOrientation(LinearLayout.VERTICAL);
 
@@ -132,7 +140,7 @@ public final class ListView extends AndroidViewComponent implements AdapterView.
         @Override
         public void onTextChanged(CharSequence cs, int arg1, int arg2, int arg3) {
           // When user changed the Text
-          adapter.getFilter().filter(cs);
+          adapter.filter(cs);
         }
 
         @Override
@@ -247,7 +255,7 @@ public final class ListView extends AndroidViewComponent implements AdapterView.
       category = PropertyCategory.BEHAVIOR)
   public void Elements(YailList itemsList) {
     items = ElementsUtil.elements(itemsList, "Listview");
-    setAdapterData();
+    adapter.setElements(items.toStringArray());
   }
 
   /**
@@ -258,6 +266,9 @@ public final class ListView extends AndroidViewComponent implements AdapterView.
    */
   @SimpleProperty(category = PropertyCategory.BEHAVIOR)
   public YailList Elements() {
+    if (items == null) {
+      items = YailList.makeList(adapter.getElements());
+    }
     return items;
   }
 
@@ -272,46 +283,97 @@ public final class ListView extends AndroidViewComponent implements AdapterView.
       "list.",  category = PropertyCategory.BEHAVIOR)
   public void ElementsFromString(String itemstring) {
     items = ElementsUtil.elementsFromString(itemstring);
-    setAdapterData();
+    adapter.setElements(items.toStringArray());
   }
 
   /**
-   * Sets the items of the ListView through an adapter
+   * Adds an item to the end of the list.
+   *
+   * @param item the text of the new item
    */
-  public void setAdapterData(){
-    adapter = new ArrayAdapter<Spannable>(container.$context(), android.R.layout.simple_list_item_1,
-        itemsToColoredText());
-    view.setAdapter(adapter);
+  @SimpleFunction(description = "Adds an item to the end of the list.")
+  public void AddItem(String item) {
+    adapter.addElement(adapter.getElementCount(), item);
+    items = null;
+  }
 
-    adapterCopy = new ArrayAdapter<Spannable>(container.$context(), android.R.layout.simple_list_item_1);
-    for (int i = 0; i < adapter.getCount(); ++i) {
-      adapterCopy.insert(adapter.getItem(i), i);
+  /**
+   * Inserts an item at the given position, starting at `1`. The items from that position on
+   * move down by one. The index may be one more than the number of items, to add the item at
+   * the end.
+   *
+   * @param index the position of the new item
+   * @param item the text of the new item
+   */
+  @SimpleFunction(description = "Inserts an item at the given position, starting at 1. The " +
+      "items from that position on move down by one.")
+  public void AddItemAtIndex(int index, String item) {
+    if (!isValidIndex("AddItemAtIndex", index, adapter.getElementCount() + 1)) {
+      return;
+    }
+    adapter.addElement(index - 1, item);
+    items = null;
+    if (selectionIndex >= index) {
+      selectionIndex++;
     }
   }
 
-  public Spannable[] itemsToColoredText() {
-    // TODO(hal): Generalize this so that different items could have different
-    // colors and even fonts and sizes
-    int size = items.size();
-    int displayTextSize = textSize;
-    Spannable [] objects = new Spannable[size];
-    for (int i = 1; i <= size; i++) {
-      // Note that the ListPicker and otherPickers pickers convert Yail lists to string by calling
-      // YailList.ToStringArray.
-      // ListView however, does the string conversion via the adapter, so we must ensure
-      // that the adapter uses YailListElementToSring
-      String itemString = YailList.YailListElementToString(items.get(i));
-      // Is there a more efficient way to do conversion to spannable strings that does not
-      // need to allocate new objects?
-      Spannable chars = new SpannableString(itemString);
-      chars.setSpan(new ForegroundColorSpan(textColor),0,chars.length(),0);
-      if (!container.$form().getCompatibilityMode()) {
-        displayTextSize = (int) (textSize * container.$form().deviceDensity());
-      }
-      chars.setSpan(new AbsoluteSizeSpan(displayTextSize),0,chars.length(),0);
-      objects[i - 1] = chars;
+  /**
+   * Removes the item at the given position, starting at `1`. If it was selected,
+   * {@link #SelectionIndex(int)} becomes `0` and {@link #Selection(String)} becomes empty.
+   *
+   * @param index the position of the item
+   */
+  @SimpleFunction(description = "Removes the item at the given position, starting at 1.")
+  public void RemoveItemAtIndex(int index) {
+    if (!isValidIndex("RemoveItemAtIndex", index, adapter.getElementCount())) {
+      return;
+    }
+    adapter.removeElement(index - 1);
+    items = null;
+    if (selectionIndex == index) {
+      selectionIndex = 0;
+      selection = "";
+      updateSelectionIndex();
+    } else if (selectionIndex > index) {
+      selectionIndex--;
+    }
+  }
+
+  /**
+   * Replaces the text of the item at the given position, starting at `1`. The rows on screen
+   * are rebound, but the other items are not restyled.
+   *
+   * @param index the position of the item
+   * @param item the new text of the item
+   */
+  @SimpleFunction(description = "Replaces the text of the item at the given position, " +
+      "starting at 1.")
+  public void UpdateItemAtIndex(int index, String item) {
+    if (!isValidIndex("UpdateItemAtIndex", index, adapter.getElementCount())) {
+      return;
+    }
+    adapter.setElement(index - 1, item);
+    items = null;
+    if (selectionIndex == index) {
+      selection = item;
+    }
+  }
+
+  private boolean isValidIndex(String functionName, int index, int max) {
+    if (index < 1 || index > max) {
+      container.$form().dispatchErrorOccurredEvent(this, functionName,
+          ErrorMessages.ERROR_LISTVIEW_INDEX_OUT_OF_BOUNDS, index, adapter.getElementCount());
+      return false;
+    }
+    return true;
+  }
+
+  private int displayTextSize() {
+    if (container.$form().getCompatibilityMode()) {
+      return textSize;
     }
-    return objects;
+    return (int) (textSize * container.$form().deviceDensity());
   }
 
   /**
@@ -345,9 +407,9 @@ public final class ListView extends AndroidViewComponent implements AdapterView.
       ,
       category = PropertyCategory.BEHAVIOR)
   public void SelectionIndex(int index){
-    selectionIndex = ElementsUtil.selectionIndex(index, items);
+    selectionIndex = index <= 0 || index > adapter.getElementCount() ? 0 : index;
     // Now, we need to change Selection to correspond to SelectionIndex.
-    selection = ElementsUtil.setSelectionFromIndex(index, items);
+    selection = selectionIndex == 0 ? "" : adapter.getElement(selectionIndex - 1);
 
     updateSelectionIndex();
   }
@@ -373,7 +435,8 @@ public final class ListView extends AndroidViewComponent implements AdapterView.
   public void Selection(String value) {
     selection = value;
     // Now, we need to change SelectionIndex to correspond to Selection.
-    selectionIndex = ElementsUtil.setSelectedIndexFromValue(value, items);
+    // If several items match, use the first.
+    selectionIndex = adapter.getElements().indexOf(value) + 1;
 
     updateSelectionIndex();
   }
@@ -412,9 +475,9 @@ public final class ListView extends AndroidViewComponent implements AdapterView.
    */
   @Override
   public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
-    Spannable item = (Spannable) parent.getAdapter().getItem(position);
-    this.selection = item.toString();
-    this.selectionIndex = adapterCopy.getPosition(item) + 1; // AI lists are 1-based
+    int element = adapter.getElementIndex(position);
+    this.selection = adapter.getElement(element);
+    this.selectionIndex = element + 1; // AI lists are 1-based
 
     // Un-set drawable from previous last selected item
     if (lastSelected != null) {
@@ -571,7 +634,7 @@ public final class ListView extends AndroidViewComponent implements AdapterView.
   @SimpleProperty
   public void TextColor(int argb) {
       textColor = argb;
-      setAdapterData();
+      adapter.notifyDataSetChanged();
   }
 
   /**
@@ -599,6 +662,6 @@ public final class ListView extends AndroidViewComponent implements AdapterView.
         textSize = 999;
       else
         textSize = fontSize;
-      setAdapterData();
+      adapter.notifyDataSetChanged();
   }
 }
@@ -30,7 +30,7 @@ import com.google.appinventor.components.common.YaVersion;
     version = YaVersion.MAGNETICFIELDSENSOR_COMPONENT_VERSION)
 @SimpleObject
 
-public class MagneticFieldSensor extends AndroidNonvisibleComponent implements SensorEventListener, Deleteable, OnPauseListener, OnResumeListener, OnStopListener, SensorComponent {
+public class MagneticFieldSensor extends SampledSensor implements SensorEventListener, Deleteable, OnPauseListener, OnResumeListener, OnStopListener, SensorComponent {
   private double absoluteStrength;
   private boolean enabled = true;
   private boolean listening;
@@ -41,7 +41,7 @@ public class MagneticFieldSensor extends AndroidNonvisibleComponent implements S
   private float zStrength;
 
   public MagneticFieldSensor(ComponentContainer container) {
-    super(container.$form());
+    super(container.$form(), 4);
     form.registerForOnResume(this);
     form.registerForOnStop(this);
     form.registerForOnPause(this);
@@ -147,6 +147,7 @@ public class MagneticFieldSensor extends AndroidNonvisibleComponent implements S
       xStrength = 0.0f;
       yStrength = 0.0f;
       zStrength = 0.0f;
+      clearSamples();
     }
   }
 
@@ -157,7 +158,10 @@ public class MagneticFieldSensor extends AndroidNonvisibleComponent implements S
       yStrength = sensorEvent.values[1];
       zStrength = sensorEvent.values[2];
       absoluteStrength = Math.sqrt((double) (((xStrength * xStrength) + (yStrength * yStrength)) + (zStrength * zStrength)));
-      MagneticChanged(xStrength, yStrength, zStrength, absoluteStrength);
+      addSample(xStrength, yStrength, zStrength, (float) absoluteStrength);
+      if (eventDue()) {
+        MagneticChanged(xStrength, yStrength, zStrength, absoluteStrength);
+      }
     }
   }
 
@@ -73,7 +73,7 @@ import android.view.WindowManager;
     iconName = "images/orientationsensor.png")
 
 @SimpleObject
-public class OrientationSensor extends AndroidNonvisibleComponent
+public class OrientationSensor extends SampledSensor
     implements SensorEventListener, Deleteable, OnPauseListener, OnResumeListener {
   // Constants
   private static final String LOG_TAG = "OrientationSensor";
@@ -118,7 +118,7 @@ public class OrientationSensor extends AndroidNonvisibleComponent
    * @param container  ignored (because this is a non-visible component)
    */
   public OrientationSensor(ComponentContainer container) {
-    super(container.$form());
+    super(container.$form(), 3);
 
     // Get sensors, and start listening.
     sensorManager =
@@ -152,6 +152,7 @@ public class OrientationSensor extends AndroidNonvisibleComponent
       // Throw out sensor information that will go stale.
       accelsFilled = false;
       magsFilled = false;
+      clearSamples();
     }
   }
 
@@ -420,8 +421,12 @@ public class OrientationSensor extends AndroidNonvisibleComponent
             break;
         }
 
+        addSample(azimuth, pitch, roll);
+
         // Raise event.
-        OrientationChanged(azimuth, pitch, roll);
+        if (eventDue()) {
+          OrientationChanged(azimuth, pitch, roll);
+        }
       }
     }
   }
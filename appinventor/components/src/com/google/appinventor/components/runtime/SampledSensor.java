@@ -0,0 +1,344 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime;
+
+import com.google.appinventor.components.annotations.DesignerProperty;
+import com.google.appinventor.components.annotations.PropertyCategory;
+import com.google.appinventor.components.annotations.SimpleEvent;
+import com.google.appinventor.components.annotations.SimpleFunction;
+import com.google.appinventor.components.annotations.SimpleObject;
+import com.google.appinventor.components.annotations.SimpleProperty;
+import com.google.appinventor.components.common.PropertyTypeConstants;
+import com.google.appinventor.components.runtime.util.ErrorMessages;
+import com.google.appinventor.components.runtime.util.SampleWindow;
+import com.google.appinventor.components.runtime.util.YailList;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A sensor whose readings can be throttled, delivered in batches and
+ * summarized over a window of recent readings.
+ *
+ * <p>Subclasses pass every reading to one of the {@code addSample} methods,
+ * and only raise their own event for a reading if {@link #eventDue()} returns
+ * true.  Sensors such as the accelerometer report readings far more often than
+ * blocks can handle them, so apps can raise {@link #EventInterval(int)} to
+ * receive fewer events, or set {@link #BatchSize(int)} to receive readings many
+ * at a time, while the window statistics still see every reading.
+ */
+@SimpleObject
+public abstract class SampledSensor extends AndroidNonvisibleComponent {
+  private static final int DEFAULT_WINDOW_SIZE = 10;
+  private static final float DEFAULT_LOW_PASS_FACTOR = 0.1f;
+
+  /**
+   * Receives every reading of a SampledSensor, for components such as
+   * {@link DataLogger} that consume readings without going through blocks.
+   */
+  public interface SampleListener {
+    /**
+     * Called on the UI thread for each reading.
+     *
+     * @param sensor the sensor
+     * @param time the time of the reading, in milliseconds
+     * @param values the values of the reading, which must not be retained
+     */
+    void onSample(SampledSensor sensor, long time, float[] values);
+  }
+
+  private final SampleWindow window;
+  private final float[] sample;
+
+  private int eventInterval;
+  private long lastEventTime;
+
+  // Readings collected for the next SamplesReceived event.
+  private int batchSize;
+  private int batchCount;
+  private long[] batchTimes;
+  private float[] batchValues;
+
+  private final List<SampleListener> listeners = new ArrayList<SampleListener>();
+
+  /**
+   * Creates a new SampledSensor.
+   *
+   * @param form the Form containing the sensor
+   * @param channels the number of values in each reading
+   */
+  protected SampledSensor(Form form, int channels) {
+    super(form);
+    window = new SampleWindow(channels, DEFAULT_WINDOW_SIZE, DEFAULT_LOW_PASS_FACTOR);
+    sample = new float[channels];
+  }
+
+  /**
+   * The minimum time, in milliseconds, between the events reporting each new reading.
+   */
+  @SimpleProperty(category = PropertyCategory.BEHAVIOR)
+  public int EventInterval() {
+    return eventInterval;
+  }
+
+  /**
+   * The minimum time, in milliseconds, between the events reporting each new reading.
+   * Readings arriving sooner still update the sensor's properties, the window statistics
+   * and the batches delivered by `SamplesReceived`, but do not run the event. If `0`,
+   * every reading is reported.
+   *
+   * @param interval the interval in ms
+   */
+  @DesignerProperty(editorType = PropertyTypeConstants.PROPERTY_TYPE_NON_NEGATIVE_INTEGER,
+      defaultValue = "0")
+  @SimpleProperty
+  public void EventInterval(int interval) {
+    eventInterval = Math.max(0, interval);
+  }
+
+  /**
+   * The number of readings delivered together by the `SamplesReceived` event.
+   */
+  @SimpleProperty(category = PropertyCategory.BEHAVIOR)
+  public int BatchSize() {
+    return batchSize;
+  }
+
+  /**
+   * The number of readings to collect before delivering them all at once in the
+   * `SamplesReceived` event. If `0`, no batches are delivered.
+   *
+   * @param size the number of readings in each batch
+   */
+  @DesignerProperty(editorType = PropertyTypeConstants.PROPERTY_TYPE_NON_NEGATIVE_INTEGER,
+      defaultValue = "0")
+  @SimpleProperty
+  public void BatchSize(int size) {
+    batchSize = Math.max(0, size);
+    batchCount = 0;
+    if (batchSize == 0) {
+      batchTimes = null;
+      batchValues = null;
+    } else {
+      batchTimes = new long[batchSize];
+      batchValues = new float[batchSize * sample.length];
+    }
+  }
+
+  /**
+   * The number of most recent readings summarized by the window statistics.
+   */
+  @SimpleProperty(category = PropertyCategory.BEHAVIOR)
+  public int WindowSize() {
+    return window.getCapacity();
+  }
+
+  /**
+   * The number of most recent readings summarized by the window statistics, such as
+   * `WindowMean`. Changing it discards the readings collected so far.
+   *
+   * @param size the number of readings, at least 1
+   */
+  @DesignerProperty(editorType = PropertyTypeConstants.PROPERTY_TYPE_NON_NEGATIVE_INTEGER,
+      defaultValue = DEFAULT_WINDOW_SIZE + "")
+  @SimpleProperty
+  public void WindowSize(int size) {
+    window.setCapacity(Math.max(1, size));
+  }
+
+  /**
+   * The smoothing factor of the low-pass filter.
+   */
+  @SimpleProperty(category = PropertyCategory.BEHAVIOR)
+  public float LowPassFactor() {
+    return (float) window.getLowPassFactor();
+  }
+
+  /**
+   * The weight, between 0 and 1, of each new reading in the values returned by `LowPass`.
+   * Smaller values smooth more, and `1` turns the filter off.
+   *
+   * @param factor the smoothing factor
+   */
+  @DesignerProperty(editorType = PropertyTypeConstants.PROPERTY_TYPE_NON_NEGATIVE_FLOAT,
+      defaultValue = DEFAULT_LOW_PASS_FACTOR + "")
+  @SimpleProperty
+  public void LowPassFactor(float factor) {
+    window.setLowPassFactor(Math.min(1, Math.max(0, factor)));
+  }
+
+  /**
+   * Returns the mean of the given axis over the last `WindowSize` readings. Axes are
+   * numbered from 1 in the order of the values reported by the sensor's event.
+   *
+   * @param axis the axis, starting at 1
+   * @return the mean
+   */
+  @SimpleFunction
+  public double WindowMean(int axis) {
+    return isValidAxis("WindowMean", axis) ? window.mean(axis - 1) : 0;
+  }
+
+  /**
+   * Returns the smallest value of the given axis in the last `WindowSize` readings.
+   *
+   * @param axis the axis, starting at 1
+   * @return the minimum
+   */
+  @SimpleFunction
+  public double WindowMinimum(int axis) {
+    return isValidAxis("WindowMinimum", axis) ? window.min(axis - 1) : 0;
+  }
+
+  /**
+   * Returns the largest value of the given axis in the last `WindowSize` readings.
+   *
+   * @param axis the axis, starting at 1
+   * @return the maximum
+   */
+  @SimpleFunction
+  public double WindowMaximum(int axis) {
+    return isValidAxis("WindowMaximum", axis) ? window.max(axis - 1) : 0;
+  }
+
+  /**
+   * Returns the root mean square of the given axis over the last `WindowSize` readings.
+   *
+   * @param axis the axis, starting at 1
+   * @return the root mean square
+   */
+  @SimpleFunction
+  public double WindowRMS(int axis) {
+    return isValidAxis("WindowRMS", axis) ? window.rms(axis - 1) : 0;
+  }
+
+  /**
+   * Returns the value of the given axis smoothed by a low-pass filter, which follows slow
+   * changes and ignores quick ones. See `LowPassFactor`.
+   *
+   * @param axis the axis, starting at 1
+   * @return the filtered value
+   */
+  @SimpleFunction
+  public double LowPass(int axis) {
+    return isValidAxis("LowPass", axis) ? window.lowPass(axis - 1) : 0;
+  }
+
+  /**
+   * Delivers `BatchSize` readings at once. Each item of `samples` is a list holding the
+   * time of the reading, in milliseconds, followed by its values in the same order as the
+   * sensor's event.
+   *
+   * @param samples the readings, oldest first
+   */
+  @SimpleEvent
+  public void SamplesReceived(YailList samples) {
+    EventDispatcher.dispatchEvent(this, "SamplesReceived", samples);
+  }
+
+  /**
+   * Returns the number of values in each reading.
+   */
+  public int getChannels() {
+    return sample.length;
+  }
+
+  public void addSampleListener(SampleListener listener) {
+    listeners.add(listener);
+  }
+
+  public void removeSampleListener(SampleListener listener) {
+    listeners.remove(listener);
+  }
+
+  /**
+   * Returns whether the event reporting the latest reading should be raised, given
+   * {@link #EventInterval(int)}.  Returns true at most once per interval.
+   */
+  protected boolean eventDue() {
+    if (eventInterval == 0) {
+      return true;
+    }
+    long now = System.currentTimeMillis();
+    if (lastEventTime != 0 && now - lastEventTime < eventInterval) {
+      return false;
+    }
+    lastEventTime = now;
+    return true;
+  }
+
+  /**
+   * Forgets the readings collected so far, for example when the sensor is disabled.
+   */
+  protected void clearSamples() {
+    window.clear();
+    batchCount = 0;
+    lastEventTime = 0;
+  }
+
+  protected void addSample(float value) {
+    sample[0] = value;
+    addSample();
+  }
+
+  protected void addSample(float x, float y, float z) {
+    sample[0] = x;
+    sample[1] = y;
+    sample[2] = z;
+    addSample();
+  }
+
+  protected void addSample(float x, float y, float z, float w) {
+    sample[0] = x;
+    sample[1] = y;
+    sample[2] = z;
+    sample[3] = w;
+    addSample();
+  }
+
+  private void addSample() {
+    window.add(sample);
+    if (batchSize == 0 && listeners.isEmpty()) {
+      return;
+    }
+    long now = System.currentTimeMillis();
+    for (SampleListener listener : listeners) {
+      listener.onSample(this, now, sample);
+    }
+    if (batchSize == 0) {
+      return;
+    }
+    batchTimes[batchCount] = now;
+    System.arraycopy(sample, 0, batchValues, batchCount * sample.length, sample.length);
+    batchCount++;
+    if (batchCount == batchSize) {
+      batchCount = 0;
+      SamplesReceived(makeBatch());
+    }
+  }
+
+  private YailList makeBatch() {
+    List<YailList> rows = new ArrayList<YailList>(batchSize);
+    for (int i = 0; i < batchSize; i++) {
+      Object[] row = new Object[sample.length + 1];
+      row[0] = batchTimes[i];
+      for (int ch = 0; ch < sample.length; ch++) {
+        row[ch + 1] = batchValues[i * sample.length + ch];
+      }
+      rows.add(YailList.makeList(row));
+    }
+    return YailList.makeList(rows);
+  }
+
+  private boolean isValidAxis(String functionName, int axis) {
+    if (axis < 1 || axis > sample.length) {
+      form.dispatchErrorOccurredEvent(this, functionName,
+          ErrorMessages.ERROR_INVALID_SENSOR_AXIS, axis, sample.length);
+      return false;
+    }
+    return true;
+  }
+}
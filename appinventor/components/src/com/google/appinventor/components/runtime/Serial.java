@@ -10,20 +10,27 @@ import android.content.Context;
 import android.util.Log;
 
 import com.physicaloid.lib.Physicaloid;
+import com.physicaloid.lib.usb.driver.uart.ReadLisener;
 
 import com.google.appinventor.components.common.ComponentCategory;
 import com.google.appinventor.components.annotations.DesignerComponent;
 import com.google.appinventor.components.annotations.DesignerProperty;
 import com.google.appinventor.components.annotations.PropertyCategory;
 import com.google.appinventor.components.annotations.SimpleFunction;
+import com.google.appinventor.components.annotations.SimpleEvent;
 import com.google.appinventor.components.annotations.SimpleObject;
 import com.google.appinventor.components.annotations.SimpleProperty;
 import com.google.appinventor.components.annotations.UsesLibraries;
 import com.google.appinventor.components.common.YaVersion;
 import com.google.appinventor.components.common.PropertyTypeConstants;
 import com.google.appinventor.components.runtime.util.ErrorMessages;
+import com.google.appinventor.components.runtime.util.FrameBuffer;
+import com.google.appinventor.components.runtime.util.FrameDecoder;
+import com.google.appinventor.components.runtime.util.YailList;
 
 import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
 
 @DesignerComponent(version = YaVersion.SERIAL_COMPONENT_VERSION,
     description = "Serial component which can be used to connect to devices like Arduino",
@@ -37,6 +44,12 @@ import java.io.UnsupportedEncodingException;
 public class Serial extends AndroidNonvisibleComponent implements Component {
   private static final String LOG_TAG = "Serial Component";
 
+  // Delimited frames end with a new line, the longest is MAX_FRAME_SIZE bytes, and at most
+  // MAX_PENDING_FRAMES are held for DataReceived.
+  private static final byte FRAME_DELIMITER = '\n';
+  private static final int MAX_FRAME_SIZE = 4096;
+  private static final int MAX_PENDING_FRAMES = 1000;
+
   private Context context;
 
   private Physicaloid mPhysicaloid;
@@ -44,6 +57,9 @@ public class Serial extends AndroidNonvisibleComponent implements Component {
   private int baudRate = 9600;
   private int bytes = 256;
 
+  // Non-null while frames are being received in the background.
+  private volatile FrameBuffer frameBuffer;
+
   public Serial(ComponentContainer container) {
     super(container.$form());
     context = container.$context();
@@ -74,6 +90,7 @@ public class Serial extends AndroidNonvisibleComponent implements Component {
       form.dispatchErrorOccurredEvent(Serial.this, "CloseSerial", ErrorMessages.ERROR_SERIAL_NOT_INITIALIZED);
       return false;
     }
+    StopReceiving();
     return mPhysicaloid.close();
   }
 
@@ -82,6 +99,9 @@ public class Serial extends AndroidNonvisibleComponent implements Component {
     String data = "";
     if (mPhysicaloid == null) {
       form.dispatchErrorOccurredEvent(Serial.this, "ReadSerial", ErrorMessages.ERROR_SERIAL_NOT_INITIALIZED);
+    } else if (frameBuffer != null) {
+      // The read listener takes the data as it arrives
+      form.dispatchErrorOccurredEvent(Serial.this, "ReadSerial", ErrorMessages.ERROR_SERIAL_RECEIVING_IN_BACKGROUND);
     } else {
       byte[] buf = new byte[this.bytes];
       if (mPhysicaloid.read(buf) > 0) {
@@ -113,6 +133,95 @@ public class Serial extends AndroidNonvisibleComponent implements Component {
       WriteSerial(data + "\n");
   }
 
+  @SimpleFunction(description = "Starts receiving frames of data in the background, delivered "
+      + "by the DataReceived event. If frameLength is positive, each frame is that many bytes. "
+      + "If it is negative, each frame is a line. If it is 0, each frame starts with a byte "
+      + "giving its length. Frames can be at most 4096 bytes. While receiving, ReadSerial "
+      + "cannot be used.")
+  public void StartReceiving(int frameLength) {
+    if (mPhysicaloid == null) {
+      form.dispatchErrorOccurredEvent(Serial.this, "StartReceiving", ErrorMessages.ERROR_SERIAL_NOT_INITIALIZED);
+      return;
+    }
+    if (frameLength > MAX_FRAME_SIZE) {
+      form.dispatchErrorOccurredEvent(Serial.this, "StartReceiving",
+          ErrorMessages.ERROR_FRAME_TOO_LONG, frameLength, MAX_FRAME_SIZE);
+      return;
+    }
+    StopReceiving();
+    final FrameBuffer buffer =
+        new FrameBuffer(frameLength, FRAME_DELIMITER, MAX_FRAME_SIZE, MAX_PENDING_FRAMES);
+    final byte[] chunk = new byte[MAX_FRAME_SIZE];
+    frameBuffer = buffer;
+    // The listener is called on Physicaloid's read thread.
+    mPhysicaloid.addReadListener(new ReadLisener() {
+      @Override
+      public void onRead(int size) {
+        while (size > 0) {
+          int count = mPhysicaloid.read(chunk, Math.min(size, chunk.length));
+          if (count <= 0) {
+            break;
+          }
+          size -= count;
+          if (buffer.add(chunk, 0, count)) {
+            form.runOnUiThread(new Runnable() {
+              @Override
+              public void run() {
+                deliverFrames(buffer);
+              }
+            });
+          }
+        }
+      }
+    });
+  }
+
+  @SimpleFunction(description = "Stops receiving frames of data in the background.")
+  public void StopReceiving() {
+    if (frameBuffer != null) {
+      frameBuffer = null;
+      if (mPhysicaloid != null) {
+        mPhysicaloid.clearReadListener();
+      }
+    }
+  }
+
+  @SimpleEvent(description = "Indicates that frames of data have arrived after StartReceiving "
+      + "was called. Each frame is a list of byte values between 0 and 255.")
+  public void DataReceived(YailList frames) {
+    EventDispatcher.dispatchEvent(this, "DataReceived", frames);
+  }
+
+  @SimpleFunction(description = "Converts a frame of bytes into a list of numbers, as described "
+      + "by a format such as \"3h\": b/B for signed/unsigned 1-byte numbers, h/H for 2-byte, "
+      + "i/I for 4-byte, f and d for 4- and 8-byte floating point, and x to skip a byte. Numbers "
+      + "are read low byte first, unless the format starts with >.")
+  public YailList DecodeFrame(YailList frame, String format) {
+    try {
+      return YailList.makeList(
+          FrameDecoder.decode(FrameDecoder.fromBytes(frame.toArray()), format, false));
+    } catch (IllegalArgumentException e) {
+      form.dispatchErrorOccurredEvent(Serial.this, "DecodeFrame",
+          ErrorMessages.ERROR_INVALID_FRAME_FORMAT, format, e.getMessage());
+      return YailList.makeEmptyList();
+    }
+  }
+
+  private void deliverFrames(FrameBuffer buffer) {
+    if (buffer != frameBuffer) {
+      return;  // Stopped, or restarted with a new buffer
+    }
+    List<byte[]> frames = buffer.takeFrames();
+    if (frames.isEmpty()) {
+      return;
+    }
+    List<YailList> lists = new ArrayList<YailList>(frames.size());
+    for (byte[] frame : frames) {
+      lists.add(YailList.makeList(FrameDecoder.toUnsignedBytes(frame)));
+    }
+    DataReceived(YailList.makeList(lists));
+  }
+
   @SimpleProperty(category = PropertyCategory.BEHAVIOR, description = "Returns true when the Serial connection is open.")
   public boolean IsOpen() {
     if (mPhysicaloid == null) {
@@ -24,7 +24,7 @@ import java.util.List;
  * A sensors reporting a single value, such as temperature or humidity.
  */
 @SimpleObject
-public abstract class SingleValueSensor extends AndroidNonvisibleComponent
+public abstract class SingleValueSensor extends SampledSensor
     implements OnPauseListener, OnResumeListener, SensorComponent,
     SensorEventListener, Deleteable {
   private static final int DEFAULT_REFRESH_TIME = 1000; // ms
@@ -36,7 +36,7 @@ public abstract class SingleValueSensor extends AndroidNonvisibleComponent
   protected int refreshTime;
 
   public SingleValueSensor(ComponentContainer container, int sensorType) {
-    super(container.$form());
+    super(container.$form(), 1);
     this.sensorType = sensorType;
     form.registerForOnResume(this);
     form.registerForOnPause(this);
@@ -142,7 +142,10 @@ public abstract class SingleValueSensor extends AndroidNonvisibleComponent
     if (enabled && sensorEvent.sensor.getType() == sensorType) {
       final float[] values = sensorEvent.values;
       value = values[0];
-      onValueChanged(value);
+      addSample(value);
+      if (eventDue()) {
+        onValueChanged(value);
+      }
     }
   }
 
@@ -161,6 +164,7 @@ public abstract class SingleValueSensor extends AndroidNonvisibleComponent
       startListening();
     } else {
       stopListening();
+      clearSamples();
     }
   }
 
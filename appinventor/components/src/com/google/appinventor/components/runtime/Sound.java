@@ -20,18 +20,16 @@ import com.google.appinventor.components.common.YaVersion;
 import com.google.appinventor.components.runtime.errors.PermissionException;
 import com.google.appinventor.components.runtime.util.ErrorMessages;
 import com.google.appinventor.components.runtime.util.MediaUtil;
-import com.google.appinventor.components.runtime.util.SdkLevel;
+import com.google.appinventor.components.runtime.util.SoundPoolManager;
 
 import android.content.Context;
 import android.media.AudioManager;
-import android.media.SoundPool;
 import android.os.Handler;
+import android.os.SystemClock;
 import android.os.Vibrator;
 import android.util.Log;
 
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * A multimedia component that plays sound files and optionally vibrates for the number of
@@ -73,66 +71,49 @@ import java.util.Map;
 public class Sound extends AndroidNonvisibleComponent
     implements Component, OnResumeListener, OnStopListener, OnDestroyListener, Deleteable {
 
-  private boolean loadComplete;    // did the sound finish loading
-
-  // The purpose of this class is to avoid getting rejected by the Android verifier when the
-  // Sound component code is loaded into a device with API level less than 8, where the verifier
-  // will reject OnLoadCompleteListener.  We do this trick by putting
-  // the use of OnLoadCompleteListener in the class OnLoadHelper and arranging (see below) for
-  // the class to be compiled only if the API level is at least 8.
-  private class OnLoadHelper {
-    public void setOnloadCompleteListener (SoundPool soundPool) {
-      soundPool.setOnLoadCompleteListener(new android.media.SoundPool.OnLoadCompleteListener() {
-        public void onLoadComplete(SoundPool soundPool, int sampleId, int status) {
-          loadComplete = true;
-        }
-      });
-    }
-  }
-
-  private static final int MAX_STREAMS = 10;
+  // maximum time, in ms, to wait for a sound to load before signaling an error
+  private static final int MAX_LOAD_WAIT = 500;
 
-  // max number of consecutive delays to wait for a sound to load
-  private static final int MAX_PLAY_DELAY_RETRIES = 10;
-  // number of ms in each delay before retrying
-  private static final int PLAY_DELAY_LENGTH = 50;
+  // weight of the latest play in the PlayLatency average
+  private static final double PLAY_LATENCY_SMOOTHING = 0.25;
 
-  private static final float VOLUME_FULL = 1.0f;
-  private static final int LOOP_MODE_NO_LOOP = 0;
-  private static final float PLAYBACK_RATE_NORMAL = 1.0f;
-  private SoundPool soundPool;
-
-  // soundMap maps sounds (assets, etc) that are loaded into soundPool to their respective
-  // soundIds.
-  private final Map<String, Integer> soundMap;
-
-  // We will wait for Sound loading to complete before trying to play, but only
-  // if the API level is at least 8, because onLoadCompleteListener is not available
-  // in earlier APIs. For those early systems, attempting to play a sound before it is loaded
-  // will fail to play the sound and there will be no retry, although there might be a "cannot
-  // play" error.
-  private final boolean waitForLoadToComplete = (SdkLevel.getLevel() >= SdkLevel.LEVEL_FROYO);
+  // Sounds are loaded into, and played from, a SoundPool shared by all of the
+  // Sound components of the Form.  On systems where SoundPool does not report
+  // when loading is complete (API level less than 8), attempting to play a sound
+  // before it is loaded will fail to play the sound and there will be no retry,
+  // although there might be a "cannot play" error.
+  private final SoundPoolManager soundPoolManager;
 
   private String sourcePath;              // name of source
-  private int soundId;                    // id of sound in the soundPool
+  private SoundPoolManager.Sample sample; // the loaded source, or null
   private int streamId;                   // stream id returned from last call to SoundPool.play
   private int minimumInterval;            // minimum interval between Play() calls
   private long timeLastPlayed;            // the system time when Play() was last called
+  private long playRequestTime;           // uptime of the last accepted Play() call
+  private double playLatency;             // smoothed ms from Play() to the sound starting
   private final Vibrator vibe;
   private final Handler playWaitHandler = new Handler();
 
-  //save a pointer to this Sound component to use in the error in postDelayed below
-  private final Component thisComponent;
+  // The play waiting for the sound to load, if any, and the error raised if
+  // the sound has not loaded in time.
+  private Runnable pendingPlay;
+  private final Runnable pendingPlayTimeout = new Runnable() {
+    @Override
+    public void run() {
+      if (pendingPlay != null) {
+        pendingPlay = null;
+        form.dispatchErrorOccurredEvent(Sound.this, "Play",
+            ErrorMessages.ERROR_SOUND_NOT_READY, sourcePath);
+      }
+    }
+  };
 
 
   public Sound(ComponentContainer container) {
     super(container.$form());
-    thisComponent = this;
-    soundPool = new SoundPool(MAX_STREAMS, AudioManager.STREAM_MUSIC, 0);
-    soundMap = new HashMap<String, Integer>();
+    soundPoolManager = SoundPoolManager.getInstance(form);
     vibe = (Vibrator) form.getSystemService(Context.VIBRATOR_SERVICE);
     sourcePath = "";
-    loadComplete = true;  //nothing to wait for until we attempt to load
     form.registerForOnResume(this);
     form.registerForOnStop(this);
     form.registerForOnDestroy(this);
@@ -142,10 +123,6 @@ public class Sound extends AndroidNonvisibleComponent
 
     // Default property values
     MinimumInterval(500);
-
-    if (waitForLoadToComplete) {
-      new OnLoadHelper().setOnloadCompleteListener(soundPool);
-    }
   }
 
 
@@ -179,36 +156,25 @@ public class Sound extends AndroidNonvisibleComponent
 
     // Clear the previous sound.
     if (streamId != 0) {
-      soundPool.stop(streamId);
+      soundPoolManager.stop(streamId);
       streamId = 0;
     }
-    soundId = 0;
+    pendingPlay = null;
+    soundPoolManager.release(sample);
+    sample = null;
 
     if (sourcePath.length() != 0) {
-      Integer existingSoundId = soundMap.get(sourcePath);
-      if (existingSoundId != null) {
-        soundId = existingSoundId;
-
-      } else {
-        Log.i("Sound", "No existing sound with path " + sourcePath + ".");
-        try {
-          int newSoundId = MediaUtil.loadSoundPool(soundPool, form, sourcePath);
-          if (newSoundId != 0) {
-            soundMap.put(sourcePath, newSoundId);
-            Log.i("Sound", "Successfully began loading sound: setting soundId to " + newSoundId + ".");
-            soundId = newSoundId;
-            // set flag to show that loading has begun
-            loadComplete = false;
-          } else {
-            form.dispatchErrorOccurredEvent(this, "Source",
-                ErrorMessages.ERROR_UNABLE_TO_LOAD_MEDIA, sourcePath);
-          }
-        } catch (PermissionException e) {
-          form.dispatchPermissionDeniedEvent(this, "Source", e);
-        } catch (IOException e) {
+      try {
+        sample = soundPoolManager.acquire(form, sourcePath);
+        if (sample == null) {
           form.dispatchErrorOccurredEvent(this, "Source",
               ErrorMessages.ERROR_UNABLE_TO_LOAD_MEDIA, sourcePath);
         }
+      } catch (PermissionException e) {
+        form.dispatchPermissionDeniedEvent(this, "Source", e);
+      } catch (IOException e) {
+        form.dispatchErrorOccurredEvent(this, "Source",
+            ErrorMessages.ERROR_UNABLE_TO_LOAD_MEDIA, sourcePath);
       }
     }
   }
@@ -243,19 +209,32 @@ public class Sound extends AndroidNonvisibleComponent
   }
 
 
-  // number of retries remaining before signaling an error
-  private int delayRetries;
+  /**
+   * The average time, in milliseconds, between calling {@link #Play()} and the sound starting to
+   * play, over recent calls. This is mostly time spent waiting for the sound to load.
+   */
+  @SimpleProperty(
+      category = PropertyCategory.BEHAVIOR,
+      description = "The average time, in milliseconds, between calling Play and the sound " +
+      "starting to play, over recent calls.")
+  public double PlayLatency() {
+    return playLatency;
+  }
 
   /**
    * Plays the sound.
    */
   @SimpleFunction(description = "Plays the sound specified by the Source property.")
   public void Play() {
-    if (soundId != 0) {
+    if (sample != null && sample.hasFailed()) {
+      // The source failed to load, so try loading it again.
+      Source(sourcePath);
+    }
+    if (sample != null) {
       long currentTime = System.currentTimeMillis();
       if (timeLastPlayed == 0 || currentTime >= timeLastPlayed + minimumInterval) {
         timeLastPlayed = currentTime;
-        delayRetries =  MAX_PLAY_DELAY_RETRIES;
+        playRequestTime = SystemClock.uptimeMillis();
         playWhenLoadComplete();
       } else {
         // fail silently
@@ -270,40 +249,41 @@ public class Sound extends AndroidNonvisibleComponent
     }
   }
 
-  // Attempt to play the sound, possibly after a delay to allow the sound to load.
+  // Attempt to play the sound, possibly once the sound has loaded.
   private void playWhenLoadComplete() {
-    if (loadComplete || !waitForLoadToComplete) {
+    if (sample.isLoaded()) {
       playAndCheckResult();
     } else {
-      Log.i("Sound", "Sound not ready:  retrying.  Remaining retries = " + delayRetries);
-      // if the sound wasn't ready we retry after a delay. We implement the delay by posting
-      // to a separate handler: using a loop with a sleep might seem simpler, but it would block
-      // the UI thread.
-      playWaitHandler.postDelayed(new Runnable() {
+      Log.i("Sound", "Sound not ready:  waiting for it to load.");
+      // Play as soon as the sound has loaded, unless that takes too long. Waiting is done
+      // through callbacks, since blocking would block the UI thread.
+      pendingPlay = new Runnable() {
         @Override
         public void run() {
-          if (loadComplete) {
+          if (pendingPlay == this) {
+            pendingPlay = null;
+            playWaitHandler.removeCallbacks(pendingPlayTimeout);
             playAndCheckResult();
-          } else if (delayRetries > 0) {
-            delayRetries--;
-            playWhenLoadComplete();
-          } else {
-            form.dispatchErrorOccurredEvent(thisComponent, "Play",
-                ErrorMessages.ERROR_SOUND_NOT_READY, sourcePath);
           }
         }
-      }, PLAY_DELAY_LENGTH);
+      };
+      soundPoolManager.whenLoaded(sample, pendingPlay);
+      playWaitHandler.removeCallbacks(pendingPlayTimeout);
+      playWaitHandler.postDelayed(pendingPlayTimeout, MAX_LOAD_WAIT);
     }
   }
 
   private void playAndCheckResult() {
-    streamId = soundPool.play(soundId, VOLUME_FULL, VOLUME_FULL, 0, LOOP_MODE_NO_LOOP,
-        PLAYBACK_RATE_NORMAL);
-  Log.i("Sound", "SoundPool.play returned stream id " + streamId);
-  if (streamId == 0) {
-    form.dispatchErrorOccurredEvent(this, "Play",
-        ErrorMessages.ERROR_UNABLE_TO_PLAY_MEDIA, sourcePath);
-}
+    streamId = soundPoolManager.play(sample);
+    Log.i("Sound", "SoundPool.play returned stream id " + streamId);
+    if (streamId == 0) {
+      form.dispatchErrorOccurredEvent(this, "Play",
+          ErrorMessages.ERROR_UNABLE_TO_PLAY_MEDIA, sourcePath);
+    } else {
+      long latency = SystemClock.uptimeMillis() - playRequestTime;
+      playLatency = playLatency == 0 ? latency
+          : playLatency + (latency - playLatency) * PLAY_LATENCY_SMOOTHING;
+    }
   }
 
 
@@ -313,7 +293,7 @@ public class Sound extends AndroidNonvisibleComponent
   @SimpleFunction(description = "Pauses playing the sound if it is being played.")
   public void Pause() {
     if (streamId != 0) {
-      soundPool.pause(streamId);
+      soundPoolManager.pause(streamId);
     } else {
       Log.i("Sound", "Unable to pause. Did you remember to call the Play function?");
     }
@@ -325,7 +305,7 @@ public class Sound extends AndroidNonvisibleComponent
   @SimpleFunction(description = "Resumes playing the sound after a pause.")
   public void Resume() {
     if (streamId != 0) {
-      soundPool.resume(streamId);
+      soundPoolManager.resume(streamId);
     } else {
       Log.i("Sound", "Unable to resume. Did you remember to call the Play function?");
     }
@@ -337,7 +317,7 @@ public class Sound extends AndroidNonvisibleComponent
 @SimpleFunction(description = "Stops playing the sound if it is being played.")
   public void Stop() {
     if (streamId != 0) {
-      soundPool.stop(streamId);
+      soundPoolManager.stop(streamId);
       streamId = 0;
     } else {
       Log.i("Sound", "Unable to stop. Did you remember to call the Play function?");
@@ -364,7 +344,7 @@ public class Sound extends AndroidNonvisibleComponent
   public void onStop() {
     Log.i("Sound", "Got onStop");
     if (streamId != 0) {
-      soundPool.pause(streamId);
+      soundPoolManager.pause(streamId);
     }
   }
 
@@ -374,7 +354,7 @@ public class Sound extends AndroidNonvisibleComponent
   public void onResume() {
     Log.i("Sound", "Got onResume");
     if (streamId != 0) {
-      soundPool.resume(streamId);
+      soundPoolManager.resume(streamId);
     }
   }
 
@@ -394,12 +374,13 @@ public class Sound extends AndroidNonvisibleComponent
 
   private void prepareToDie() {
     if (streamId != 0) {
-      soundPool.stop(streamId);
-      soundPool.unload(streamId);
+      soundPoolManager.stop(streamId);
+      streamId = 0;
     }
-    soundPool.release();
+    pendingPlay = null;
+    playWaitHandler.removeCallbacks(pendingPlayTimeout);
+    soundPoolManager.release(sample);
+    sample = null;
     vibe.cancel();
-    // The documentation for SoundPool suggests setting the reference to null;
-    soundPool = null;
   }
 }
@@ -16,7 +16,6 @@ import com.google.appinventor.components.common.PropertyTypeConstants;
 import com.google.appinventor.components.runtime.errors.AssertionFailure;
 import com.google.appinventor.components.runtime.errors.IllegalArgumentError;
 import com.google.appinventor.components.runtime.util.BoundingBox;
-import com.google.appinventor.components.runtime.util.TimerInternal;
 
 import android.os.Handler;
 
@@ -37,18 +36,24 @@ import java.util.Set;
 public abstract class Sprite extends VisibleComponent
     implements AlarmHandler, OnDestroyListener, Deleteable {
   private static final String LOG_TAG = "Sprite";
-  private static final boolean DEFAULT_ENABLED = true;  // Enable timer for movement
+  private static final boolean DEFAULT_ENABLED = true;  // Enable movement
   private static final int DEFAULT_HEADING = 0;      // degrees
   private static final int DEFAULT_INTERVAL = 100;  // ms
   private static final float DEFAULT_SPEED = 0.0f;   // pixels per interval
   private static final boolean DEFAULT_VISIBLE = true;
   private static final double DEFAULT_Z = 1.0;
+  // Moves made in a single frame when catching up after a stall; time beyond
+  // this is dropped rather than replayed.
+  private static final int MAX_MOVES_PER_FRAME = 4;
   protected static final boolean DEFAULT_ORIGIN_AT_CENTER = false;
 
   protected final Canvas canvas;              // enclosing Canvas
-  private final TimerInternal timerInternal;  // timer to control movement
   private final Handler androidUIHandler;     // for posting actions
 
+  // Time (SystemClock.uptimeMillis()) of the last move, or 0 if the sprite
+  // has not moved since it was last started.  See advance().
+  private long lastMoveTime = 0;
+
   // Keeps track of which other sprites are currently colliding with this one.
   // That way, we don't raise CollidedWith() more than once for each collision.
   // Events are only raised when sprites are added to this collision set.  They
@@ -61,6 +66,7 @@ public abstract class Sprite extends VisibleComponent
 
   // Properties: These are protected, instead of private, both so they
   // can be used by subclasses and tests.
+  protected boolean enabled;   // whether the sprite moves
   protected int interval;      // number of milliseconds until next move
   protected boolean visible = true;
   protected double xLeft;      // leftmost x-coordinate
@@ -114,9 +120,6 @@ public abstract class Sprite extends VisibleComponent
     // Maintain a list of collisions.
     registeredCollisions = new HashSet<Sprite>();
 
-    // Set in motion.
-    timerInternal = new TimerInternal(this, DEFAULT_ENABLED, DEFAULT_INTERVAL, handler);
-
     this.form = container.$form();
 
     // Set default property values.
@@ -147,6 +150,7 @@ public abstract class Sprite extends VisibleComponent
   public void Initialize() {
     initialized = true;
     canvas.registerChange(this);
+    motionChanged();
   }
 
   // Properties (Enabled, Heading, Interval, Speed, Visible, X, Y, Z, OriginAtCenter)
@@ -157,28 +161,29 @@ public abstract class Sprite extends VisibleComponent
   /**
    * Controls whether the `%type%` moves when its speed is non-zero.
    *
-   * @return  {@code true} indicates a running timer, {@code false} a stopped
-   *          timer
+   * @return  {@code true} indicates a moving sprite, {@code false} a stopped
+   *          sprite
    */
   @SimpleProperty(
       description = "Controls whether the %type% moves and can be interacted with " +
           "through collisions, dragging, touching, and flinging.")
   public boolean Enabled() {
-    return timerInternal.Enabled();
+    return enabled;
   }
 
   /**
-   * Enabled property setter method: starts or stops the timer.
+   * Enabled property setter method: starts or stops movement.
    *
    * @suppressdoc
-   * @param enabled  {@code true} starts the timer, {@code false} stops it
+   * @param enabled  {@code true} starts movement, {@code false} stops it
    */
   @DesignerProperty(
       editorType = PropertyTypeConstants.PROPERTY_TYPE_BOOLEAN,
       defaultValue = DEFAULT_ENABLED ? "True" : "False")
   @SimpleProperty
   public void Enabled(boolean enabled) {
-    timerInternal.Enabled(enabled);
+    this.enabled = enabled;
+    motionChanged();
   }
 
   /**
@@ -230,11 +235,11 @@ public abstract class Sprite extends VisibleComponent
           "position is updated.  For example, if the interval is 50 and the speed is 10, " +
           "then every 50 milliseconds the sprite will move 10 pixels in the heading direction.")
   public int Interval() {
-    return timerInternal.Interval();
+    return interval;
   }
 
   /**
-   * Interval property setter method: sets the interval between timer events.
+   * Interval property setter method: sets the interval between moves.
    *
    * @suppressdoc
    * @param interval  timer interval in ms
@@ -244,7 +249,8 @@ public abstract class Sprite extends VisibleComponent
       defaultValue = DEFAULT_INTERVAL + "")
   @SimpleProperty
   public void Interval(int interval) {
-    timerInternal.Interval(interval);
+    this.interval = interval;
+    motionChanged();
   }
 
   /**
@@ -260,7 +266,11 @@ public abstract class Sprite extends VisibleComponent
       editorType = PropertyTypeConstants.PROPERTY_TYPE_FLOAT,
       defaultValue = DEFAULT_SPEED + "")
   public void Speed(float speed) {
+    boolean wasMoving = isMoving();
     this.speed = speed;
+    if (!wasMoving) {
+      motionChanged();
+    }
   }
 
   /**
@@ -982,6 +992,57 @@ public abstract class Sprite extends VisibleComponent
 
   // Convenience methods for dealing with hitting the screen edge and collisions
 
+  // Movement, driven by the enclosing Canvas
+
+  private boolean isMoving() {
+    return initialized && enabled && speed != 0;
+  }
+
+  /**
+   * Restarts the interval before the next move and, if the sprite is now
+   * moving, makes sure the Canvas animation loop is running.
+   */
+  private void motionChanged() {
+    lastMoveTime = 0;
+    if (isMoving()) {
+      canvas.scheduleFrame();
+    }
+  }
+
+  /**
+   * Called by the enclosing Canvas on each animation frame.  Moves the sprite
+   * once for each {@link #Interval()} that has elapsed since it last moved, or
+   * once per frame if the interval is 0.
+   *
+   * @param now the frame time, as given by SystemClock.uptimeMillis()
+   * @return whether the sprite is moving and needs further frames
+   */
+  boolean advance(long now) {
+    if (!isMoving()) {
+      lastMoveTime = 0;
+      return false;
+    }
+    if (lastMoveTime == 0) {
+      // Just started; the first move happens an interval from now.
+      lastMoveTime = now;
+    } else if (interval <= 0) {
+      lastMoveTime = now;
+      alarm();
+    } else {
+      int moves = 0;
+      while (now - lastMoveTime >= interval) {
+        if (moves == MAX_MOVES_PER_FRAME) {
+          lastMoveTime = now;
+          break;
+        }
+        lastMoveTime += interval;
+        alarm();
+        moves++;
+      }
+    }
+    return true;
+  }
+
   // AlarmHandler implementation
 
   /**
@@ -1007,14 +1068,14 @@ public abstract class Sprite extends VisibleComponent
 
   @Override
   public void onDestroy() {
-    timerInternal.Enabled(false);
+    Enabled(false);
   }
 
   // Deleteable implementation
 
   @Override
   public void onDelete() {
-    timerInternal.Enabled(false);
+    Enabled(false);
     canvas.removeSprite(this);
   }
 
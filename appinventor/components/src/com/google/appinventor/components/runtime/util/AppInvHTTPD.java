@@ -17,14 +17,18 @@ import java.io.File;
 import java.io.IOException;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.OutputStream;
 import java.net.InetAddress;
 import java.net.Socket;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
 
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
 
 import android.os.Build;
 import android.os.Handler;
+import android.util.Base64;
 import android.util.Log;
 
 import kawa.standard.Scheme;
@@ -51,6 +55,7 @@ public class AppInvHTTPD extends NanoHTTPD {
   private static byte[] hmacKey;
   private static int seq;
   private static final String MIME_JSON = "application/json"; // Other mime types defined in NanoHTTPD
+  private static final int MAX_REPL_MESSAGE_SIZE = 16 * 1024 * 1024;
   private final Handler androidUIHandler = new Handler();
 
   public AppInvHTTPD( int port, File wwwroot, boolean secure, ReplForm form) throws IOException
@@ -128,15 +133,7 @@ public class AppInvHTTPD extends NanoHTTPD {
       String input_code = code;
       if (hmacKey != null) {
         try {
-          Mac hmacSha1 = Mac.getInstance("HmacSHA1");
-          SecretKeySpec key = new SecretKeySpec(hmacKey, "RAW");
-          hmacSha1.init(key);
-          byte [] tmpMac = hmacSha1.doFinal((code + inSeq + blockid).getBytes());
-          StringBuffer sb = new StringBuffer(tmpMac.length * 2);
-          Formatter formatter = new Formatter(sb);
-          for (byte b : tmpMac)
-            formatter.format("%02x", b);
-          compMac = sb.toString();
+          compMac = hmac(code + inSeq + blockid);
         } catch (Exception e) {
           Log.e(LOG_TAG, "Error working with hmac", e);
           form.dispatchErrorOccurredEvent(form, "AppInvHTTPD",
@@ -230,7 +227,7 @@ public class AppInvHTTPD extends NanoHTTPD {
         res = new Response(HTTP_OK, MIME_JSON, "{\"version\" : \"" + versionName +
           "\", \"fingerprint\" : \"" + Build.FINGERPRINT + "\"," +
           " \"installer\" : \"" + installer + "\", \"package\" : \"" +
-          packageName + "\", \"fqcn\" : true }");
+          packageName + "\", \"fqcn\" : true, \"websocket\" : true }");
       } catch (NameNotFoundException n) {
         n.printStackTrace();
         res = new Response(HTTP_OK, MIME_JSON, "{\"verison\" : \"Unknown\"");
@@ -268,6 +265,7 @@ public class AppInvHTTPD extends NanoHTTPD {
         if (filename != null) { // We have a filename and it has not been declared
                                 // invalid by the code above
           File fileTo = new File(rootDir + "/" + filename);
+          AssetFetcher.forgetAsset("assets/" + filename);
           File parentFileTo = fileTo.getParentFile();
           if (!parentFileTo.exists()) {
             parentFileTo.mkdirs();
@@ -305,6 +303,131 @@ public class AppInvHTTPD extends NanoHTTPD {
     return serveFile( uri, header, rootDir, true );
   }
 
+  /**
+   * Accepts a WebSocket connection to "/_repl" from the blocks editor, which then sends code
+   * to evaluate and receives return values over it instead of through "/_newblocks" and
+   * "/_values". The request must carry a seq and a mac of "_repl" + seq, as for "/_newblocks".
+   * This thread evaluates the code until the connection is closed.
+   */
+  @Override
+  protected boolean serveWebSocket(String uri, Properties header, Properties parms,
+      Socket mySocket) {
+    if (!uri.equals("/_repl")) {
+      return false;
+    }
+    Log.d(LOG_TAG, "WebSocket '" + uri + "'");
+    try {
+      OutputStream out = mySocket.getOutputStream();
+      String key = header.getProperty("sec-websocket-key");
+      String error = checkReplChannel(mySocket, parms);
+      if (key == null || error != null) {
+        Log.e(LOG_TAG, "Refusing REPL channel: " + (key == null ? "No key" : error));
+        if (error != null) {
+          form.dispatchErrorOccurredEvent(form, "AppInvHTTPD",
+            ErrorMessages.ERROR_REPL_SECURITY_ERROR, error);
+        }
+        out.write("HTTP/1.1 403 Forbidden\r\n\r\n".getBytes("UTF-8"));
+        out.flush();
+        return true;
+      }
+      MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+      String accept = Base64.encodeToString(
+          sha1.digest((key + WebSocketConnection.ACCEPT_GUID).getBytes("UTF-8")), Base64.NO_WRAP);
+      out.write(("HTTP/1.1 101 Switching Protocols\r\n" +
+          "Upgrade: websocket\r\n" +
+          "Connection: Upgrade\r\n" +
+          "Sec-WebSocket-Accept: " + accept + "\r\n\r\n").getBytes("UTF-8"));
+      out.flush();
+
+      adoptMainThreadClassLoader();
+      WebSocketConnection connection = new WebSocketConnection(mySocket.getInputStream(), out,
+          MAX_REPL_MESSAGE_SIZE);
+      ReplChannel channel = new ReplChannel(connection, new ReplChannel.Evaluator() {
+        @Override
+        public void eval(String code) throws Throwable {
+          if (code.equals("#DONE#")) {
+            form.evalScheme(code);  // Finishes the Companion, as over WebRTC
+            return;
+          }
+          Log.d(LOG_TAG, "To Eval: " + code);
+          scheme.eval(code);
+        }
+
+        @Override
+        public void evalFailed(String message, Throwable e) {
+          Log.e(LOG_TAG, "repl channel: Scheme Failure", e);
+          RetValManager.appendReturnValue(ReplChannel.blockId(message), "BAD", e.toString());
+        }
+      });
+      ReplChannel previous = RetValManager.setChannel(channel);
+      if (previous != null) {
+        previous.close();       // The blocks editor reconnected
+      }
+      try {
+        channel.run();
+      } finally {
+        RetValManager.clearChannel(channel);
+      }
+      Log.d(LOG_TAG, "REPL channel closed");
+    } catch (IOException e) {
+      Log.e(LOG_TAG, "REPL channel failed", e);
+    } catch (GeneralSecurityException e) {
+      Log.e(LOG_TAG, "Error working with sha1", e);
+    } finally {
+      try {
+        mySocket.close();
+      } catch (IOException e) {
+        // Ignore
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Checks a request to open the REPL channel.
+   *
+   * @return null if it may be opened, otherwise the reason it may not
+   */
+  private String checkReplChannel(Socket mySocket, Properties parms) {
+    if (secure && !mySocket.getInetAddress().getHostAddress().equals("127.0.0.1")) {
+      return "Invalid Source Location " + mySocket.getInetAddress().getHostAddress();
+    }
+    if (hmacKey == null) {
+      return "No HMAC Key";
+    }
+    String inSeq = parms.getProperty("seq", "0");
+    String inMac = parms.getProperty("mac", "no key provided");
+    int iseq;
+    try {
+      iseq = Integer.parseInt(inSeq);
+      if (!inMac.equals(hmac("_repl" + inSeq))) {
+        return "Invalid MAC";
+      }
+    } catch (NumberFormatException e) {
+      return "Invalid Seq";
+    } catch (GeneralSecurityException e) {
+      Log.e(LOG_TAG, "Error working with hmac", e);
+      return "Exception working on HMAC";
+    }
+    if ((seq != iseq) && (seq != (iseq+1))) {
+      return "Invalid Seq";
+    }
+    seq = iseq + 1;
+    return null;
+  }
+
+  private static String hmac(String input) throws GeneralSecurityException {
+    Mac hmacSha1 = Mac.getInstance("HmacSHA1");
+    SecretKeySpec key = new SecretKeySpec(hmacKey, "RAW");
+    hmacSha1.init(key);
+    byte [] tmpMac = hmacSha1.doFinal(input.getBytes());
+    StringBuffer sb = new StringBuffer(tmpMac.length * 2);
+    Formatter formatter = new Formatter(sb);
+    for (byte b : tmpMac)
+      formatter.format("%02x", b);
+    return sb.toString();
+  }
+
   private boolean copyFile(File infile, File outfile) {
     try {
       FileInputStream in = new FileInputStream(infile);
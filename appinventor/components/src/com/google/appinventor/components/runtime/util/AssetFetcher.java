@@ -1,5 +1,5 @@
 // -*- mode: java; c-basic-offset: 2; -*-
-// Copyright 2018-2020 MIT, All rights reserved
+// Copyright 2018-2021 MIT, All rights reserved
 // Released under the Apache License, Version 2.0
 // http://www.apache.org/licenses/LICENSE-2.0
 
@@ -12,20 +12,32 @@ import com.google.appinventor.components.runtime.ReplForm;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 import java.net.HttpURLConnection;
 import java.net.URL;
 
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.json.JSONArray;
 import org.json.JSONException;
+import org.json.JSONObject;
 
 
 /**
@@ -42,6 +54,12 @@ import org.json.JSONException;
  *               storage. Finally when finished we signal the
  *               Companion that we have all of the needed assets
  *
+ *               The Companion remembers the SHA-256 hash of each
+ *               asset it has fetched. When syncing, it first
+ *               fetches a manifest of the project's asset hashes
+ *               from the server and only downloads the assets that
+ *               have changed, a few at a time.
+ *
  *               This code is part of the implementation of webRTC
  *               communication between the Companion and the App
  *               Inventor client.
@@ -51,29 +69,149 @@ public class AssetFetcher {
 
   private static final String LOG_TAG = AssetFetcher.class.getSimpleName();
 
-  // We use a single threaded executor so we only load one asset at a time!
+  // Syncs are coordinated on a single thread, so only one runs at a time.
   private static ExecutorService background = Executors.newSingleThreadExecutor();
 
+  // Assets are downloaded a few at a time, which hides the latency of each request without
+  // swamping the connection.
+  private static final int MAX_CONCURRENT_DOWNLOADS = 3;
+  private static ExecutorService downloads = Executors.newFixedThreadPool(MAX_CONCURRENT_DOWNLOADS);
+
+  // Number of times we try to download an asset before giving up.
+  private static final int MAX_ATTEMPTS = 2;
+
+  // Name of the file, next to the assets directory, recording the assets we have.
+  private static final String MANIFEST_FILE_NAME = "assets.manifest";
+
   private static volatile boolean inError = false; // true means we are displaying the "End Application" Error dialog already
   private static final Object semaphore = new Object();
 
+  // Maps the name of each asset we have to an object with the SHA-256 hash ("sha256") and the
+  // length ("size") of its content. Loaded on first use and guarded by manifestLock.
+  private static JSONObject manifest;
+  private static final Object manifestLock = new Object();
+
   /* We are only used statically */
   private AssetFetcher() {
   }
 
   public static void fetchAssets(final String cookieValue,
     final String projectId, final String uri, final String asset) {
-    background.submit(new Runnable() {
+    downloads.submit(new Runnable() {
         @Override
         public void run() {
           String fileName = uri + "/ode/download/file/" + projectId + "/" + asset;
-          if (getFile(fileName, cookieValue, asset, 0) != null) {
+          if (getFile(fileName, cookieValue, asset) != null) {
+            saveManifest();
             RetValManager.assetTransferred(asset);
           }
         }
       });
   }
 
+  /**
+   * Brings the given assets up to date with the server. Assets whose content
+   * hash matches the server's manifest are reported as transferred right away,
+   * the rest are downloaded concurrently. When done, a report with the counts
+   * and timing is sent to the blocks editor.
+   *
+   * @param cookieValue the authentication cookie
+   * @param projectId the project id
+   * @param uri the App Inventor server
+   * @param assetsJson a JSON array of the names of the assets, such as
+   *                   "assets/kitty.png"
+   */
+  public static void syncAssets(final String cookieValue, final String projectId,
+      final String uri, final String assetsJson) {
+    background.submit(new Runnable() {
+        @Override
+        public void run() {
+          long startTime = System.currentTimeMillis();
+          List<String> assets = new ArrayList<String>();
+          try {
+            JSONArray array = new JSONArray(assetsJson);
+            for (int i = 0; i < array.length(); i++) {
+              assets.add(array.getString(i));
+            }
+          } catch (JSONException e) {
+            Log.e(LOG_TAG, "JSON Exception parsing asset list", e);
+            RetValManager.sendError("Unable to parse the list of assets.");
+            return;
+          }
+
+          // If the server cannot tell us the hashes, we fetch everything.
+          JSONObject serverManifest = fetchManifest(
+              uri + "/ode/download/asset-manifest/" + projectId, cookieValue);
+          final AtomicInteger failed = new AtomicInteger();
+          final AtomicLong bytes = new AtomicLong();
+          int skipped = 0;
+          List<Future<?>> pending = new ArrayList<Future<?>>();
+          for (final String asset : assets) {
+            String hash = serverManifest == null ? null : serverManifest.optString(asset, null);
+            if (hash != null && isCurrent(asset, hash)) {
+              skipped++;
+              RetValManager.assetTransferred(asset);
+              continue;
+            }
+            final String fileName = uri + "/ode/download/file/" + projectId + "/" + asset;
+            pending.add(downloads.submit(new Runnable() {
+                @Override
+                public void run() {
+                  File file = getFile(fileName, cookieValue, asset);
+                  if (file != null) {
+                    bytes.addAndGet(file.length());
+                    RetValManager.assetTransferred(asset);
+                  } else {
+                    failed.incrementAndGet();
+                  }
+                }
+              }));
+          }
+          for (Future<?> download : pending) {
+            try {
+              download.get();
+            } catch (InterruptedException e) {
+              Log.e(LOG_TAG, "Interrupted while waiting for assets", e);
+              return;
+            } catch (ExecutionException e) {
+              Log.e(LOG_TAG, "Error fetching asset", e);
+              failed.incrementAndGet();
+            }
+          }
+          saveManifest();
+
+          JSONObject report = new JSONObject();
+          try {
+            report.put("total", assets.size());
+            report.put("skipped", skipped);
+            report.put("fetched", pending.size() - failed.get());
+            report.put("failed", failed.get());
+            report.put("bytes", bytes.get());
+            report.put("millis", System.currentTimeMillis() - startTime);
+          } catch (JSONException e) {
+            Log.e(LOG_TAG, "Error building sync report", e);
+            return;
+          }
+          Log.d(LOG_TAG, "Asset sync: " + report);
+          RetValManager.assetsSynced(report);
+        }
+      });
+  }
+
+  /**
+   * Forgets what we know about an asset, because it was replaced by some other
+   * means than this class, such as an upload from the blocks editor.
+   *
+   * @param asset the name of the asset, such as "assets/kitty.png"
+   */
+  public static void forgetAsset(String asset) {
+    synchronized (manifestLock) {
+      if (getManifest().remove(asset) != null) {
+        saveManifest();
+      }
+    }
+  }
+
   public static void upgradeCompanion(final String cookieValue, final String inputUri) {
     // The code below is commented out because of issues with the Google Play Store
     //
@@ -133,68 +271,188 @@ public class AssetFetcher {
     }
   }
 
-  private static File getFile(final String fileName, String cookieValue, String asset, int depth) {
+  private static File getFile(final String fileName, String cookieValue, String asset) {
     Form form = Form.getActiveForm();
-    if (depth > 1) {
-      synchronized (semaphore) { // We are protecting the inError variable
-        if (inError) {
-          return null;
-        } else {
-          inError = true;
-          form.runOnUiThread(new Runnable() {
-              public void run() {
-                RuntimeErrorAlert.alert(Form.getActiveForm(), "Unable to load file: " + fileName,
-                  "Error!", "End Application");
-              }
-            });
-          return null;
+    File outFile = new File(QUtil.getReplAssetPath(form), asset.substring("assets/".length()));
+    // The file will be incomplete while we write it, so stop vouching for it.
+    synchronized (manifestLock) {
+      getManifest().remove(asset);
+    }
+    for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+      try {
+        String hash = download(fileName, cookieValue, asset, outFile);
+        if (hash != null) {
+          synchronized (manifestLock) {
+            JSONObject entry = new JSONObject();
+            entry.put("sha256", hash);
+            entry.put("size", outFile.length());
+            getManifest().put(asset, entry);
+          }
+          return outFile;
         }
+      } catch (Exception e) {
+        Log.e(LOG_TAG, "Exception while fetching " + fileName, e);
+      }
+    }
+    synchronized (semaphore) { // We are protecting the inError variable
+      if (!inError) {
+        inError = true;
+        form.runOnUiThread(new Runnable() {
+            public void run() {
+              RuntimeErrorAlert.alert(Form.getActiveForm(), "Unable to load file: " + fileName,
+                "Error!", "End Application");
+            }
+          });
       }
     }
+    return null;
+  }
+
+  /**
+   * Downloads an asset to the given file.
+   *
+   * @return the SHA-256 hash of the content, or null if the download failed
+   */
+  private static String download(String fileName, String cookieValue, String asset, File outFile)
+      throws IOException, NoSuchAlgorithmException {
+    URL url = new URL(fileName);
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    if (connection == null) {
+      return null;              // Connection was null, failed to open?
+    }
     try {
-      boolean error = false;
-      File outFile = null;
-      URL url = new URL(fileName);
-      HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-      if (connection != null) {
+      connection.setRequestMethod("GET");
+      connection.addRequestProperty("Cookie",  "AppInventor = " + cookieValue);
+      int responseCode = connection.getResponseCode();
+      Log.d(LOG_TAG, "asset = " + asset + " responseCode = " + responseCode);
+      File parentOutFile = outFile.getParentFile();
+      if (!parentOutFile.exists() && !parentOutFile.mkdirs()) {
+        throw new IOException("Unable to create assets directory " + parentOutFile);
+      }
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      InputStream in = new BufferedInputStream(connection.getInputStream(), 0x1000);
+      OutputStream out = new BufferedOutputStream(new FileOutputStream(outFile), 0x1000);
+      try {
+        byte[] buffer = new byte[0x1000];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+          digest.update(buffer, 0, read);
+          out.write(buffer, 0, read);
+        }
+        out.flush();
+      } catch (IOException e) {
+        Log.e(LOG_TAG, "copying assets", e);
+        return null;
+      } finally {
+        out.close();
+        in.close();
+      }
+      return toHex(digest.digest());
+    } finally {
+      connection.disconnect();
+    }
+  }
+
+  /**
+   * Fetches the server's manifest of asset hashes.
+   *
+   * @return the manifest, or null if it could not be fetched
+   */
+  private static JSONObject fetchManifest(String manifestUrl, String cookieValue) {
+    try {
+      HttpURLConnection connection = (HttpURLConnection) new URL(manifestUrl).openConnection();
+      try {
         connection.setRequestMethod("GET");
         connection.addRequestProperty("Cookie",  "AppInventor = " + cookieValue);
-        int responseCode = connection.getResponseCode();
-        Log.d(LOG_TAG, "asset = " + asset + " responseCode = " + responseCode);
-        outFile = new File(QUtil.getReplAssetPath(form), asset.substring("assets/".length()));
-        File parentOutFile = outFile.getParentFile();
-        if (!parentOutFile.exists() && !parentOutFile.mkdirs()) {
-          throw new IOException("Unable to create assets directory " + parentOutFile);
+        if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+          Log.w(LOG_TAG, "Asset manifest not available, responseCode = "
+              + connection.getResponseCode());
+          return null;
+        }
+        return new JSONObject(readFully(connection.getInputStream()));
+      } finally {
+        connection.disconnect();
+      }
+    } catch (Exception e) {
+      Log.w(LOG_TAG, "Unable to fetch asset manifest", e);
+      return null;
+    }
+  }
+
+  private static boolean isCurrent(String asset, String hash) {
+    File file = new File(QUtil.getReplAssetPath(Form.getActiveForm()),
+        asset.substring("assets/".length()));
+    synchronized (manifestLock) {
+      JSONObject entry = getManifest().optJSONObject(asset);
+      return entry != null && hash.equals(entry.optString("sha256"))
+          && file.exists() && file.length() == entry.optLong("size", -1);
+    }
+  }
+
+  private static File getManifestFile() {
+    File assetDir = new File(QUtil.getReplAssetPath(Form.getActiveForm()));
+    return new File(assetDir.getParentFile(), MANIFEST_FILE_NAME);
+  }
+
+  // Callers must hold manifestLock.
+  private static JSONObject getManifest() {
+    if (manifest == null) {
+      File file = getManifestFile();
+      if (file.exists()) {
+        try {
+          manifest = new JSONObject(readFully(new FileInputStream(file)));
+        } catch (Exception e) {
+          Log.w(LOG_TAG, "Discarding unreadable asset manifest", e);
+        }
+      }
+      if (manifest == null) {
+        manifest = new JSONObject();
+      }
+    }
+    return manifest;
+  }
+
+  private static void saveManifest() {
+    synchronized (manifestLock) {
+      File file = getManifestFile();
+      try {
+        File parent = file.getParentFile();
+        if (!parent.exists() && !parent.mkdirs()) {
+          throw new IOException("Unable to create directory " + parent);
         }
-        BufferedInputStream in = new BufferedInputStream(connection.getInputStream(), 0x1000);
-        BufferedOutputStream out = new BufferedOutputStream(new FileOutputStream(outFile), 0x1000);
+        OutputStream out = new FileOutputStream(file);
         try {
-          while (true) {
-            int b = in.read();
-            if (b == -1) {
-              break;
-            }
-            out.write(b);
-          }
-          out.flush();
-        } catch (IOException e) {
-          Log.e(LOG_TAG, "copying assets", e);
-          error = true;
+          out.write(getManifest().toString().getBytes("UTF-8"));
         } finally {
           out.close();
         }
-        connection.disconnect();
-      } else {
-        error = true;           // Connection was null, failed to open?
+      } catch (IOException e) {
+        Log.w(LOG_TAG, "Unable to save asset manifest", e);
+        // Without a manifest we simply fetch everything next time.
+        file.delete();
       }
-      if (error) {              // Try again recursively
-        return getFile(fileName, cookieValue, asset, depth + 1);
+    }
+  }
+
+  private static String readFully(InputStream in) throws IOException {
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[0x1000];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
       }
-      return outFile;
-    } catch (Exception e) {
-      Log.e(LOG_TAG, "Exception while fetching " + fileName, e);
-      // Try again recursively
-      return getFile(fileName, cookieValue, asset, depth + 1);
+      return out.toString("UTF-8");
+    } finally {
+      in.close();
+    }
+  }
+
+  private static String toHex(byte[] bytes) {
+    StringBuilder sb = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      sb.append(String.format("%02x", b & 0xff));
     }
+    return sb.toString();
   }
 }
@@ -0,0 +1,304 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime.util;
+
+import com.google.appinventor.components.runtime.Form;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.drawable.BitmapDrawable;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A memory-bounded cache of decoded images, used by
+ * {@link MediaUtil#getBitmapDrawableAsync} so that the same image shown by
+ * several components, or shown again, is only decoded once.
+ *
+ * <p>Bitmaps are kept in least recently used order up to a total size that is a
+ * fraction of the app's memory class.  Each request gets its own
+ * BitmapDrawable sharing the cached bitmap.  Requests for an image that is
+ * being loaded wait for that load instead of starting another.
+ *
+ * <p>Bitmaps evicted from the cache, and intermediate bitmaps no longer needed,
+ * are kept for a while to decode later images into (see
+ * BitmapFactory.Options.inBitmap), but only once no drawable handed out for
+ * them is still reachable, so a bitmap is never overwritten while shown.
+ * Copies made with {@code getConstantState().newDrawable()} share the
+ * original's constant state, which is tracked too.  A copy that is then
+ * mutated gets a constant state of its own and is not tracked, so callers
+ * that mutate a copy must keep the drawable they were given while the copy
+ * is shown.
+ *
+ * <p>The cache is used from the threads loading images, so all methods are
+ * synchronized.
+ */
+final class BitmapCache {
+  // The cache may use 1/MEMORY_CLASS_FRACTION of the app's memory class.
+  private static final int MEMORY_CLASS_FRACTION = 8;
+
+  // Maximum number of bitmaps kept for reuse.
+  private static final int MAX_REUSABLE_BITMAPS = 4;
+
+  private static class Entry {
+    final Bitmap bitmap;
+    final int size;
+    // The drawables handed out for the bitmap, and their constant states.
+    final List<WeakReference<Object>> users = new ArrayList<WeakReference<Object>>();
+
+    Entry(Bitmap bitmap) {
+      this.bitmap = bitmap;
+      this.size = byteCount(bitmap);
+    }
+
+    void addUser(BitmapDrawable drawable) {
+      inUse();  // Drops the users that are gone, so the list does not grow without bound
+      users.add(new WeakReference<Object>(drawable));
+      users.add(new WeakReference<Object>(drawable.getConstantState()));
+    }
+
+    boolean inUse() {
+      Iterator<WeakReference<Object>> it = users.iterator();
+      while (it.hasNext()) {
+        if (it.next().get() == null) {
+          it.remove();
+        }
+      }
+      return !users.isEmpty();
+    }
+  }
+
+  private final int maxSize;
+  private int size = 0;
+  private final LinkedHashMap<String, Entry> entries =
+      new LinkedHashMap<String, Entry>(16, 0.75f, true);  // access order
+  private final LinkedList<Entry> reusable = new LinkedList<Entry>();
+  private final Map<String, List<AsyncCallbackPair<BitmapDrawable>>> pendingRequests =
+      new HashMap<String, List<AsyncCallbackPair<BitmapDrawable>>>();
+
+  BitmapCache(int maxSize) {
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Returns the cache size to use for the app running the given Form.
+   */
+  static int defaultMaxSize(Form form) {
+    ActivityManager activityManager =
+        (ActivityManager) form.getSystemService(Context.ACTIVITY_SERVICE);
+    return activityManager.getMemoryClass() * 1024 * 1024 / MEMORY_CLASS_FRACTION;
+  }
+
+  /**
+   * Returns a new drawable for the cached image with the given key, or null if
+   * the image is not cached.
+   */
+  synchronized BitmapDrawable getDrawable(Form form, String key) {
+    Entry entry = entries.get(key);
+    return entry == null ? null : newDrawable(form, entry);
+  }
+
+  /**
+   * Registers a request for the image with the given key, which is not cached.
+   *
+   * @return true if the caller should load the image and then call
+   *         {@link #finishLoad} or {@link #failLoad}, false if the image is
+   *         already being loaded, in which case the callback will be called
+   *         when that load finishes
+   */
+  synchronized boolean startLoad(String key, AsyncCallbackPair<BitmapDrawable> callback) {
+    List<AsyncCallbackPair<BitmapDrawable>> callbacks = pendingRequests.get(key);
+    boolean first = callbacks == null;
+    if (first) {
+      callbacks = new ArrayList<AsyncCallbackPair<BitmapDrawable>>();
+      pendingRequests.put(key, callbacks);
+    }
+    callbacks.add(callback);
+    return first;
+  }
+
+  /**
+   * Caches a loaded image and passes it to each request waiting for it.
+   */
+  void finishLoad(Form form, String key, BitmapDrawable drawable) {
+    List<BitmapDrawable> results = new ArrayList<BitmapDrawable>();
+    List<AsyncCallbackPair<BitmapDrawable>> callbacks;
+    synchronized (this) {
+      callbacks = pendingRequests.remove(key);
+      if (callbacks == null) {
+        return;
+      }
+      if (drawable.getBitmap() == null) {
+        // Nothing was decoded, so there is nothing to cache.
+        for (int i = 0; i < callbacks.size(); i++) {
+          results.add(drawable);
+        }
+      } else {
+        Entry entry = new Entry(drawable.getBitmap());
+        if (entry.size <= maxSize) {
+          Entry previous = entries.put(key, entry);
+          if (previous != null) {
+            size -= previous.size;
+          }
+          size += entry.size;
+        }
+        entry.addUser(drawable);
+        results.add(drawable);
+        for (int i = 1; i < callbacks.size(); i++) {
+          results.add(newDrawable(form, entry));
+        }
+        trimToSize();
+      }
+    }
+    // Call back outside the lock, since callbacks may block.
+    for (int i = 0; i < callbacks.size(); i++) {
+      callbacks.get(i).onSuccess(results.get(i));
+    }
+  }
+
+  /**
+   * Reports a failure to load an image to each request waiting for it.
+   */
+  void failLoad(String key, String message) {
+    List<AsyncCallbackPair<BitmapDrawable>> callbacks;
+    synchronized (this) {
+      callbacks = pendingRequests.remove(key);
+    }
+    if (callbacks != null) {
+      for (AsyncCallbackPair<BitmapDrawable> callback : callbacks) {
+        callback.onFailure(message);
+      }
+    }
+  }
+
+  /**
+   * Sets up the given decoding options to produce a mutable bitmap and, if a
+   * bitmap kept for reuse is large enough, to decode into it.
+   *
+   * @param options the options, with inSampleSize already set
+   * @param width the width of the encoded image
+   * @param height the height of the encoded image
+   */
+  synchronized void setReusableBitmap(BitmapFactory.Options options, int width, int height) {
+    if (SdkLevel.getLevel() < SdkLevel.LEVEL_HONEYCOMB) {
+      return;
+    }
+    Bitmap inBitmap = null;
+    Iterator<Entry> it = reusable.iterator();
+    while (it.hasNext()) {
+      Entry entry = it.next();
+      if (!entry.inUse() && canDecodeInto(entry.bitmap, options.inSampleSize, width, height)) {
+        it.remove();
+        inBitmap = entry.bitmap;
+        break;
+      }
+    }
+    HoneycombUtil.setInBitmap(options, inBitmap);
+  }
+
+  /**
+   * Clears the bitmap set by {@link #setReusableBitmap}, for when decoding into
+   * it failed.
+   *
+   * @return whether a bitmap had been set
+   */
+  static boolean clearReusableBitmap(BitmapFactory.Options options) {
+    if (SdkLevel.getLevel() < SdkLevel.LEVEL_HONEYCOMB
+        || HoneycombUtil.getInBitmap(options) == null) {
+      return false;
+    }
+    HoneycombUtil.setInBitmap(options, null);
+    return true;
+  }
+
+  /**
+   * Offers a bitmap that is no longer used, such as one decoded only to be
+   * scaled, for decoding later images into.
+   */
+  synchronized void reuse(Bitmap bitmap) {
+    addReusable(new Entry(bitmap));
+  }
+
+  /**
+   * Returns the number of live references kept to the drawables handed out
+   * for the cached image with the given key and to their constant states, or
+   * -1 if the image is not cached.
+   */
+  @VisibleForTesting
+  synchronized int countUsers(String key) {
+    Entry entry = entries.get(key);
+    if (entry == null) {
+      return -1;
+    }
+    entry.inUse();
+    return entry.users.size();
+  }
+
+  /**
+   * Returns whether a bitmap is kept for reuse.
+   */
+  @VisibleForTesting
+  synchronized boolean isReusable(Bitmap bitmap) {
+    for (Entry entry : reusable) {
+      if (entry.bitmap == bitmap) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void addReusable(Entry entry) {
+    if (!entry.bitmap.isMutable() || SdkLevel.getLevel() < SdkLevel.LEVEL_HONEYCOMB) {
+      return;
+    }
+    reusable.addFirst(entry);
+    if (reusable.size() > MAX_REUSABLE_BITMAPS) {
+      reusable.removeLast();
+    }
+  }
+
+  private void trimToSize() {
+    Iterator<Entry> it = entries.values().iterator();
+    while (size > maxSize && it.hasNext()) {
+      Entry eldest = it.next();
+      it.remove();
+      size -= eldest.size;
+      addReusable(eldest);
+    }
+  }
+
+  private static BitmapDrawable newDrawable(Form form, Entry entry) {
+    BitmapDrawable drawable = new BitmapDrawable(form.getResources(), entry.bitmap);
+    drawable.setTargetDensity(form.getResources().getDisplayMetrics());
+    entry.addUser(drawable);
+    return drawable;
+  }
+
+  private static boolean canDecodeInto(Bitmap candidate, int sampleSize, int width, int height) {
+    if (SdkLevel.getLevel() >= SdkLevel.LEVEL_KITKAT) {
+      int sampledWidth = (width + sampleSize - 1) / sampleSize;
+      int sampledHeight = (height + sampleSize - 1) / sampleSize;
+      return sampledWidth * sampledHeight * 4 <= KitkatUtil.getAllocationByteCount(candidate);
+    }
+    // Before KitKat, the bitmap must be exactly the size of the image, without sampling.
+    return sampleSize == 1 && candidate.getWidth() == width && candidate.getHeight() == height;
+  }
+
+  private static int byteCount(Bitmap bitmap) {
+    return bitmap.getRowBytes() * bitmap.getHeight();
+  }
+}
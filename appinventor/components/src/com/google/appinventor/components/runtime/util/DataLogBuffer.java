@@ -0,0 +1,136 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime.util;
+
+/**
+ * A preallocated ring buffer of timestamped readings waiting to be written to a
+ * data log.  Readings are added on the UI thread and drained by the thread
+ * writing the log, so all methods are synchronized.
+ *
+ * <p>When the buffer is full, new readings are dropped rather than overwriting
+ * older ones that have not been written yet, and counted in
+ * {@link #getDropped()}.
+ */
+public final class DataLogBuffer {
+  private final int channels;
+  private final int capacity;
+  private final long[] times;
+  private final double[] values;
+  private int head;  // index of the oldest reading
+  private int size;
+  private long dropped;
+
+  /**
+   * Creates a new buffer.
+   *
+   * @param channels the number of values in each reading
+   * @param capacity the maximum number of readings held
+   */
+  public DataLogBuffer(int channels, int capacity) {
+    if (channels < 1 || capacity < 1) {
+      throw new IllegalArgumentException("channels and capacity must be positive");
+    }
+    this.channels = channels;
+    this.capacity = capacity;
+    times = new long[capacity];
+    values = new double[capacity * channels];
+  }
+
+  public int getChannels() {
+    return channels;
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Adds a reading.  Missing values are recorded as NaN and extra values are
+   * ignored.
+   *
+   * @param time the time of the reading
+   * @param readings the values, of which the first {@code count} are used
+   * @param count the number of values
+   * @return false if the buffer was full and the reading was dropped
+   */
+  public synchronized boolean add(long time, double[] readings, int count) {
+    int offset = reserve(time);
+    if (offset < 0) {
+      return false;
+    }
+    for (int ch = 0; ch < channels; ch++) {
+      values[offset + ch] = ch < count ? readings[ch] : Double.NaN;
+    }
+    return true;
+  }
+
+  /**
+   * Adds a reading from a sensor.  See {@link #add(long, double[], int)}.
+   */
+  public synchronized boolean add(long time, float[] readings, int count) {
+    int offset = reserve(time);
+    if (offset < 0) {
+      return false;
+    }
+    for (int ch = 0; ch < channels; ch++) {
+      values[offset + ch] = ch < count ? readings[ch] : Double.NaN;
+    }
+    return true;
+  }
+
+  /**
+   * Returns the number of readings waiting to be drained.
+   */
+  public synchronized int size() {
+    return size;
+  }
+
+  /**
+   * Returns the number of readings dropped because the buffer was full.
+   */
+  public synchronized long getDropped() {
+    return dropped;
+  }
+
+  /**
+   * Moves the oldest readings into the given arrays.
+   *
+   * @param timesOut receives the time of each reading
+   * @param valuesOut receives the values of each reading, {@code channels} per
+   *                  reading
+   * @return the number of readings moved, at most {@code timesOut.length}
+   */
+  public synchronized int drainTo(long[] timesOut, double[] valuesOut) {
+    int count = Math.min(size, timesOut.length);
+    for (int i = 0; i < count; i++) {
+      int index = (head + i) % capacity;
+      timesOut[i] = times[index];
+      System.arraycopy(values, index * channels, valuesOut, i * channels, channels);
+    }
+    head = (head + count) % capacity;
+    size -= count;
+    return count;
+  }
+
+  /**
+   * Discards the readings waiting to be drained.
+   */
+  public synchronized void clear() {
+    head = 0;
+    size = 0;
+  }
+
+  private int reserve(long time) {
+    if (size == capacity) {
+      dropped++;
+      return -1;
+    }
+    int index = (head + size) % capacity;
+    times[index] = time;
+    size++;
+    return index * channels;
+  }
+}
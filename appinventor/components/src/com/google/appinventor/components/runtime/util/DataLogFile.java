@@ -0,0 +1,319 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * The binary file format written by the DataLogger component.
+ *
+ * <p>A log starts with a 16 byte header: a magic number, the format version, the
+ * number of channels and a reserved word.  It is followed by fixed-size records,
+ * each holding the time of a reading in milliseconds as a long and then one double
+ * per channel, all little-endian.  Because records have a fixed size, a log can be
+ * appended to with plain sequential writes and read back by mapping the file into
+ * memory, without parsing.  A record cut short by a crash is ignored by readers and
+ * overwritten by the next writer.
+ *
+ * <p>Times are expected to be nondecreasing, which lets readers find a time range
+ * by binary search.
+ */
+public final class DataLogFile {
+  static final int MAGIC = 0x4149444c;  // "AIDL"
+  static final int FORMAT_VERSION = 1;
+  static final int HEADER_SIZE = 16;
+
+  private DataLogFile() {
+  }
+
+  /**
+   * Returns the size in bytes of each record of a log with the given number of
+   * channels.
+   */
+  public static int recordSize(int channels) {
+    return 8 + 8 * channels;
+  }
+
+  /**
+   * Appends records to a log file.  Not thread-safe.
+   */
+  public static final class Appender implements Closeable {
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final int channels;
+    private final int recordSize;
+    private final ByteBuffer buffer;
+
+    /**
+     * Opens a log for appending, creating it if it does not exist.
+     *
+     * @param path the log file
+     * @param channels the number of values in each record
+     * @param maxRecords the largest number of records passed to one call of
+     *                   {@link #append}
+     * @throws IOException if the file cannot be opened, or is a log with a
+     *         different number of channels
+     */
+    public Appender(File path, int channels, int maxRecords) throws IOException {
+      this.channels = channels;
+      this.recordSize = recordSize(channels);
+      file = new RandomAccessFile(path, "rw");
+      channel = file.getChannel();
+      buffer = ByteBuffer.allocateDirect(Math.max(HEADER_SIZE, maxRecords * recordSize))
+          .order(ByteOrder.LITTLE_ENDIAN);
+      try {
+        if (channel.size() < HEADER_SIZE) {
+          writeHeader();
+        } else {
+          int existing = readHeader(channel, buffer);
+          if (existing != channels) {
+            throw new IOException("Log " + path + " has " + existing + " channels, not "
+                + channels);
+          }
+        }
+        // Drop any partial record left by an interrupted write.
+        long records = (channel.size() - HEADER_SIZE) / recordSize;
+        channel.truncate(HEADER_SIZE + records * recordSize);
+        channel.position(HEADER_SIZE + records * recordSize);
+      } catch (IOException e) {
+        file.close();
+        throw e;
+      }
+    }
+
+    /**
+     * Appends records in one sequential write.
+     *
+     * @param times the time of each record
+     * @param values the values of each record, {@code channels} per record
+     * @param count the number of records to write
+     */
+    public void append(long[] times, double[] values, int count) throws IOException {
+      buffer.clear();
+      for (int i = 0; i < count; i++) {
+        buffer.putLong(times[i]);
+        for (int ch = 0; ch < channels; ch++) {
+          buffer.putDouble(values[i * channels + ch]);
+        }
+      }
+      buffer.flip();
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    }
+
+    /**
+     * Removes all records from the log.
+     */
+    public void truncate() throws IOException {
+      channel.truncate(HEADER_SIZE);
+      channel.position(HEADER_SIZE);
+    }
+
+    @Override
+    public void close() throws IOException {
+      file.close();
+    }
+
+    private void writeHeader() throws IOException {
+      buffer.clear();
+      buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(channels).putInt(0);
+      buffer.flip();
+      channel.truncate(0);
+      channel.position(0);
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    }
+  }
+
+  /**
+   * A series of (time, value) points, as returned by {@link Reader#downsample}.
+   */
+  public static final class Series {
+    public final long[] times;
+    public final double[] values;
+
+    Series(long[] times, double[] values) {
+      this.times = times;
+      this.values = values;
+    }
+
+    public int size() {
+      return times.length;
+    }
+  }
+
+  /**
+   * Reads a log file by mapping it into memory.  The reader sees the records
+   * written before it was opened.
+   */
+  public static final class Reader implements Closeable {
+    private final RandomAccessFile file;
+    private final MappedByteBuffer map;
+    private final int channels;
+    private final int recordSize;
+    private final int size;
+
+    /**
+     * Opens a log for reading.
+     *
+     * @throws IOException if the file cannot be read or is not a log
+     */
+    public Reader(File path) throws IOException {
+      file = new RandomAccessFile(path, "r");
+      try {
+        FileChannel channel = file.getChannel();
+        long length = channel.size();
+        if (length > Integer.MAX_VALUE) {
+          throw new IOException("Log " + path + " is too large to map");
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        channels = readHeader(channel, header);
+        recordSize = recordSize(channels);
+        map = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+        map.order(ByteOrder.LITTLE_ENDIAN);
+        size = (int) ((length - HEADER_SIZE) / recordSize);
+      } catch (IOException e) {
+        file.close();
+        throw e;
+      }
+    }
+
+    public int getChannels() {
+      return channels;
+    }
+
+    /**
+     * Returns the number of records in the log.
+     */
+    public int size() {
+      return size;
+    }
+
+    public long time(int record) {
+      return map.getLong(HEADER_SIZE + record * recordSize);
+    }
+
+    public double value(int record, int channel) {
+      return map.getDouble(HEADER_SIZE + record * recordSize + 8 + channel * 8);
+    }
+
+    /**
+     * Returns the index of the first record at or after the given time, or
+     * {@link #size()} if there is none.
+     */
+    public int indexOf(long time) {
+      int low = 0;
+      int high = size;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (time(mid) < time) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+
+    /**
+     * Returns at most {@code points} points summarizing one channel between two
+     * times, for charting.  The records in the range are split into consecutive
+     * groups of equal count, and each point has the time of the first record of
+     * its group and the mean of its values, ignoring NaN.  If there are no more
+     * records than points, every record is returned.
+     *
+     * @param channel the channel, starting at 0
+     * @param startTime the earliest time included
+     * @param endTime the latest time included
+     * @param points the maximum number of points, at least 1
+     */
+    public Series downsample(int channel, long startTime, long endTime, int points) {
+      int start = indexOf(startTime);
+      int end = endTime == Long.MAX_VALUE ? size : indexOf(endTime + 1);
+      int count = Math.max(0, end - start);
+      int groups = Math.min(count, points);
+      long[] times = new long[groups];
+      double[] values = new double[groups];
+      for (int g = 0; g < groups; g++) {
+        int first = start + (int) ((long) g * count / groups);
+        int last = start + (int) ((long) (g + 1) * count / groups);
+        double sum = 0;
+        int n = 0;
+        for (int i = first; i < last; i++) {
+          double value = value(i, channel);
+          if (!Double.isNaN(value)) {
+            sum += value;
+            n++;
+          }
+        }
+        times[g] = time(first);
+        values[g] = n == 0 ? Double.NaN : sum / n;
+      }
+      return new Series(times, values);
+    }
+
+    /**
+     * Writes the log as comma-separated values, one line per record, starting
+     * with a header line.
+     */
+    public void exportCsv(Writer out) throws IOException {
+      StringBuilder line = new StringBuilder("time");
+      for (int ch = 1; ch <= channels; ch++) {
+        line.append(",value").append(ch);
+      }
+      out.write(line.append('\n').toString());
+      for (int i = 0; i < size; i++) {
+        line.setLength(0);
+        line.append(time(i));
+        for (int ch = 0; ch < channels; ch++) {
+          double value = value(i, ch);
+          line.append(',');
+          if (!Double.isNaN(value)) {
+            line.append(value);
+          }
+        }
+        out.write(line.append('\n').toString());
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      file.close();
+    }
+  }
+
+  private static int readHeader(FileChannel channel, ByteBuffer buffer) throws IOException {
+    buffer.clear();
+    buffer.limit(HEADER_SIZE);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, buffer.position()) < 0) {
+        throw new IOException("Truncated log header");
+      }
+    }
+    buffer.flip();
+    if (buffer.getInt() != MAGIC) {
+      throw new IOException("Not a data log");
+    }
+    if (buffer.getInt() != FORMAT_VERSION) {
+      throw new IOException("Unsupported data log version");
+    }
+    int channels = buffer.getInt();
+    if (channels < 1) {
+      throw new IOException("Invalid number of channels in data log");
+    }
+    return channels;
+  }
+}
@@ -0,0 +1,76 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime.util;
+
+import java.util.Arrays;
+
+/**
+ * Filters a list of text elements for the filter bar of ListView and
+ * ListPicker.  An element matches if it, or any of its space-separated words,
+ * starts with the query, ignoring case, which is the rule used by Android's
+ * ArrayAdapter.
+ *
+ * <p>The lower-cased elements are kept as an index and reused for as long as
+ * the list is unchanged, and a query that extends the previous one only
+ * searches the previous matches, so typing into the filter bar does not
+ * rescan the whole list.  Meant to be called on a background thread;
+ * all methods are synchronized.
+ */
+public final class ElementsFilter {
+  private int version = -1;
+  private String[] index;
+  private String lastQuery;
+  private int[] lastMatches;
+
+  /**
+   * Returns the indexes of the elements matching a query.
+   *
+   * @param elements the elements
+   * @param version a number that changes whenever the elements change, used to
+   *                decide whether the index can be reused
+   * @param query the text typed into the filter bar
+   * @return the indexes of the matching elements, in increasing order
+   */
+  public synchronized int[] filter(String[] elements, int version, String query) {
+    String prefix = query.toLowerCase();
+    if (version != this.version || index == null) {
+      index = new String[elements.length];
+      for (int i = 0; i < elements.length; i++) {
+        index[i] = elements[i].toLowerCase();
+      }
+      this.version = version;
+      lastQuery = null;
+      lastMatches = null;
+    }
+    int[] matches;
+    if (lastQuery != null && prefix.startsWith(lastQuery)) {
+      matches = search(prefix, lastMatches);
+    } else {
+      matches = search(prefix, null);
+    }
+    lastQuery = prefix;
+    lastMatches = matches;
+    return matches;
+  }
+
+  /**
+   * Searches the index, or only the given candidates if not null.
+   */
+  private int[] search(String prefix, int[] candidates) {
+    String wordPrefix = " " + prefix;
+    int count = candidates == null ? index.length : candidates.length;
+    int[] found = new int[count];
+    int n = 0;
+    for (int i = 0; i < count; i++) {
+      int element = candidates == null ? i : candidates[i];
+      String text = index[element];
+      if (text.startsWith(prefix) || text.contains(wordPrefix)) {
+        found[n++] = element;
+      }
+    }
+    return n == count ? found : Arrays.copyOf(found, n);
+  }
+}
@@ -86,6 +86,7 @@ public final class ErrorMessages {
   public static final int ERROR_BLUETOOTH_UNABLE_TO_READ = 517;
   public static final int ERROR_BLUETOOTH_END_OF_STREAM = 518;
   public static final int ERROR_BLUETOOTH_UNSUPPORTED_ENCODING = 519;
+  public static final int ERROR_BLUETOOTH_RECEIVING_IN_BACKGROUND = 520;
   // ActivityStarter errors
   public static final int ERROR_ACTIVITY_STARTER_NO_CORRESPONDING_ACTIVITY = 601;
   public static final int ERROR_ACTIVITY_STARTER_NO_ACTION_INFO = 602;
@@ -123,6 +124,8 @@ public final class ErrorMessages {
   public static final int ERROR_CANVAS_WIDTH_ERROR = 1002;
   public static final int ERROR_CANVAS_HEIGHT_ERROR = 1003;
   public static final int ERROR_CANVAS_DRAW_SHAPE_BAD_ARGUMENT = 1004;
+  public static final int ERROR_CANVAS_BAD_POINT_LIST = 1005;
+  public static final int ERROR_CANVAS_BAD_PIXEL_LIST = 1006;
   // Web errors
   public static final int ERROR_WEB_UNABLE_TO_GET = 1101;
   public static final int ERROR_WEB_UNSUPPORTED_ENCODING = 1102;
@@ -168,6 +171,8 @@ public final class ErrorMessages {
   public static final int ERROR_REPL_SECURITY_ERROR = 1801;
   // AccelerometerSensor Errors
   public static final int ERROR_BAD_VALUE_FOR_ACCELEROMETER_SENSITIVITY = 1901;
+  // Sensor Errors
+  public static final int ERROR_INVALID_SENSOR_AXIS = 1902;
 
   //Sharing Errors
   public static final int ERROR_FILE_NOT_FOUND_FOR_SHARING = 2001;
@@ -272,6 +277,7 @@ public final class ErrorMessages {
   // Serial errors
   public static final int ERROR_SERIAL_NOT_INITIALIZED = 3901;
   public static final int ERROR_SERIAL_WRITING = 3902;
+  public static final int ERROR_SERIAL_RECEIVING_IN_BACKGROUND = 3903;
 
   // Navigation Errors
   public static final int ERROR_INVALID_API_KEY = 4001;
@@ -279,8 +285,22 @@ public final class ErrorMessages {
   public static final int ERROR_ROUTING_SERVICE_ERROR = 4003;
   public static final int ERROR_NO_ROUTE_FOUND = 4004;
 
+  // DataLogger Errors
+  public static final int ERROR_DATALOGGER_CANNOT_OPEN = 4101;
+  public static final int ERROR_DATALOGGER_CANNOT_WRITE = 4102;
+  public static final int ERROR_DATALOGGER_CANNOT_READ = 4103;
+  public static final int ERROR_DATALOGGER_NOT_LOGGING = 4104;
+  public static final int ERROR_DATALOGGER_INVALID_CHANNEL = 4105;
+  public static final int ERROR_DATALOGGER_INVALID_SOURCE = 4106;
 
-  // Start the next group of errors at 4100
+  // ListView Errors
+  public static final int ERROR_LISTVIEW_INDEX_OUT_OF_BOUNDS = 4201;
+
+  // Frame Errors
+  public static final int ERROR_INVALID_FRAME_FORMAT = 4301;
+  public static final int ERROR_FRAME_TOO_LONG = 4302;
+
+  // Start the next group of errors at 4400
 
   // Mapping of error numbers to error message format strings.
   private static final Map<Integer, String> errorMessages;
@@ -437,6 +457,9 @@ public final class ErrorMessages {
         "End of stream has been reached.");
     errorMessages.put(ERROR_BLUETOOTH_UNSUPPORTED_ENCODING,
         "The encoding %s is not supported.");
+    errorMessages.put(ERROR_BLUETOOTH_RECEIVING_IN_BACKGROUND,
+        "Cannot receive values one at a time after StartReceiving, " +
+        "until the connection is closed.");
     // ActivityStarter errors
     errorMessages.put(ERROR_ACTIVITY_STARTER_NO_CORRESPONDING_ACTIVITY,
         "No corresponding activity was found.");
@@ -491,6 +514,10 @@ public final class ErrorMessages {
     errorMessages.put(ERROR_CANVAS_WIDTH_ERROR, "Canvas width cannot be set to non-positive number");
     errorMessages.put(ERROR_CANVAS_HEIGHT_ERROR, "Canvas height cannot be set to non-positive number");
     errorMessages.put(ERROR_CANVAS_DRAW_SHAPE_BAD_ARGUMENT, "Canvas cannot draw the shape with a bad point list");
+    errorMessages.put(ERROR_CANVAS_BAD_POINT_LIST,
+        "The point list should be a list of sub-lists with two numbers");
+    errorMessages.put(ERROR_CANVAS_BAD_PIXEL_LIST,
+        "The color list should contain a number for each point of a %d by %d region");
     // Web errors
     errorMessages.put(ERROR_WEB_UNABLE_TO_GET,
         "Unable to get a response with the specified URL: %s");
@@ -567,6 +594,9 @@ public final class ErrorMessages {
     errorMessages.put(ERROR_BAD_VALUE_FOR_ACCELEROMETER_SENSITIVITY,
        "The value -- %s -- provided for AccelerometerSensor's sensitivity was bad. " +
        "The only legal values are 1, 2, or 3.");
+    //Sensor errors
+    errorMessages.put(ERROR_INVALID_SENSOR_AXIS,
+       "The axis %s is not valid. The axes of this sensor are numbered from 1 to %s.");
     //Sharing errors
     errorMessages.put(ERROR_FILE_NOT_FOUND_FOR_SHARING,
         "The File %s could not be found on your device.");
@@ -684,6 +714,8 @@ public final class ErrorMessages {
     // Serial
     errorMessages.put(ERROR_SERIAL_NOT_INITIALIZED, "Serial was not initialized");
     errorMessages.put(ERROR_SERIAL_WRITING, "Error writing data to serial");
+    errorMessages.put(ERROR_SERIAL_RECEIVING_IN_BACKGROUND,
+        "Cannot read from serial while receiving in the background. Call StopReceiving first.");
 
     // Navigation Errors
     errorMessages.put(ERROR_INVALID_API_KEY, "No api key provided");
@@ -691,6 +723,26 @@ public final class ErrorMessages {
         "Unable to request directions. Reason: %s");
     errorMessages.put(ERROR_ROUTING_SERVICE_ERROR, "Routing service failed with status %d %s");
     errorMessages.put(ERROR_NO_ROUTE_FOUND, "No route returned by the routing service.");
+
+    // DataLogger Errors
+    errorMessages.put(ERROR_DATALOGGER_CANNOT_OPEN, "Unable to open the data log %s: %s");
+    errorMessages.put(ERROR_DATALOGGER_CANNOT_WRITE, "Unable to write the file %s.");
+    errorMessages.put(ERROR_DATALOGGER_CANNOT_READ, "Unable to read the data log %s.");
+    errorMessages.put(ERROR_DATALOGGER_NOT_LOGGING,
+        "The DataLogger is not logging. Call Start first.");
+    errorMessages.put(ERROR_DATALOGGER_INVALID_CHANNEL,
+        "Channel %d is not valid. The data log has channels 1 to %d.");
+    errorMessages.put(ERROR_DATALOGGER_INVALID_SOURCE,
+        "A %s cannot be the Source of a DataLogger. Choose a sensor instead.");
+
+    // ListView Errors
+    errorMessages.put(ERROR_LISTVIEW_INDEX_OUT_OF_BOUNDS,
+        "Index %d is out of bounds. The ListView has %d items.");
+    // Frame errors
+    errorMessages.put(ERROR_INVALID_FRAME_FORMAT,
+        "Unable to decode the frame with the format \"%s\": %s");
+    errorMessages.put(ERROR_FRAME_TOO_LONG,
+        "The frame length %d is too long. Frames can be at most %d bytes.");
   }
 
   private ErrorMessages() {
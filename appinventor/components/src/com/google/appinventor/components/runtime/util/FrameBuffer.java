@@ -0,0 +1,141 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Splits a stream of bytes into frames and holds the complete frames until
+ * they are taken.  Bytes are added by the thread reading a connection and
+ * frames are taken on the UI thread, so all methods are synchronized.
+ *
+ * <p>Frames are one of:
+ * <ul>
+ *   <li>a fixed number of bytes, if the frame length is positive;
+ *   <li>the bytes up to a delimiter byte, which is not part of the frame, if
+ *       the frame length is negative;
+ *   <li>a byte giving the number of bytes that follow, if the frame length is
+ *       0.
+ * </ul>
+ *
+ * <p>A delimited frame longer than the maximum frame size is cut at that size.
+ * If frames are not taken fast enough, the oldest are dropped once the maximum
+ * number are waiting.
+ */
+public final class FrameBuffer {
+  private final int frameLength;
+  private final byte delimiter;
+  private final int maxPendingFrames;
+
+  // The frame being received
+  private final byte[] partial;
+  private int partialSize;
+  private int expectedSize = -1;  // for length-prefixed frames, or -1 before the prefix
+
+  private final ArrayDeque<byte[]> frames = new ArrayDeque<byte[]>();
+  private int droppedFrames;
+
+  /**
+   * Creates a new frame buffer.
+   *
+   * @param frameLength the length of each frame, negative for delimited frames
+   *                    or 0 for length-prefixed frames
+   * @param delimiter the byte ending each frame, if frameLength is negative
+   * @param maxFrameSize the longest frame, and the length of delimited frames
+   *                     that are cut
+   * @param maxPendingFrames the number of frames held until they are taken
+   * @throws IllegalArgumentException if frameLength is greater than
+   *         maxFrameSize
+   */
+  public FrameBuffer(int frameLength, byte delimiter, int maxFrameSize, int maxPendingFrames) {
+    if (maxFrameSize < 1 || maxPendingFrames < 1) {
+      throw new IllegalArgumentException("maxFrameSize and maxPendingFrames must be positive");
+    }
+    if (frameLength > maxFrameSize) {
+      throw new IllegalArgumentException("frameLength must be at most " + maxFrameSize);
+    }
+    this.frameLength = frameLength;
+    this.delimiter = delimiter;
+    this.maxPendingFrames = maxPendingFrames;
+    int size;
+    if (frameLength > 0) {
+      size = frameLength;
+    } else if (frameLength == 0) {
+      size = 255;
+    } else {
+      size = maxFrameSize;
+    }
+    partial = new byte[size];
+  }
+
+  /**
+   * Adds bytes received from a connection.
+   *
+   * @return true if frames are now waiting and none were before, meaning that
+   *         whoever takes them should be told
+   */
+  public synchronized boolean add(byte[] bytes, int offset, int length) {
+    boolean wasEmpty = frames.isEmpty();
+    for (int i = offset; i < offset + length; i++) {
+      byte b = bytes[i];
+      if (frameLength < 0) {
+        if (b == delimiter) {
+          completeFrame();
+        } else {
+          partial[partialSize++] = b;
+          if (partialSize == partial.length) {
+            completeFrame();
+          }
+        }
+      } else if (frameLength > 0) {
+        partial[partialSize++] = b;
+        if (partialSize == frameLength) {
+          completeFrame();
+        }
+      } else if (expectedSize < 0) {
+        expectedSize = b & 0xFF;
+        if (expectedSize == 0) {
+          completeFrame();
+        }
+      } else {
+        partial[partialSize++] = b;
+        if (partialSize == expectedSize) {
+          completeFrame();
+        }
+      }
+    }
+    return wasEmpty && !frames.isEmpty();
+  }
+
+  /**
+   * Removes and returns the waiting frames, oldest first.
+   */
+  public synchronized List<byte[]> takeFrames() {
+    List<byte[]> result = new ArrayList<byte[]>(frames);
+    frames.clear();
+    return result;
+  }
+
+  /**
+   * Returns the number of frames dropped because they were not taken in time.
+   */
+  public synchronized int getDroppedFrames() {
+    return droppedFrames;
+  }
+
+  private void completeFrame() {
+    if (frames.size() == maxPendingFrames) {
+      frames.removeFirst();
+      droppedFrames++;
+    }
+    frames.addLast(Arrays.copyOf(partial, partialSize));
+    partialSize = 0;
+    expectedSize = -1;
+  }
+}
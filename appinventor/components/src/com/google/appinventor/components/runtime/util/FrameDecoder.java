@@ -0,0 +1,152 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime.util;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Converts frames of bytes received from a connection into numbers, as
+ * described by a format string in the style of Python's struct module.
+ *
+ * <p>Each character of the format reads one value from the frame:
+ * <ul>
+ *   <li>{@code b} and {@code B}: a signed or unsigned 1-byte number;
+ *   <li>{@code h} and {@code H}: a signed or unsigned 2-byte number;
+ *   <li>{@code i} and {@code I}: a signed or unsigned 4-byte number;
+ *   <li>{@code f}: a 4-byte floating point number;
+ *   <li>{@code d}: an 8-byte floating point number;
+ *   <li>{@code x}: a byte that is skipped.
+ * </ul>
+ * A count before a character repeats it, so {@code "3h"} is the same as
+ * {@code "hhh"}.  {@code <} and {@code >} switch the rest of the format to low
+ * byte first or high byte first.  Spaces are ignored.
+ */
+public final class FrameDecoder {
+
+  private FrameDecoder() {
+  }
+
+  /**
+   * Decodes a frame.
+   *
+   * @param frame the bytes of the frame
+   * @param format the format string
+   * @param highByteFirst the initial byte order
+   * @return the numbers, as Integers, Longs and Doubles
+   * @throws IllegalArgumentException if the format is invalid or needs more
+   *         bytes than the frame holds
+   */
+  public static List<Number> decode(byte[] frame, String format, boolean highByteFirst) {
+    ByteBuffer buffer = ByteBuffer.wrap(frame);
+    buffer.order(highByteFirst ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+    List<Number> values = new ArrayList<Number>();
+    int count = 0;
+    try {
+      for (int i = 0; i < format.length(); i++) {
+        char c = format.charAt(i);
+        if (c >= '0' && c <= '9') {
+          count = count * 10 + (c - '0');
+          continue;
+        }
+        int repeat = count == 0 ? 1 : count;
+        count = 0;
+        switch (c) {
+          case ' ':
+            break;
+          case '<':
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            break;
+          case '>':
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            break;
+          default:
+            for (int r = 0; r < repeat; r++) {
+              decodeValue(buffer, c, values);
+            }
+        }
+      }
+    } catch (BufferUnderflowException e) {
+      throw new IllegalArgumentException("the frame has only " + frame.length + " bytes");
+    }
+    return values;
+  }
+
+  private static void decodeValue(ByteBuffer buffer, char c, List<Number> values) {
+    switch (c) {
+      case 'b':
+        values.add((int) buffer.get());
+        break;
+      case 'B':
+        values.add(buffer.get() & 0xFF);
+        break;
+      case 'h':
+        values.add((int) buffer.getShort());
+        break;
+      case 'H':
+        values.add(buffer.getShort() & 0xFFFF);
+        break;
+      case 'i':
+        values.add(buffer.getInt());
+        break;
+      case 'I':
+        values.add(buffer.getInt() & 0xFFFFFFFFL);
+        break;
+      case 'f':
+        values.add((double) buffer.getFloat());
+        break;
+      case 'd':
+        values.add(buffer.getDouble());
+        break;
+      case 'x':
+        buffer.get();
+        break;
+      default:
+        throw new IllegalArgumentException("'" + c + "' is not a format character");
+    }
+  }
+
+  /**
+   * Converts a frame to a list of unsigned byte values.
+   */
+  public static List<Integer> toUnsignedBytes(byte[] frame) {
+    List<Integer> list = new ArrayList<Integer>(frame.length);
+    for (byte b : frame) {
+      list.add(b & 0xFF);
+    }
+    return list;
+  }
+
+  /**
+   * Converts a list of byte values, as numbers or text, back to a frame.
+   *
+   * @throws IllegalArgumentException if a value is not a number that fits in
+   *         a byte
+   */
+  public static byte[] fromBytes(Object[] values) {
+    byte[] frame = new byte[values.length];
+    for (int i = 0; i < values.length; i++) {
+      int n;
+      if (values[i] instanceof Number) {
+        n = ((Number) values[i]).intValue();
+      } else {
+        try {
+          n = Integer.decode(values[i].toString());
+        } catch (NumberFormatException e) {
+          throw new IllegalArgumentException("item " + (i + 1) + " is not a number");
+        }
+      }
+      if (n < -128 || n > 255) {
+        throw new IllegalArgumentException("item " + (i + 1) + " does not fit in a byte");
+      }
+      frame[i] = (byte) n;
+    }
+    return frame;
+  }
+}
@@ -0,0 +1,109 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads a connection's input stream on a background thread, splitting it into
+ * frames with a {@link FrameBuffer}.  Each read takes whatever bytes have
+ * arrived, so frames are delivered in batches rather than one value at a time.
+ *
+ * <p>A read cannot be interrupted, so once started the reader owns the stream
+ * until the stream is closed.  Receiving is paused and resumed, or the frames
+ * changed, with {@link #setFrames(FrameBuffer)}, rather than by starting
+ * another reader.
+ */
+public final class FrameReader implements Runnable {
+  private static final int CHUNK_SIZE = 4096;
+
+  /**
+   * Receives notifications on the reader thread.
+   */
+  public interface Callback {
+    /**
+     * Called when frames are waiting in the buffer and none were before.
+     */
+    void framesAvailable();
+
+    /**
+     * Called when reading stops because of an error, or at the end of the
+     * stream, unless {@link #stop()} was called first.
+     *
+     * @param e the error, or null at the end of the stream
+     */
+    void readFailed(IOException e);
+  }
+
+  private final InputStream in;
+  private volatile FrameBuffer frames;
+  private final Callback callback;
+  private volatile boolean running;
+
+  public FrameReader(InputStream in, FrameBuffer frames, Callback callback) {
+    this.in = in;
+    this.frames = frames;
+    this.callback = callback;
+  }
+
+  /**
+   * Sets the buffer that frames go to.  Bytes read while it is null are
+   * discarded.
+   */
+  public void setFrames(FrameBuffer frames) {
+    this.frames = frames;
+  }
+
+  /**
+   * Starts reading on a new thread.
+   */
+  public void start() {
+    running = true;
+    Thread thread = new Thread(this, "FrameReader");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Stops reading, when the stream is about to be closed.  The read in
+   * progress returns once the stream is closed, without calling the callback.
+   */
+  public void stop() {
+    running = false;
+  }
+
+  public boolean isRunning() {
+    return running;
+  }
+
+  @Override
+  public void run() {
+    byte[] chunk = new byte[CHUNK_SIZE];
+    try {
+      while (running) {
+        int count = in.read(chunk);
+        if (!running) {
+          return;
+        }
+        if (count < 0) {
+          running = false;
+          callback.readFailed(null);
+          return;
+        }
+        FrameBuffer target = frames;
+        if (target != null && target.add(chunk, 0, count)) {
+          callback.framesAvailable();
+        }
+      }
+    } catch (IOException e) {
+      if (running) {
+        running = false;
+        callback.readFailed(e);
+      }
+    }
+  }
+}
@@ -6,6 +6,8 @@
 package com.google.appinventor.components.runtime.util;
 
 import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.Spinner;
@@ -38,6 +40,19 @@ public class HoneycombUtil {
     view.setRotation((float) rotationAngle);
   }
 
+  /**
+   * Makes decoding with the given options produce a mutable bitmap, decoding
+   * into {@code inBitmap} if it is not null.
+   */
+  public static void setInBitmap(BitmapFactory.Options options, Bitmap inBitmap) {
+    options.inMutable = true;
+    options.inBitmap = inBitmap;
+  }
+
+  public static Bitmap getInBitmap(BitmapFactory.Options options) {
+    return options.inBitmap;
+  }
+
   public static Spinner makeSpinner(Context activity) {
     return new Spinner(activity, Spinner.MODE_DIALOG);
   }
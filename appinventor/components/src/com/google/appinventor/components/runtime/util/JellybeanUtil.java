@@ -8,6 +8,7 @@ package com.google.appinventor.components.runtime.util;
 import android.graphics.Point;
 import android.util.DisplayMetrics;
 import android.util.Log;
+import android.view.Choreographer;
 import android.view.Display;
 
 /**
@@ -23,4 +24,24 @@ public class JellybeanUtil {
     display.getRealSize(outSize);
   }
 
+  /**
+   * Creates a Choreographer frame callback that runs the given runnable. The callback is returned
+   * as an Object so that callers running on older devices never load Choreographer.
+   *
+   * @param runnable the runnable to run on each frame the callback is posted for
+   * @return a Choreographer.FrameCallback for use with {@link #postFrameCallback(Object)}
+   */
+  public static Object newFrameCallback(final Runnable runnable) {
+    return new Choreographer.FrameCallback() {
+      @Override
+      public void doFrame(long frameTimeNanos) {
+        runnable.run();
+      }
+    };
+  }
+
+  public static void postFrameCallback(Object frameCallback) {
+    Choreographer.getInstance().postFrameCallback((Choreographer.FrameCallback) frameCallback);
+  }
+
 }
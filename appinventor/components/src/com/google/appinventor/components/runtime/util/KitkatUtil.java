@@ -10,6 +10,7 @@ import java.util.Collections;
 import java.util.List;
 
 import android.content.Intent;
+import android.graphics.Bitmap;
 import android.os.Build;
 import android.provider.Telephony.Sms.Intents;
 import android.telephony.SmsMessage;
@@ -26,6 +27,10 @@ public final class KitkatUtil {
   private KitkatUtil() {
   }
 
+  public static int getAllocationByteCount(Bitmap bitmap) {
+    return bitmap.getAllocationByteCount();
+  }
+
   /**
    * Retrieve any SmsMessage objects encoded in the SMS_RECEIVED intent.
    *
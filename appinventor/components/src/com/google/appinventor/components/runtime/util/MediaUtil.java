@@ -238,6 +238,9 @@ public class MediaUtil {
         || mediaPath.startsWith("/sdcard/") || isExternalFileUrl(context, mediaPath);
   }
 
+  // Decoded images, shared by all components that show them. Created on first use.
+  private static BitmapCache bitmapCache;
+
   private static ConcurrentHashMap<String, String> pathCache = new ConcurrentHashMap<String, String>(2);
 
   private static String findCaseinsensitivePath(Form form, String mediaPath)
@@ -466,6 +469,34 @@ public class MediaUtil {
 
     final MediaSource mediaSource = determineMediaSource(form, mediaPath);
 
+    // If the image can be cached, share the cached copy or the load already in progress.
+    final BitmapCache cache = getBitmapCache(form);
+    final String cacheKey = getBitmapCacheKey(form, mediaPath, mediaSource);
+    final AsyncCallbackPair<BitmapDrawable> callback;
+    if (cacheKey != null) {
+      BitmapDrawable cached = cache.getDrawable(form, cacheKey);
+      if (cached != null) {
+        continuation.onSuccess(cached);
+        return;
+      }
+      if (!cache.startLoad(cacheKey, continuation)) {
+        return;
+      }
+      callback = new AsyncCallbackPair<BitmapDrawable>() {
+        @Override
+        public void onSuccess(BitmapDrawable result) {
+          cache.finishLoad(form, cacheKey, result);
+        }
+
+        @Override
+        public void onFailure(String message) {
+          cache.failLoad(cacheKey, message);
+        }
+      };
+    } else {
+      callback = continuation;
+    }
+
     Runnable loadImage = new Runnable() {
       @Override
       public void run() {
@@ -487,7 +518,7 @@ public class MediaUtil {
           }
           buf = bos.toByteArray();
         } catch (PermissionException e) {
-          continuation.onFailure("PERMISSION_DENIED:" + e.getPermissionNeeded());
+          callback.onFailure("PERMISSION_DENIED:" + e.getPermissionNeeded());
           return;
         } catch(IOException e) {
           if (mediaSource == MediaSource.CONTACT_URI) {
@@ -495,11 +526,11 @@ public class MediaUtil {
             BitmapDrawable drawable = new BitmapDrawable(form.getResources(),
                 BitmapFactory.decodeResource(form.getResources(),
                 android.R.drawable.picture_frame, null));
-            continuation.onSuccess(drawable);
+            callback.onSuccess(drawable);
             return;
           }
           Log.d(LOG_TAG, "IOException reading file.", e);
-          continuation.onFailure(e.getMessage());
+          callback.onFailure(e.getMessage());
           return;
         } finally {
           if (is != null) {
@@ -523,9 +554,20 @@ public class MediaUtil {
         buf = null;
         try {
           bis.mark(read);
-          BitmapFactory.Options options = getBitmapOptions(form, bis, mediaPath);
+          BitmapFactory.Options options = getBitmapOptions(form, bis, mediaPath, cache);
           bis.reset();
-          BitmapDrawable originalBitmapDrawable = new BitmapDrawable(form.getResources(), decodeStream(bis, null, options));
+          Bitmap bitmap;
+          try {
+            bitmap = decodeStream(bis, null, options);
+          } catch (IllegalArgumentException e) {
+            // The image could not be decoded into the reused bitmap; decode it into a new one.
+            if (!BitmapCache.clearReusableBitmap(options)) {
+              throw e;
+            }
+            bis.reset();
+            bitmap = decodeStream(bis, null, options);
+          }
+          BitmapDrawable originalBitmapDrawable = new BitmapDrawable(form.getResources(), bitmap);
           // If options.inSampleSize == 1, then the image was not unreasonably large and may represent
           // the actual size the user intended for the image. However we still have to scale it by
           // the device density.
@@ -541,7 +583,7 @@ public class MediaUtil {
 
           originalBitmapDrawable.setTargetDensity(form.getResources().getDisplayMetrics());
           if ((options.inSampleSize != 1) || (form.deviceDensity() == 1.0f)) {
-            continuation.onSuccess(originalBitmapDrawable);
+            callback.onSuccess(originalBitmapDrawable);
             return;
           }
           int scaledWidth = (int) (form.deviceDensity() * originalBitmapDrawable.getIntrinsicWidth());
@@ -553,12 +595,15 @@ public class MediaUtil {
               scaledWidth, scaledHeight, false);
           BitmapDrawable scaledBitmapDrawable = new BitmapDrawable(form.getResources(), scaledBitmap);
           scaledBitmapDrawable.setTargetDensity(form.getResources().getDisplayMetrics());
-          originalBitmapDrawable = null; // So it will get GC'd on the next line
-          System.gc();                   // We likely used a lot of memory, so gc now.
-          continuation.onSuccess(scaledBitmapDrawable);
+          // The unscaled bitmap is no longer needed, but its memory can hold the next image.
+          if (scaledBitmap != originalBitmapDrawable.getBitmap()) {
+            cache.reuse(originalBitmapDrawable.getBitmap());
+          }
+          originalBitmapDrawable = null;
+          callback.onSuccess(scaledBitmapDrawable);
         } catch(Exception e) {
           Log.w(LOG_TAG, "Exception while loading media.", e);
-          continuation.onFailure(e.getMessage());
+          callback.onFailure(e.getMessage());
         } finally {
           if (bis != null) {
             try {
@@ -607,7 +652,52 @@ public class MediaUtil {
     }
   }
 
-  private static BitmapFactory.Options getBitmapOptions(Form form, InputStream is, String mediaPath) {
+  private static synchronized BitmapCache getBitmapCache(Form form) {
+    if (bitmapCache == null) {
+      bitmapCache = new BitmapCache(BitmapCache.defaultMaxSize(form));
+    }
+    return bitmapCache;
+  }
+
+  /**
+   * Returns the key under which the image at mediaPath is cached, or null if
+   * it should not be cached.
+   *
+   * <p/>Images from URLs and content providers are not cached, because they
+   * may change over time. Files are cached by modification time, so that
+   * assets updated by the companion are loaded again. Because the size an
+   * image is decoded at depends on the display, so does the key.
+   */
+  private static String getBitmapCacheKey(Form form, String mediaPath, MediaSource mediaSource) {
+    long lastModified;
+    switch (mediaSource) {
+      case ASSET:
+        lastModified = 0;
+        break;
+      case REPL_ASSET:
+        lastModified = new File(URI.create(form.getAssetPath(mediaPath))).lastModified();
+        break;
+      case SDCARD:
+        lastModified = new File(mediaPath).lastModified();
+        break;
+      case FILE_URL:
+        try {
+          lastModified = new File(URI.create(mediaPath)).lastModified();
+        } catch (IllegalArgumentException e) {
+          return null;
+        }
+        break;
+      default:
+        return null;
+    }
+    Display display = ((WindowManager) form.getSystemService(Context.WINDOW_SERVICE)).
+        getDefaultDisplay();
+    return mediaPath + "|" + lastModified + "|" + form.getCompatibilityMode()
+        + "|" + display.getWidth() + "x" + display.getHeight() + "|" + form.deviceDensity();
+  }
+
+  private static BitmapFactory.Options getBitmapOptions(Form form, InputStream is, String mediaPath,
+      BitmapCache cache) {
     // Get the size of the image.
     BitmapFactory.Options options = new BitmapFactory.Options();
     options.inJustDecodeBounds = true;
@@ -644,6 +734,7 @@ public class MediaUtil {
       + " maxWidth = " + maxWidth + " maxHeight = " + maxHeight +
       " display width = " + display.getWidth() + " display height = " + display.getHeight());
     options.inSampleSize = sampleSize;
+    cache.setReusableBitmap(options, imageWidth, imageHeight);
     return options;
   }
 
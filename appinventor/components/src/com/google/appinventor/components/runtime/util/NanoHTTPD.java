@@ -130,6 +130,23 @@ public class NanoHTTPD
                 return serveFile( uri, header, myRootDir, true );
         }
 
+        /**
+         * Override this to accept WebSocket connections. It is called on the
+         * session's thread once the request headers are read, and should answer
+         * the handshake, then return only when the connection is closed.
+         *
+         * (By default, this declines, and the request is served by serve().)
+         *
+         * @param uri   Percent-decoded URI without parameters
+         * @param header        Header entries, percent decoded
+         * @param parms Parsed, percent decoded parameters from URI
+         * @return true if the connection was taken, false to serve the request normally
+         */
+        protected boolean serveWebSocket( String uri, Properties header, Properties parms, Socket mySocket )
+        {
+                return false;
+        }
+
         /**
          * HTTP response.
          * Return one of these from serve().
@@ -374,6 +391,11 @@ public class NanoHTTPD
                                 String method = pre.getProperty("method");
                                 String uri = pre.getProperty("uri");
 
+                                // A WebSocket keeps the connection, and this thread, until it is closed.
+                                if ( "websocket".equalsIgnoreCase( header.getProperty( "upgrade" ))
+                                     && serveWebSocket( uri, header, parms, mySocket ))
+                                        return;
+
                                 long size = 0x7FFFFFFFFFFFFFFFl;
                                 String contentLength = header.getProperty("content-length");
                                 if (contentLength != null)
@@ -0,0 +1,240 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * A persistent connection from the blocks editor to the Companion, used in
+ * place of one HTTP request per evaluation and a long poll for the results.
+ * Messages have the same format as those of {@link WebRTCNativeMgr}: each
+ * message received is Scheme code to evaluate, and each message sent is the
+ * JSON object of return values built by {@link RetValManager}.
+ *
+ * <p>The editor sends code without waiting for results, so messages queue up
+ * while one is being evaluated.  Queued messages that each evaluate a block
+ * are combined into one evaluation, see {@link #batch(List)}, which saves
+ * compiling and running each on its own.
+ *
+ * <p>Messages to the editor are written by a thread of their own, so that
+ * {@link #send(String)} never blocks on the network.  It is called with
+ * results from the UI thread, where a socket write is not allowed.
+ */
+public final class ReplChannel implements Runnable {
+
+  /**
+   * Evaluates the code received.  Called on the thread running the channel.
+   */
+  public interface Evaluator {
+    void eval(String code) throws Throwable;
+
+    /**
+     * Called when a message could not be evaluated.
+     *
+     * @param message the message, which may be passed to {@link #blockId(String)}
+     * @param e the error
+     */
+    void evalFailed(String message, Throwable e);
+  }
+
+  /**
+   * The start of the code the blocks editor sends to evaluate a block.
+   */
+  static final String BLOCK_PREFIX =
+      "(begin (require <com.google.youngandroid.runtime>) (process-repl-input ";
+
+  // The most messages combined into one evaluation
+  private static final int MAX_BATCH = 64;
+
+  // How long to wait for messages already sent to be written once the connection ends
+  private static final long WRITER_DRAIN_MILLIS = 1000;
+
+  // Queued when the connection ends, by the reader thread on the incoming
+  // queue and by run() on the outgoing one. Compared by identity.
+  private static final String CLOSED = new String("#CLOSED#");
+
+  private final WebSocketConnection connection;
+  private final Evaluator evaluator;
+  private final LinkedBlockingQueue<String> queue = new LinkedBlockingQueue<String>();
+  private final LinkedBlockingQueue<String> outgoing = new LinkedBlockingQueue<String>();
+
+  public ReplChannel(WebSocketConnection connection, Evaluator evaluator) {
+    this.connection = connection;
+    this.evaluator = evaluator;
+  }
+
+  /**
+   * Reads messages on a new thread and evaluates them on this one, until the
+   * connection is closed.  Messages sent are written on a third thread.
+   */
+  @Override
+  public void run() {
+    Thread reader = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        read();
+      }
+    }, "ReplChannel");
+    reader.setDaemon(true);
+    reader.start();
+    Thread writer = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        write();
+      }
+    }, "ReplChannel writer");
+    writer.setDaemon(true);
+    writer.start();
+    try {
+      evaluateMessages();
+    } finally {
+      outgoing.add(CLOSED);
+      try {
+        writer.join(WRITER_DRAIN_MILLIS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private void evaluateMessages() {
+    List<String> messages = new ArrayList<String>();
+    try {
+      while (true) {
+        messages.clear();
+        messages.add(queue.take());
+        queue.drainTo(messages, MAX_BATCH - 1);
+        int end = messages.size();
+        for (int i = 0; i < messages.size(); i++) {
+          if (messages.get(i) == CLOSED) {
+            end = i;
+            break;
+          }
+        }
+        for (List<String> group : batch(messages.subList(0, end))) {
+          evaluate(group);
+        }
+        if (end < messages.size()) {
+          return;
+        }
+      }
+    } catch (InterruptedException e) {
+      close();
+    }
+  }
+
+  /**
+   * Queues a message to send to the blocks editor.  May be called from any
+   * thread, and does not block.
+   */
+  public void send(String message) {
+    outgoing.add(message);
+  }
+
+  public void close() {
+    connection.close();
+  }
+
+  private void read() {
+    try {
+      String message;
+      while ((message = connection.readMessage()) != null) {
+        queue.add(message);
+      }
+    } catch (IOException e) {
+      // The connection ended without a close frame
+    } finally {
+      queue.add(CLOSED);
+    }
+  }
+
+  private void write() {
+    try {
+      String message;
+      while ((message = outgoing.take()) != CLOSED) {
+        connection.sendText(message);
+      }
+    } catch (InterruptedException e) {
+      close();
+    } catch (IOException e) {
+      close();  // The reader will see the connection end
+    } catch (RuntimeException e) {
+      close();
+    }
+  }
+
+  private void evaluate(List<String> group) {
+    if (group.size() == 1) {
+      evaluate(group.get(0));
+      return;
+    }
+    StringBuilder code = new StringBuilder("(begin");
+    for (String message : group) {
+      code.append(' ').append(message);
+    }
+    code.append(')');
+    try {
+      evaluator.eval(code.toString());
+    } catch (Throwable e) {
+      // Evaluating a block only schedules it to run, so the batch failed to compile and none of
+      // it ran. Evaluate the blocks one at a time so that each reports its own error.
+      for (String message : group) {
+        evaluate(message);
+      }
+    }
+  }
+
+  private void evaluate(String message) {
+    try {
+      evaluator.eval(message);
+    } catch (Throwable e) {
+      evaluator.evalFailed(message, e);
+    }
+  }
+
+  /**
+   * Groups messages to be evaluated together.  Consecutive messages that each
+   * evaluate a block are grouped, which is safe because evaluating one only
+   * schedules the block to run on the UI thread, where it reports its own
+   * result.  Anything else, such as the pieces of a chunked message, is
+   * evaluated alone and in order.
+   */
+  static List<List<String>> batch(List<String> messages) {
+    List<List<String>> groups = new ArrayList<List<String>>();
+    List<String> blocks = null;
+    for (String message : messages) {
+      if (message.startsWith(BLOCK_PREFIX)) {
+        if (blocks == null) {
+          blocks = new ArrayList<String>();
+          groups.add(blocks);
+        }
+        blocks.add(message);
+      } else {
+        blocks = null;
+        List<String> alone = new ArrayList<String>(1);
+        alone.add(message);
+        groups.add(alone);
+      }
+    }
+    return groups;
+  }
+
+  /**
+   * Returns the id of the block a message evaluates, or "-1" if it is not
+   * for a particular block.
+   */
+  public static String blockId(String message) {
+    if (!message.startsWith(BLOCK_PREFIX)) {
+      return "-1";
+    }
+    int start = BLOCK_PREFIX.length();
+    int end = message.indexOf(' ', start);
+    return end < 0 ? "-1" : message.substring(start, end);
+  }
+}
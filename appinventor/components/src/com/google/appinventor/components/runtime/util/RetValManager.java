@@ -33,6 +33,9 @@ public class RetValManager {
   // There can be only one!
   private static ArrayList<JSONObject> currentArray = new ArrayList<JSONObject>(10);
 
+  // The persistent connection to the Blocks Editor, if there is one. See AppInvHTTPD.
+  private static ReplChannel channel;
+
   // Need a better place for this version string, but for various reasons, this is how we
   // are going to do this for now...
 
@@ -60,13 +63,7 @@ public class RetValManager {
         Log.e(LOG_TAG, "Error building retval", e);
         return;
       }
-      boolean sendNotify = currentArray.isEmpty();
-      currentArray.add(retval);
-      if (PhoneStatus.getUseWebRTC()) {
-        webRTCsendCurrent();
-      } else if (sendNotify) {
-        semaphore.notifyAll();
-      }
+      add(retval);
     }
   }
 
@@ -81,13 +78,7 @@ public class RetValManager {
         Log.e(LOG_TAG, "Error building retval", e);
         return;
       }
-      boolean sendNotify = currentArray.isEmpty();
-      currentArray.add(retval);
-      if (PhoneStatus.getUseWebRTC()) {
-        webRTCsendCurrent();
-      } else if (sendNotify) {
-        semaphore.notifyAll();
-      }
+      add(retval);
     }
   }
 
@@ -110,13 +101,7 @@ public class RetValManager {
         Log.e(LOG_TAG, "Error building retval", e);
         return;
       }
-      boolean sendNotify = currentArray.isEmpty();
-      currentArray.add(retval);
-      if (PhoneStatus.getUseWebRTC()) {
-        webRTCsendCurrent();
-      } else if (sendNotify) {
-        semaphore.notifyAll();
-      }
+      add(retval);
     }
   }
 
@@ -138,13 +123,7 @@ public class RetValManager {
         Log.e(LOG_TAG, "Error building retval", e);
         return;
       }
-      boolean sendNotify = currentArray.isEmpty();
-      currentArray.add(retval);
-      if (PhoneStatus.getUseWebRTC()) {
-        webRTCsendCurrent();
-      } else if (sendNotify) {
-        semaphore.notifyAll();
-      }
+      add(retval);
     }
   }
 
@@ -165,13 +144,27 @@ public class RetValManager {
         Log.e(LOG_TAG, "Error building retval", e);
         return;
       }
-      boolean sendNotify = currentArray.isEmpty();
-      currentArray.add(retval);
-      if (PhoneStatus.getUseWebRTC()) {
-        webRTCsendCurrent();
-      } else if (sendNotify) {
-        semaphore.notifyAll();
+      add(retval);
+    }
+  }
+
+  /*
+   * assetsSynced
+   *
+   * @param report counts and timing of an asset sync, see AssetFetcher.syncAssets
+   */
+  public static void assetsSynced(JSONObject report) {
+    synchronized (semaphore) {
+      JSONObject retval = new JSONObject();
+      try {
+        retval.put("status", "OK");
+        retval.put("type", "assetsSynced");
+        retval.put("value", report);
+      } catch (JSONException e) {
+        Log.e(LOG_TAG, "Error building retval", e);
+        return;
       }
+      add(retval);
     }
   }
 
@@ -189,13 +182,7 @@ public class RetValManager {
         Log.e(LOG_TAG, "Error building retval", e);
         return;
       }
-      boolean sendNotify = currentArray.isEmpty();
-      currentArray.add(retval);
-      if (PhoneStatus.getUseWebRTC()) {
-        webRTCsendCurrent();
-      } else if (sendNotify) {
-        semaphore.notifyAll();
-      }
+      add(retval);
     }
   }
 
@@ -233,19 +220,81 @@ public class RetValManager {
     }
   }
 
+  /*
+   * setChannel -- Send results over a persistent connection to the Blocks
+   * Editor as they are added, rather than holding them for fetch.
+   *
+   * @param newChannel The connection
+   * @return The previous connection, or null
+   */
+  public static ReplChannel setChannel(ReplChannel newChannel) {
+    synchronized (semaphore) {
+      ReplChannel previous = channel;
+      channel = newChannel;
+      if (!currentArray.isEmpty()) {
+        channelSendCurrent();
+      }
+      return previous;
+    }
+  }
+
+  /*
+   * clearChannel -- Stop using a connection once it is closed.
+   *
+   * @param oldChannel The connection, which is only cleared if it is still current
+   */
+  public static void clearChannel(ReplChannel oldChannel) {
+    synchronized (semaphore) {
+      if (channel == oldChannel) {
+        channel = null;
+      }
+    }
+  }
+
+  // Note: Our caller is holding "semaphore" so we don't need to worry about
+  // multi-thread synchronization here
+  private static void add(JSONObject retval) {
+    boolean sendNotify = currentArray.isEmpty();
+    currentArray.add(retval);
+    if (PhoneStatus.getUseWebRTC()) {
+      webRTCsendCurrent();
+    } else if (channel != null) {
+      channelSendCurrent();
+    } else if (sendNotify) {
+      semaphore.notifyAll();
+    }
+  }
+
   // Only used for webrtc. Note: Our caller is holding "semphore" so we don't
   // need to worry about multi-thread synchonization here
   private static void webRTCsendCurrent() {
+    String output = takeCurrent();
+    if (output != null) {
+      ReplForm.returnRetvals(output);
+    }
+  }
+
+  // Only used with a ReplChannel. Our caller is holding "semaphore". The
+  // channel only queues the output, its own thread writes it to the socket.
+  private static void channelSendCurrent() {
+    String output = takeCurrent();
+    if (output != null) {
+      channel.send(output);
+    }
+  }
+
+  // Encodes and empties the pending results, or returns null on failure
+  private static String takeCurrent() {
     try {
       JSONObject output = new JSONObject();
       output.put("status", "OK");
       output.put("values", new JSONArray(currentArray));
-      ReplForm.returnRetvals(output.toString());
+      currentArray.clear();
+      return output.toString();
     } catch (JSONException e) {
       Log.e(LOG_TAG, "Error building retval", e);
-      return;
+      return null;
     }
-    currentArray.clear();
   }
 
 }
@@ -0,0 +1,207 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime.util;
+
+/**
+ * Keeps the most recent readings of a sensor with one or more channels (for
+ * example the X, Y and Z axes of an accelerometer) and computes statistics
+ * over them, together with an exponential low-pass filter of each channel.
+ *
+ * <p>Readings are stored in a single primitive ring buffer so that adding one
+ * does not allocate, which matters for sensors reporting hundreds of readings
+ * per second.  The statistics are only computed when asked for.
+ */
+public final class SampleWindow {
+  private final int channels;
+
+  // Readings, one row of channels values per reading, oldest overwritten first.
+  private double[] samples;
+  private int capacity;
+  private int count;
+  private int next;
+
+  private final double[] filtered;
+  private boolean filterPrimed;
+  private double lowPassFactor;
+
+  /**
+   * Creates a new window.
+   *
+   * @param channels the number of values in each reading
+   * @param capacity the number of readings kept, at least 1
+   * @param lowPassFactor the weight, between 0 and 1, of each new reading in
+   *                      the low-pass filtered values
+   */
+  public SampleWindow(int channels, int capacity, double lowPassFactor) {
+    if (channels < 1) {
+      throw new IllegalArgumentException("channels must be positive");
+    }
+    this.channels = channels;
+    this.filtered = new double[channels];
+    setCapacity(capacity);
+    setLowPassFactor(lowPassFactor);
+  }
+
+  public int getChannels() {
+    return channels;
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Returns the number of readings in the window, at most its capacity.
+   */
+  public int size() {
+    return count;
+  }
+
+  /**
+   * Changes the number of readings kept.  Readings already in the window are
+   * discarded; the low-pass filter is not reset.
+   *
+   * @param capacity the number of readings kept, at least 1
+   */
+  public void setCapacity(int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("capacity must be positive");
+    }
+    this.capacity = capacity;
+    samples = new double[capacity * channels];
+    count = 0;
+    next = 0;
+  }
+
+  public double getLowPassFactor() {
+    return lowPassFactor;
+  }
+
+  /**
+   * Sets the weight of each new reading in the low-pass filtered values.  A
+   * factor of 1 disables filtering, and smaller factors smooth more.
+   *
+   * @param lowPassFactor the factor, between 0 and 1
+   */
+  public void setLowPassFactor(double lowPassFactor) {
+    if (lowPassFactor < 0 || lowPassFactor > 1) {
+      throw new IllegalArgumentException("lowPassFactor must be between 0 and 1");
+    }
+    this.lowPassFactor = lowPassFactor;
+  }
+
+  /**
+   * Adds a reading, replacing the oldest one if the window is full.
+   *
+   * @param values the reading, with at least as many values as there are
+   *               channels; the array is not retained
+   */
+  public void add(float[] values) {
+    int offset = next * channels;
+    for (int ch = 0; ch < channels; ch++) {
+      samples[offset + ch] = values[ch];
+      if (filterPrimed) {
+        filtered[ch] += lowPassFactor * (values[ch] - filtered[ch]);
+      } else {
+        filtered[ch] = values[ch];
+      }
+    }
+    filterPrimed = true;
+    next = (next + 1) % capacity;
+    if (count < capacity) {
+      count++;
+    }
+  }
+
+  /**
+   * Discards all readings and resets the low-pass filter.
+   */
+  public void clear() {
+    count = 0;
+    next = 0;
+    filterPrimed = false;
+  }
+
+  /**
+   * Returns the mean of the given channel over the window, or 0 if the window
+   * is empty.
+   */
+  public double mean(int channel) {
+    checkChannel(channel);
+    if (count == 0) {
+      return 0;
+    }
+    double sum = 0;
+    for (int i = 0; i < count; i++) {
+      sum += samples[i * channels + channel];
+    }
+    return sum / count;
+  }
+
+  /**
+   * Returns the smallest value of the given channel in the window, or 0 if the
+   * window is empty.
+   */
+  public double min(int channel) {
+    checkChannel(channel);
+    if (count == 0) {
+      return 0;
+    }
+    double min = Double.POSITIVE_INFINITY;
+    for (int i = 0; i < count; i++) {
+      min = Math.min(min, samples[i * channels + channel]);
+    }
+    return min;
+  }
+
+  /**
+   * Returns the largest value of the given channel in the window, or 0 if the
+   * window is empty.
+   */
+  public double max(int channel) {
+    checkChannel(channel);
+    if (count == 0) {
+      return 0;
+    }
+    double max = Double.NEGATIVE_INFINITY;
+    for (int i = 0; i < count; i++) {
+      max = Math.max(max, samples[i * channels + channel]);
+    }
+    return max;
+  }
+
+  /**
+   * Returns the root mean square of the given channel over the window, or 0
+   * if the window is empty.
+   */
+  public double rms(int channel) {
+    checkChannel(channel);
+    if (count == 0) {
+      return 0;
+    }
+    double sumOfSquares = 0;
+    for (int i = 0; i < count; i++) {
+      double value = samples[i * channels + channel];
+      sumOfSquares += value * value;
+    }
+    return Math.sqrt(sumOfSquares / count);
+  }
+
+  /**
+   * Returns the low-pass filtered value of the given channel, or 0 if no
+   * reading has been added.
+   */
+  public double lowPass(int channel) {
+    checkChannel(channel);
+    return filterPrimed ? filtered[channel] : 0;
+  }
+
+  private void checkChannel(int channel) {
+    if (channel < 0 || channel >= channels) {
+      throw new IndexOutOfBoundsException("channel " + channel);
+    }
+  }
+}
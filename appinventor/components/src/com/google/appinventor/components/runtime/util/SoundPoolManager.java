@@ -0,0 +1,299 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime.util;
+
+import com.google.appinventor.components.runtime.Form;
+import com.google.appinventor.components.runtime.OnDestroyListener;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import android.media.AudioManager;
+import android.media.SoundPool;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * A SoundPool shared by all of the Sound components of a Form, together with
+ * the samples loaded into it.
+ *
+ * <p>Samples are cached by media path and reference counted, so components
+ * playing the same file share a single decoded copy. When no component uses a
+ * sample any more it is kept for a while, up to {@link #MAX_IDLE_SAMPLES}, so
+ * that switching a Source back and forth does not load the file again.
+ *
+ * <p>Loading starts as soon as a component acquires a sample, which for
+ * Sources set in the Designer is while the Form is being built, so samples are
+ * usually ready by the time Screen.Initialize runs. A sample that fails to
+ * load is dropped from the cache, so acquiring its path again loads it again.
+ *
+ * <p>All methods must be called on the UI thread.
+ */
+public final class SoundPoolManager implements OnDestroyListener {
+  private static final String LOG_TAG = "SoundPoolManager";
+
+  // Maximum number of sounds playing at the same time, across all Sound
+  // components of a Form.
+  private static final int MAX_STREAMS = 16;
+
+  // Maximum number of loaded samples kept after their last user releases them.
+  private static final int MAX_IDLE_SAMPLES = 8;
+
+  private static final Map<Form, SoundPoolManager> managers =
+      new WeakHashMap<Form, SoundPoolManager>();
+
+  /**
+   * A sample loaded into the shared SoundPool.
+   */
+  public static final class Sample {
+    private final String path;
+    private final int soundId;
+    private boolean loaded;
+    private boolean failed;
+    private int refCount;
+    private List<Runnable> onLoaded;
+
+    private Sample(String path, int soundId) {
+      this.path = path;
+      this.soundId = soundId;
+    }
+
+    public String getPath() {
+      return path;
+    }
+
+    /**
+     * Returns whether the sample has finished loading and can be played.
+     */
+    public boolean isLoaded() {
+      return loaded;
+    }
+
+    /**
+     * Returns whether the sample failed to load. It will never be playable,
+     * and should be released and acquired again to retry.
+     */
+    public boolean hasFailed() {
+      return failed;
+    }
+  }
+
+  // The purpose of this class is to avoid getting rejected by the Android verifier when this
+  // code is loaded into a device with API level less than 8, where the verifier will reject
+  // OnLoadCompleteListener.  It is only instantiated when the API level is 8 or more.
+  private class OnLoadHelper {
+    public void setOnLoadCompleteListener(SoundPool soundPool) {
+      soundPool.setOnLoadCompleteListener(new SoundPool.OnLoadCompleteListener() {
+        public void onLoadComplete(SoundPool soundPool, int sampleId, int status) {
+          if (status != 0) {
+            Log.w(LOG_TAG, "Loading sample " + sampleId + " failed with status " + status);
+          }
+          onSampleLoaded(sampleId, status == 0);
+        }
+      });
+    }
+  }
+
+  // Whether SoundPool tells us when samples finish loading.  On earlier
+  // systems, samples are treated as loaded as soon as loading has started.
+  private final boolean waitForLoadToComplete = (SdkLevel.getLevel() >= SdkLevel.LEVEL_FROYO);
+
+  private SoundPool soundPool;
+  private final Map<String, Sample> samplesByPath = new HashMap<String, Sample>();
+  private final Map<Integer, Sample> samplesById = new HashMap<Integer, Sample>();
+
+  // Samples with no users, least recently released first.
+  private final Set<Sample> idleSamples = new LinkedHashSet<Sample>();
+
+  private SoundPoolManager() {
+    this(new SoundPool(MAX_STREAMS, AudioManager.STREAM_MUSIC, 0));
+  }
+
+  @VisibleForTesting
+  SoundPoolManager(SoundPool soundPool) {
+    this.soundPool = soundPool;
+    if (waitForLoadToComplete) {
+      new OnLoadHelper().setOnLoadCompleteListener(soundPool);
+    }
+  }
+
+  /**
+   * Returns the SoundPoolManager for the given Form, creating it if needed.
+   *
+   * @param form the Form whose Sound components will share the manager
+   * @return the manager
+   */
+  public static SoundPoolManager getInstance(Form form) {
+    SoundPoolManager manager = managers.get(form);
+    if (manager == null) {
+      manager = new SoundPoolManager();
+      managers.put(form, manager);
+      form.registerForOnDestroy(manager);
+    }
+    return manager;
+  }
+
+  /**
+   * Returns the sample for the given media path, starting to load it if it is
+   * not already loaded.  Each call must be balanced by a call to
+   * {@link #release(Sample)}.
+   *
+   * @param form the Form, used to resolve the media path
+   * @param path the media path, see {@link MediaUtil#determineMediaSource}
+   * @return the sample, or null if SoundPool could not load it
+   * @throws IOException if the media could not be opened
+   */
+  public Sample acquire(Form form, String path) throws IOException {
+    Sample sample = samplesByPath.get(path);
+    if (sample == null) {
+      if (soundPool == null) {
+        return null;
+      }
+      int soundId = MediaUtil.loadSoundPool(soundPool, form, path);
+      if (soundId == 0) {
+        return null;
+      }
+      Log.i(LOG_TAG, "Began loading " + path + " as sound " + soundId);
+      sample = new Sample(path, soundId);
+      sample.loaded = !waitForLoadToComplete;
+      samplesByPath.put(path, sample);
+      samplesById.put(soundId, sample);
+    } else {
+      idleSamples.remove(sample);
+    }
+    sample.refCount++;
+    return sample;
+  }
+
+  /**
+   * Releases a sample obtained from {@link #acquire(Form, String)}.
+   *
+   * @param sample the sample
+   */
+  public void release(Sample sample) {
+    if (sample == null || sample.refCount == 0) {
+      return;
+    }
+    sample.refCount--;
+    if (sample.refCount == 0 && !sample.failed) {
+      sample.onLoaded = null;
+      idleSamples.add(sample);
+      if (idleSamples.size() > MAX_IDLE_SAMPLES) {
+        Iterator<Sample> it = idleSamples.iterator();
+        Sample oldest = it.next();
+        it.remove();
+        unload(oldest);
+      }
+    }
+  }
+
+  /**
+   * Runs the given runnable once the sample has loaded or failed to load,
+   * immediately if it already has.
+   *
+   * @param sample the sample
+   * @param runnable the runnable
+   */
+  public void whenLoaded(Sample sample, Runnable runnable) {
+    if (sample.loaded || sample.failed) {
+      runnable.run();
+      return;
+    }
+    if (sample.onLoaded == null) {
+      sample.onLoaded = new ArrayList<Runnable>();
+    }
+    sample.onLoaded.add(runnable);
+  }
+
+  /**
+   * Plays a sample once at full volume.
+   *
+   * @param sample the sample
+   * @return the stream id, or 0 if the sample could not be played
+   */
+  public int play(Sample sample) {
+    if (soundPool == null) {
+      return 0;
+    }
+    return soundPool.play(sample.soundId, 1.0f, 1.0f, 0, 0, 1.0f);
+  }
+
+  public void pause(int streamId) {
+    if (soundPool != null) {
+      soundPool.pause(streamId);
+    }
+  }
+
+  public void resume(int streamId) {
+    if (soundPool != null) {
+      soundPool.resume(streamId);
+    }
+  }
+
+  public void stop(int streamId) {
+    if (soundPool != null) {
+      soundPool.stop(streamId);
+    }
+  }
+
+  private void onSampleLoaded(int soundId, boolean success) {
+    Sample sample = samplesById.get(soundId);
+    if (sample == null) {
+      return;
+    }
+    if (success) {
+      sample.loaded = true;
+    } else {
+      // Forget the sample, so that the next acquire of its path tries again.
+      sample.failed = true;
+      idleSamples.remove(sample);
+      unload(sample);
+    }
+    List<Runnable> callbacks = sample.onLoaded;
+    sample.onLoaded = null;
+    if (callbacks != null) {
+      for (Runnable callback : callbacks) {
+        callback.run();
+      }
+    }
+  }
+
+  private void unload(Sample sample) {
+    samplesByPath.remove(sample.path);
+    samplesById.remove(sample.soundId);
+    if (soundPool != null) {
+      soundPool.unload(sample.soundId);
+    }
+  }
+
+  // OnDestroyListener implementation
+
+  @Override
+  public void onDestroy() {
+    Iterator<Map.Entry<Form, SoundPoolManager>> it = managers.entrySet().iterator();
+    while (it.hasNext()) {
+      if (it.next().getValue() == this) {
+        it.remove();
+      }
+    }
+    samplesByPath.clear();
+    samplesById.clear();
+    idleSamples.clear();
+    if (soundPool != null) {
+      soundPool.release();
+      // The documentation for SoundPool suggests setting the reference to null.
+      soundPool = null;
+    }
+  }
+}
@@ -0,0 +1,173 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * The server end of a WebSocket (RFC 6455) connection whose opening handshake
+ * has already been answered.  Frames from the client must be masked, frames
+ * sent are not, and only text messages are supported.  Pings are answered
+ * while reading.
+ */
+public final class WebSocketConnection {
+  /**
+   * Appended to the client's key to compute the Sec-WebSocket-Accept header.
+   */
+  public static final String ACCEPT_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+
+  private static final int OP_CONTINUATION = 0x0;
+  private static final int OP_TEXT = 0x1;
+  private static final int OP_CLOSE = 0x8;
+  private static final int OP_PING = 0x9;
+  private static final int OP_PONG = 0xA;
+
+  private final DataInputStream in;
+  private final OutputStream out;
+  private final int maxMessageSize;
+  private boolean closed;
+
+  /**
+   * Creates a connection.
+   *
+   * @param in the socket's input, positioned after the handshake
+   * @param out the socket's output, positioned after the handshake response
+   * @param maxMessageSize the longest message accepted, in bytes
+   */
+  public WebSocketConnection(InputStream in, OutputStream out, int maxMessageSize) {
+    this.in = new DataInputStream(in);
+    this.out = out;
+    this.maxMessageSize = maxMessageSize;
+  }
+
+  /**
+   * Reads the next message, joining fragmented messages.
+   *
+   * @return the message, or null if the client closed the connection
+   * @throws IOException if the connection fails or the client breaks the
+   *         protocol
+   */
+  public String readMessage() throws IOException {
+    ByteArrayOutputStream message = null;
+    while (true) {
+      int first = in.read();
+      if (first < 0) {
+        return null;
+      }
+      int second = in.readUnsignedByte();
+      boolean fin = (first & 0x80) != 0;
+      int opcode = first & 0x0F;
+      if ((second & 0x80) == 0) {
+        throw new IOException("Unmasked frame from client");
+      }
+      long length = second & 0x7F;
+      if (length == 126) {
+        length = in.readUnsignedShort();
+      } else if (length == 127) {
+        length = in.readLong();
+      }
+      int received = message == null ? 0 : message.size();
+      if (length < 0 || length > maxMessageSize - received) {
+        throw new IOException("Message longer than " + maxMessageSize + " bytes");
+      }
+      byte[] mask = new byte[4];
+      in.readFully(mask);
+      byte[] payload = new byte[(int) length];
+      in.readFully(payload);
+      for (int i = 0; i < payload.length; i++) {
+        payload[i] ^= mask[i & 3];
+      }
+
+      switch (opcode) {
+        case OP_PING:
+          sendFrame(OP_PONG, payload);
+          break;
+        case OP_PONG:
+          break;
+        case OP_CLOSE:
+          close();
+          return null;
+        case OP_TEXT:
+          if (message != null) {
+            throw new IOException("New message before the last one ended");
+          }
+          message = new ByteArrayOutputStream(payload.length);
+          // fall through
+        case OP_CONTINUATION:
+          if (message == null) {
+            throw new IOException("Continuation frame without a message");
+          }
+          message.write(payload);
+          if (fin) {
+            return message.toString("UTF-8");
+          }
+          break;
+        default:
+          throw new IOException("Unsupported opcode " + opcode);
+      }
+    }
+  }
+
+  /**
+   * Sends a text message.  May be called from any thread.
+   */
+  public synchronized void sendText(String text) throws IOException {
+    if (closed) {
+      throw new IOException("Connection closed");
+    }
+    sendFrame(OP_TEXT, text.getBytes("UTF-8"));
+  }
+
+  /**
+   * Sends a close frame, if one has not been sent, and closes the streams.
+   */
+  public synchronized void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      sendFrame(OP_CLOSE, new byte[0]);
+    } catch (IOException e) {
+      // The connection is already gone.
+    }
+    try {
+      out.close();
+    } catch (IOException e) {
+      // Ignore
+    }
+    try {
+      in.close();
+    } catch (IOException e) {
+      // Ignore
+    }
+  }
+
+  private synchronized void sendFrame(int opcode, byte[] payload) throws IOException {
+    int headerSize = payload.length < 126 ? 2 : payload.length <= 0xFFFF ? 4 : 10;
+    byte[] frame = new byte[headerSize + payload.length];
+    frame[0] = (byte) (0x80 | opcode);
+    if (headerSize == 2) {
+      frame[1] = (byte) payload.length;
+    } else if (headerSize == 4) {
+      frame[1] = 126;
+      frame[2] = (byte) (payload.length >> 8);
+      frame[3] = (byte) payload.length;
+    } else {
+      frame[1] = 127;
+      for (int i = 0; i < 8; i++) {
+        frame[2 + i] = (byte) ((long) payload.length >> (56 - 8 * i));
+      }
+    }
+    System.arraycopy(payload, 0, frame, headerSize, payload.length);
+    out.write(frame);
+    out.flush();
+  }
+}
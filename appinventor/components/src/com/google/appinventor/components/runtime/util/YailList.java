@@ -112,10 +112,11 @@ public class YailList extends Pair implements YailObject {
    */
 
   public String[] toStringArray() {
-    int size = this.size();
-    String[] objects = new String[size];
-    for (int i = 1; i <= size; i++) {
-      objects[i - 1] = YailListElementToString(get(i));
+    // Walk the list once rather than calling get(i), which walks it from the start each time.
+    Object[] elements = toArray();
+    String[] objects = new String[elements.length];
+    for (int i = 0; i < elements.length; i++) {
+      objects[i] = YailListElementToString(elements[i]);
     }
     return objects;
   }
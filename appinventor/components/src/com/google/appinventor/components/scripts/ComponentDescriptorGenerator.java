@@ -75,6 +75,12 @@ import javax.tools.FileObject;
  *   ("assets": ["FILENAME",*])?
  * }
  *
+ * A second file, simple_components_index.json, holds the same components
+ * for the designer to load quickly. Each component is an object with the
+ * fields above up to "licenseName", and a "descriptor" field holding the
+ * component description above as a string, so that the designer only has to
+ * parse the properties, events and methods of the components it uses.
+ *
  * @author lizlooney@google.com (Liz Looney)
  * @author sharon@google.com (Sharon Perl) - added events, methods, non-designer
  *   properties (for use by browser-based blocks editor)
@@ -82,6 +88,7 @@ import javax.tools.FileObject;
 public final class ComponentDescriptorGenerator extends ComponentProcessor {
   // Where to write results.
   private static final String OUTPUT_FILE_NAME = "simple_components.json";
+  private static final String INDEX_FILE_NAME = "simple_components_index.json";
 
   private void outputComponent(ComponentInfo component, StringBuilder sb) {
     sb.append("{ \"type\": \"");
@@ -374,26 +381,76 @@ public final class ComponentDescriptorGenerator extends ComponentProcessor {
     sb.append("]");
   }
 
+  /*
+   * Outputs the entry for a component in the index: the fields the designer
+   * needs for every component, and the full description as a string.
+   */
+  private void outputIndexEntry(ComponentInfo component, String descriptor, StringBuilder sb) {
+    sb.append("{\"type\":\"");
+    sb.append(component.type);
+    sb.append("\",\"name\":\"");
+    sb.append(component.name);
+    sb.append("\",\"external\":\"");
+    sb.append(Boolean.toString(component.external));
+    sb.append("\",\"version\":\"");
+    sb.append(component.getVersion());
+    if (component.getVersionName() != null && !component.getVersionName().equals("")) {
+      sb.append("\",\"versionName\":\"");
+      sb.append(component.getVersionName());
+    }
+    sb.append("\",\"dateBuilt\":\"");
+    sb.append(component.getDateBuilt());
+    sb.append("\",\"categoryString\":\"");
+    sb.append(component.getCategoryString());
+    sb.append("\",\"helpString\":");
+    sb.append(formatDescription(component.getHelpDescription()));
+    sb.append(",\"helpUrl\":");
+    sb.append(formatDescription(component.getHelpUrl()));
+    sb.append(",\"showOnPalette\":\"");
+    sb.append(component.getShowOnPalette());
+    sb.append("\",\"nonVisible\":\"");
+    sb.append(component.getNonVisible());
+    sb.append("\",\"iconName\":\"");
+    sb.append(component.getIconName());
+    sb.append("\",\"licenseName\":\"");
+    sb.append(component.getLicenseName());
+    sb.append("\",\"descriptor\":");
+    sb.append(StringUtils.toJson(descriptor));
+    sb.append("}");
+  }
+
   @Override
   protected void outputResults() throws IOException {
     StringBuilder sb = new StringBuilder();
+    StringBuilder index = new StringBuilder();
 
     sb.append('[');
+    index.append('[');
     String separator = "";
 
     // Components are already sorted.
     for (Map.Entry<String, ComponentInfo> entry : components.entrySet()) {
       ComponentInfo component = entry.getValue();
+      StringBuilder descriptor = new StringBuilder();
+      outputComponent(component, descriptor);
       sb.append(separator);
-      outputComponent(component, sb);
+      sb.append(descriptor);
+      index.append(separator);
+      outputIndexEntry(component, descriptor.toString(), index);
       separator = ",\n";
     }
 
     sb.append(']');
+    index.append(']');
+
+    writeOutputFile(OUTPUT_FILE_NAME, sb.toString());
+    writeOutputFile(INDEX_FILE_NAME, index.toString());
+  }
 
-    FileObject src = createOutputFileObject(OUTPUT_FILE_NAME);
+  private void writeOutputFile(String fileName, String content) throws IOException {
+    FileObject src = createOutputFileObject(fileName);
     Writer writer = src.openWriter();
-    writer.write(sb.toString());
+    writer.write(content);
     writer.flush();
     writer.close();
     messager.printMessage(Diagnostic.Kind.NOTE, "Wrote file " + src.toUri());
@@ -16,7 +16,10 @@ import java.io.IOException;
 import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Tests BluetoothConnectionBase.java.
@@ -454,4 +457,87 @@ public class BluetoothConnectionBaseTest extends TestCase {
     assertEquals((byte) 0xFF, bytes[i++]);  // 0xFF
     assertEquals((byte) 0xAB, bytes[i++]);  // 0xab
   }
+
+  public void testReceiveFramesInBackground() throws Exception {
+    final List<YailList> received = new ArrayList<YailList>();
+    final CountDownLatch delivered = new CountDownLatch(1);
+    PipedOutputStream device = new PipedOutputStream();
+    BluetoothConnectionBase receiver =
+        new BluetoothConnectionBase(outputStream, new PipedInputStream(device)) {
+      @Override
+      protected void bluetoothError(String functionName, int errorNumber, Object... messageArgs) {
+        recordedErrorNumber = errorNumber;
+      }
+      @Override
+      protected void framesAvailable() {
+        deliverFrames();  // on the reader thread, since there is no UI thread
+      }
+      @Override
+      public void DataReceived(YailList frames) {
+        for (Object frame : frames.toArray()) {
+          received.add((YailList) frame);
+        }
+        if (received.size() == 2) {
+          delivered.countDown();
+        }
+      }
+    };
+
+    receiver.DelimiterByte(10);
+    receiver.StartReceiving(-1);
+    device.write(new byte[] { 1, 2, 10, 3 });
+    device.write(new byte[] { (byte) 0xFF, 10 });
+    device.flush();
+    assertTrue(delivered.await(5, TimeUnit.SECONDS));
+    assertEquals(Arrays.<Object>asList(1, 2), Arrays.asList(received.get(0).toArray()));
+    assertEquals(Arrays.<Object>asList(1023),
+        Arrays.asList(receiver.DecodeFrame(received.get(1), ">h").toArray()));
+
+    // The blocking Receive blocks cannot be used at the same time.
+    receiver.ReceiveSigned1ByteNumber();
+    assertEquals(ErrorMessages.ERROR_BLUETOOTH_RECEIVING_IN_BACKGROUND, recordedErrorNumber);
+
+    receiver.StopReceiving();
+    device.close();
+  }
+
+  public void testRestartReceiving() throws Exception {
+    final List<YailList> received = new ArrayList<YailList>();
+    final CountDownLatch delivered = new CountDownLatch(1);
+    PipedOutputStream device = new PipedOutputStream();
+    BluetoothConnectionBase receiver =
+        new BluetoothConnectionBase(outputStream, new PipedInputStream(device)) {
+      @Override
+      protected void bluetoothError(String functionName, int errorNumber, Object... messageArgs) {
+        recordedErrorNumber = errorNumber;
+      }
+      @Override
+      protected void framesAvailable() {
+        deliverFrames();
+      }
+      @Override
+      public void DataReceived(YailList frames) {
+        for (Object frame : frames.toArray()) {
+          received.add((YailList) frame);
+        }
+        delivered.countDown();
+      }
+    };
+
+    receiver.StartReceiving(10000);
+    assertEquals(ErrorMessages.ERROR_FRAME_TOO_LONG, recordedErrorNumber);
+
+    // The reader started first goes on reading, into the new frames
+    receiver.StartReceiving(-1);
+    receiver.StopReceiving();
+    receiver.StartReceiving(2);
+    device.write(new byte[] { 5, 6, 7 });
+    device.flush();
+    assertTrue(delivered.await(5, TimeUnit.SECONDS));
+    assertEquals(1, received.size());
+    assertEquals(Arrays.<Object>asList(5, 6), Arrays.asList(received.get(0).toArray()));
+
+    receiver.StopReceiving();
+    device.close();
+  }
 }
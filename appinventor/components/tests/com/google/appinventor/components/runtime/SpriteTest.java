@@ -281,6 +281,32 @@ public class SpriteTest {
     assertTrue(Sprite.colliding(mouse, cat));
   }
 
+  @Test
+  public void testAdvanceMovesOncePerInterval() throws Exception {
+    TestSprite sprite = TestSprite.createTestSprite(canvasMock, handlerMock);
+    sprite.Initialize();
+    sprite.Interval(100);
+    sprite.Speed(10);
+
+    // The first frame only starts the interval.
+    assertTrue(sprite.advance(1000));
+    assertEquals(0.0, sprite.X(), DELTA);
+    assertTrue(sprite.advance(1050));
+    assertEquals(0.0, sprite.X(), DELTA);
+    assertTrue(sprite.advance(1100));
+    assertEquals(10.0, sprite.X(), DELTA);
+
+    // A late frame catches up on the intervals it missed, up to a limit.
+    assertTrue(sprite.advance(1350));
+    assertEquals(30.0, sprite.X(), DELTA);
+    assertTrue(sprite.advance(5000));
+    assertEquals(70.0, sprite.X(), DELTA);
+
+    sprite.Enabled(false);
+    assertFalse(sprite.advance(5100));
+    assertEquals(70.0, sprite.X(), DELTA);
+  }
+
   @Test
   public void testSpriteBiggerThanCanvas() throws Exception {
     // Declare cat
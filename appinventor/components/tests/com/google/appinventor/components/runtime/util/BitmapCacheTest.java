@@ -0,0 +1,122 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import com.google.appinventor.components.runtime.RobolectricTestBase;
+import java.lang.ref.WeakReference;
+import org.junit.Test;
+
+/**
+ * Tests for {@link BitmapCache}.
+ */
+public class BitmapCacheTest extends RobolectricTestBase {
+
+  private static final int SIZE = 16;
+
+  private static final AsyncCallbackPair<BitmapDrawable> IGNORE =
+      new AsyncCallbackPair<BitmapDrawable>() {
+        @Override
+        public void onFailure(String message) {
+        }
+
+        @Override
+        public void onSuccess(BitmapDrawable result) {
+        }
+      };
+
+  @Test
+  public void testGoneUsersArePruned() {
+    BitmapCache cache = new BitmapCache(1024 * 1024);
+    BitmapDrawable drawable = load(cache, "a");
+    int users = cache.countUsers("a");
+    WeakReference<Drawable> last = null;
+    for (int i = 0; i < 100; i++) {
+      last = new WeakReference<Drawable>(cache.getDrawable(getForm(), "a"));
+    }
+    collect(last);
+    cache.getDrawable(getForm(), "a");
+    // Only the drawables still reachable are tracked
+    assertTrue(cache.countUsers("a") <= users + 2);
+    assertSame(drawable.getBitmap(), cache.getDrawable(getForm(), "a").getBitmap());
+  }
+
+  @Test
+  public void testEvictedBitmapIsReusedOnceUnused() {
+    BitmapCache cache = new BitmapCache(SIZE * SIZE * 4);
+    WeakReference<Drawable> drawable = new WeakReference<Drawable>(load(cache, "a"));
+    Bitmap bitmap = ((BitmapDrawable) drawable.get()).getBitmap();
+    load(cache, "b");  // evicts a
+    assertTrue(cache.isReusable(bitmap));
+    collect(drawable);
+    assertSame(bitmap, decodeInto(cache));
+  }
+
+  @Test
+  public void testBitmapOfCopyIsNotReused() {
+    BitmapCache cache = new BitmapCache(SIZE * SIZE * 4);
+    WeakReference<Drawable> drawable = new WeakReference<Drawable>(load(cache, "a"));
+    Bitmap bitmap = ((BitmapDrawable) drawable.get()).getBitmap();
+    // As Form and Canvas do to tint their background images
+    Drawable copy = drawable.get().getConstantState().newDrawable();
+    load(cache, "b");  // evicts a
+    collect(drawable);
+    assertNotSame(bitmap, decodeInto(cache));
+
+    WeakReference<Drawable> copyRef = new WeakReference<Drawable>(copy);
+    copy = null;
+    collect(copyRef);
+    assertSame(bitmap, decodeInto(cache));
+  }
+
+  @Test
+  public void testImageLargerThanCacheIsNotCached() {
+    BitmapCache cache = new BitmapCache(SIZE);
+    load(cache, "a");
+    assertEquals(-1, cache.countUsers("a"));
+    assertEquals(null, cache.getDrawable(getForm(), "a"));
+  }
+
+  @Test
+  public void testConcurrentLoadsShareOneLoad() {
+    BitmapCache cache = new BitmapCache(1024 * 1024);
+    assertTrue(cache.startLoad("a", IGNORE));
+    assertFalse(cache.startLoad("a", IGNORE));
+  }
+
+  private BitmapDrawable load(BitmapCache cache, String key) {
+    assertTrue(cache.startLoad(key, IGNORE));
+    Bitmap bitmap = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+    BitmapDrawable drawable = new BitmapDrawable(getForm().getResources(), bitmap);
+    cache.finishLoad(getForm(), key, drawable);
+    return drawable;
+  }
+
+  private static Bitmap decodeInto(BitmapCache cache) {
+    BitmapFactory.Options options = new BitmapFactory.Options();
+    options.inSampleSize = 1;
+    cache.setReusableBitmap(options, SIZE, SIZE);
+    return options.inBitmap;
+  }
+
+  // Waits for the object referred to to be garbage collected.
+  private static void collect(WeakReference<?> reference) {
+    for (int i = 0; i < 50 && reference.get() != null; i++) {
+      System.gc();
+      System.runFinalization();
+    }
+    assertEquals(null, reference.get());
+  }
+}
@@ -0,0 +1,61 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime.util;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests DataLogBuffer.
+ */
+public class DataLogBufferTest extends TestCase {
+  private static final double DELTA = .00001;  // floating point delta
+
+  public void testDrainInOrder() throws Exception {
+    DataLogBuffer buffer = new DataLogBuffer(2, 4);
+    buffer.add(1, new double[] { 1, 2 }, 2);
+    buffer.add(2, new float[] { 3, 4, 5 }, 3);   // extra values are ignored
+    buffer.add(3, new double[] { 6 }, 1);        // missing values are NaN
+    assertEquals(3, buffer.size());
+
+    long[] times = new long[2];
+    double[] values = new double[4];
+    assertEquals(2, buffer.drainTo(times, values));
+    assertEquals(1, times[0]);
+    assertEquals(2, times[1]);
+    assertEquals(4, values[3], DELTA);
+
+    assertEquals(1, buffer.drainTo(times, values));
+    assertEquals(3, times[0]);
+    assertEquals(6, values[0], DELTA);
+    assertTrue(Double.isNaN(values[1]));
+    assertEquals(0, buffer.size());
+  }
+
+  public void testWrapsAround() throws Exception {
+    DataLogBuffer buffer = new DataLogBuffer(1, 3);
+    long[] times = new long[3];
+    double[] values = new double[3];
+    for (int i = 0; i < 10; i++) {
+      assertTrue(buffer.add(i, new double[] { i }, 1));
+      assertEquals(1, buffer.drainTo(times, values));
+      assertEquals(i, times[0]);
+      assertEquals(i, values[0], DELTA);
+    }
+  }
+
+  public void testFullBufferDropsNewReadings() throws Exception {
+    DataLogBuffer buffer = new DataLogBuffer(1, 2);
+    assertTrue(buffer.add(1, new double[] { 1 }, 1));
+    assertTrue(buffer.add(2, new double[] { 2 }, 1));
+    assertFalse(buffer.add(3, new double[] { 3 }, 1));
+    assertEquals(1, buffer.getDropped());
+
+    long[] times = new long[2];
+    double[] values = new double[2];
+    assertEquals(2, buffer.drainTo(times, values));
+    assertEquals(2, times[1]);
+  }
+}
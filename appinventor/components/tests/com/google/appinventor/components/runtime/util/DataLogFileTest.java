@@ -0,0 +1,161 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime.util;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringWriter;
+
+/**
+ * Tests DataLogFile.
+ */
+public class DataLogFileTest extends TestCase {
+  private static final double DELTA = .00001;  // floating point delta
+
+  private File log;
+
+  @Override
+  protected void setUp() throws Exception {
+    log = File.createTempFile("datalog", ".bin");
+    log.delete();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    log.delete();
+  }
+
+  private void write(int channels, long[] times, double[] values) throws IOException {
+    DataLogFile.Appender appender = new DataLogFile.Appender(log, channels, times.length);
+    try {
+      appender.append(times, values, times.length);
+    } finally {
+      appender.close();
+    }
+  }
+
+  public void testWriteAndRead() throws Exception {
+    write(2, new long[] { 10, 20, 30 }, new double[] { 1, -1, 2, -2, 3, Double.NaN });
+    DataLogFile.Reader reader = new DataLogFile.Reader(log);
+    try {
+      assertEquals(2, reader.getChannels());
+      assertEquals(3, reader.size());
+      assertEquals(20, reader.time(1));
+      assertEquals(-2, reader.value(1, 1), DELTA);
+      assertTrue(Double.isNaN(reader.value(2, 1)));
+      assertEquals(DataLogFile.HEADER_SIZE + 3 * DataLogFile.recordSize(2), log.length());
+    } finally {
+      reader.close();
+    }
+  }
+
+  public void testAppendToExistingLog() throws Exception {
+    write(1, new long[] { 1, 2 }, new double[] { 1, 2 });
+    write(1, new long[] { 3 }, new double[] { 3 });
+    DataLogFile.Reader reader = new DataLogFile.Reader(log);
+    try {
+      assertEquals(3, reader.size());
+      assertEquals(3, reader.time(2));
+    } finally {
+      reader.close();
+    }
+  }
+
+  public void testPartialRecordIsDropped() throws Exception {
+    write(1, new long[] { 1, 2 }, new double[] { 1, 2 });
+    RandomAccessFile file = new RandomAccessFile(log, "rw");
+    file.setLength(file.length() + 5);  // as if a write was interrupted
+    file.close();
+    DataLogFile.Reader reader = new DataLogFile.Reader(log);
+    assertEquals(2, reader.size());
+    reader.close();
+    write(1, new long[] { 3 }, new double[] { 3 });
+    reader = new DataLogFile.Reader(log);
+    try {
+      assertEquals(3, reader.size());
+      assertEquals(3, reader.value(2, 0), DELTA);
+    } finally {
+      reader.close();
+    }
+  }
+
+  public void testChannelMismatch() throws Exception {
+    write(2, new long[] { 1 }, new double[] { 1, 2 });
+    try {
+      new DataLogFile.Appender(log, 3, 1);
+      fail();
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  public void testIndexOf() throws Exception {
+    write(1, new long[] { 10, 20, 20, 30 }, new double[] { 0, 0, 0, 0 });
+    DataLogFile.Reader reader = new DataLogFile.Reader(log);
+    try {
+      assertEquals(0, reader.indexOf(0));
+      assertEquals(1, reader.indexOf(20));
+      assertEquals(3, reader.indexOf(21));
+      assertEquals(4, reader.indexOf(31));
+    } finally {
+      reader.close();
+    }
+  }
+
+  public void testDownsample() throws Exception {
+    long[] times = new long[10];
+    double[] values = new double[10];
+    for (int i = 0; i < 10; i++) {
+      times[i] = i * 10;
+      values[i] = i;
+    }
+    write(1, times, values);
+    DataLogFile.Reader reader = new DataLogFile.Reader(log);
+    try {
+      DataLogFile.Series series = reader.downsample(0, 0, Long.MAX_VALUE, 5);
+      assertEquals(5, series.size());
+      assertEquals(0, series.times[0]);
+      assertEquals(0.5, series.values[0], DELTA);
+      assertEquals(80, series.times[4]);
+      assertEquals(8.5, series.values[4], DELTA);
+
+      series = reader.downsample(0, 20, 40, 10);  // fewer records than points
+      assertEquals(3, series.size());
+      assertEquals(4, series.values[2], DELTA);
+
+      assertEquals(0, reader.downsample(0, 100, 200, 10).size());
+    } finally {
+      reader.close();
+    }
+  }
+
+  public void testExportCsv() throws Exception {
+    write(2, new long[] { 5, 6 }, new double[] { 1.5, Double.NaN, 2, 3 });
+    DataLogFile.Reader reader = new DataLogFile.Reader(log);
+    StringWriter out = new StringWriter();
+    try {
+      reader.exportCsv(out);
+    } finally {
+      reader.close();
+    }
+    assertEquals("time,value1,value2\n5,1.5,\n6,2.0,3.0\n", out.toString());
+  }
+
+  public void testNotALog() throws Exception {
+    RandomAccessFile file = new RandomAccessFile(log, "rw");
+    file.write(new byte[32]);
+    file.close();
+    try {
+      new DataLogFile.Reader(log);
+      fail();
+    } catch (IOException e) {
+      // expected
+    }
+  }
+}
@@ -0,0 +1,46 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime.util;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests ElementsFilter.
+ */
+public class ElementsFilterTest extends TestCase {
+  private static final String[] ELEMENTS = {
+      "Apple pie", "banana", "Green apple", "Pineapple", "apricot"
+  };
+
+  public void testEmptyQueryMatchesEverything() throws Exception {
+    ElementsFilter filter = new ElementsFilter();
+    assertTrue(Arrays.equals(new int[] { 0, 1, 2, 3, 4 }, filter.filter(ELEMENTS, 0, "")));
+  }
+
+  public void testMatchesPrefixOfAnyWordIgnoringCase() throws Exception {
+    ElementsFilter filter = new ElementsFilter();
+    // "Pineapple" contains "apple" but no word starts with it
+    assertTrue(Arrays.equals(new int[] { 0, 2 }, filter.filter(ELEMENTS, 0, "APPLE")));
+    assertTrue(Arrays.equals(new int[] { 0, 2, 4 }, filter.filter(ELEMENTS, 0, "ap")));
+  }
+
+  public void testRefinedQuery() throws Exception {
+    ElementsFilter filter = new ElementsFilter();
+    assertTrue(Arrays.equals(new int[] { 0, 2, 4 }, filter.filter(ELEMENTS, 0, "a")));
+    assertTrue(Arrays.equals(new int[] { 4 }, filter.filter(ELEMENTS, 0, "apr")));
+    // Widening the query again searches the whole list
+    assertTrue(Arrays.equals(new int[] { 1 }, filter.filter(ELEMENTS, 0, "b")));
+  }
+
+  public void testNewVersionRebuildsIndex() throws Exception {
+    ElementsFilter filter = new ElementsFilter();
+    assertTrue(Arrays.equals(new int[] { 1 }, filter.filter(ELEMENTS, 0, "ban")));
+    String[] changed = { "Bandana", "band", "cherry" };
+    assertTrue(Arrays.equals(new int[] { 0, 1 }, filter.filter(changed, 1, "band")));
+  }
+}
@@ -0,0 +1,79 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime.util;
+
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests FrameBuffer.
+ */
+public class FrameBufferTest extends TestCase {
+
+  public void testDelimitedFrames() throws Exception {
+    FrameBuffer buffer = new FrameBuffer(-1, (byte) '\n', 16, 10);
+    assertFalse(buffer.add(bytes("12,3"), 0, 4));
+    assertTrue(buffer.add(bytes("4\n56\n7"), 0, 6));
+    List<byte[]> frames = buffer.takeFrames();
+    assertEquals(2, frames.size());
+    assertEquals("12,34", new String(frames.get(0), "UTF-8"));
+    assertEquals("56", new String(frames.get(1), "UTF-8"));
+    // The partial frame is kept
+    assertTrue(buffer.add(bytes("8\n"), 0, 2));
+    assertEquals("78", new String(buffer.takeFrames().get(0), "UTF-8"));
+  }
+
+  public void testLongDelimitedFrameIsCut() throws Exception {
+    FrameBuffer buffer = new FrameBuffer(-1, (byte) 0, 3, 10);
+    buffer.add(bytes("abcde"), 0, 5);
+    List<byte[]> frames = buffer.takeFrames();
+    assertEquals(1, frames.size());
+    assertEquals("abc", new String(frames.get(0), "UTF-8"));
+  }
+
+  public void testFixedLengthFrames() throws Exception {
+    FrameBuffer buffer = new FrameBuffer(2, (byte) 0, 16, 10);
+    buffer.add(new byte[] { 1, 2, 3, 4, 5 }, 0, 5);
+    List<byte[]> frames = buffer.takeFrames();
+    assertEquals(2, frames.size());
+    assertTrue(Arrays.equals(new byte[] { 3, 4 }, frames.get(1)));
+  }
+
+  public void testLengthPrefixedFrames() throws Exception {
+    FrameBuffer buffer = new FrameBuffer(0, (byte) 0, 16, 10);
+    buffer.add(new byte[] { 2, 7, 8, 0, 1 }, 0, 5);  // [7, 8], an empty frame, then a prefix
+    buffer.add(new byte[] { 9 }, 0, 1);
+    List<byte[]> frames = buffer.takeFrames();
+    assertEquals(3, frames.size());
+    assertTrue(Arrays.equals(new byte[] { 7, 8 }, frames.get(0)));
+    assertEquals(0, frames.get(1).length);
+    assertTrue(Arrays.equals(new byte[] { 9 }, frames.get(2)));
+  }
+
+  public void testOldestFramesAreDropped() throws Exception {
+    FrameBuffer buffer = new FrameBuffer(1, (byte) 0, 16, 2);
+    buffer.add(new byte[] { 1, 2, 3 }, 0, 3);
+    List<byte[]> frames = buffer.takeFrames();
+    assertEquals(2, frames.size());
+    assertEquals(2, frames.get(0)[0]);
+    assertEquals(1, buffer.getDroppedFrames());
+  }
+
+  public void testFrameLongerThanMaximumIsRefused() throws Exception {
+    try {
+      new FrameBuffer(17, (byte) 0, 16, 2);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  private static byte[] bytes(String text) throws Exception {
+    return text.getBytes("UTF-8");
+  }
+}
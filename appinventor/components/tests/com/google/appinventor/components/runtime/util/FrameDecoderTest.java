@@ -0,0 +1,65 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime.util;
+
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests FrameDecoder.
+ */
+public class FrameDecoderTest extends TestCase {
+
+  public void testIntegers() throws Exception {
+    byte[] frame = { (byte) 0xFF, (byte) 0xFF, 0x01, 0x02, (byte) 0xFE, (byte) 0xFF, (byte) 0xFF,
+        (byte) 0xFF };
+    List<Number> values = FrameDecoder.decode(frame, "bB h I", false);
+    assertEquals(Arrays.<Number>asList(-1, 255, 0x0201, 0xFFFFFFFEL), values);
+  }
+
+  public void testByteOrder() throws Exception {
+    byte[] frame = { 0x01, 0x02, 0x01, 0x02 };
+    assertEquals(Arrays.<Number>asList(0x0102, 0x0201),
+        FrameDecoder.decode(frame, ">H<H", false));
+    assertEquals(Arrays.<Number>asList(0x0102, 0x0102), FrameDecoder.decode(frame, "2H", true));
+  }
+
+  public void testFloatsAndPadding() throws Exception {
+    byte[] frame = new byte[13];
+    java.nio.ByteBuffer.wrap(frame).order(java.nio.ByteOrder.LITTLE_ENDIAN)
+        .put((byte) 0x55).putFloat(1.5f).putDouble(-2.25);
+    assertEquals(Arrays.<Number>asList(1.5, -2.25), FrameDecoder.decode(frame, "xfd", false));
+  }
+
+  public void testInvalidFormat() throws Exception {
+    try {
+      FrameDecoder.decode(new byte[4], "q", false);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    try {
+      FrameDecoder.decode(new byte[4], "3h", false);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  public void testBytesRoundTrip() throws Exception {
+    byte[] frame = FrameDecoder.fromBytes(new Object[] { 1, "0xFF", -2 });
+    assertTrue(Arrays.equals(new byte[] { 1, (byte) 0xFF, (byte) 0xFE }, frame));
+    assertEquals(Arrays.asList(1, 255, 254), FrameDecoder.toUnsignedBytes(frame));
+    try {
+      FrameDecoder.fromBytes(new Object[] { 256 });
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+}
@@ -0,0 +1,61 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime.util;
+
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests FrameReader, using a pipe in place of a connection.
+ */
+public class FrameReaderTest extends TestCase {
+
+  public void testReadsFramesUntilEndOfStream() throws Exception {
+    PipedOutputStream out = new PipedOutputStream();
+    PipedInputStream in = new PipedInputStream(out);
+    final FrameBuffer buffer = new FrameBuffer(-1, (byte) '\n', 64, 100);
+    final List<String> received = new ArrayList<String>();
+    final CountDownLatch ended = new CountDownLatch(1);
+    final IOException[] error = new IOException[1];
+
+    FrameReader reader = new FrameReader(in, buffer, new FrameReader.Callback() {
+      @Override
+      public void framesAvailable() {
+        for (byte[] frame : buffer.takeFrames()) {
+          received.add(new String(frame));
+        }
+      }
+
+      @Override
+      public void readFailed(IOException e) {
+        error[0] = e;
+        ended.countDown();
+      }
+    });
+    reader.start();
+    out.write("1,2\n3,".getBytes("UTF-8"));
+    out.flush();
+    out.write("4\n".getBytes("UTF-8"));
+    out.close();
+
+    assertTrue(ended.await(5, TimeUnit.SECONDS));
+    assertNull(error[0]);  // end of stream
+    assertFalse(reader.isRunning());
+    for (byte[] frame : buffer.takeFrames()) {
+      received.add(new String(frame));
+    }
+    assertEquals(2, received.size());
+    assertEquals("1,2", received.get(0));
+    assertEquals("3,4", received.get(1));
+  }
+}
@@ -0,0 +1,151 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests ReplChannel.
+ */
+public class ReplChannelTest extends TestCase {
+  private static String block(String id, String code) {
+    return ReplChannel.BLOCK_PREFIX + "\"" + id + "\" (begin " + code + ")))";
+  }
+
+  public void testBatchGroupsConsecutiveBlocks() throws Exception {
+    List<String> messages = Arrays.asList(
+        block("a", "1"), block("b", "2"), "(define Q1 \"\")", block("c", "3"), "#DONE#");
+    List<List<String>> groups = ReplChannel.batch(messages);
+    assertEquals(4, groups.size());
+    assertEquals(Arrays.asList(block("a", "1"), block("b", "2")), groups.get(0));
+    assertEquals(Arrays.asList("(define Q1 \"\")"), groups.get(1));
+    assertEquals(Arrays.asList(block("c", "3")), groups.get(2));
+    assertEquals(Arrays.asList("#DONE#"), groups.get(3));
+  }
+
+  public void testBlockId() throws Exception {
+    assertEquals("\"a1\"", ReplChannel.blockId(block("a1", "1")));
+    assertEquals("-1", ReplChannel.blockId(ReplChannel.BLOCK_PREFIX + "-1 (begin 1)))"));
+    assertEquals("-1", ReplChannel.blockId("(define Q1 \"\")"));
+  }
+
+  public void testEvaluatesPipelinedMessagesInOrder() throws Exception {
+    final String bad = block("bad", "(");
+    byte[] input = concat(
+        WebSocketConnectionTest.clientFrame(true, 0x1, block("a", "1").getBytes("UTF-8")),
+        WebSocketConnectionTest.clientFrame(true, 0x1, bad.getBytes("UTF-8")),
+        WebSocketConnectionTest.clientFrame(true, 0x1, "(define x 1)".getBytes("UTF-8")),
+        WebSocketConnectionTest.clientFrame(true, 0x8, new byte[0]));
+    final List<String> evaluated = new ArrayList<String>();
+    final List<String> failed = new ArrayList<String>();
+    ReplChannel channel = new ReplChannel(new WebSocketConnection(
+        new ByteArrayInputStream(input), new ByteArrayOutputStream(), 1 << 16),
+        new ReplChannel.Evaluator() {
+          @Override
+          public void eval(String code) throws Throwable {
+            if (code.contains(bad)) {
+              throw new IllegalArgumentException("syntax error");
+            }
+            evaluated.add(code);
+          }
+
+          @Override
+          public void evalFailed(String message, Throwable e) {
+            failed.add(ReplChannel.blockId(message));
+          }
+        });
+    channel.run();  // Returns when the close frame is read
+
+    // However the messages were batched, each ran once, in order, and the bad block failed alone
+    assertEquals(Arrays.asList(block("a", "1"), "(define x 1)"), evaluated);
+    assertEquals(Arrays.asList("\"bad\""), failed);
+  }
+
+  public void testSendIsWrittenByChannel() throws Exception {
+    final CountDownLatch flushed = new CountDownLatch(1);
+    // The close frame is only read once the message is written
+    InputStream input = new ByteArrayInputStream(
+        WebSocketConnectionTest.clientFrame(true, 0x8, new byte[0])) {
+      @Override
+      public synchronized int read() {
+        awaitFlush();
+        return super.read();
+      }
+
+      @Override
+      public synchronized int read(byte[] b, int off, int len) {
+        awaitFlush();
+        return super.read(b, off, len);
+      }
+
+      private void awaitFlush() {
+        try {
+          flushed.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          // Read anyway
+        }
+      }
+    };
+    ByteArrayOutputStream output = new ByteArrayOutputStream() {
+      @Override
+      public void flush() {
+        flushed.countDown();
+      }
+    };
+    ReplChannel channel = new ReplChannel(new WebSocketConnection(input, output, 1 << 16),
+        NO_EVALUATOR);
+    channel.send("{\"status\":\"OK\"}");  // Queued until the channel runs
+    assertEquals(0, output.size());
+    channel.run();
+
+    byte[] written = output.toByteArray();
+    assertEquals((byte) 0x81, written[0]);  // A text frame ...
+    assertEquals("{\"status\":\"OK\"}", new String(written, 2, written[1], "UTF-8"));
+  }
+
+  public void testWriteFailureEndsChannel() throws Exception {
+    byte[] input = WebSocketConnectionTest.clientFrame(true, 0x8, new byte[0]);
+    OutputStream failing = new OutputStream() {
+      @Override
+      public void write(int b) throws IOException {
+        throw new IOException("Broken pipe");
+      }
+    };
+    ReplChannel channel = new ReplChannel(new WebSocketConnection(
+        new ByteArrayInputStream(input), failing, 1 << 16), NO_EVALUATOR);
+    channel.send("{}");
+    channel.run();  // Returns once the writer has closed the connection
+  }
+
+  private static final ReplChannel.Evaluator NO_EVALUATOR = new ReplChannel.Evaluator() {
+    @Override
+    public void eval(String code) {
+    }
+
+    @Override
+    public void evalFailed(String message, Throwable e) {
+    }
+  };
+
+  private static byte[] concat(byte[]... parts) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (byte[] part : parts) {
+      out.write(part, 0, part.length);
+    }
+    return out.toByteArray();
+  }
+}
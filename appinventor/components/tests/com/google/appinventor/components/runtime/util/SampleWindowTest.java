@@ -0,0 +1,80 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime.util;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests SampleWindow.
+ */
+public class SampleWindowTest extends TestCase {
+  private static final double DELTA = .00001;  // floating point delta
+
+  public void testEmptyWindow() throws Exception {
+    SampleWindow window = new SampleWindow(2, 4, 0.5);
+    assertEquals(0, window.size());
+    assertEquals(0, window.mean(0), DELTA);
+    assertEquals(0, window.min(1), DELTA);
+    assertEquals(0, window.max(1), DELTA);
+    assertEquals(0, window.rms(0), DELTA);
+    assertEquals(0, window.lowPass(0), DELTA);
+  }
+
+  public void testStatistics() throws Exception {
+    SampleWindow window = new SampleWindow(2, 4, 1);
+    window.add(new float[] { 1, -3 });
+    window.add(new float[] { 2, 4 });
+    window.add(new float[] { 3, 0 });
+    assertEquals(3, window.size());
+    assertEquals(2, window.mean(0), DELTA);
+    assertEquals(1, window.min(0), DELTA);
+    assertEquals(3, window.max(0), DELTA);
+    assertEquals(-3, window.min(1), DELTA);
+    assertEquals(4, window.max(1), DELTA);
+    assertEquals(Math.sqrt(25.0 / 3), window.rms(1), DELTA);
+  }
+
+  public void testOldestReadingsAreReplaced() throws Exception {
+    SampleWindow window = new SampleWindow(1, 3, 1);
+    for (int i = 1; i <= 5; i++) {
+      window.add(new float[] { i });
+    }
+    assertEquals(3, window.size());
+    assertEquals(4, window.mean(0), DELTA);
+    assertEquals(3, window.min(0), DELTA);
+    assertEquals(5, window.max(0), DELTA);
+  }
+
+  public void testLowPass() throws Exception {
+    SampleWindow window = new SampleWindow(1, 2, 0.25);
+    window.add(new float[] { 8 });
+    assertEquals(8, window.lowPass(0), DELTA);   // The first reading primes the filter
+    window.add(new float[] { 0 });
+    assertEquals(6, window.lowPass(0), DELTA);
+    window.add(new float[] { 0 });
+    assertEquals(4.5, window.lowPass(0), DELTA);
+    window.clear();
+    assertEquals(0, window.lowPass(0), DELTA);
+  }
+
+  public void testSetCapacityDiscardsReadings() throws Exception {
+    SampleWindow window = new SampleWindow(1, 2, 1);
+    window.add(new float[] { 1 });
+    window.setCapacity(5);
+    assertEquals(0, window.size());
+    assertEquals(5, window.getCapacity());
+  }
+
+  public void testInvalidChannel() throws Exception {
+    SampleWindow window = new SampleWindow(3, 2, 1);
+    try {
+      window.mean(3);
+      fail();
+    } catch (IndexOutOfBoundsException e) {
+      // expected
+    }
+  }
+}
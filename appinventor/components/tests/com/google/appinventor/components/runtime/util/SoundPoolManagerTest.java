@@ -0,0 +1,127 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import android.media.AudioManager;
+import android.media.SoundPool;
+import com.google.appinventor.components.runtime.RobolectricTestBase;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link SoundPoolManager}.
+ */
+public class SoundPoolManagerTest extends RobolectricTestBase {
+
+  private static final String PATH = "file:///tmp/sound.wav";
+
+  /**
+   * A SoundPool that reports loads as the test tells it to.
+   */
+  private static class FakeSoundPool extends SoundPool {
+    OnLoadCompleteListener listener;
+    int loads;
+
+    FakeSoundPool() {
+      super(1, AudioManager.STREAM_MUSIC, 0);
+    }
+
+    @Override
+    public void setOnLoadCompleteListener(OnLoadCompleteListener listener) {
+      this.listener = listener;
+    }
+
+    @Override
+    public int load(String path, int priority) {
+      return ++loads;
+    }
+
+    void finishLoad(int soundId, int status) {
+      listener.onLoadComplete(this, soundId, status);
+    }
+  }
+
+  private static class Counter implements Runnable {
+    int runs;
+
+    @Override
+    public void run() {
+      runs++;
+    }
+  }
+
+  private FakeSoundPool soundPool;
+  private SoundPoolManager manager;
+
+  @Before
+  public void setUp() {
+    super.setUp();
+    soundPool = new FakeSoundPool();
+    manager = new SoundPoolManager(soundPool);
+  }
+
+  @Test
+  public void testSamplesAreShared() throws Exception {
+    SoundPoolManager.Sample sample = manager.acquire(getForm(), PATH);
+    assertSame(sample, manager.acquire(getForm(), PATH));
+    assertEquals(1, soundPool.loads);
+    assertFalse(sample.isLoaded());
+
+    Counter counter = new Counter();
+    manager.whenLoaded(sample, counter);
+    soundPool.finishLoad(1, 0);
+    assertTrue(sample.isLoaded());
+    assertFalse(sample.hasFailed());
+    assertEquals(1, counter.runs);
+    manager.whenLoaded(sample, counter);
+    assertEquals(2, counter.runs);
+
+    // A released sample is kept for its next user
+    manager.release(sample);
+    manager.release(sample);
+    assertSame(sample, manager.acquire(getForm(), PATH));
+    assertEquals(1, soundPool.loads);
+  }
+
+  @Test
+  public void testFailedLoadIsRetried() throws Exception {
+    SoundPoolManager.Sample sample = manager.acquire(getForm(), PATH);
+    Counter counter = new Counter();
+    manager.whenLoaded(sample, counter);
+    soundPool.finishLoad(1, 1);
+    assertFalse(sample.isLoaded());
+    assertTrue(sample.hasFailed());
+    // Waiting plays are told, so they can report the error
+    assertEquals(1, counter.runs);
+
+    // The failed sample is not handed out again
+    SoundPoolManager.Sample retry = manager.acquire(getForm(), PATH);
+    assertNotSame(sample, retry);
+    assertEquals(2, soundPool.loads);
+    soundPool.finishLoad(2, 0);
+    assertTrue(retry.isLoaded());
+
+    // Releasing the failed sample leaves the new one cached
+    manager.release(sample);
+    assertSame(retry, manager.acquire(getForm(), PATH));
+    assertEquals(2, soundPool.loads);
+  }
+
+  @Test
+  public void testFailedIdleSampleIsRetried() throws Exception {
+    SoundPoolManager.Sample sample = manager.acquire(getForm(), PATH);
+    manager.release(sample);
+    soundPool.finishLoad(1, 1);
+    assertNotSame(sample, manager.acquire(getForm(), PATH));
+    assertEquals(2, soundPool.loads);
+  }
+}
@@ -0,0 +1,121 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests WebSocketConnection.
+ */
+public class WebSocketConnectionTest extends TestCase {
+  private static final byte[] MASK = { 0x12, 0x34, 0x56, 0x78 };
+
+  /**
+   * Builds a masked frame, as a client sends it.
+   */
+  static byte[] clientFrame(boolean fin, int opcode, byte[] payload) {
+    ByteArrayOutputStream frame = new ByteArrayOutputStream();
+    frame.write((fin ? 0x80 : 0) | opcode);
+    if (payload.length < 126) {
+      frame.write(0x80 | payload.length);
+    } else {
+      frame.write(0x80 | 126);
+      frame.write(payload.length >> 8);
+      frame.write(payload.length);
+    }
+    frame.write(MASK, 0, 4);
+    for (int i = 0; i < payload.length; i++) {
+      frame.write(payload[i] ^ MASK[i & 3]);
+    }
+    return frame.toByteArray();
+  }
+
+  private static byte[] concat(byte[]... parts) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (byte[] part : parts) {
+      out.write(part, 0, part.length);
+    }
+    return out.toByteArray();
+  }
+
+  public void testReadsMaskedAndFragmentedMessages() throws Exception {
+    char[] chars = new char[300];
+    Arrays.fill(chars, 'x');
+    String longText = new String(chars);
+    byte[] input = concat(
+        clientFrame(true, 0x1, "(+ 1 2)".getBytes("UTF-8")),
+        clientFrame(false, 0x1, "caf".getBytes("UTF-8")),
+        clientFrame(false, 0x0, "\u00e9 ".getBytes("UTF-8")),
+        clientFrame(true, 0x0, longText.getBytes("UTF-8")));
+    WebSocketConnection connection = new WebSocketConnection(
+        new ByteArrayInputStream(input), new ByteArrayOutputStream(), 1024);
+    assertEquals("(+ 1 2)", connection.readMessage());
+    assertEquals("caf\u00e9 " + longText, connection.readMessage());
+    assertNull(connection.readMessage());
+  }
+
+  public void testAnswersPingAndClose() throws Exception {
+    byte[] input = concat(
+        clientFrame(true, 0x9, new byte[] { 7 }),
+        clientFrame(true, 0x8, new byte[0]));
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    WebSocketConnection connection = new WebSocketConnection(
+        new ByteArrayInputStream(input), output, 1024);
+    assertNull(connection.readMessage());
+    // A pong with the ping's payload, then a close frame
+    assertTrue(Arrays.equals(new byte[] { (byte) 0x8A, 1, 7, (byte) 0x88, 0 },
+        output.toByteArray()));
+    try {
+      connection.sendText("late");
+      fail();
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  public void testSendsUnmaskedFrames() throws Exception {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    WebSocketConnection connection = new WebSocketConnection(
+        new ByteArrayInputStream(new byte[0]), output, 1024);
+    connection.sendText("ok");
+    char[] chars = new char[200];
+    Arrays.fill(chars, 'y');
+    connection.sendText(new String(chars));
+    byte[] bytes = output.toByteArray();
+    assertTrue(Arrays.equals(new byte[] { (byte) 0x81, 2, 'o', 'k' },
+        Arrays.copyOf(bytes, 4)));
+    assertEquals((byte) 0x81, bytes[4]);
+    assertEquals(126, bytes[5]);
+    assertEquals(200, ((bytes[6] & 0xFF) << 8) | (bytes[7] & 0xFF));
+    assertEquals(4 + 4 + 200, bytes.length);
+  }
+
+  public void testRejectsUnmaskedAndOversizedFrames() throws Exception {
+    WebSocketConnection unmasked = new WebSocketConnection(
+        new ByteArrayInputStream(new byte[] { (byte) 0x81, 1, 'a' }),
+        new ByteArrayOutputStream(), 1024);
+    try {
+      unmasked.readMessage();
+      fail();
+    } catch (IOException e) {
+      // expected
+    }
+    WebSocketConnection oversized = new WebSocketConnection(
+        new ByteArrayInputStream(clientFrame(true, 0x1, new byte[20])),
+        new ByteArrayOutputStream(), 10);
+    try {
+      oversized.readMessage();
+      fail();
+    } catch (IOException e) {
+      // expected
+    }
+  }
+}